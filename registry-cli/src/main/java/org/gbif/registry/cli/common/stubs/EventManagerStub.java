@@ -23,6 +23,9 @@ public class EventManagerStub implements EventManager {
   @Override
   public void register(Object object) {}
 
+  @Override
+  public void registerSynchronous(Object object) {}
+
   @Override
   public void unregister(Object object) {}
 }
@@ -18,9 +18,13 @@ import org.gbif.api.service.registry.DatasetService;
 import org.gbif.api.service.registry.InstallationService;
 import org.gbif.api.service.registry.NetworkService;
 import org.gbif.api.service.registry.OrganizationService;
+import org.gbif.registry.cli.common.DbConfiguration;
+import org.gbif.registry.cli.common.spring.DataSourcesConfiguration;
 import org.gbif.registry.cli.datasetindex.batchindexer.DatasetBatchIndexer;
 import org.gbif.registry.cli.datasetindex.batchindexer.DatasetBatchIndexerConfiguration;
+import org.gbif.registry.cli.datasetindex.batchindexer.RegistryDbDatasetSource;
 import org.gbif.registry.cli.datasetindex.indexupdater.DatasetIndexUpdaterConfiguration;
+import org.gbif.registry.persistence.config.MyBatisConfiguration;
 import org.gbif.registry.pipelines.issues.GithubApiClient;
 import org.gbif.registry.search.dataset.indexing.DatasetJsonConverter;
 import org.gbif.registry.search.dataset.indexing.EsDatasetRealtimeIndexer;
@@ -29,6 +33,7 @@ import org.gbif.registry.search.dataset.indexing.es.EsConfiguration;
 import org.gbif.registry.search.dataset.indexing.ws.GbifApiServiceConfig;
 import org.gbif.registry.search.dataset.indexing.ws.GbifWsWrapperClient;
 import org.gbif.registry.search.dataset.indexing.ws.JacksonObjectMapper;
+import org.gbif.registry.service.RegistryDatasetServiceImpl;
 import org.gbif.registry.ws.client.DatasetClient;
 import org.gbif.registry.ws.client.DatasetDataPackageClient;
 import org.gbif.registry.ws.client.InstallationClient;
@@ -41,6 +46,8 @@ import org.gbif.ws.json.JacksonJsonObjectMapperProvider;
 import java.io.IOException;
 import java.util.Date;
 
+import org.mybatis.spring.annotation.MapperScan;
+import org.mybatis.spring.boot.autoconfigure.MybatisAutoConfiguration;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.autoconfigure.freemarker.FreeMarkerAutoConfiguration;
 import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
@@ -74,21 +81,36 @@ public class SpringContextBuilder {
 
   public static ApplicationContext applicationContext(
       DatasetBatchIndexerConfiguration configuration) {
-    return commonContext(configuration);
+    return commonContext(configuration, configuration.getRegistryDb());
   }
 
   public static ApplicationContext applicationContext(
       DatasetIndexUpdaterConfiguration configuration) {
-    AnnotationConfigApplicationContext ctx = commonContext(configuration);
+    AnnotationConfigApplicationContext ctx = commonContext(configuration, null);
     ctx.register(EsDatasetRealtimeIndexer.class);
     return ctx;
   }
 
   private static AnnotationConfigApplicationContext commonContext(
-      DatasetIndexConfiguration configuration) {
+      DatasetIndexConfiguration configuration, DbConfiguration registryDb) {
     AnnotationConfigApplicationContext ctx = new AnnotationConfigApplicationContext();
     ctx.registerBean(
         "DatasetIndexConfiguration", DatasetIndexConfiguration.class, () -> configuration);
+
+    // datasets are read straight from the registry database when it's configured
+    if (registryDb != null) {
+      ctx.registerBean(DbConfiguration.class, () -> registryDb);
+      ctx.register(DataSourcesConfiguration.class);
+      ctx.register(MyBatisConfiguration.class);
+      ctx.register(MybatisAutoConfiguration.class);
+      ctx.register(RegistryMappersConfig.class);
+      ctx.registerBean(
+          "registryObjectMapper",
+          ObjectMapper.class,
+          JacksonJsonObjectMapperProvider::getObjectMapper);
+      ctx.register(RegistryDatasetServiceImpl.class);
+      ctx.register(RegistryDbDatasetSource.class);
+    }
     ctx.register(DatasetBatchIndexer.class);
     ctx.register(GbifApiServiceConfig.class);
     ctx.register(GbifWsWrapperClient.class);
@@ -205,6 +227,10 @@ public class SpringContextBuilder {
     }
   }
 
+  /** Scans the registry mappers, only used when the registry database is configured. */
+  @MapperScan("org.gbif.registry.persistence.mapper")
+  static class RegistryMappersConfig {}
+
   private static class CustomDateDeserializer extends DateDeserializers.DateDeserializer {
 
     @Override
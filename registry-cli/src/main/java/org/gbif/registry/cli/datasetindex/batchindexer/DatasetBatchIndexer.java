@@ -17,18 +17,22 @@ import org.gbif.api.model.common.paging.PagingRequest;
 import org.gbif.api.model.common.paging.PagingResponse;
 import org.gbif.api.model.registry.Dataset;
 import org.gbif.registry.search.dataset.indexing.DatasetJsonConverter;
+import org.gbif.registry.search.dataset.indexing.es.EsBulkIndexer;
 import org.gbif.registry.search.dataset.indexing.es.EsClient;
 import org.gbif.registry.search.dataset.indexing.es.IndexingConstants;
 import org.gbif.registry.search.dataset.indexing.ws.GbifWsClient;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 
 import org.springframework.beans.factory.annotation.Autowired;
@@ -36,18 +40,18 @@ import org.springframework.beans.factory.annotation.Value;
 
 import com.google.common.base.Stopwatch;
 
-import co.elastic.clients.elasticsearch.core.BulkRequest;
-import co.elastic.clients.elasticsearch.core.BulkResponse;
-import co.elastic.clients.elasticsearch.core.bulk.BulkOperation;
-import co.elastic.clients.elasticsearch.core.bulk.BulkResponseItem;
-import co.elastic.clients.elasticsearch.core.bulk.IndexOperation;
-import co.elastic.clients.json.JsonData;
 import lombok.extern.slf4j.Slf4j;
 
-/** A builder that will clear and build a new dataset index by paging over the given service. */
+/**
+ * A builder that will clear and build a new dataset index by paging over the given service, or
+ * update the live index with the datasets changed since a given time.
+ */
 @Slf4j
 public class DatasetBatchIndexer {
 
+  // margin for the clock skew with the database and for transactions committed during the run
+  private static final Duration CHECKPOINT_OVERLAP = Duration.ofMinutes(1);
+
   private final GbifWsClient gbifWsClient;
 
   private final EsClient esClient;
@@ -60,22 +64,56 @@ public class DatasetBatchIndexer {
   // This variable has the only intention to be used in IT and local tests
   private final Integer stopAfter;
 
+  // Only available when the registry database is configured
+  private final RegistryDbDatasetSource registryDbDatasetSource;
+
   @Autowired
   public DatasetBatchIndexer(
       GbifWsClient gbifWsClient,
       EsClient esClient,
       DatasetJsonConverter datasetJsonConverter,
       @Value("${indexing.stopAfter:-1}") Integer stopAfter,
-      @Value("${indexing.pageSize:50}") Integer pageSize) {
+      @Value("${indexing.pageSize:50}") Integer pageSize,
+      @Autowired(required = false) RegistryDbDatasetSource registryDbDatasetSource) {
     this.gbifWsClient = gbifWsClient;
     this.esClient = esClient;
     this.datasetJsonConverter = datasetJsonConverter;
     this.stopAfter = stopAfter;
     this.pageSize = pageSize;
+    this.registryDbDatasetSource = registryDbDatasetSource;
   }
 
-  /** Pages over all datasets and adds them to ElasticSearch. */
+  /**
+   * Builds a new index with all the datasets and swaps the alias to it or, if a since date is
+   * configured, upserts and deletes in the live alias only the datasets changed since then.
+   */
   public void run(DatasetBatchIndexerConfiguration config) {
+    IndexingCheckpoint checkpoint =
+        config.getCheckpointFile() != null
+            ? new IndexingCheckpoint(config.getCheckpointFile())
+            : null;
+    // changes committed while this run reads the datasets are read again by the next run
+    Instant runStart = Instant.now().minus(CHECKPOINT_OVERLAP);
+
+    boolean complete;
+    if (config.getSince() != null) {
+      complete =
+          runIncremental(config, IndexingCheckpoint.resolveSince(config.getSince(), checkpoint));
+    } else {
+      complete = runFull(config);
+    }
+
+    if (checkpoint != null) {
+      if (complete) {
+        checkpoint.write(runStart);
+      } else {
+        log.warn("Some datasets failed to index, the checkpoint is not moved forward");
+      }
+    }
+  }
+
+  /** Pages over all datasets and adds them to ElasticSearch. */
+  private boolean runFull(DatasetBatchIndexerConfiguration config) {
     log.info("Building a new Dataset index");
 
     String indexName =
@@ -89,58 +127,141 @@ public class DatasetBatchIndexer {
         IndexingConstants.MAPPING_FILE,
         IndexingConstants.SETTINGS_FILE);
 
-    ExecutorService executor = Executors.newWorkStealingPool();
+    boolean complete =
+        index(
+            config,
+            indexName,
+            (pageConsumer, bulkIndexer) -> {
+              if (registryDbDatasetSource != null) {
+                log.info("Reading datasets from the registry database");
+                registryDbDatasetSource.onAllDatasets(pageConsumer, stopAfter, pageSize);
+              } else {
+                onAllDatasets(gbifWsClient, pageConsumer, stopAfter, pageSize);
+              }
+            });
 
-    List<CompletableFuture<BulkResponse>> jobs = new ArrayList<>();
-
-    onAllDatasets(
-        gbifWsClient,
-        pagingResponse ->
-            jobs.add(
-                CompletableFuture.supplyAsync(
-                    () -> index(pagingResponse, datasetJsonConverter, indexName, esClient),
-                    executor)),
-        stopAfter,
-        pageSize);
-
-    CompletableFuture.allOf(jobs.toArray(new CompletableFuture[] {})).join();
-
-    logIndexingErrors(jobs);
-    executor.shutdown();
     esClient.updateSettings(indexName, config.getSearchSettings());
     esClient.swapAlias(config.getDatasetEs().getAlias(), indexName);
     esClient.flushIndex(indexName);
     esClient.close();
     log.info("Finished building Dataset index in {} secs", stopwatch.elapsed(TimeUnit.SECONDS));
+    return complete;
+  }
+
+  /** Upserts and deletes in the live alias the datasets changed since the given instant. */
+  private boolean runIncremental(DatasetBatchIndexerConfiguration config, Instant since) {
+    if (registryDbDatasetSource == null) {
+      throw new IllegalArgumentException("Incremental indexing requires the registryDb settings");
+    }
+    String alias = config.getDatasetEs().getAlias();
+    log.info("Indexing datasets changed since {} into {}", since, alias);
+    Stopwatch stopwatch = Stopwatch.createStarted();
+
+    boolean complete =
+        index(
+            config,
+            alias,
+            (pageConsumer, bulkIndexer) -> {
+              long changed =
+                  registryDbDatasetSource.onDatasetsChangedSince(
+                      Date.from(since),
+                      pageConsumer,
+                      deleted ->
+                          deleted.forEach(d -> bulkIndexer.delete(alias, d.getKey().toString())),
+                      pageSize);
+              log.info("{} datasets changed since {}", changed, since);
+            });
+
+    esClient.close();
+    log.info(
+        "Finished indexing changed datasets in {} secs", stopwatch.elapsed(TimeUnit.SECONDS));
+    return complete;
+  }
+
+  /**
+   * Converts and indexes the pages produced by the source, returns true if every dataset was
+   * indexed.
+   */
+  private boolean index(
+      DatasetBatchIndexerConfiguration config,
+      String indexName,
+      BiConsumer<Consumer<PagingResponse<Dataset>>, EsBulkIndexer> source) {
+    // converter threads block while all the bulks are in flight, so they shouldn't be shared
+    ExecutorService executor = Executors.newFixedThreadPool(config.getMaxPagesInFlight());
+    EsBulkIndexer bulkIndexer = new EsBulkIndexer(esClient, config.getBulk());
+    IndexingStats stats = new IndexingStats();
+
+    List<CompletableFuture<Void>> jobs = new ArrayList<>();
+
+    // bounds the number of pages held in memory, the source waits until a page is converted and
+    // handed to the bulk indexer, which in turn blocks while all its bulks are in flight
+    Semaphore pagesInFlight = new Semaphore(config.getMaxPagesInFlight());
+    Consumer<PagingResponse<Dataset>> pageConsumer =
+        pagingResponse -> {
+          stats.pageRead(pagingResponse.getResults().size());
+          pagesInFlight.acquireUninterruptibly();
+          jobs.add(
+              CompletableFuture.runAsync(
+                      () -> index(pagingResponse, indexName, bulkIndexer, stats), executor)
+                  .whenComplete((r, e) -> pagesInFlight.release()));
+        };
+
+    source.accept(pageConsumer, bulkIndexer);
+    stats.sourceFinished();
+
+    CompletableFuture.allOf(jobs.toArray(new CompletableFuture[] {})).join();
+    stats.conversionFinished();
+    bulkIndexer.close();
+    executor.shutdown();
+
+    stats.log(bulkIndexer.getStats());
+    gbifWsClient.logCacheStatistics();
+    return stats.getConversionFailures() == 0 && bulkIndexer.getStats().getFailedItems() == 0;
   }
 
-  private BulkResponse index(
+  private void index(
       PagingResponse<Dataset> pagingResponse,
-      DatasetJsonConverter datasetJsonConverter,
       String indexName,
-      EsClient esClient) {
+      EsBulkIndexer bulkIndexer,
+      IndexingStats stats) {
+    log.info(
+        "Indexing {} datasets until at offset {}",
+        pagingResponse.getLimit(),
+        pagingResponse.getOffset());
+    List<Dataset> datasets = pagingResponse.getResults();
+    long start = System.nanoTime();
+    List<String> jsons;
     try {
-      BulkRequest.Builder bulkRequest = new BulkRequest.Builder();
-      pagingResponse
-          .getResults()
-          .forEach(
-              dataset -> {
-                String jsonString = datasetJsonConverter.convertAsJsonString(dataset);
-                bulkRequest.operations(BulkOperation.of(op -> op.index(IndexOperation.of(io -> io
-                    .index(indexName)
-                    .id(dataset.getKey().toString())
-                    .document(JsonData.fromJson(jsonString))))));
-              });
-      // Batching updates to Es proves quicker with batches of 100 - 1000 showing similar
-      // performance
-      log.info(
-          "Indexing {} datasets until at offset {}",
-          pagingResponse.getLimit(),
-          pagingResponse.getOffset());
-      return esClient.bulk(bulkRequest.build());
+      // remote lookups of the whole page are done in bulk
+      jsons = datasetJsonConverter.convertAsJsonStrings(datasets);
     } catch (Exception ex) {
-      log.error("Error indexing page", ex);
-      throw new RuntimeException(ex);
+      log.warn(
+          "Error converting page at offset {}, converting one by one",
+          pagingResponse.getOffset(),
+          ex);
+      indexOneByOne(datasets, indexName, bulkIndexer, stats);
+      return;
+    }
+    long nanosPerDataset = datasets.isEmpty() ? 0 : (System.nanoTime() - start) / datasets.size();
+    for (int i = 0; i < datasets.size(); i++) {
+      String jsonString = jsons.get(i);
+      stats.converted(nanosPerDataset, jsonString.length());
+      bulkIndexer.index(indexName, datasets.get(i).getKey().toString(), jsonString);
+    }
+  }
+
+  private void indexOneByOne(
+      List<Dataset> datasets, String indexName, EsBulkIndexer bulkIndexer, IndexingStats stats) {
+    for (Dataset dataset : datasets) {
+      try {
+        long start = System.nanoTime();
+        String jsonString = datasetJsonConverter.convertAsJsonString(dataset);
+        stats.converted(System.nanoTime() - start, jsonString.length());
+        bulkIndexer.index(indexName, dataset.getKey().toString(), jsonString);
+      } catch (Exception ex) {
+        stats.conversionFailed();
+        log.error("Error converting dataset {}", dataset.getKey(), ex);
+      }
     }
   }
 
@@ -162,28 +283,4 @@ public class DatasetBatchIndexer {
       page.nextPage();
     } while (!response.isEndOfRecords() && (stopAfter < 0 || stopAfter < datasetCount));
   }
-
-  private static void logIndexingErrors(List<CompletableFuture<BulkResponse>> jobs) {
-    jobs.forEach(job -> {
-      try {
-        BulkResponse bulkResponse = job.get();
-        if (bulkResponse.errors()) {
-          for (BulkResponseItem itemResponse : bulkResponse.items()) {
-            if (itemResponse.error() != null) {
-              log.error(
-                "Indexing failure: index={}, id={}, error={}",
-                itemResponse.index(),
-                itemResponse.id(),
-                itemResponse.error()
-              );
-            }
-          }
-        }
-      } catch (InterruptedException | ExecutionException e) {
-        log.error("Failed to get bulk indexing response", e);
-        Thread.currentThread().interrupt(); // Best practice for InterruptedException
-      }
-    });
-  }
-
 }
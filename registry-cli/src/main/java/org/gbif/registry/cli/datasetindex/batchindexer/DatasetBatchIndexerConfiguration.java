@@ -13,12 +13,16 @@
  */
 package org.gbif.registry.cli.datasetindex.batchindexer;
 
+import org.gbif.registry.cli.common.DbConfiguration;
 import org.gbif.registry.cli.datasetindex.DatasetIndexConfiguration;
+import org.gbif.registry.search.dataset.indexing.es.EsBulkIndexer;
 import org.gbif.registry.search.dataset.indexing.es.IndexingConstants;
 
 import java.util.HashMap;
 import java.util.Map;
 
+import com.beust.jcommander.Parameter;
+
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 
@@ -32,4 +36,29 @@ public class DatasetBatchIndexerConfiguration extends DatasetIndexConfiguration
 
   private Map<String, String> searchSettings =
       new HashMap<>(IndexingConstants.DEFAULT_SEARCH_SETTINGS);
+
+  /**
+   * Registry database to read the datasets from. If it's not set the datasets are paged over the
+   * registry WS.
+   */
+  private DbConfiguration registryDb;
+
+  /** Maximum number of pages of datasets that are being converted or indexed at the same time. */
+  private int maxPagesInFlight = 8;
+
+  /** Settings of the bulk requests sent to Elasticsearch. */
+  private EsBulkIndexer.BulkConfiguration bulk = new EsBulkIndexer.BulkConfiguration();
+
+  /**
+   * Incremental mode: only the datasets changed since this ISO-8601 instant (e.g.
+   * 2024-05-01T10:00:00Z) are upserted or deleted in the live alias, no new index is built. Use
+   * "checkpoint" to start from the last successful run recorded in the checkpoint file. Requires
+   * the registry database.
+   */
+  @Parameter(names = "--since")
+  private String since;
+
+  /** File where the start time of the last successful run is recorded. */
+  @Parameter(names = "--checkpoint-file")
+  private String checkpointFile;
 }
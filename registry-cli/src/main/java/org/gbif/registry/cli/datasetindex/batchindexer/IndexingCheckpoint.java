@@ -0,0 +1,77 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.cli.datasetindex.batchindexer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.Optional;
+
+import lombok.extern.slf4j.Slf4j;
+
+/** Start time of the last successful indexing run, stored as an ISO-8601 instant in a file. */
+@Slf4j
+class IndexingCheckpoint {
+
+  static final String FROM_CHECKPOINT = "checkpoint";
+
+  private final Path file;
+
+  IndexingCheckpoint(String file) {
+    this.file = Paths.get(file);
+  }
+
+  /** Resolves the --since argument, either an ISO-8601 instant or the checkpoint keyword. */
+  static Instant resolveSince(String since, IndexingCheckpoint checkpoint) {
+    if (FROM_CHECKPOINT.equalsIgnoreCase(since)) {
+      if (checkpoint == null) {
+        throw new IllegalArgumentException("--since checkpoint requires a --checkpoint-file");
+      }
+      return checkpoint
+          .read()
+          .orElseThrow(
+              () -> new IllegalStateException("No checkpoint recorded in " + checkpoint.file));
+    }
+    return Instant.parse(since);
+  }
+
+  Optional<Instant> read() {
+    if (!Files.exists(file)) {
+      return Optional.empty();
+    }
+    try {
+      return Optional.of(
+          Instant.parse(new String(Files.readAllBytes(file), StandardCharsets.UTF_8).trim()));
+    } catch (IOException e) {
+      throw new UncheckedIOException("Unable to read the checkpoint " + file, e);
+    }
+  }
+
+  /** Writes the checkpoint atomically, so a crash never leaves a truncated file behind. */
+  void write(Instant instant) {
+    try {
+      Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+      Files.write(tmp, instant.toString().getBytes(StandardCharsets.UTF_8));
+      Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      log.info("Checkpoint {} recorded in {}", instant, file);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Unable to write the checkpoint " + file, e);
+    }
+  }
+}
@@ -0,0 +1,96 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.cli.datasetindex.batchindexer;
+
+import org.gbif.registry.search.dataset.indexing.es.EsBulkIndexer;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.base.Stopwatch;
+
+import lombok.extern.slf4j.Slf4j;
+
+/** Throughput counters of the stages of a batch indexing run: source, conversion and bulk. */
+@Slf4j
+class IndexingStats {
+
+  private final Stopwatch stopwatch = Stopwatch.createStarted();
+
+  private final AtomicLong datasetsRead = new AtomicLong();
+  private final AtomicLong pagesRead = new AtomicLong();
+  private final AtomicLong converted = new AtomicLong();
+  private final AtomicLong conversionFailures = new AtomicLong();
+  private final AtomicLong conversionNanos = new AtomicLong();
+  private final AtomicLong jsonChars = new AtomicLong();
+
+  private volatile long sourceMillis;
+  private volatile long conversionMillis;
+
+  void pageRead(int datasets) {
+    pagesRead.incrementAndGet();
+    datasetsRead.addAndGet(datasets);
+  }
+
+  void converted(long nanos, int jsonLength) {
+    converted.incrementAndGet();
+    conversionNanos.addAndGet(nanos);
+    jsonChars.addAndGet(jsonLength);
+  }
+
+  void conversionFailed() {
+    conversionFailures.incrementAndGet();
+  }
+
+  long getConversionFailures() {
+    return conversionFailures.get();
+  }
+
+  void sourceFinished() {
+    sourceMillis = stopwatch.elapsed(TimeUnit.MILLISECONDS);
+  }
+
+  void conversionFinished() {
+    conversionMillis = stopwatch.elapsed(TimeUnit.MILLISECONDS);
+  }
+
+  void log(EsBulkIndexer.BulkStats bulkStats) {
+    log.info(
+        "Source: {} datasets in {} pages, {} docs/s",
+        datasetsRead.get(),
+        pagesRead.get(),
+        String.format("%.1f", perSecond(datasetsRead.get(), sourceMillis)));
+    log.info(
+        "Conversion: {} docs ({} failed, {} MB of JSON), {} docs/s, {} MB/s, {} ms per doc",
+        converted.get(),
+        conversionFailures.get(),
+        String.format("%.1f", toMb(jsonChars.get())),
+        String.format("%.1f", perSecond(converted.get(), conversionMillis)),
+        String.format("%.2f", perSecond(toMb(jsonChars.get()), conversionMillis)),
+        String.format(
+            "%.1f",
+            converted.get() > 0
+                ? TimeUnit.NANOSECONDS.toMicros(conversionNanos.get()) / 1000D / converted.get()
+                : 0D));
+    log.info("Bulk: {}", bulkStats);
+  }
+
+  private static double toMb(long chars) {
+    return chars / (1024D * 1024D);
+  }
+
+  private static double perSecond(double amount, long millis) {
+    return millis > 0 ? amount * 1000D / millis : 0D;
+  }
+}
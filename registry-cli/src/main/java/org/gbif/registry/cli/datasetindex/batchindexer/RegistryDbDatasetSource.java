@@ -0,0 +1,123 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.cli.datasetindex.batchindexer;
+
+import org.gbif.api.model.common.paging.PagingRequest;
+import org.gbif.api.model.common.paging.PagingResponse;
+import org.gbif.api.model.registry.Dataset;
+import org.gbif.registry.persistence.mapper.DatasetMapper;
+import org.gbif.registry.service.RegistryDatasetService;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import org.springframework.beans.factory.annotation.Autowired;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Reads all the datasets straight from the registry database. Datasets are paged by key (keyset
+ * paging) so the cost of each page stays flat regardless of how many datasets were already read.
+ */
+@Slf4j
+public class RegistryDbDatasetSource {
+
+  private final DatasetMapper datasetMapper;
+
+  private final RegistryDatasetService registryDatasetService;
+
+  @Autowired
+  public RegistryDbDatasetSource(
+      DatasetMapper datasetMapper, RegistryDatasetService registryDatasetService) {
+    this.datasetMapper = datasetMapper;
+    this.registryDatasetService = registryDatasetService;
+  }
+
+  /**
+   * Pages over all the non deleted datasets, the datasets are augmented with their preferred
+   * metadata document as the registry WS does.
+   *
+   * @param responseConsumer consumer of each page of datasets
+   * @param stopAfter stops after this amount of datasets, -1 to read all of them
+   * @param datasetPageSize number of datasets per page
+   */
+  public void onAllDatasets(
+      Consumer<PagingResponse<Dataset>> responseConsumer, int stopAfter, int datasetPageSize) {
+    int pageSize = stopAfter < 1 ? datasetPageSize : Math.min(datasetPageSize, stopAfter);
+    UUID lastKey = null;
+    long offset = 0;
+    boolean endOfRecords;
+    do {
+      log.debug("Requesting {} datasets after key {}", pageSize, lastKey);
+      List<Dataset> datasets = datasetMapper.listAfterKey(lastKey, pageSize);
+      endOfRecords = datasets.size() < pageSize;
+      if (!datasets.isEmpty()) {
+        lastKey = datasets.get(datasets.size() - 1).getKey();
+        PagingResponse<Dataset> response =
+            new PagingResponse<>(new PagingRequest(offset, pageSize), null, datasets);
+        response.setEndOfRecords(endOfRecords);
+        responseConsumer.accept(registryDatasetService.augmentWithMetadata(response));
+        offset += datasets.size();
+      }
+    } while (!endOfRecords && (stopAfter < 0 || offset < stopAfter));
+  }
+
+  /**
+   * Pages over the datasets changed since the given date, see {@link
+   * DatasetMapper#listChangedSince}. Live datasets are augmented with their metadata and passed to
+   * the changed consumer, deleted ones are passed as they are to the deleted consumer.
+   *
+   * @param since lower bound, inclusive, of the changes
+   * @param changedConsumer consumer of each page of live datasets
+   * @param deletedConsumer consumer of the deleted datasets of each page
+   * @param pageSize number of datasets per page
+   * @return the number of datasets read
+   */
+  public long onDatasetsChangedSince(
+      Date since,
+      Consumer<PagingResponse<Dataset>> changedConsumer,
+      Consumer<List<Dataset>> deletedConsumer,
+      int pageSize) {
+    UUID lastKey = null;
+    long offset = 0;
+    boolean endOfRecords;
+    do {
+      log.debug("Requesting {} datasets changed since {} after key {}", pageSize, since, lastKey);
+      List<Dataset> datasets = datasetMapper.listChangedSince(since, lastKey, pageSize);
+      endOfRecords = datasets.size() < pageSize;
+      if (!datasets.isEmpty()) {
+        lastKey = datasets.get(datasets.size() - 1).getKey();
+        List<Dataset> live = new ArrayList<>();
+        List<Dataset> deleted = new ArrayList<>();
+        for (Dataset dataset : datasets) {
+          (dataset.getDeleted() != null ? deleted : live).add(dataset);
+        }
+        if (!deleted.isEmpty()) {
+          deletedConsumer.accept(deleted);
+        }
+        if (!live.isEmpty()) {
+          PagingResponse<Dataset> response =
+              new PagingResponse<>(new PagingRequest(offset, pageSize), null, live);
+          response.setEndOfRecords(endOfRecords);
+          changedConsumer.accept(registryDatasetService.augmentWithMetadata(response));
+        }
+        offset += datasets.size();
+      }
+    } while (!endOfRecords);
+    return offset;
+  }
+}
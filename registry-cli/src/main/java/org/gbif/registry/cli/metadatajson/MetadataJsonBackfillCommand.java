@@ -0,0 +1,89 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.cli.metadatajson;
+
+import org.gbif.cli.BaseCommand;
+import org.gbif.cli.Command;
+import org.gbif.registry.cli.common.spring.SpringContextBuilder;
+import org.gbif.registry.persistence.mapper.MetadataMapper;
+import org.gbif.registry.service.RegistryDatasetService;
+import org.gbif.registry.service.RegistryDatasetServiceImpl;
+
+import java.util.List;
+
+import org.kohsuke.MetaInfServices;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+/**
+ * This command parses the stored metadata documents and stores the resulting datasets as JSON, so
+ * the dataset reads use the JSON instead of parsing the documents. By default only the documents
+ * without dataset JSON are processed.
+ */
+@MetaInfServices(Command.class)
+public class MetadataJsonBackfillCommand extends BaseCommand {
+
+  private static final Logger LOG = LoggerFactory.getLogger(MetadataJsonBackfillCommand.class);
+
+  private final MetadataJsonBackfillConfiguration config;
+
+  public MetadataJsonBackfillCommand() {
+    super("metadata-json-backfill");
+    config = new MetadataJsonBackfillConfiguration();
+  }
+
+  // constructor for tests
+  public MetadataJsonBackfillCommand(MetadataJsonBackfillConfiguration config) {
+    super("metadata-json-backfill");
+    this.config = config;
+  }
+
+  @Override
+  protected Object getConfigurationObject() {
+    return config;
+  }
+
+  @Override
+  protected void doRun() {
+    try (AnnotationConfigApplicationContext context =
+        SpringContextBuilder.create()
+            .withDbConfiguration(config.db)
+            .withComponents(RegistryDatasetServiceImpl.class)
+            .build()) {
+      MetadataMapper metadataMapper = context.getBean(MetadataMapper.class);
+      RegistryDatasetService datasetService = context.getBean(RegistryDatasetService.class);
+
+      int processed = 0;
+      int failed = 0;
+      int afterKey = 0;
+      List<Integer> keys;
+      do {
+        keys = metadataMapper.listKeys(afterKey, !config.all, config.batchSize);
+        for (Integer key : keys) {
+          if (!datasetService.storeMetadataDatasetJson(key)) {
+            failed++;
+          }
+          processed++;
+        }
+        if (!keys.isEmpty()) {
+          afterKey = keys.get(keys.size() - 1);
+          LOG.info("{} metadata documents processed, {} failed", processed, failed);
+        }
+      } while (keys.size() == config.batchSize);
+
+      LOG.info("Finished: {} metadata documents processed, {} failed", processed, failed);
+    }
+  }
+}
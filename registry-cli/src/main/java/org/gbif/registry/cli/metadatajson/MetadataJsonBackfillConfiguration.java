@@ -0,0 +1,50 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.cli.metadatajson;
+
+import org.gbif.registry.cli.common.DbConfiguration;
+
+import java.util.StringJoiner;
+
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.ParametersDelegate;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+
+/** A configuration exclusively for MetadataJsonBackfillCommand. */
+public class MetadataJsonBackfillConfiguration {
+
+  @ParametersDelegate @Valid @NotNull public DbConfiguration db = new DbConfiguration();
+
+  @Parameter(names = "--batch-size", description = "Number of metadata keys read per query")
+  @Min(1)
+  public int batchSize = 1000;
+
+  @Parameter(
+      names = "--all",
+      description = "Regenerate the dataset JSON of all the documents, e.g. after a parser upgrade")
+  public boolean all = false;
+
+  @Override
+  public String toString() {
+    return new StringJoiner(
+            ", ", MetadataJsonBackfillConfiguration.class.getSimpleName() + "[", "]")
+        .add("db=" + db)
+        .add("batchSize=" + batchSize)
+        .add("all=" + all)
+        .toString();
+  }
+}
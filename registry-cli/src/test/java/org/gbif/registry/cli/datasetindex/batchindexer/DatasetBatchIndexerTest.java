@@ -0,0 +1,149 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.cli.datasetindex.batchindexer;
+
+import org.gbif.api.model.common.paging.PagingRequest;
+import org.gbif.api.model.common.paging.PagingResponse;
+import org.gbif.api.model.registry.Dataset;
+import org.gbif.registry.cli.datasetindex.ElasticsearchConfig;
+import org.gbif.registry.search.dataset.indexing.DatasetJsonConverter;
+import org.gbif.registry.search.dataset.indexing.es.EsClient;
+import org.gbif.registry.search.dataset.indexing.ws.GbifWsClient;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.Date;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import co.elastic.clients.elasticsearch.core.BulkRequest;
+import co.elastic.clients.elasticsearch.core.BulkResponse;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class DatasetBatchIndexerTest {
+
+  private static final Instant LAST_RUN = Instant.parse("2024-05-01T10:00:00Z");
+
+  @Mock private GbifWsClient gbifWsClient;
+  @Mock private EsClient esClient;
+  @Mock private DatasetJsonConverter datasetJsonConverter;
+  @Mock private RegistryDbDatasetSource registryDbDatasetSource;
+
+  @TempDir Path tmpDir;
+
+  private Path checkpointFile;
+  private DatasetBatchIndexerConfiguration config;
+
+  @BeforeEach
+  public void setUp() throws IOException {
+    checkpointFile = tmpDir.resolve("checkpoint");
+    Files.write(checkpointFile, LAST_RUN.toString().getBytes(StandardCharsets.UTF_8));
+
+    config = new DatasetBatchIndexerConfiguration();
+    ElasticsearchConfig esConfig = new ElasticsearchConfig();
+    esConfig.setAlias("dataset");
+    config.setDatasetEs(esConfig);
+    config.setSince(IndexingCheckpoint.FROM_CHECKPOINT);
+    config.setCheckpointFile(checkpointFile.toString());
+    config.getBulk().setMaxRetries(1);
+    config.getBulk().setInitialBackoffMillis(1);
+
+    Dataset dataset = new Dataset();
+    dataset.setKey(UUID.randomUUID());
+    doAnswer(
+            invocation -> {
+              Consumer<PagingResponse<Dataset>> pageConsumer = invocation.getArgument(1);
+              pageConsumer.accept(
+                  new PagingResponse<>(
+                      new PagingRequest(0, 10), 1L, Collections.singletonList(dataset)));
+              return 1L;
+            })
+        .when(registryDbDatasetSource)
+        .onDatasetsChangedSince(any(), any(), any(), anyInt());
+    when(datasetJsonConverter.convertAsJsonStrings(anyList()))
+        .thenReturn(Collections.singletonList("{}"));
+  }
+
+  @Test
+  public void testUnexpectedBulkFailureKeepsCheckpoint() throws IOException {
+    when(esClient.bulk(any(BulkRequest.class)))
+        .thenThrow(new IllegalStateException("Unable to serialize the request"));
+
+    newIndexer().run(config);
+
+    assertEquals(LAST_RUN, new IndexingCheckpoint(checkpointFile.toString()).read().get());
+  }
+
+  @Test
+  public void testBulkFailureAfterRetriesKeepsCheckpoint() throws IOException {
+    when(esClient.bulk(any(BulkRequest.class))).thenThrow(new IOException("Connection refused"));
+
+    newIndexer().run(config);
+
+    assertEquals(LAST_RUN, new IndexingCheckpoint(checkpointFile.toString()).read().get());
+  }
+
+  @Test
+  public void testSuccessfulRunMovesCheckpoint() throws IOException {
+    BulkResponse response =
+        BulkResponse.of(b -> b.errors(false).took(1).items(Collections.emptyList()));
+    when(esClient.bulk(any(BulkRequest.class))).thenReturn(response);
+
+    newIndexer().run(config);
+
+    Instant checkpoint = new IndexingCheckpoint(checkpointFile.toString()).read().get();
+    assertTrue(checkpoint.isAfter(LAST_RUN));
+  }
+
+  @Test
+  public void testIncrementalRunReadsChangesSinceCheckpoint() throws IOException {
+    BulkResponse response =
+        BulkResponse.of(b -> b.errors(false).took(1).items(Collections.emptyList()));
+    when(esClient.bulk(any(BulkRequest.class))).thenReturn(response);
+
+    newIndexer().run(config);
+
+    // only the datasets changed since the last run are read, no full listing
+    verify(registryDbDatasetSource)
+        .onDatasetsChangedSince(eq(Date.from(LAST_RUN)), any(), any(), anyInt());
+    verify(registryDbDatasetSource, never()).onAllDatasets(any(), anyInt(), anyInt());
+  }
+
+  private DatasetBatchIndexer newIndexer() {
+    return new DatasetBatchIndexer(
+        gbifWsClient, esClient, datasetJsonConverter, -1, 10, registryDbDatasetSource);
+  }
+}
@@ -0,0 +1,109 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.cli.datasetindex.batchindexer;
+
+import org.gbif.api.model.common.paging.PagingResponse;
+import org.gbif.api.model.registry.Dataset;
+import org.gbif.registry.persistence.mapper.DatasetMapper;
+import org.gbif.registry.service.RegistryDatasetService;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class RegistryDbDatasetSourceTest {
+
+  @Mock private DatasetMapper datasetMapper;
+  @Mock private RegistryDatasetService registryDatasetService;
+
+  private RegistryDbDatasetSource source;
+
+  @BeforeEach
+  public void setUp() {
+    source = new RegistryDbDatasetSource(datasetMapper, registryDatasetService);
+    when(registryDatasetService.augmentWithMetadata(any()))
+        .thenAnswer(invocation -> invocation.getArgument(0));
+  }
+
+  @Test
+  public void testPagesByLastKey() {
+    Dataset d1 = dataset();
+    Dataset d2 = dataset();
+    Dataset d3 = dataset();
+    when(datasetMapper.listAfterKey(null, 2)).thenReturn(Arrays.asList(d1, d2));
+    when(datasetMapper.listAfterKey(d2.getKey(), 2)).thenReturn(Collections.singletonList(d3));
+
+    List<PagingResponse<Dataset>> pages = new ArrayList<>();
+    source.onAllDatasets(pages::add, -1, 2);
+
+    assertEquals(2, pages.size());
+    assertEquals(Arrays.asList(d1, d2), pages.get(0).getResults());
+    assertEquals(0L, pages.get(0).getOffset());
+    assertFalse(pages.get(0).isEndOfRecords());
+    assertEquals(Collections.singletonList(d3), pages.get(1).getResults());
+    assertEquals(2L, pages.get(1).getOffset());
+    assertTrue(pages.get(1).isEndOfRecords());
+  }
+
+  @Test
+  public void testFullLastPageEndsWithEmptyPage() {
+    Dataset d1 = dataset();
+    Dataset d2 = dataset();
+    when(datasetMapper.listAfterKey(null, 2)).thenReturn(Arrays.asList(d1, d2));
+    when(datasetMapper.listAfterKey(d2.getKey(), 2)).thenReturn(Collections.emptyList());
+
+    List<PagingResponse<Dataset>> pages = new ArrayList<>();
+    source.onAllDatasets(pages::add, -1, 2);
+
+    // the empty page is not passed on
+    assertEquals(1, pages.size());
+  }
+
+  @Test
+  public void testStopAfter() {
+    Dataset d1 = dataset();
+    Dataset d2 = dataset();
+    when(datasetMapper.listAfterKey(null, 2)).thenReturn(Arrays.asList(d1, d2));
+
+    List<PagingResponse<Dataset>> pages = new ArrayList<>();
+    source.onAllDatasets(pages::add, 2, 10);
+
+    assertEquals(1, pages.size());
+    verify(datasetMapper, never()).listAfterKey(any(UUID.class), anyInt());
+  }
+
+  private static Dataset dataset() {
+    Dataset dataset = new Dataset();
+    dataset.setKey(UUID.randomUUID());
+    return dataset;
+  }
+}
@@ -0,0 +1,133 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.events;
+
+import org.gbif.registry.persistence.mapper.EntityKeyRelationMapper;
+import org.gbif.registry.persistence.mapper.dto.EntityKeyRelationDto;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Resolves the parent keys of datasets, installations and organizations using the key projections
+ * of {@link EntityKeyRelationMapper} instead of loading the full entities.
+ *
+ * <p>The hosting organization of installations and the endorsing node of organizations are cached,
+ * as many datasets share them. Cached entries must be invalidated when the entity is updated or
+ * deleted.
+ */
+class EntityKeyRelationResolver {
+
+  private static final int MAX_CACHE_SIZE = 10_000;
+  private static final long CACHE_EXPIRY_MINUTES = 10;
+
+  private final EntityKeyRelationMapper mapper;
+  // organization key -> endorsing node key
+  private final Cache<UUID, UUID> endorsingNodeKeys = newCache();
+  // installation key -> hosting organization key
+  private final Cache<UUID, UUID> hostingOrganizationKeys = newCache();
+
+  EntityKeyRelationResolver(EntityKeyRelationMapper mapper) {
+    this.mapper = mapper;
+  }
+
+  /** Endorsing node keys of the given organizations. Unknown organizations are ignored. */
+  Set<UUID> endorsingNodeKeys(Collection<UUID> organizationKeys) {
+    return resolve(
+        organizationKeys,
+        endorsingNodeKeys,
+        mapper::listOrganizationRelations,
+        EntityKeyRelationDto::getEndorsingNodeKey);
+  }
+
+  /** Hosting organization keys of the given installations. Unknown installations are ignored. */
+  Set<UUID> hostingOrganizationKeys(Collection<UUID> installationKeys) {
+    return resolve(
+        installationKeys,
+        hostingOrganizationKeys,
+        mapper::listInstallationRelations,
+        EntityKeyRelationDto::getOrganizationKey);
+  }
+
+  /** Parent, installation and publishing organization keys of the given datasets, not cached. */
+  List<EntityKeyRelationDto> datasetRelations(Collection<UUID> datasetKeys) {
+    Set<UUID> keys = withoutNulls(datasetKeys);
+    return keys.isEmpty() ? Collections.emptyList() : mapper.listDatasetRelations(keys);
+  }
+
+  void invalidateOrganization(UUID organizationKey) {
+    if (organizationKey != null) {
+      endorsingNodeKeys.invalidate(organizationKey);
+    }
+  }
+
+  void invalidateInstallation(UUID installationKey) {
+    if (installationKey != null) {
+      hostingOrganizationKeys.invalidate(installationKey);
+    }
+  }
+
+  private static Set<UUID> resolve(
+      Collection<UUID> keys,
+      Cache<UUID, UUID> cache,
+      Function<Collection<UUID>, List<EntityKeyRelationDto>> loader,
+      Function<EntityKeyRelationDto, UUID> parentKey) {
+    Set<UUID> requested = withoutNulls(keys);
+    Map<UUID, UUID> cached = cache.getAllPresent(requested);
+    Set<UUID> result = new HashSet<>(cached.values());
+
+    List<UUID> missing = new ArrayList<>();
+    for (UUID key : requested) {
+      if (!cached.containsKey(key)) {
+        missing.add(key);
+      }
+    }
+    if (!missing.isEmpty()) {
+      // a single query for all the keys not cached yet
+      for (EntityKeyRelationDto relation : loader.apply(missing)) {
+        UUID parent = parentKey.apply(relation);
+        if (parent != null) {
+          cache.put(relation.getKey(), parent);
+          result.add(parent);
+        }
+      }
+    }
+    return result;
+  }
+
+  private static Set<UUID> withoutNulls(Collection<UUID> keys) {
+    Set<UUID> result = new HashSet<>(keys);
+    result.removeIf(Objects::isNull);
+    return result;
+  }
+
+  private static Cache<UUID, UUID> newCache() {
+    return CacheBuilder.newBuilder()
+        .maximumSize(MAX_CACHE_SIZE)
+        .expireAfterWrite(CACHE_EXPIRY_MINUTES, TimeUnit.MINUTES)
+        .build();
+  }
+}
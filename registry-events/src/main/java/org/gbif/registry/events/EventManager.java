@@ -17,7 +17,17 @@ public interface EventManager {
 
   void post(Object object);
 
+  /**
+   * Registers a listener. Its events are handled asynchronously after the transaction that posted
+   * them commits, unless asynchronous events are disabled.
+   */
   void register(Object object);
 
+  /**
+   * Registers a listener whose events are handled on the thread that posts them, e.g. because it
+   * needs the security context of the request.
+   */
+  void registerSynchronous(Object object);
+
   void unregister(Object object);
 }
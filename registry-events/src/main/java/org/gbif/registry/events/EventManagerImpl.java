@@ -13,31 +13,181 @@
  */
 package org.gbif.registry.events;
 
+import org.gbif.registry.events.PartitionedEventDispatcher.OverflowPolicy;
+
+import java.lang.reflect.Method;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import com.google.common.eventbus.EventBus;
+import com.google.common.eventbus.Subscribe;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 
+/**
+ * Posts events to the registered listeners.
+ *
+ * <p>Synchronous listeners are called on the posting thread. The other listeners are called by a
+ * {@link PartitionedEventDispatcher} once the transaction of the caller commits, so requests don't
+ * wait for their side effects, and the events of an entity are still handled in order.
+ */
 @Service
-public class EventManagerImpl implements EventManager {
+public class EventManagerImpl implements EventManager, DisposableBean {
+
+  private static final Logger LOG = LoggerFactory.getLogger(EventManagerImpl.class);
 
-  private EventBus eventBus;
+  private final EventBus eventBus;
+  private final Map<Object, AsyncListener> asyncListeners = new ConcurrentHashMap<>();
+  private final PartitionedEventDispatcher dispatcher;
+  private final MeterRegistry meterRegistry;
 
-  public EventManagerImpl(EventBus eventBus) {
+  public EventManagerImpl(
+      EventBus eventBus,
+      @Value("${registry.events.async.enabled:true}") boolean asyncEnabled,
+      @Value("${registry.events.async.partitions:4}") int partitions,
+      @Value("${registry.events.async.queueCapacity:10000}") int queueCapacity,
+      @Value("${registry.events.async.overflowPolicy:BLOCK}") OverflowPolicy overflowPolicy,
+      @Autowired(required = false) MeterRegistry meterRegistry) {
     this.eventBus = eventBus;
+    this.meterRegistry = meterRegistry;
+    this.dispatcher =
+        asyncEnabled
+            ? new PartitionedEventDispatcher(
+                partitions, queueCapacity, overflowPolicy, this::postToAsyncListeners)
+            : null;
+
+    if (dispatcher != null && meterRegistry != null) {
+      meterRegistry.gauge(
+          "registry.events.pending", dispatcher, PartitionedEventDispatcher::getPendingEvents);
+      meterRegistry.gauge(
+          "registry.events.discarded", dispatcher, PartitionedEventDispatcher::getDiscardedEvents);
+      for (int i = 0; i < dispatcher.getPartitions(); i++) {
+        int partition = i;
+        Gauge.builder("registry.events.queue.depth", dispatcher, d -> d.getQueueDepth(partition))
+            .tag("partition", String.valueOf(partition))
+            .register(meterRegistry);
+      }
+    }
   }
 
   @Override
   public void post(Object object) {
     eventBus.post(object);
+
+    if (dispatcher == null || asyncListeners.isEmpty()) {
+      return;
+    }
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(
+          new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+              dispatcher.dispatch(object);
+            }
+          });
+    } else {
+      dispatcher.dispatch(object);
+    }
   }
 
   @Override
   public void register(Object object) {
+    if (dispatcher == null) {
+      eventBus.register(object);
+    } else {
+      asyncListeners.computeIfAbsent(object, AsyncListener::new);
+    }
+  }
+
+  @Override
+  public void registerSynchronous(Object object) {
     eventBus.register(object);
   }
 
   @Override
   public void unregister(Object object) {
-    eventBus.unregister(object);
+    if (asyncListeners.remove(object) == null) {
+      eventBus.unregister(object);
+    }
+  }
+
+  /** Number of events waiting to be handled by the asynchronous listeners. */
+  public long getPendingEvents() {
+    return dispatcher != null ? dispatcher.getPendingEvents() : 0;
+  }
+
+  @Override
+  public void destroy() {
+    if (dispatcher != null) {
+      dispatcher.close();
+    }
+  }
+
+  private void postToAsyncListeners(Object event) {
+    for (AsyncListener listener : asyncListeners.values()) {
+      listener.post(event);
+    }
+  }
+
+  /**
+   * A listener with its own event bus, so the time spent by each listener can be measured and
+   * listeners only get the events they subscribe to.
+   */
+  private class AsyncListener {
+
+    private final String name;
+    private final EventBus bus;
+    private final Set<Class<?>> eventTypes = new HashSet<>();
+    private final Timer timer;
+
+    AsyncListener(Object listener) {
+      this.name = listener.getClass().getSimpleName();
+      this.bus = new EventBus(name);
+      bus.register(listener);
+      for (Class<?> c = listener.getClass(); c != null; c = c.getSuperclass()) {
+        for (Method method : c.getDeclaredMethods()) {
+          if (method.isAnnotationPresent(Subscribe.class) && method.getParameterCount() == 1) {
+            eventTypes.add(method.getParameterTypes()[0]);
+          }
+        }
+      }
+      this.timer =
+          meterRegistry != null
+              ? Timer.builder("registry.events.subscriber.latency")
+                  .tag("subscriber", name)
+                  .register(meterRegistry)
+              : null;
+    }
+
+    void post(Object event) {
+      if (eventTypes.stream().noneMatch(t -> t.isInstance(event))) {
+        return;
+      }
+      long start = System.nanoTime();
+      bus.post(event);
+      long elapsed = System.nanoTime() - start;
+      if (timer != null) {
+        timer.record(elapsed, TimeUnit.NANOSECONDS);
+      }
+      LOG.debug(
+          "{} handled {} in {} ms",
+          name,
+          event.getClass().getSimpleName(),
+          TimeUnit.NANOSECONDS.toMillis(elapsed));
+    }
   }
 }
@@ -0,0 +1,244 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.events;
+
+import org.gbif.api.model.collections.CollectionEntity;
+import org.gbif.api.model.registry.NetworkEntity;
+import org.gbif.common.messaging.api.Message;
+import org.gbif.common.messaging.api.MessagePublisher;
+import org.gbif.common.messaging.api.messages.RegistryChangeMessage;
+import org.gbif.registry.persistence.mapper.MessageOutboxMapper;
+import org.gbif.registry.persistence.mapper.dto.MessageOutboxDto;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.annotation.Nullable;
+
+/**
+ * A database outbox of the messages to the postal service.
+ *
+ * <p>Messages are added in the transaction of the change they notify, so they are only sent if the
+ * change commits and are not lost if the registry stops before sending them. They are sent in
+ * batches by the {@link MessageOutboxRelay} and deleted once the publisher accepted them, which
+ * means a message can be sent more than once but is never dropped.
+ *
+ * <p>A batch is claimed in a short transaction and sent after it commits, so no database lock is
+ * held while talking to the broker; a claim that isn't sent within {@code claimSeconds} (e.g. the
+ * registry stopped) is taken again by the next relay. The messages of an entity are sent in the
+ * order they were added: a message waits while an older message of the same entity is being sent
+ * or retried.
+ *
+ * <p>Messages are written with the registry object mapper, the one the {@link MessagePublisher}
+ * uses, and the {@code Object}-typed payloads of a {@link RegistryChangeMessage} are converted back
+ * to the class of the change, so the message sent is the one that was added.
+ */
+@Service
+@ConditionalOnProperty(value = "message.enabled", havingValue = "true")
+public class MessageOutbox {
+
+  private static final Logger LOG = LoggerFactory.getLogger(MessageOutbox.class);
+
+  private static final long MAX_RETRY_DELAY_SECONDS = 3600;
+
+  private final MessageOutboxMapper mapper;
+  private final MessagePublisher messagePublisher;
+  private final ObjectMapper objectMapper;
+  private final long retryDelaySeconds;
+  private final long claimSeconds;
+
+  private final AtomicLong sent = new AtomicLong();
+  private final AtomicLong failed = new AtomicLong();
+
+  public MessageOutbox(
+      MessageOutboxMapper mapper,
+      @Lazy MessagePublisher messagePublisher,
+      @Qualifier("registryObjectMapper") ObjectMapper objectMapper,
+      @Value("${registry.postalservice.outbox.retryDelaySeconds:10}") long retryDelaySeconds,
+      @Value("${registry.postalservice.outbox.claimSeconds:300}") long claimSeconds) {
+    this.mapper = mapper;
+    this.messagePublisher = messagePublisher;
+    this.objectMapper = objectMapper;
+    this.retryDelaySeconds = retryDelaySeconds;
+    this.claimSeconds = claimSeconds;
+  }
+
+  /**
+   * Adds a message to the outbox, in the current transaction if there is one. The message won't be
+   * sent before the embargo has passed.
+   */
+  public void add(Message message, int embargoSeconds) {
+    try {
+      mapper.create(
+          message.getClass().getName(),
+          objectMapper.writeValueAsString(message),
+          entityKey(message),
+          embargoSeconds);
+    } catch (JsonProcessingException e) {
+      throw new IllegalArgumentException(
+          "Can't serialize message " + message.getClass().getSimpleName(), e);
+    }
+  }
+
+  /**
+   * Claims the oldest messages that are available, up to the given limit, in key order. The claim
+   * is committed with the transaction, the messages must then be given to {@link #send(List)}.
+   *
+   * @return the claimed messages, empty if another relay is claiming at the same time
+   */
+  @Transactional
+  public List<MessageOutboxDto> claim(int limit) {
+    if (!mapper.tryLockClaims()) {
+      return Collections.emptyList();
+    }
+    List<MessageOutboxDto> batch = new ArrayList<>(mapper.claimAvailable(limit, claimSeconds));
+    batch.sort(Comparator.comparingLong(MessageOutboxDto::getKey));
+    return batch;
+  }
+
+  /**
+   * Sends claimed messages, outside of any transaction. Sent messages are deleted, a failed message
+   * is retried later and the following messages of its entity are released, so they are not sent
+   * before it.
+   */
+  public void send(List<MessageOutboxDto> batch) {
+    List<Long> sentKeys = new ArrayList<>(batch.size());
+    List<Long> releasedKeys = new ArrayList<>();
+    Set<String> failedEntities = new HashSet<>();
+    for (MessageOutboxDto entry : batch) {
+      if (entry.getEntityKey() != null && failedEntities.contains(entry.getEntityKey())) {
+        releasedKeys.add(entry.getKey());
+        continue;
+      }
+      try {
+        messagePublisher.send(read(entry));
+        sentKeys.add(entry.getKey());
+      } catch (Exception e) {
+        long delay =
+            Math.min(
+                retryDelaySeconds << Math.min(entry.getAttempts(), 20), MAX_RETRY_DELAY_SECONDS);
+        LOG.warn(
+            "Failed sending outbox message {} [{}], attempt {}, retrying in {} seconds",
+            entry.getKey(),
+            entry.getMessageClass(),
+            entry.getAttempts() + 1,
+            delay,
+            e);
+        mapper.retryLater(entry.getKey(), e.toString(), delay);
+        failed.incrementAndGet();
+        if (entry.getEntityKey() != null) {
+          failedEntities.add(entry.getEntityKey());
+        }
+      }
+    }
+    if (!sentKeys.isEmpty()) {
+      mapper.delete(sentKeys);
+      sent.addAndGet(sentKeys.size());
+    }
+    if (!releasedKeys.isEmpty()) {
+      mapper.release(releasedKeys);
+    }
+  }
+
+  private Message read(MessageOutboxDto entry) throws IOException, ClassNotFoundException {
+    Class<?> messageClass = Class.forName(entry.getMessageClass());
+    Message message = (Message) objectMapper.readValue(entry.getPayload(), messageClass);
+    if (message instanceof RegistryChangeMessage) {
+      return typed((RegistryChangeMessage) message);
+    }
+    return message;
+  }
+
+  /**
+   * The old and new objects of a change are declared as {@code Object}, so they are read as maps.
+   * They are the object class of the change, or the key of the changed entity for a component
+   * update.
+   */
+  private RegistryChangeMessage typed(RegistryChangeMessage message) {
+    Class<?> payloadClass =
+        message.getChangeType() == RegistryChangeMessage.ChangeType.UPDATE_COMPONENT
+            ? UUID.class
+            : message.getObjectClass();
+    return new RegistryChangeMessage(
+        message.getChangeType(),
+        message.getObjectClass(),
+        convert(message.getOldObject(), payloadClass),
+        convert(message.getNewObject(), payloadClass));
+  }
+
+  @Nullable
+  private Object convert(@Nullable Object value, Class<?> type) {
+    if (value == null || type.isInstance(value)) {
+      return value;
+    }
+    return objectMapper.convertValue(value, type);
+  }
+
+  /** The key of the entity a message is about, null if the message isn't about an entity. */
+  @Nullable
+  static String entityKey(Message message) {
+    if (!(message instanceof RegistryChangeMessage)) {
+      return null;
+    }
+    RegistryChangeMessage change = (RegistryChangeMessage) message;
+    Object entity = change.getNewObject() != null ? change.getNewObject() : change.getOldObject();
+    UUID key = null;
+    if (entity instanceof UUID) {
+      key = (UUID) entity;
+    } else if (entity instanceof NetworkEntity) {
+      key = ((NetworkEntity) entity).getKey();
+    } else if (entity instanceof CollectionEntity) {
+      key = ((CollectionEntity) entity).getKey();
+    }
+    return key != null ? key.toString() : null;
+  }
+
+  /** Number of messages in the outbox, including the ones under embargo. */
+  public long size() {
+    return mapper.count();
+  }
+
+  /** Seconds the oldest message that could be sent has been waiting, 0 if none is waiting. */
+  public long lagSeconds() {
+    Long lag = mapper.lagSeconds();
+    return lag != null ? lag : 0;
+  }
+
+  public long getSent() {
+    return sent.get();
+  }
+
+  public long getFailed() {
+    return failed.get();
+  }
+}
@@ -0,0 +1,88 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.events;
+
+import org.gbif.registry.persistence.mapper.dto.MessageOutboxDto;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.Nullable;
+
+/**
+ * Drains the {@link MessageOutbox} in batches. Each batch is claimed in its own short transaction
+ * and sent once the claim is committed, and the relay keeps going while full batches are found so a
+ * backlog is sent as fast as the broker takes it.
+ */
+@Service
+@ConditionalOnProperty(value = "message.enabled", havingValue = "true")
+public class MessageOutboxRelay {
+
+  private static final Logger LOG = LoggerFactory.getLogger(MessageOutboxRelay.class);
+
+  private final MessageOutbox outbox;
+  private final int batchSize;
+
+  private final AtomicLong size = new AtomicLong();
+  private final AtomicLong lagSeconds = new AtomicLong();
+
+  public MessageOutboxRelay(
+      MessageOutbox outbox,
+      @Value("${registry.postalservice.outbox.batchSize:500}") int batchSize,
+      @Autowired(required = false) @Nullable MeterRegistry meterRegistry) {
+    this.outbox = outbox;
+    this.batchSize = batchSize;
+
+    if (meterRegistry != null) {
+      meterRegistry.gauge("registry.messages.outbox.size", size);
+      meterRegistry.gauge("registry.messages.outbox.lagSeconds", lagSeconds);
+      FunctionCounter.builder("registry.messages.outbox.sent", outbox, MessageOutbox::getSent)
+          .register(meterRegistry);
+      FunctionCounter.builder("registry.messages.outbox.failed", outbox, MessageOutbox::getFailed)
+          .register(meterRegistry);
+    }
+  }
+
+  @Scheduled(fixedDelayString = "${registry.postalservice.outbox.pollMillis:1000}")
+  public void relay() {
+    try {
+      // the lag is measured before sending, so it reflects how far behind the relay was
+      lagSeconds.set(outbox.lagSeconds());
+      int relayed;
+      long total = 0;
+      do {
+        List<MessageOutboxDto> batch = outbox.claim(batchSize);
+        outbox.send(batch);
+        relayed = batch.size();
+        total += relayed;
+      } while (relayed == batchSize);
+      size.set(outbox.size());
+      if (total > 0) {
+        LOG.debug("Relayed {} outbox messages, {} left", total, size.get());
+      }
+    } catch (RuntimeException e) {
+      LOG.error("Failed relaying the message outbox", e);
+    }
+  }
+}
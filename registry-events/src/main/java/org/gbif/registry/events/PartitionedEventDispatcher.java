@@ -0,0 +1,213 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.events;
+
+import org.gbif.api.model.collections.CollectionEntity;
+import org.gbif.api.model.registry.NetworkEntity;
+import org.gbif.registry.events.collections.CreateCollectionEntityEvent;
+import org.gbif.registry.events.collections.DeleteCollectionEntityEvent;
+import org.gbif.registry.events.collections.MasterSourceMetadataAddedEvent;
+import org.gbif.registry.events.collections.ReplaceEntityEvent;
+import org.gbif.registry.events.collections.SubEntityCollectionEvent;
+import org.gbif.registry.events.collections.UpdateCollectionEntityEvent;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Hands events over to a fixed number of worker threads.
+ *
+ * <p>Events are assigned to a worker by the key of the entity they refer to, so the events of an
+ * entity are handled in the order they were posted. Each worker has a bounded queue; when it is
+ * full, the {@link OverflowPolicy} decides what happens to the event.
+ */
+public class PartitionedEventDispatcher implements Closeable {
+
+  private static final Logger LOG = LoggerFactory.getLogger(PartitionedEventDispatcher.class);
+
+  private static final long POLL_MILLIS = 500;
+
+  /** What to do with an event when the queue of its partition is full. */
+  public enum OverflowPolicy {
+    /** The caller waits until there is room in the queue. */
+    BLOCK,
+    /** The event is handled on the caller thread, it may overtake queued events of its entity. */
+    CALLER_RUNS,
+    /** The event is dropped and logged. */
+    DISCARD
+  }
+
+  private final List<BlockingQueue<Object>> queues;
+  private final List<Thread> workers;
+  private final OverflowPolicy overflowPolicy;
+  private final Consumer<Object> handler;
+
+  // events queued or being handled
+  private final AtomicLong pendingEvents = new AtomicLong();
+  private final AtomicLong discardedEvents = new AtomicLong();
+  private volatile boolean running = true;
+
+  public PartitionedEventDispatcher(
+      int partitions, int queueCapacity, OverflowPolicy overflowPolicy, Consumer<Object> handler) {
+    this.overflowPolicy = overflowPolicy;
+    this.handler = handler;
+    this.queues = new ArrayList<>(partitions);
+    this.workers = new ArrayList<>(partitions);
+    for (int i = 0; i < partitions; i++) {
+      BlockingQueue<Object> queue = new ArrayBlockingQueue<>(queueCapacity);
+      Thread worker = new Thread(() -> work(queue), "registry-events-" + i);
+      worker.setDaemon(true);
+      queues.add(queue);
+      workers.add(worker);
+      worker.start();
+    }
+  }
+
+  /** Queues an event in the partition of its entity. */
+  public void dispatch(Object event) {
+    BlockingQueue<Object> queue =
+        queues.get(Math.floorMod(Objects.hashCode(partitionKey(event)), queues.size()));
+    pendingEvents.incrementAndGet();
+    if (queue.offer(event)) {
+      return;
+    }
+
+    switch (overflowPolicy) {
+      case BLOCK:
+        try {
+          queue.put(event);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          discard(event);
+        }
+        break;
+      case CALLER_RUNS:
+        handle(event);
+        break;
+      default:
+        discard(event);
+    }
+  }
+
+  public int getPartitions() {
+    return queues.size();
+  }
+
+  public int getQueueDepth(int partition) {
+    return queues.get(partition).size();
+  }
+
+  /** Number of events queued or being handled. */
+  public long getPendingEvents() {
+    return pendingEvents.get();
+  }
+
+  public long getDiscardedEvents() {
+    return discardedEvents.get();
+  }
+
+  /** Stops the workers once the queued events are handled. */
+  @Override
+  public void close() {
+    running = false;
+    for (Thread worker : workers) {
+      try {
+        worker.join(TimeUnit.SECONDS.toMillis(30));
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+    }
+  }
+
+  private void work(BlockingQueue<Object> queue) {
+    while (running || !queue.isEmpty()) {
+      try {
+        Object event = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+        if (event != null) {
+          handle(event);
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+    }
+  }
+
+  private void handle(Object event) {
+    try {
+      handler.accept(event);
+    } catch (RuntimeException e) {
+      LOG.error("Error handling event {}", event.getClass().getSimpleName(), e);
+    } finally {
+      pendingEvents.decrementAndGet();
+    }
+  }
+
+  private void discard(Object event) {
+    pendingEvents.decrementAndGet();
+    discardedEvents.incrementAndGet();
+    LOG.warn(
+        "Event queue full, discarding {} for {}",
+        event.getClass().getSimpleName(),
+        partitionKey(event));
+  }
+
+  /**
+   * Key of the entity the event refers to. Events that don't refer to an entity are partitioned by
+   * their class.
+   */
+  static Object partitionKey(Object event) {
+    Object entity = null;
+    if (event instanceof CreateEvent<?> e) {
+      entity = e.getNewObject();
+    } else if (event instanceof UpdateEvent<?> e) {
+      entity = e.getNewObject();
+    } else if (event instanceof DeleteEvent<?> e) {
+      entity = e.getOldObject();
+    } else if (event instanceof ChangedComponentEvent e) {
+      return e.getTargetEntityKey();
+    } else if (event instanceof CreateCollectionEntityEvent<?> e) {
+      entity = e.getNewObject();
+    } else if (event instanceof UpdateCollectionEntityEvent<?> e) {
+      entity = e.getNewObject();
+    } else if (event instanceof DeleteCollectionEntityEvent<?> e) {
+      entity = e.getOldObject();
+    } else if (event instanceof ReplaceEntityEvent<?> e) {
+      return e.getTargetEntityKey();
+    } else if (event instanceof SubEntityCollectionEvent<?, ?> e) {
+      return e.getCollectionEntityKey();
+    } else if (event instanceof MasterSourceMetadataAddedEvent e) {
+      return e.getCollectionEntityKey();
+    }
+
+    if (entity instanceof NetworkEntity networkEntity && networkEntity.getKey() != null) {
+      return networkEntity.getKey();
+    }
+    if (entity instanceof CollectionEntity collectionEntity && collectionEntity.getKey() != null) {
+      return collectionEntity.getKey();
+    }
+    return event.getClass();
+  }
+}
@@ -0,0 +1,197 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.events;
+
+import org.gbif.varnish.VarnishPurger;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Iterables;
+
+/**
+ * Buffers Varnish purges and bans for a short window and sends them together.
+ *
+ * <p>Identical purges and bans requested in the same window are sent once. Bans built from a
+ * template with a set of keys, like {@code organization/%s/installation}, are merged into a single
+ * ban per template whose {@link VarnishPurger#anyKey(Set)} regex covers all the keys of the window,
+ * split in chunks of a maximum number of keys to keep the regexes reasonable. The requests are sent
+ * by a fixed number of threads.
+ */
+class VarnishInvalidationAggregator implements Closeable {
+
+  private static final Logger LOG = LoggerFactory.getLogger(VarnishInvalidationAggregator.class);
+
+  private final VarnishPurger purger;
+  private final int maxKeysPerBan;
+  private final ScheduledExecutorService scheduler;
+  private final ExecutorService senders;
+
+  private final AtomicLong purgesRequested = new AtomicLong();
+  private final AtomicLong purgesSent = new AtomicLong();
+  private final AtomicLong bansRequested = new AtomicLong();
+  private final AtomicLong bansSent = new AtomicLong();
+
+  // guarded by this
+  private Set<String> purges = new LinkedHashSet<>();
+  private Set<String> bans = new LinkedHashSet<>();
+  private Map<String, Set<UUID>> keyedBans = new HashMap<>();
+
+  VarnishInvalidationAggregator(
+      VarnishPurger purger, long windowMillis, int maxKeysPerBan, int threads) {
+    this.purger = purger;
+    this.maxKeysPerBan = maxKeysPerBan;
+    this.senders = Executors.newFixedThreadPool(threads);
+    this.scheduler =
+        Executors.newSingleThreadScheduledExecutor(
+            r -> {
+              Thread thread = new Thread(r, "varnish-invalidation");
+              thread.setDaemon(true);
+              return thread;
+            });
+    scheduler.scheduleWithFixedDelay(
+        this::flushQuietly, windowMillis, windowMillis, TimeUnit.MILLISECONDS);
+  }
+
+  /** Purges a single resource. */
+  synchronized void purge(String path) {
+    purgesRequested.incrementAndGet();
+    purges.add(path);
+  }
+
+  /** Bans the resources matching a regex. */
+  synchronized void ban(String regex) {
+    bansRequested.incrementAndGet();
+    bans.add(regex);
+  }
+
+  /**
+   * Bans the resources matching a template whose only {@code %s} placeholder is replaced by a
+   * regex matching any of the keys.
+   */
+  synchronized void ban(String template, Set<UUID> keys) {
+    if (keys.isEmpty()) {
+      // nothing to ban, an empty key regex would match every resource of the template
+      return;
+    }
+    bansRequested.incrementAndGet();
+    keyedBans.computeIfAbsent(template, t -> new HashSet<>()).addAll(keys);
+  }
+
+  long getPurgesRequested() {
+    return purgesRequested.get();
+  }
+
+  long getPurgesSent() {
+    return purgesSent.get();
+  }
+
+  long getBansRequested() {
+    return bansRequested.get();
+  }
+
+  long getBansSent() {
+    return bansSent.get();
+  }
+
+  /** Sends the buffered purges and bans and waits until they are sent. */
+  void flush() throws InterruptedException {
+    Set<String> purgesToSend;
+    Set<String> bansToSend;
+    Map<String, Set<UUID>> keyedBansToSend;
+    synchronized (this) {
+      purgesToSend = purges;
+      bansToSend = bans;
+      keyedBansToSend = keyedBans;
+      purges = new LinkedHashSet<>();
+      bans = new LinkedHashSet<>();
+      keyedBans = new HashMap<>();
+    }
+
+    for (Map.Entry<String, Set<UUID>> e : keyedBansToSend.entrySet()) {
+      for (List<UUID> chunk : Iterables.partition(e.getValue(), maxKeysPerBan)) {
+        bansToSend.add(String.format(e.getKey(), purger.anyKey(new HashSet<>(chunk))));
+      }
+    }
+
+    List<Callable<Void>> requests = new ArrayList<>(purgesToSend.size() + bansToSend.size());
+    for (String path : purgesToSend) {
+      requests.add(() -> send("PURGE " + path, () -> purger.purge(path), purgesSent));
+    }
+    for (String regex : bansToSend) {
+      requests.add(() -> send("BAN " + regex, () -> purger.ban(regex), bansSent));
+    }
+    if (!requests.isEmpty()) {
+      senders.invokeAll(requests);
+      LOG.debug(
+          "Sent {} purges and {} bans. Total purges {} requested, {} sent; bans {} requested, {} sent",
+          purgesToSend.size(),
+          bansToSend.size(),
+          purgesRequested.get(),
+          purgesSent.get(),
+          bansRequested.get(),
+          bansSent.get());
+    }
+  }
+
+  private Void send(String description, Runnable request, AtomicLong sent) {
+    try {
+      request.run();
+      sent.incrementAndGet();
+    } catch (RuntimeException e) {
+      LOG.warn("Varnish request {} failed", description, e);
+    }
+    return null;
+  }
+
+  private void flushQuietly() {
+    try {
+      flush();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (RuntimeException e) {
+      LOG.error("Error sending the varnish purges", e);
+    }
+  }
+
+  /** Sends the pending purges and bans and stops the threads. */
+  @Override
+  public void close() {
+    scheduler.shutdown();
+    try {
+      scheduler.awaitTermination(30, TimeUnit.SECONDS);
+      flush();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      senders.shutdown();
+    }
+  }
+}
@@ -20,22 +20,28 @@ import org.gbif.api.model.registry.NetworkEntity;
 import org.gbif.api.model.registry.Organization;
 import org.gbif.api.service.collections.CollectionService;
 import org.gbif.api.service.collections.InstitutionService;
-import org.gbif.api.service.registry.DatasetService;
-import org.gbif.api.service.registry.InstallationService;
-import org.gbif.api.service.registry.OrganizationService;
 import org.gbif.registry.domain.ws.DerivedDataset;
 import org.gbif.registry.events.collections.CreateCollectionEntityEvent;
 import org.gbif.registry.events.collections.DeleteCollectionEntityEvent;
 import org.gbif.registry.events.collections.SubEntityCollectionEvent;
 import org.gbif.registry.events.collections.UpdateCollectionEntityEvent;
+import org.gbif.registry.persistence.mapper.EntityKeyRelationMapper;
 import org.gbif.registry.persistence.mapper.collections.dto.ChangeSuggestionDto;
+import org.gbif.registry.persistence.mapper.dto.EntityKeyRelationDto;
 import org.gbif.varnish.VarnishPurger;
 
+import java.io.Closeable;
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.UUID;
 
+import javax.annotation.Nullable;
+
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -43,6 +49,9 @@ import org.slf4j.LoggerFactory;
 import com.google.common.base.Joiner;
 import com.google.common.eventbus.Subscribe;
 
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+
 /**
  * A event bus listener that will flush varnish if registry entities like datasets and organizations
  * have been created, modified or deleted.
@@ -52,6 +61,11 @@ import com.google.common.eventbus.Subscribe;
  * can banRegex entire subresources from being served. BANs do not remove the object from the
  * varnish memory though.
  *
+ * <p>Purges and bans are buffered by a {@link VarnishInvalidationAggregator} for a short window, so
+ * a burst of changes sends each of them once and the keyed bans are merged. The parent keys needed
+ * by the cascades are resolved with an {@link EntityKeyRelationResolver}, so the entities are not
+ * loaded.
+ *
  * @see <h ref="https://www.varnish-software.com/static/book/Cache_invalidation.html">Varnish
  *     Book</h>
  *     <h3>Purging cascade logic</h3>
@@ -134,34 +148,62 @@ import com.google.common.eventbus.Subscribe;
  *       <li>grscicoll/{collection|institution}/changeSuggestion BAN
  *     </ul>
  */
-public class VarnishPurgeListener {
+public class VarnishPurgeListener implements Closeable {
 
   private static final Logger LOG = LoggerFactory.getLogger(VarnishPurgeListener.class);
-  private final OrganizationService organizationService;
-  private final InstallationService installationService;
-  private final DatasetService datasetService;
+  private final EntityKeyRelationResolver keyRelations;
   private final InstitutionService institutionService;
   private final CollectionService collectionService;
   private final VarnishPurger purger;
+  private final VarnishInvalidationAggregator invalidations;
   private static final Joiner PATH_JOINER = Joiner.on("/").skipNulls();
 
   public VarnishPurgeListener(
       CloseableHttpClient client,
       EventManager eventManager,
       URI apiBaseUrl,
-      OrganizationService organizationService,
-      InstallationService installationService,
-      DatasetService datasetService,
+      EntityKeyRelationMapper entityKeyRelationMapper,
       InstitutionService institutionService,
-      CollectionService collectionService) {
-    this.organizationService = organizationService;
-    this.installationService = installationService;
-    this.datasetService = datasetService;
+      CollectionService collectionService,
+      long windowMillis,
+      int maxKeysPerBan,
+      int threads,
+      @Nullable MeterRegistry meterRegistry) {
+    this.keyRelations = new EntityKeyRelationResolver(entityKeyRelationMapper);
     this.institutionService = institutionService;
     this.collectionService = collectionService;
-    eventManager.register(this);
 
     purger = new VarnishPurger(client, apiBaseUrl);
+    invalidations = new VarnishInvalidationAggregator(purger, windowMillis, maxKeysPerBan, threads);
+    if (meterRegistry != null) {
+      FunctionCounter.builder(
+              "registry.varnish.purges.requested",
+              invalidations,
+              VarnishInvalidationAggregator::getPurgesRequested)
+          .register(meterRegistry);
+      FunctionCounter.builder(
+              "registry.varnish.purges.sent",
+              invalidations,
+              VarnishInvalidationAggregator::getPurgesSent)
+          .register(meterRegistry);
+      FunctionCounter.builder(
+              "registry.varnish.bans.requested",
+              invalidations,
+              VarnishInvalidationAggregator::getBansRequested)
+          .register(meterRegistry);
+      FunctionCounter.builder(
+              "registry.varnish.bans.sent", invalidations, VarnishInvalidationAggregator::getBansSent)
+          .register(meterRegistry);
+    }
+
+    // registered last, events can be delivered as soon as this is visible to the event bus
+    eventManager.register(this);
+  }
+
+  /** Sends the pending purges and bans. */
+  @Override
+  public void close() {
+    invalidations.close();
   }
 
   @Subscribe
@@ -185,8 +227,9 @@ public class VarnishPurgeListener {
   @Subscribe
   public final <T> void updated(UpdateEvent<T> event) {
     if (NetworkEntity.class.isAssignableFrom(event.getObjectClass())) {
-      purgeEntityAndBanLists(
-          event.getObjectClass(), ((NetworkEntity) event.getOldObject()).getKey());
+      UUID key = ((NetworkEntity) event.getOldObject()).getKey();
+      invalidateKeyRelations(event.getObjectClass(), key);
+      purgeEntityAndBanLists(event.getObjectClass(), key);
     }
 
     if (event.getObjectClass().equals(Organization.class)) {
@@ -205,8 +248,9 @@ public class VarnishPurgeListener {
   @Subscribe
   public final <T> void deleted(DeleteEvent<T> event) {
     if (NetworkEntity.class.isAssignableFrom(event.getObjectClass())) {
-      purgeEntityAndBanLists(
-          event.getObjectClass(), ((NetworkEntity) event.getOldObject()).getKey());
+      UUID key = ((NetworkEntity) event.getOldObject()).getKey();
+      invalidateKeyRelations(event.getObjectClass(), key);
+      purgeEntityAndBanLists(event.getObjectClass(), key);
     }
 
     if (event.getObjectClass().equals(Organization.class)) {
@@ -226,7 +270,7 @@ public class VarnishPurgeListener {
     purgeEntityAndBanLists(
         path("grscicoll", event.getCollectionEntityType().name().toLowerCase()),
         event.getNewObject().getKey());
-    purger.ban("grscicoll/search");
+    invalidations.ban("grscicoll/search");
   }
 
   @Subscribe
@@ -235,7 +279,7 @@ public class VarnishPurgeListener {
     purgeEntityAndBanLists(
         path("grscicoll", event.getCollectionEntityType().name().toLowerCase()),
         event.getOldObject().getKey());
-    purger.ban("grscicoll/search");
+    invalidations.ban("grscicoll/search");
   }
 
   @Subscribe
@@ -244,7 +288,7 @@ public class VarnishPurgeListener {
     purgeEntityAndBanLists(
         path("grscicoll", event.getCollectionEntityType().name().toLowerCase()),
         event.getOldObject().getKey());
-    purger.ban("grscicoll/search");
+    invalidations.ban("grscicoll/search");
   }
 
   @Subscribe
@@ -262,55 +306,72 @@ public class VarnishPurgeListener {
           path("grscicoll", event.getCollectionEntityType().name().toLowerCase()),
           event.getCollectionEntityKey());
     }
-    purger.ban("grscicoll/search");
+    invalidations.ban("grscicoll/search");
   }
 
   @Subscribe
   public final void componentChange(ChangedComponentEvent event) {
     purgeEntityAndBanLists(event.getTargetClass(), event.getTargetEntityKey());
     // keys have not changed, only some component of the entity itself
+    Set<UUID> keys = Collections.singleton(event.getTargetEntityKey());
     if (event.getTargetClass().equals(Organization.class)) {
-      cascadeOrganizationChange(organizationService.get(event.getTargetEntityKey()));
+      banNodeOrganizations(keyRelations.endorsingNodeKeys(keys));
     } else if (event.getTargetClass().equals(Dataset.class)) {
-      cascadeDatasetChange(datasetService.get(event.getTargetEntityKey()));
+      cascadeDatasetRelations(keyRelations.datasetRelations(keys));
     } else if (event.getTargetClass().equals(Installation.class)) {
-      cascadeInstallationChange(installationService.get(event.getTargetEntityKey()));
+      cascadeInstallationOrganizations(keyRelations.hostingOrganizationKeys(keys));
+    }
+  }
+
+  private void invalidateKeyRelations(Class<?> objectClass, UUID key) {
+    if (objectClass.equals(Organization.class)) {
+      keyRelations.invalidateOrganization(key);
+    } else if (objectClass.equals(Installation.class)) {
+      keyRelations.invalidateInstallation(key);
     }
   }
 
-  // group bans by entity class to avoid too many ban rules and thus bad varnish performance
   private void cascadeDatasetChange(Dataset... datasets) {
+    List<EntityKeyRelationDto> relations = new ArrayList<>(datasets.length);
+    for (Dataset d : datasets) {
+      EntityKeyRelationDto relation = new EntityKeyRelationDto();
+      relation.setKey(d.getKey());
+      relation.setParentKey(d.getParentDatasetKey());
+      relation.setInstallationKey(d.getInstallationKey());
+      relation.setOrganizationKey(d.getPublishingOrganizationKey());
+      relations.add(relation);
+    }
+    cascadeDatasetRelations(relations);
+  }
+
+  // group bans by entity class to avoid too many ban rules and thus bad varnish performance
+  private void cascadeDatasetRelations(Collection<EntityKeyRelationDto> datasets) {
     // UUIDHashSet ignores null values
     Set<UUID> instKeys = new UUIDHashSet();
-    Set<UUID> orgKeys = new UUIDHashSet();
-    Set<UUID> nodeKeys = new UUIDHashSet();
+    Set<UUID> publishingOrgKeys = new UUIDHashSet();
     Set<UUID> parentKeys = new UUIDHashSet();
-    for (Dataset d : datasets) {
-      if (!orgKeys.contains(d.getPublishingOrganizationKey())) {
-        Organization o = organizationService.get(d.getPublishingOrganizationKey());
-        nodeKeys.add(o.getEndorsingNodeKey());
-      }
-      if (!instKeys.contains(d.getInstallationKey())) {
-        instKeys.add(d.getInstallationKey());
-        Installation i = installationService.get(d.getInstallationKey());
-        orgKeys.add(i.getOrganizationKey());
-      }
-      orgKeys.add(d.getPublishingOrganizationKey());
-      if (d.getParentDatasetKey() != null) {
-        parentKeys.add(d.getParentDatasetKey());
-        purger.purge(path("dataset", d.getParentDatasetKey()));
+    for (EntityKeyRelationDto d : datasets) {
+      instKeys.add(d.getInstallationKey());
+      publishingOrgKeys.add(d.getOrganizationKey());
+      if (d.getParentKey() != null) {
+        parentKeys.add(d.getParentKey());
+        invalidations.purge(path("dataset", d.getParentKey()));
       }
     }
-    purger.ban(String.format("dataset/%s/constituents", purger.anyKey(parentKeys)));
+    Set<UUID> orgKeys = new UUIDHashSet();
+    orgKeys.addAll(publishingOrgKeys);
+    orgKeys.addAll(keyRelations.hostingOrganizationKeys(instKeys));
+
+    invalidations.ban("dataset/%s/constituents", parentKeys);
     // /installation/{d.installationKey}/dataset BAN
-    purger.ban(String.format("installation/%s/dataset", purger.anyKey(instKeys)));
+    invalidations.ban("installation/%s/dataset", instKeys);
     // /organization/{d.publishingOrganizationKey}/publishedDataset BAN
     // /organization/{d.installation.organizationKey}/hostedDataset BAN
-    purger.ban(String.format("organization/%s/(published|hosted)Dataset", purger.anyKey(orgKeys)));
+    invalidations.ban("organization/%s/(published|hosted)Dataset", orgKeys);
     // /node/{d.publishingOrganization.endorsingNodeKey}/dataset BAN
-    purger.ban(String.format("node/%s/dataset", purger.anyKey(nodeKeys)));
+    invalidations.ban("node/%s/dataset", keyRelations.endorsingNodeKeys(publishingOrgKeys));
     // /network/{any UUID}/constituents BAN
-    purger.ban("network/.+/constituents");
+    invalidations.ban("network/.+/constituents");
   }
 
   private void cascadeOrganizationChange(Organization... orgs) {
@@ -319,33 +380,35 @@ public class VarnishPurgeListener {
     for (Organization o : orgs) {
       nodeKeys.add(o.getEndorsingNodeKey());
     }
-    purger.ban(String.format("node/%s/organization", purger.anyKey(nodeKeys)));
+    banNodeOrganizations(nodeKeys);
+  }
+
+  private void banNodeOrganizations(Set<UUID> nodeKeys) {
+    invalidations.ban("node/%s/organization", nodeKeys);
   }
 
   private void cascadeInstallationChange(Installation... installations) {
     Set<UUID> keys = new UUIDHashSet();
-    // /organization/{i.organizationKey}/installation BAN
     for (Installation i : installations) {
       keys.add(i.getOrganizationKey());
     }
-    purger.ban(String.format("organization/%s/installation", purger.anyKey(keys)));
+    cascadeInstallationOrganizations(keys);
+  }
 
+  private void cascadeInstallationOrganizations(Set<UUID> orgKeys) {
+    // /organization/{i.organizationKey}/installation BAN
+    invalidations.ban("organization/%s/installation", orgKeys);
     // /node/{i.organization.endorsingNodeKey}/installation BAN
-    Set<UUID> nodekeys = new UUIDHashSet();
-    for (UUID orgKey : keys) {
-      Organization o = organizationService.get(orgKey);
-      nodekeys.add(o.getEndorsingNodeKey());
-    }
-    purger.ban(String.format("%node/%s/organization", purger.anyKey(nodekeys)));
+    invalidations.ban("node/%s/installation", keyRelations.endorsingNodeKeys(orgKeys));
   }
 
   private void cascadeDerivedDatasetChange(DerivedDataset derivedDataset) {
-    purger.ban(
+    invalidations.ban(
         String.format(
             "derivedDataset/%s/%s/*",
             derivedDataset.getDoi().getPrefix(), derivedDataset.getDoi().getSuffix()));
-    purger.ban(String.format("derivedDataset/user/%s", derivedDataset.getCreatedBy()));
-    purger.ban("derivedDataset/dataset/*");
+    invalidations.ban(String.format("derivedDataset/user/%s", derivedDataset.getCreatedBy()));
+    invalidations.ban("derivedDataset/dataset/*");
   }
 
   /**
@@ -356,10 +419,10 @@ public class VarnishPurgeListener {
   private void purgeEntityAndBanLists(String rootPath, String entityPath) {
 
     // purge entity detail
-    purger.purge(entityPath);
+    invalidations.purge(entityPath);
 
     // banRegex lists and searches
-    purger.ban(String.format("%s(/search|/suggest)?[^/]*$", rootPath));
+    invalidations.ban(String.format("%s(/search|/suggest)?[^/]*$", rootPath));
   }
 
   private void purgeEntityAndBanLists(String rootPath, UUID key) {
@@ -45,7 +45,7 @@ public class AuditLogger {
     this.tracer = tracer;
     this.auditLogMapper = auditLogMapper;
     this.objectMapper = objectMapper;
-    eventManager.register(this);
+    eventManager.registerSynchronous(this);
   }
 
   @Subscribe
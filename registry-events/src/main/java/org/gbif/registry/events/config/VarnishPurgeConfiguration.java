@@ -15,19 +15,20 @@ package org.gbif.registry.events.config;
 
 import org.gbif.api.service.collections.CollectionService;
 import org.gbif.api.service.collections.InstitutionService;
-import org.gbif.api.service.registry.DatasetService;
-import org.gbif.api.service.registry.InstallationService;
-import org.gbif.api.service.registry.OrganizationService;
 import org.gbif.registry.events.EventManager;
 import org.gbif.registry.events.VarnishPurgeListener;
+import org.gbif.registry.persistence.mapper.EntityKeyRelationMapper;
 import org.gbif.utils.HttpUtil;
 
 import java.net.URI;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import io.micrometer.core.instrument.MeterRegistry;
+
 @Configuration
 public class VarnishPurgeConfiguration {
 
@@ -35,30 +36,37 @@ public class VarnishPurgeConfiguration {
 
   private final URI purgeUrl;
   private final Integer purgingThreads;
+  private final long windowMillis;
+  private final int maxKeysPerBan;
 
   public VarnishPurgeConfiguration(
       @Value("${api.cache.purge.url}") String purgeUrl,
-      @Value("${api.cache.purge.threads}") Integer purgingThreads) {
+      @Value("${api.cache.purge.threads}") Integer purgingThreads,
+      @Value("${api.cache.purge.windowMillis:1000}") long windowMillis,
+      @Value("${api.cache.purge.maxKeysPerBan:100}") int maxKeysPerBan) {
     this.purgeUrl = URI.create(purgeUrl);
     this.purgingThreads = purgingThreads;
+    this.windowMillis = windowMillis;
+    this.maxKeysPerBan = maxKeysPerBan;
   }
 
   @Bean
   public VarnishPurgeListener varnishPurgeListener(
       EventManager eventManager,
-      OrganizationService organizationService,
-      InstallationService installationService,
-      DatasetService datasetService,
+      EntityKeyRelationMapper entityKeyRelationMapper,
       InstitutionService institutionService,
-      CollectionService collectionService) {
+      CollectionService collectionService,
+      @Autowired(required = false) MeterRegistry meterRegistry) {
     return new VarnishPurgeListener(
         HttpUtil.newMultithreadedClient(DEFAULT_HTTP_TIMEOUT_MSECS, purgingThreads, purgingThreads),
         eventManager,
         purgeUrl,
-        organizationService,
-        installationService,
-        datasetService,
+        entityKeyRelationMapper,
         institutionService,
-        collectionService);
+        collectionService,
+        windowMillis,
+        maxKeysPerBan,
+        purgingThreads,
+        meterRegistry);
   }
 }
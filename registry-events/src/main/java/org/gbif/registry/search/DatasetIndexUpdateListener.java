@@ -75,7 +75,7 @@ public class DatasetIndexUpdateListener {
       Organization org2 = (Organization) event.getNewObject();
       if (!Objects.equals(org1.getTitle(), org2.getTitle())
           || !Objects.equals(org1.getCountry(), org2.getCountry())) {
-        indexService.index(org2);
+        indexService.updateFields(org2);
       }
 
     } else if (event.getObjectClass().equals(Installation.class)) {
@@ -84,14 +84,14 @@ public class DatasetIndexUpdateListener {
       Installation i2 = (Installation) event.getNewObject();
       if (!Objects.equals(i1.getOrganizationKey(), (i2.getOrganizationKey()))
           || !Objects.equals(i1.getTitle(), i2.getTitle())) {
-        indexService.index(i2);
+        indexService.updateFields(i2);
       }
     } else if (event.getObjectClass().equals(Network.class)) {
       // we only care about title changes
       Network network1 = (Network) event.getOldObject();
       Network network2 = (Network) event.getNewObject();
       if (!Objects.equals(network1.getTitle(), network2.getTitle())) {
-        indexService.index(network2);
+        indexService.updateFields(network2);
       }
     }
   }
@@ -0,0 +1,146 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.events;
+
+import org.gbif.registry.persistence.mapper.EntityKeyRelationMapper;
+import org.gbif.registry.persistence.mapper.dto.EntityKeyRelationDto;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.UUID;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@SuppressWarnings("unchecked")
+public class EntityKeyRelationResolverTest {
+
+  @Mock private EntityKeyRelationMapper mapper;
+
+  private EntityKeyRelationResolver resolver;
+
+  @BeforeEach
+  public void setUp() {
+    resolver = new EntityKeyRelationResolver(mapper);
+  }
+
+  @Test
+  public void testEndorsingNodeKeysCached() {
+    UUID org1 = UUID.randomUUID();
+    UUID org2 = UUID.randomUUID();
+    UUID node = UUID.randomUUID();
+    when(mapper.listOrganizationRelations(anyCollection()))
+        .thenReturn(Arrays.asList(organization(org1, node), organization(org2, node)));
+
+    assertEquals(
+        Collections.singleton(node), resolver.endorsingNodeKeys(Arrays.asList(org1, org2, null)));
+    // served from the cache
+    assertEquals(
+        Collections.singleton(node), resolver.endorsingNodeKeys(Arrays.asList(org1, org2)));
+
+    ArgumentCaptor<Collection<UUID>> keys = ArgumentCaptor.forClass(Collection.class);
+    verify(mapper).listOrganizationRelations(keys.capture());
+    assertEquals(new HashSet<>(Arrays.asList(org1, org2)), new HashSet<>(keys.getValue()));
+  }
+
+  @Test
+  public void testOnlyMissingKeysLoaded() {
+    UUID org1 = UUID.randomUUID();
+    UUID org2 = UUID.randomUUID();
+    UUID node1 = UUID.randomUUID();
+    UUID node2 = UUID.randomUUID();
+    when(mapper.listOrganizationRelations(Collections.singletonList(org1)))
+        .thenReturn(Collections.singletonList(organization(org1, node1)));
+    when(mapper.listOrganizationRelations(Collections.singletonList(org2)))
+        .thenReturn(Collections.singletonList(organization(org2, node2)));
+
+    resolver.endorsingNodeKeys(Collections.singletonList(org1));
+
+    assertEquals(
+        new HashSet<>(Arrays.asList(node1, node2)),
+        resolver.endorsingNodeKeys(Arrays.asList(org1, org2)));
+  }
+
+  @Test
+  public void testInvalidatedOrganizationReloaded() {
+    UUID org = UUID.randomUUID();
+    UUID oldNode = UUID.randomUUID();
+    UUID newNode = UUID.randomUUID();
+    when(mapper.listOrganizationRelations(anyCollection()))
+        .thenReturn(Collections.singletonList(organization(org, oldNode)))
+        .thenReturn(Collections.singletonList(organization(org, newNode)));
+
+    assertEquals(
+        Collections.singleton(oldNode), resolver.endorsingNodeKeys(Collections.singleton(org)));
+    resolver.invalidateOrganization(org);
+    assertEquals(
+        Collections.singleton(newNode), resolver.endorsingNodeKeys(Collections.singleton(org)));
+
+    verify(mapper, times(2)).listOrganizationRelations(anyCollection());
+  }
+
+  @Test
+  public void testHostingOrganizationKeys() {
+    UUID installation = UUID.randomUUID();
+    UUID unknownInstallation = UUID.randomUUID();
+    UUID org = UUID.randomUUID();
+    EntityKeyRelationDto relation = new EntityKeyRelationDto();
+    relation.setKey(installation);
+    relation.setOrganizationKey(org);
+    when(mapper.listInstallationRelations(anyCollection()))
+        .thenReturn(Collections.singletonList(relation));
+
+    assertEquals(
+        Collections.singleton(org),
+        resolver.hostingOrganizationKeys(Arrays.asList(installation, unknownInstallation)));
+
+    resolver.invalidateInstallation(installation);
+    resolver.hostingOrganizationKeys(Collections.singleton(installation));
+    verify(mapper, times(2)).listInstallationRelations(anyCollection());
+  }
+
+  @Test
+  public void testNoKeysNoQuery() {
+    assertTrue(resolver.endorsingNodeKeys(Collections.singletonList(null)).isEmpty());
+    assertTrue(resolver.hostingOrganizationKeys(Collections.emptyList()).isEmpty());
+    assertTrue(resolver.datasetRelations(Collections.emptyList()).isEmpty());
+
+    verify(mapper, never()).listOrganizationRelations(any());
+    verify(mapper, never()).listInstallationRelations(any());
+    verify(mapper, never()).listDatasetRelations(any());
+  }
+
+  private static EntityKeyRelationDto organization(UUID key, UUID endorsingNodeKey) {
+    EntityKeyRelationDto relation = new EntityKeyRelationDto();
+    relation.setKey(key);
+    relation.setEndorsingNodeKey(endorsingNodeKey);
+    return relation;
+  }
+}
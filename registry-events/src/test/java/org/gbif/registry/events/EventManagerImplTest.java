@@ -0,0 +1,176 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.events;
+
+import org.gbif.api.model.registry.Dataset;
+import org.gbif.registry.events.PartitionedEventDispatcher.OverflowPolicy;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.google.common.eventbus.EventBus;
+import com.google.common.eventbus.Subscribe;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class EventManagerImplTest {
+
+  private EventManagerImpl eventManager;
+
+  @AfterEach
+  public void tearDown() {
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.clearSynchronization();
+    }
+    if (eventManager != null) {
+      eventManager.destroy();
+    }
+  }
+
+  @Test
+  public void testAsyncListenersAreCalledAfterCommit() throws InterruptedException {
+    eventManager = asyncEventManager();
+    RecordingListener listener = new RecordingListener(1);
+    eventManager.register(listener);
+
+    TransactionSynchronizationManager.initSynchronization();
+    CreateEvent<Dataset> event = created();
+    eventManager.post(event);
+    assertTrue(listener.events.isEmpty(), "Nothing is dispatched before the commit");
+
+    complete(TransactionSynchronization.STATUS_COMMITTED);
+
+    assertTrue(listener.latch.await(10, TimeUnit.SECONDS));
+    assertEquals(Collections.singletonList(event), listener.events);
+    assertNotSame(Thread.currentThread(), listener.threads.get(event));
+  }
+
+  @Test
+  public void testNothingIsDispatchedOnRollback() {
+    eventManager = asyncEventManager();
+    RecordingListener asyncListener = new RecordingListener(1);
+    RecordingListener synchronousListener = new RecordingListener(1);
+    eventManager.register(asyncListener);
+    eventManager.registerSynchronous(synchronousListener);
+
+    TransactionSynchronizationManager.initSynchronization();
+    CreateEvent<Dataset> event = created();
+    eventManager.post(event);
+    complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+    // waits for the queued events, if any
+    eventManager.destroy();
+
+    assertTrue(asyncListener.events.isEmpty());
+    assertEquals(0, eventManager.getPendingEvents());
+    // synchronous listeners take part in the transaction, they are called when the event is posted
+    assertEquals(Collections.singletonList(event), synchronousListener.events);
+    assertSame(Thread.currentThread(), synchronousListener.threads.get(event));
+  }
+
+  @Test
+  public void testEventsOutsideTransactionsAreDispatchedRightAway() throws InterruptedException {
+    eventManager = asyncEventManager();
+    RecordingListener listener = new RecordingListener(2);
+    eventManager.register(listener);
+
+    CreateEvent<Dataset> first = created();
+    CreateEvent<Dataset> second = created();
+    eventManager.post(first);
+    eventManager.post(second);
+
+    assertTrue(listener.latch.await(10, TimeUnit.SECONDS));
+    assertTrue(listener.events.containsAll(List.of(first, second)));
+  }
+
+  @Test
+  public void testListenersAreSynchronousWhenAsyncIsDisabled() {
+    eventManager = new EventManagerImpl(new EventBus(), false, 4, 10, OverflowPolicy.BLOCK, null);
+    RecordingListener listener = new RecordingListener(1);
+    eventManager.register(listener);
+
+    TransactionSynchronizationManager.initSynchronization();
+    CreateEvent<Dataset> event = created();
+    eventManager.post(event);
+
+    assertEquals(Collections.singletonList(event), listener.events);
+    assertSame(Thread.currentThread(), listener.threads.get(event));
+  }
+
+  @Test
+  public void testUnregisteredListenersAreNotCalled() {
+    eventManager = asyncEventManager();
+    RecordingListener listener = new RecordingListener(1);
+    eventManager.register(listener);
+    eventManager.unregister(listener);
+
+    eventManager.post(created());
+    eventManager.destroy();
+
+    assertTrue(listener.events.isEmpty());
+  }
+
+  private static EventManagerImpl asyncEventManager() {
+    return new EventManagerImpl(new EventBus(), true, 4, 100, OverflowPolicy.BLOCK, null);
+  }
+
+  /** Completes the transaction of the current thread as the transaction manager does. */
+  private static void complete(int status) {
+    List<TransactionSynchronization> synchronizations =
+        TransactionSynchronizationManager.getSynchronizations();
+    TransactionSynchronizationManager.clearSynchronization();
+    if (status == TransactionSynchronization.STATUS_COMMITTED) {
+      synchronizations.forEach(TransactionSynchronization::afterCommit);
+    }
+    synchronizations.forEach(s -> s.afterCompletion(status));
+  }
+
+  private static CreateEvent<Dataset> created() {
+    Dataset dataset = new Dataset();
+    dataset.setKey(UUID.randomUUID());
+    return CreateEvent.newInstance(dataset, Dataset.class);
+  }
+
+  /** Records the create events it gets and the thread they are handled on. */
+  public static class RecordingListener {
+
+    private final List<Object> events = Collections.synchronizedList(new ArrayList<>());
+    private final Map<Object, Thread> threads = new ConcurrentHashMap<>();
+    private final CountDownLatch latch;
+
+    RecordingListener(int expectedEvents) {
+      this.latch = new CountDownLatch(expectedEvents);
+    }
+
+    @Subscribe
+    public void onCreate(CreateEvent<?> event) {
+      threads.put(event, Thread.currentThread());
+      events.add(event);
+      latch.countDown();
+    }
+  }
+}
@@ -0,0 +1,63 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.events;
+
+import org.gbif.registry.persistence.mapper.dto.MessageOutboxDto;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class MessageOutboxRelayTest {
+
+  @Mock private MessageOutbox outbox;
+
+  @Test
+  public void testRelayClaimsAgainWhileBatchesAreFull() {
+    List<MessageOutboxDto> full = Arrays.asList(new MessageOutboxDto(), new MessageOutboxDto());
+    List<MessageOutboxDto> partial = Collections.singletonList(new MessageOutboxDto());
+    when(outbox.claim(2)).thenReturn(full, partial);
+
+    new MessageOutboxRelay(outbox, 2, null).relay();
+
+    InOrder inOrder = inOrder(outbox);
+    inOrder.verify(outbox).claim(2);
+    inOrder.verify(outbox).send(full);
+    inOrder.verify(outbox).claim(2);
+    inOrder.verify(outbox).send(partial);
+    verify(outbox, times(2)).claim(anyInt());
+  }
+
+  @Test
+  public void testRelaySurvivesFailures() {
+    when(outbox.claim(2)).thenThrow(new IllegalStateException("Database unavailable"));
+
+    new MessageOutboxRelay(outbox, 2, null).relay();
+
+    verify(outbox).claim(2);
+  }
+}
@@ -0,0 +1,313 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.events;
+
+import org.gbif.api.model.collections.Institution;
+import org.gbif.api.model.registry.Contact;
+import org.gbif.api.model.registry.Dataset;
+import org.gbif.api.model.registry.Installation;
+import org.gbif.api.model.registry.Organization;
+import org.gbif.api.vocabulary.DatasetType;
+import org.gbif.api.vocabulary.InstallationType;
+import org.gbif.common.messaging.api.Message;
+import org.gbif.common.messaging.api.MessagePublisher;
+import org.gbif.common.messaging.api.messages.RegistryChangeMessage;
+import org.gbif.common.messaging.api.messages.RegistryChangeMessage.ChangeType;
+import org.gbif.registry.persistence.mapper.MessageOutboxMapper;
+import org.gbif.registry.persistence.mapper.dto.MessageOutboxDto;
+import org.gbif.ws.json.JacksonJsonObjectMapperProvider;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class MessageOutboxTest {
+
+  private static final long RETRY_DELAY_SECONDS = 10;
+  private static final long CLAIM_SECONDS = 300;
+
+  @Mock private MessageOutboxMapper mapper;
+  @Mock private MessagePublisher messagePublisher;
+
+  private final ObjectMapper objectMapper = JacksonJsonObjectMapperProvider.getObjectMapper();
+  private MessageOutbox outbox;
+
+  @BeforeEach
+  public void setUp() {
+    outbox =
+        new MessageOutbox(
+            mapper, messagePublisher, objectMapper, RETRY_DELAY_SECONDS, CLAIM_SECONDS);
+  }
+
+  @Test
+  public void testCreatedMessageRoundTrip() throws IOException {
+    Dataset dataset = dataset();
+    RegistryChangeMessage sent =
+        roundTrip(new RegistryChangeMessage(ChangeType.CREATED, Dataset.class, null, dataset));
+
+    assertEquals(ChangeType.CREATED, sent.getChangeType());
+    assertEquals(Dataset.class, sent.getObjectClass());
+    assertNull(sent.getOldObject());
+    assertInstanceOf(Dataset.class, sent.getNewObject());
+    assertEquals(dataset, sent.getNewObject());
+  }
+
+  @Test
+  public void testUpdatedMessageRoundTrip() throws IOException {
+    Organization oldOrganization = organization();
+    Organization newOrganization = organization();
+    newOrganization.setKey(oldOrganization.getKey());
+    newOrganization.setTitle("New title");
+    RegistryChangeMessage sent =
+        roundTrip(
+            new RegistryChangeMessage(
+                ChangeType.UPDATED, Organization.class, oldOrganization, newOrganization));
+
+    assertEquals(ChangeType.UPDATED, sent.getChangeType());
+    assertEquals(Organization.class, sent.getObjectClass());
+    assertInstanceOf(Organization.class, sent.getOldObject());
+    assertInstanceOf(Organization.class, sent.getNewObject());
+    assertEquals(oldOrganization, sent.getOldObject());
+    assertEquals(newOrganization, sent.getNewObject());
+  }
+
+  @Test
+  public void testDeletedMessageRoundTrip() throws IOException {
+    Installation installation = new Installation();
+    installation.setKey(UUID.randomUUID());
+    installation.setTitle("Installation");
+    installation.setType(InstallationType.IPT_INSTALLATION);
+    installation.setOrganizationKey(UUID.randomUUID());
+    RegistryChangeMessage sent =
+        roundTrip(
+            new RegistryChangeMessage(
+                ChangeType.DELETED, Installation.class, installation, null));
+
+    assertEquals(ChangeType.DELETED, sent.getChangeType());
+    assertEquals(Installation.class, sent.getObjectClass());
+    assertInstanceOf(Installation.class, sent.getOldObject());
+    assertEquals(installation, sent.getOldObject());
+    assertNull(sent.getNewObject());
+  }
+
+  @Test
+  public void testCollectionEntityMessageRoundTrip() throws IOException {
+    Institution institution = new Institution();
+    institution.setKey(UUID.randomUUID());
+    institution.setCode("I1");
+    institution.setName("Institution");
+    RegistryChangeMessage sent =
+        roundTrip(
+            new RegistryChangeMessage(ChangeType.CREATED, Institution.class, null, institution));
+
+    assertInstanceOf(Institution.class, sent.getNewObject());
+    assertEquals(institution, sent.getNewObject());
+  }
+
+  @Test
+  public void testUpdateComponentMessageRoundTrip() throws IOException {
+    UUID datasetKey = UUID.randomUUID();
+    RegistryChangeMessage sent =
+        roundTrip(
+            new RegistryChangeMessage(
+                ChangeType.UPDATE_COMPONENT, Contact.class, datasetKey, null));
+
+    assertEquals(ChangeType.UPDATE_COMPONENT, sent.getChangeType());
+    assertEquals(Contact.class, sent.getObjectClass());
+    assertEquals(datasetKey, sent.getOldObject());
+    assertNull(sent.getNewObject());
+  }
+
+  @Test
+  public void testAddRecordsEntityKey() {
+    Dataset dataset = dataset();
+    outbox.add(new RegistryChangeMessage(ChangeType.CREATED, Dataset.class, null, dataset), 0);
+    UUID datasetKey = UUID.randomUUID();
+    outbox.add(
+        new RegistryChangeMessage(ChangeType.UPDATE_COMPONENT, Contact.class, datasetKey, null),
+        0);
+
+    verify(mapper)
+        .create(
+            eq(RegistryChangeMessage.class.getName()),
+            anyString(),
+            eq(dataset.getKey().toString()),
+            eq(0));
+    verify(mapper)
+        .create(
+            eq(RegistryChangeMessage.class.getName()),
+            anyString(),
+            eq(datasetKey.toString()),
+            eq(0));
+  }
+
+  @Test
+  public void testClaimIsSkippedWhileAnotherRelayClaims() {
+    when(mapper.tryLockClaims()).thenReturn(false);
+
+    assertTrue(outbox.claim(10).isEmpty());
+    verify(mapper, never()).claimAvailable(anyInt(), anyLong());
+  }
+
+  @Test
+  public void testClaimReturnsMessagesInKeyOrder() throws IOException {
+    MessageOutboxDto first = entry(1, dataset());
+    MessageOutboxDto second = entry(2, dataset());
+    when(mapper.tryLockClaims()).thenReturn(true);
+    when(mapper.claimAvailable(10, CLAIM_SECONDS)).thenReturn(Arrays.asList(second, first));
+
+    assertEquals(Arrays.asList(first, second), outbox.claim(10));
+  }
+
+  @Test
+  public void testSentMessagesAreDeleted() throws IOException {
+    outbox.send(Arrays.asList(entry(1, dataset()), entry(2, dataset())));
+
+    verify(messagePublisher, times(2)).send(any(Message.class));
+    verify(mapper).delete(Arrays.asList(1L, 2L));
+    verify(mapper, never()).retryLater(anyLong(), anyString(), anyLong());
+    verify(mapper, never()).release(anyList());
+    assertEquals(2, outbox.getSent());
+  }
+
+  @Test
+  public void testFailedMessageIsRetriedWithBackoff() throws IOException {
+    MessageOutboxDto entry = entry(1, dataset());
+    entry.setAttempts(2);
+    doThrow(new IOException("Broker unavailable"))
+        .when(messagePublisher)
+        .send(any(Message.class));
+
+    outbox.send(Collections.singletonList(entry));
+
+    verify(mapper).retryLater(eq(1L), anyString(), eq(RETRY_DELAY_SECONDS << 2));
+    verify(mapper, never()).delete(anyList());
+    assertEquals(1, outbox.getFailed());
+  }
+
+  @Test
+  public void testFailedMessageBlocksLaterMessagesOfTheSameEntity() throws IOException {
+    Dataset failing = dataset();
+    Dataset other = dataset();
+    // the first message of the failing dataset is the only one the broker rejects
+    doThrow(new IOException("Broker unavailable"))
+        .doNothing()
+        .when(messagePublisher)
+        .send(any(Message.class));
+
+    outbox.send(Arrays.asList(entry(1, failing), entry(2, failing), entry(3, other)));
+
+    ArgumentCaptor<Message> sent = ArgumentCaptor.forClass(Message.class);
+    verify(messagePublisher, times(2)).send(sent.capture());
+    assertEquals(other, ((RegistryChangeMessage) sent.getAllValues().get(1)).getNewObject());
+    verify(mapper).retryLater(eq(1L), anyString(), eq(RETRY_DELAY_SECONDS));
+    verify(mapper).release(Collections.singletonList(2L));
+    verify(mapper).delete(Collections.singletonList(3L));
+  }
+
+  @Test
+  public void testUnreadableMessageIsRetried() throws IOException {
+    MessageOutboxDto entry = new MessageOutboxDto();
+    entry.setKey(1);
+    entry.setMessageClass("org.gbif.UnknownMessage");
+    entry.setPayload("{}");
+
+    outbox.send(Collections.singletonList(entry));
+
+    verify(messagePublisher, never()).send(any(Message.class));
+    verify(mapper).retryLater(eq(1L), anyString(), eq(RETRY_DELAY_SECONDS));
+  }
+
+  /** Adds the message to the outbox, then sends what was stored and returns what was published. */
+  private RegistryChangeMessage roundTrip(RegistryChangeMessage message) throws IOException {
+    outbox.add(message, 0);
+    ArgumentCaptor<String> payload = ArgumentCaptor.forClass(String.class);
+    ArgumentCaptor<String> entityKey = ArgumentCaptor.forClass(String.class);
+    verify(mapper)
+        .create(
+            eq(RegistryChangeMessage.class.getName()),
+            payload.capture(),
+            entityKey.capture(),
+            eq(0));
+
+    MessageOutboxDto entry = new MessageOutboxDto();
+    entry.setKey(1);
+    entry.setMessageClass(RegistryChangeMessage.class.getName());
+    entry.setPayload(payload.getValue());
+    entry.setEntityKey(entityKey.getValue());
+    outbox.send(Collections.singletonList(entry));
+
+    ArgumentCaptor<Message> sent = ArgumentCaptor.forClass(Message.class);
+    verify(messagePublisher).send(sent.capture());
+    verify(mapper).delete(Collections.singletonList(1L));
+    return (RegistryChangeMessage) sent.getValue();
+  }
+
+  private MessageOutboxDto entry(long key, Dataset dataset) throws IOException {
+    MessageOutboxDto entry = new MessageOutboxDto();
+    entry.setKey(key);
+    entry.setMessageClass(RegistryChangeMessage.class.getName());
+    entry.setPayload(
+        objectMapper.writeValueAsString(
+            new RegistryChangeMessage(ChangeType.UPDATED, Dataset.class, dataset, dataset)));
+    entry.setEntityKey(dataset.getKey().toString());
+    return entry;
+  }
+
+  private static Dataset dataset() {
+    Dataset dataset = new Dataset();
+    dataset.setKey(UUID.randomUUID());
+    dataset.setTitle("Dataset");
+    dataset.setType(DatasetType.OCCURRENCE);
+    dataset.setPublishingOrganizationKey(UUID.randomUUID());
+    dataset.setInstallationKey(UUID.randomUUID());
+    return dataset;
+  }
+
+  private static Organization organization() {
+    Organization organization = new Organization();
+    organization.setKey(UUID.randomUUID());
+    organization.setTitle("Organization");
+    organization.setEndorsingNodeKey(UUID.randomUUID());
+    return organization;
+  }
+}
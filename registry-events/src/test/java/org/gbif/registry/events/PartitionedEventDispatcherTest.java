@@ -0,0 +1,253 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.events;
+
+import org.gbif.api.model.collections.Institution;
+import org.gbif.api.model.registry.Contact;
+import org.gbif.api.model.registry.Dataset;
+import org.gbif.registry.events.PartitionedEventDispatcher.OverflowPolicy;
+import org.gbif.registry.events.collections.CreateCollectionEntityEvent;
+import org.gbif.registry.events.collections.MasterSourceMetadataAddedEvent;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SuppressWarnings("unchecked")
+public class PartitionedEventDispatcherTest {
+
+  private PartitionedEventDispatcher dispatcher;
+
+  @AfterEach
+  public void tearDown() {
+    if (dispatcher != null) {
+      dispatcher.close();
+    }
+  }
+
+  @Test
+  public void testEventsOfAnEntityAreHandledInOrder() {
+    Map<UUID, List<String>> handled = new ConcurrentHashMap<>();
+    dispatcher =
+        new PartitionedEventDispatcher(
+            4,
+            1000,
+            OverflowPolicy.BLOCK,
+            event -> {
+              Dataset dataset = ((UpdateEvent<Dataset>) event).getNewObject();
+              handled
+                  .computeIfAbsent(
+                      dataset.getKey(), k -> Collections.synchronizedList(new ArrayList<>()))
+                  .add(dataset.getTitle());
+            });
+
+    List<UUID> keys = new ArrayList<>();
+    for (int i = 0; i < 8; i++) {
+      keys.add(UUID.randomUUID());
+    }
+    List<String> expected = new ArrayList<>();
+    for (int version = 0; version < 100; version++) {
+      expected.add(String.valueOf(version));
+      for (UUID key : keys) {
+        dispatcher.dispatch(update(key, String.valueOf(version)));
+      }
+    }
+    // the queued events are handled before the workers stop
+    dispatcher.close();
+
+    assertEquals(0, dispatcher.getPendingEvents());
+    for (UUID key : keys) {
+      assertEquals(expected, handled.get(key));
+    }
+  }
+
+  @Test
+  public void testBlockPolicyWaitsForRoom() throws Exception {
+    BlockingHandler handler = new BlockingHandler();
+    dispatcher = new PartitionedEventDispatcher(1, 1, OverflowPolicy.BLOCK, handler);
+    fillQueue(handler);
+
+    Thread caller = new Thread(() -> dispatcher.dispatch(update(UUID.randomUUID(), "third")));
+    caller.start();
+    caller.join(200);
+    assertTrue(caller.isAlive(), "The caller waits while the queue is full");
+
+    handler.release.countDown();
+    caller.join(TimeUnit.SECONDS.toMillis(10));
+    assertFalse(caller.isAlive());
+    dispatcher.close();
+
+    assertEquals(List.of("first", "second", "third"), handler.handled);
+    assertEquals(0, dispatcher.getDiscardedEvents());
+  }
+
+  @Test
+  public void testCallerRunsPolicyHandlesOnTheCallerThread() throws Exception {
+    BlockingHandler handler = new BlockingHandler();
+    dispatcher = new PartitionedEventDispatcher(1, 1, OverflowPolicy.CALLER_RUNS, handler);
+    fillQueue(handler);
+
+    dispatcher.dispatch(update(UUID.randomUUID(), "third"));
+
+    assertEquals(List.of("third"), handler.handled);
+    assertSame(Thread.currentThread(), handler.threads.get("third"));
+
+    handler.release.countDown();
+    dispatcher.close();
+    assertEquals(List.of("third", "first", "second"), handler.handled);
+    assertEquals(0, dispatcher.getDiscardedEvents());
+  }
+
+  @Test
+  public void testDiscardPolicyDropsTheEvent() throws Exception {
+    BlockingHandler handler = new BlockingHandler();
+    dispatcher = new PartitionedEventDispatcher(1, 1, OverflowPolicy.DISCARD, handler);
+    fillQueue(handler);
+
+    dispatcher.dispatch(update(UUID.randomUUID(), "third"));
+    assertEquals(1, dispatcher.getDiscardedEvents());
+
+    handler.release.countDown();
+    dispatcher.close();
+    assertEquals(List.of("first", "second"), handler.handled);
+    assertEquals(0, dispatcher.getPendingEvents());
+  }
+
+  @Test
+  public void testFailingHandlerDoesNotStopTheWorker() {
+    List<String> handled = Collections.synchronizedList(new ArrayList<>());
+    dispatcher =
+        new PartitionedEventDispatcher(
+            1,
+            10,
+            OverflowPolicy.BLOCK,
+            event -> {
+              String title = ((UpdateEvent<Dataset>) event).getNewObject().getTitle();
+              if ("first".equals(title)) {
+                throw new IllegalStateException("Listener failed");
+              }
+              handled.add(title);
+            });
+
+    UUID key = UUID.randomUUID();
+    dispatcher.dispatch(update(key, "first"));
+    dispatcher.dispatch(update(key, "second"));
+    dispatcher.close();
+
+    assertEquals(List.of("second"), handled);
+    assertEquals(0, dispatcher.getPendingEvents());
+  }
+
+  @Test
+  public void testPartitionKey() {
+    Dataset dataset = dataset(UUID.randomUUID(), "title");
+    assertEquals(
+        dataset.getKey(),
+        PartitionedEventDispatcher.partitionKey(CreateEvent.newInstance(dataset, Dataset.class)));
+    assertEquals(
+        dataset.getKey(),
+        PartitionedEventDispatcher.partitionKey(
+            UpdateEvent.newInstance(dataset, dataset(dataset.getKey(), "old"), Dataset.class)));
+    assertEquals(
+        dataset.getKey(),
+        PartitionedEventDispatcher.partitionKey(DeleteEvent.newInstance(dataset, Dataset.class)));
+    assertEquals(
+        dataset.getKey(),
+        PartitionedEventDispatcher.partitionKey(
+            ChangedComponentEvent.newInstance(dataset.getKey(), Dataset.class, Contact.class)));
+
+    Institution institution = new Institution();
+    institution.setKey(UUID.randomUUID());
+    assertEquals(
+        institution.getKey(),
+        PartitionedEventDispatcher.partitionKey(
+            CreateCollectionEntityEvent.newInstance(institution)));
+    assertEquals(
+        institution.getKey(),
+        PartitionedEventDispatcher.partitionKey(
+            MasterSourceMetadataAddedEvent.newInstance(institution.getKey(), null)));
+
+    // events without an entity key go to the partition of their class
+    assertEquals(
+        CreateEvent.class,
+        PartitionedEventDispatcher.partitionKey(
+            CreateEvent.newInstance(new Dataset(), Dataset.class)));
+    assertEquals(String.class, PartitionedEventDispatcher.partitionKey("event"));
+    assertNotEquals(
+        PartitionedEventDispatcher.partitionKey(CreateEvent.newInstance(dataset, Dataset.class)),
+        PartitionedEventDispatcher.partitionKey(
+            CreateEvent.newInstance(dataset(UUID.randomUUID(), "other"), Dataset.class)));
+  }
+
+  /**
+   * Leaves the worker busy with the first event and the queue full with the second one. Both
+   * events are of different entities, the single partition gets all of them.
+   */
+  private void fillQueue(BlockingHandler handler) throws InterruptedException {
+    dispatcher.dispatch(update(UUID.randomUUID(), "first"));
+    assertTrue(handler.started.await(10, TimeUnit.SECONDS));
+    dispatcher.dispatch(update(UUID.randomUUID(), "second"));
+    assertEquals(1, dispatcher.getQueueDepth(0));
+  }
+
+  private static UpdateEvent<Dataset> update(UUID key, String title) {
+    return UpdateEvent.newInstance(dataset(key, title), dataset(key, title), Dataset.class);
+  }
+
+  private static Dataset dataset(UUID key, String title) {
+    Dataset dataset = new Dataset();
+    dataset.setKey(key);
+    dataset.setTitle(title);
+    return dataset;
+  }
+
+  /** Records the events it handles, the first one waits until it is released. */
+  private static class BlockingHandler implements Consumer<Object> {
+
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final List<String> handled = Collections.synchronizedList(new ArrayList<>());
+    private final Map<String, Thread> threads = new ConcurrentHashMap<>();
+
+    @Override
+    public void accept(Object event) {
+      String title = ((UpdateEvent<Dataset>) event).getNewObject().getTitle();
+      if ("first".equals(title)) {
+        started.countDown();
+        try {
+          release.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      threads.put(title, Thread.currentThread());
+      handled.add(title);
+    }
+  }
+}
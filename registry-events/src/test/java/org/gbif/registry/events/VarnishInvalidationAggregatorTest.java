@@ -0,0 +1,129 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.events;
+
+import org.gbif.varnish.VarnishPurger;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anySet;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class VarnishInvalidationAggregatorTest {
+
+  private static final String TEMPLATE = "installation/%s/dataset";
+
+  @Mock private VarnishPurger purger;
+
+  private VarnishInvalidationAggregator aggregator;
+
+  @BeforeEach
+  public void setUp() {
+    // a long window, the tests flush explicitly
+    aggregator = new VarnishInvalidationAggregator(purger, 3_600_000, 2, 2);
+  }
+
+  @AfterEach
+  public void tearDown() {
+    aggregator.close();
+  }
+
+  @Test
+  public void testEmptyWindowSendsNothing() throws InterruptedException {
+    aggregator.flush();
+
+    verifyNoInteractions(purger);
+  }
+
+  @Test
+  public void testEmptyKeySetSendsNothing() throws InterruptedException {
+    aggregator.ban(TEMPLATE, Collections.emptySet());
+    aggregator.flush();
+
+    verifyNoInteractions(purger);
+    assertEquals(0, aggregator.getBansRequested());
+  }
+
+  @Test
+  public void testIdenticalRequestsSentOnce() throws InterruptedException {
+    aggregator.purge("dataset/1");
+    aggregator.purge("dataset/1");
+    aggregator.ban("grscicoll/search");
+    aggregator.ban("grscicoll/search");
+    aggregator.flush();
+
+    verify(purger).purge("dataset/1");
+    verify(purger).ban("grscicoll/search");
+    verifyNoMoreInteractions(purger);
+    assertEquals(2, aggregator.getPurgesRequested());
+    assertEquals(1, aggregator.getPurgesSent());
+    assertEquals(2, aggregator.getBansRequested());
+    assertEquals(1, aggregator.getBansSent());
+  }
+
+  @Test
+  public void testKeyedBansMergedInChunks() throws InterruptedException {
+    Set<UUID> keys =
+        IntStream.range(0, 3).mapToObj(i -> UUID.randomUUID()).collect(Collectors.toSet());
+    when(purger.anyKey(anySet()))
+        .thenAnswer(
+            invocation -> {
+              Set<UUID> chunk = invocation.getArgument(0);
+              return chunk.stream()
+                  .map(UUID::toString)
+                  .sorted()
+                  .collect(Collectors.joining("|", "(", ")"));
+            });
+
+    aggregator.ban(TEMPLATE, new HashSet<>(keys));
+    aggregator.ban(TEMPLATE, Collections.singleton(keys.iterator().next()));
+    aggregator.ban(TEMPLATE, Collections.emptySet());
+    aggregator.flush();
+
+    // 3 distinct keys with at most 2 keys per ban
+    verify(purger, times(2)).anyKey(anySet());
+    verify(purger, times(2)).ban(startsWith("installation/("));
+    verifyNoMoreInteractions(purger);
+    assertEquals(2, aggregator.getBansSent());
+  }
+
+  @Test
+  public void testNothingResentAfterFlush() throws InterruptedException {
+    aggregator.purge("dataset/1");
+    aggregator.flush();
+    aggregator.flush();
+
+    verify(purger).purge("dataset/1");
+    verifyNoMoreInteractions(purger);
+  }
+}
@@ -35,10 +35,13 @@ import java.util.UUID;
 
 import org.apache.commons.lang3.Range;
 import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Primary;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import com.google.common.base.Strings;
 
@@ -64,6 +67,8 @@ public class IdentityServiceImpl extends BaseIdentityAccessService implements Id
   private final UserMapper userMapper;
   private final UserSuretyDelegate userSuretyDelegate;
   private final Validator validator;
+  private final UserPrincipalCache userPrincipalCache;
+  private final ObjectProvider<EditorRightsListener> editorRightsListeners;
 
   private static final Range<Integer> PASSWORD_LENGTH_RANGE = Range.between(6, 256);
 
@@ -71,11 +76,17 @@ public class IdentityServiceImpl extends BaseIdentityAccessService implements Id
 
   @Autowired
   public IdentityServiceImpl(
-      UserMapper userMapper, UserSuretyDelegate userSuretyDelegate, Validator validator) {
+      UserMapper userMapper,
+      UserSuretyDelegate userSuretyDelegate,
+      Validator validator,
+      UserPrincipalCache userPrincipalCache,
+      ObjectProvider<EditorRightsListener> editorRightsListeners) {
     super(userMapper);
     this.userMapper = userMapper;
     this.userSuretyDelegate = userSuretyDelegate;
     this.validator = validator;
+    this.userPrincipalCache = userPrincipalCache;
+    this.editorRightsListeners = editorRightsListeners;
   }
 
   @Override
@@ -137,6 +148,7 @@ public class IdentityServiceImpl extends BaseIdentityAccessService implements Id
       }
 
       userMapper.update(user);
+      userPrincipalCache.invalidate(user.getUserName());
       return UserModelMutationResult.onSuccess(user.getUserName(), user.getEmail());
     }
 
@@ -160,11 +172,14 @@ public class IdentityServiceImpl extends BaseIdentityAccessService implements Id
   @Override
   public void delete(int userKey) {
     userMapper.deleteByKey(userKey);
+    // the username is not known here
+    userPrincipalCache.invalidateAll();
   }
 
   @Override
   public void delete(GbifUser userBefore, GbifUser user, List<Download> downloads) {
     userMapper.delete(user);
+    userPrincipalCache.invalidate(userBefore.getUserName());
     userSuretyDelegate.onDeleteUser(userBefore, downloads);
   }
 
@@ -301,6 +316,7 @@ public class IdentityServiceImpl extends BaseIdentityAccessService implements Id
       if (user != null) {
         user.setEmail(newEmail);
         userMapper.update(user);
+        userPrincipalCache.invalidate(user.getUserName());
         userSuretyDelegate.onEmailChanged(user, oldEmail);
 
         return UserModelMutationResult.onSuccess();
@@ -338,6 +354,7 @@ public class IdentityServiceImpl extends BaseIdentityAccessService implements Id
 
       user.setPasswordHash(PASSWORD_ENCODER.encode(newPassword));
       userMapper.update(user);
+      userPrincipalCache.invalidate(user.getUserName());
       userSuretyDelegate.onPasswordChanged(user);
 
       return UserModelMutationResult.onSuccess();
@@ -378,11 +395,31 @@ public class IdentityServiceImpl extends BaseIdentityAccessService implements Id
   @Override
   public void addEditorRight(String userName, UUID key) {
     userMapper.addEditorRight(userName, key);
+    notifyEditorRightsChanged(userName);
   }
 
   @Override
   public void deleteEditorRight(String userName, UUID key) {
     userMapper.deleteEditorRight(userName, key);
+    notifyEditorRightsChanged(userName);
+  }
+
+  /**
+   * Notifies the {@link EditorRightsListener}s once the transaction commits, so a concurrent
+   * request can't cache the rights as they were before the change.
+   */
+  private void notifyEditorRightsChanged(String userName) {
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(
+          new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+              editorRightsListeners.forEach(l -> l.editorRightsChanged(userName));
+            }
+          });
+    } else {
+      editorRightsListeners.forEach(l -> l.editorRightsChanged(userName));
+    }
   }
 
   @Override
@@ -0,0 +1,83 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.identity.service;
+
+import org.gbif.api.model.common.GbifUser;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import jakarta.annotation.Nullable;
+
+import static org.gbif.registry.identity.util.IdentityUtils.NORMALIZE_USERNAME_FCT;
+
+/**
+ * Short-lived cache of the users authenticated on each request, e.g. by their JWT token, keyed by
+ * username.
+ *
+ * <p>The {@link IdentityServiceImpl} invalidates the entries of the users it modifies in this
+ * instance. Other instances, and changes made by other means, only see the change when their
+ * entries expire, so a removed role can still be used there for up to
+ * identity.userCache.expireSeconds (30 by default). Copies of the cached users are returned so
+ * callers can't modify the cached instances.
+ */
+@Component
+public class UserPrincipalCache {
+
+  private final Cache<String, GbifUser> users;
+
+  public UserPrincipalCache(
+      @Value("${identity.userCache.expireSeconds:30}") long expireSeconds,
+      @Value("${identity.userCache.maxSize:10000}") long maxSize) {
+    this.users =
+        CacheBuilder.newBuilder()
+            .expireAfterWrite(expireSeconds, TimeUnit.SECONDS)
+            .maximumSize(maxSize)
+            .build();
+  }
+
+  /**
+   * Gets the user from the cache, or from the loader if it is not cached. Users not found are not
+   * cached.
+   */
+  @Nullable
+  public GbifUser get(String username, Function<String, GbifUser> loader) {
+    String key = NORMALIZE_USERNAME_FCT.apply(username);
+    GbifUser user = users.getIfPresent(key);
+    if (user == null) {
+      user = loader.apply(username);
+      if (user == null) {
+        return null;
+      }
+      users.put(key, user);
+    }
+    return new GbifUser(user);
+  }
+
+  public void invalidate(@Nullable String username) {
+    if (username != null) {
+      users.invalidate(NORMALIZE_USERNAME_FCT.apply(username));
+    }
+  }
+
+  public void invalidateAll() {
+    users.invalidateAll();
+  }
+}
@@ -19,6 +19,7 @@ import org.gbif.registry.identity.model.ModelMutationError;
 import org.gbif.registry.identity.model.UserModelMutationResult;
 import org.gbif.registry.persistence.mapper.UserMapper;
 
+import java.util.UUID;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.jupiter.api.Test;
@@ -27,6 +28,9 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import jakarta.validation.Validation;
 import jakarta.validation.Validator;
@@ -37,6 +41,8 @@ import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -175,6 +181,72 @@ public class IdentityServiceTest {
     verify(userMapperMock).getBySystemSetting("random.settings", "1");
   }
 
+  @Test
+  public void testEditorRightsListenersNotifiedAfterCommit() {
+    // GIVEN
+    EditorRightsListener listener = mock(EditorRightsListener.class);
+    IdentityServiceImpl service = identityServiceNotifying(listener);
+    UUID key = UUID.randomUUID();
+
+    TransactionSynchronizationManager.initSynchronization();
+    try {
+      // WHEN
+      service.addEditorRight("editor", key);
+      service.deleteEditorRight("other", key);
+
+      // THEN
+      verify(listener, never()).editorRightsChanged(any());
+      TransactionSynchronizationManager.getSynchronizations()
+          .forEach(TransactionSynchronization::afterCommit);
+    } finally {
+      TransactionSynchronizationManager.clearSynchronization();
+    }
+    verify(userMapperMock).addEditorRight("editor", key);
+    verify(userMapperMock).deleteEditorRight("other", key);
+    verify(listener).editorRightsChanged("editor");
+    verify(listener).editorRightsChanged("other");
+  }
+
+  @Test
+  public void testEditorRightsListenersNotNotifiedOnRollback() {
+    // GIVEN
+    EditorRightsListener listener = mock(EditorRightsListener.class);
+    IdentityServiceImpl service = identityServiceNotifying(listener);
+
+    TransactionSynchronizationManager.initSynchronization();
+    try {
+      // WHEN
+      service.addEditorRight("editor", UUID.randomUUID());
+      TransactionSynchronizationManager.getSynchronizations()
+          .forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+    } finally {
+      TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    // THEN
+    verify(listener, never()).editorRightsChanged(any());
+  }
+
+  @Test
+  public void testEditorRightsListenersNotifiedWithoutTransaction() {
+    EditorRightsListener listener = mock(EditorRightsListener.class);
+
+    identityServiceNotifying(listener).deleteEditorRight("editor", UUID.randomUUID());
+
+    verify(listener).editorRightsChanged("editor");
+  }
+
+  private IdentityServiceImpl identityServiceNotifying(EditorRightsListener listener) {
+    DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+    beanFactory.registerSingleton("editorRightsListener", listener);
+    return new IdentityServiceImpl(
+        userMapperMock,
+        userSuretyDelegateMock,
+        validator,
+        new UserPrincipalCache(30, 100),
+        beanFactory.getBeanProvider(EditorRightsListener.class));
+  }
+
   /** Generates a different user on each call. Thread-Safe */
   public static GbifUser generateUser() {
     int idx = index.incrementAndGet();
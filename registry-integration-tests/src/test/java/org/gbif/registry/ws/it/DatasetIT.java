@@ -44,11 +44,14 @@ import org.gbif.api.vocabulary.Language;
 import org.gbif.api.vocabulary.License;
 import org.gbif.api.vocabulary.MaintenanceUpdateFrequency;
 import org.gbif.api.vocabulary.MetadataType;
+import org.gbif.metadata.eml.parse.DatasetEmlParser;
 import org.gbif.registry.identity.service.IdentityService;
+import org.gbif.registry.persistence.mapper.MetadataMapper;
 import org.gbif.registry.search.dataset.indexing.DatasetRealtimeIndexer;
 import org.gbif.registry.search.test.BaseElasticsearchTest;
 import org.gbif.registry.search.test.DatasetSearchUpdateUtils;
 import org.gbif.registry.search.test.ElasticsearchTestContainerConfiguration;
+import org.gbif.registry.service.RegistryDatasetService;
 import org.gbif.registry.test.Datasets;
 import org.gbif.registry.test.TestDataFactory;
 import org.gbif.registry.ws.client.DatasetClient;
@@ -88,6 +91,7 @@ import org.junit.jupiter.api.extension.RegisterExtension;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.EnumSource;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.server.LocalServerPort;
 import org.springframework.test.web.servlet.ResultActions;
@@ -138,6 +142,13 @@ class DatasetIT extends NetworkEntityIT<Dataset> {
   private final IdentityService identityService;
   private final RequestTestFixture requestTestFixture;
 
+  @Autowired private MetadataMapper metadataMapper;
+  @Autowired private RegistryDatasetService registryDatasetService;
+
+  @Autowired
+  @Qualifier("registryObjectMapper")
+  private ObjectMapper registryObjectMapper;
+
   @RegisterExtension
   BaseElasticsearchTest.ElasticsearchRefreshExtension elasticsearchRefreshExtension;
 
@@ -1791,6 +1802,30 @@ class DatasetIT extends NetworkEntityIT<Dataset> {
     assertEquals(MetadataType.DC, insertedMetadata.getType());
   }
 
+  /** The dataset JSON stored with a metadata document reads back as the parsed document. */
+  @Test
+  public void testMetadataDatasetJsonReadsBack() throws IOException {
+    DatasetService service = (DatasetService) getService(ServiceType.RESOURCE);
+    Dataset dataset = newAndCreate(1, ServiceType.RESOURCE);
+    byte[] document = FileUtils.classpathStream("metadata/sample.xml").readAllBytes();
+    Dataset parsed = DatasetEmlParser.build(document);
+
+    Metadata metadata =
+        service.insertMetadata(dataset.getKey(), FileUtils.classpathStream("metadata/sample.xml"));
+
+    String json = metadataMapper.getDatasetJson(metadata.getKey());
+    assertNotNull(json);
+    assertEquals(parsed, registryObjectMapper.readValue(json, Dataset.class));
+
+    // read from the database rather than from the cache filled on insert
+    registryDatasetService.evictParsedMetadata(metadata.getKey());
+    assertEquals(parsed, registryDatasetService.getPreferredMetadataDataset(dataset.getKey()));
+
+    // the backfill of existing documents stores the same JSON
+    assertTrue(registryDatasetService.storeMetadataDatasetJson(metadata.getKey()));
+    assertEquals(json, metadataMapper.getDatasetJson(metadata.getKey()));
+  }
+
   private Endpoint newEndpoint(EndpointType endpointType) {
     Endpoint endpoint = new Endpoint();
     endpoint.setType(endpointType);
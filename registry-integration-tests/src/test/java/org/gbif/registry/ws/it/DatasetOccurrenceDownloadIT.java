@@ -13,6 +13,7 @@
  */
 package org.gbif.registry.ws.it;
 
+import org.gbif.api.model.common.export.ExportFormat;
 import org.gbif.api.model.common.paging.PagingRequest;
 import org.gbif.api.model.occurrence.Download;
 import org.gbif.api.model.registry.Dataset;
@@ -29,19 +30,25 @@ import org.gbif.registry.search.test.ElasticsearchTestContainerConfiguration;
 import org.gbif.registry.test.TestDataFactory;
 import org.gbif.registry.ws.client.DatasetOccurrenceDownloadUsageClient;
 import org.gbif.registry.ws.client.OccurrenceDownloadClient;
+import org.gbif.registry.ws.resources.OccurrenceDownloadResource;
 import org.gbif.ws.client.filter.SimplePrincipalProvider;
 import org.gbif.ws.security.KeyStore;
 
+import java.io.IOException;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.EnumSource;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.mock.web.MockHttpServletResponse;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
@@ -66,6 +73,7 @@ public class DatasetOccurrenceDownloadIT extends BaseItTest {
     this.occurrenceDownloadResource = occurrenceDownloadResource;
   }
   private final DatasetOccurrenceDownloadUsageClient datasetOccurrenceDownloadUsageClient;
+  private final OccurrenceDownloadResource occurrenceDownloadExportResource;
   private final DatasetOccurrenceDownloadUsageService datasetOccurrenceDownloadUsageResource;
 
   // The following services are required to create dataset instances
@@ -84,6 +92,7 @@ public class DatasetOccurrenceDownloadIT extends BaseItTest {
       @Qualifier("datasetOccurrenceDownloadUsageResource")
           DatasetOccurrenceDownloadUsageService datasetOccurrenceDownloadUsageResource,
       TestDataFactory testDataFactory,
+      OccurrenceDownloadResource occurrenceDownloadExportResource,
       ElasticsearchTestContainerConfiguration elasticsearchTestContainer,
       @LocalServerPort int localServerPort,
       KeyStore keyStore) {
@@ -98,6 +107,7 @@ public class DatasetOccurrenceDownloadIT extends BaseItTest {
     this.datasetOccurrenceDownloadUsageClient =
         prepareClient(localServerPort, keyStore, DatasetOccurrenceDownloadUsageClient.class);
     this.testDataFactory = testDataFactory;
+    this.occurrenceDownloadExportResource = occurrenceDownloadExportResource;
   }
 
   /**
@@ -215,4 +225,49 @@ public class DatasetOccurrenceDownloadIT extends BaseItTest {
     Download occDownload2 = occurrenceDownloadService.get(occurrenceDownload.getKey());
     assertEquals(3, occDownload2.getNumberDatasets());
   }
+
+  /** Tests the export of the dataset usages of a download, read through a database cursor. */
+  @Test
+  public void testExportDatasetUsages() throws IOException {
+    Download occurrenceDownload = OccurrenceDownloadIT.getTestInstancePredicateDownload();
+    final Dataset testDataset1 = createTestDataset();
+    final Dataset testDataset2 = createTestDataset();
+    final Dataset testDataset3 = createTestDataset();
+    occurrenceDownloadResource.create(occurrenceDownload);
+
+    Map<UUID, Long> datasetCitation = new HashMap<>();
+    datasetCitation.put(testDataset1.getKey(), 1000L);
+    datasetCitation.put(testDataset2.getKey(), 100000L);
+    datasetCitation.put(testDataset3.getKey(), 10000L);
+    occurrenceDownloadResource.createUsages(occurrenceDownload.getKey(), datasetCitation);
+
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    occurrenceDownloadExportResource.exportListDatasetUsagesByKey(
+        response, occurrenceDownload.getKey(), ExportFormat.TSV);
+
+    // header and one row per usage, ordered by number of records as the paged listing
+    List<String> lines =
+        response
+            .getContentAsString()
+            .lines()
+            .filter(l -> !l.isEmpty())
+            .collect(Collectors.toList());
+    assertEquals(4, lines.size());
+    assertEquals(
+        Arrays.asList(testDataset2.getKey(), testDataset3.getKey(), testDataset1.getKey()),
+        lines.subList(1, 4).stream()
+            .map(l -> UUID.fromString(l.split("\t")[1]))
+            .collect(Collectors.toList()));
+    assertEquals("100000", lines.get(1).split("\t")[4].trim());
+  }
+
+  /** An unknown download has no usages, its export only has the header. */
+  @Test
+  public void testExportDatasetUsagesOfUnknownDownload() throws IOException {
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    occurrenceDownloadExportResource.exportListDatasetUsagesByKey(
+        response, "0000000-000000000000000", ExportFormat.TSV);
+
+    assertEquals(1, response.getContentAsString().lines().filter(l -> !l.isEmpty()).count());
+  }
 }
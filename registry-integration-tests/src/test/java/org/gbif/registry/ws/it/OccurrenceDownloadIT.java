@@ -19,6 +19,7 @@ import org.gbif.api.model.common.paging.PagingResponse;
 import org.gbif.api.model.occurrence.Download;
 import org.gbif.api.model.occurrence.Download.Status;
 import org.gbif.api.model.occurrence.DownloadFormat;
+import org.gbif.api.model.occurrence.DownloadStatistics;
 import org.gbif.api.model.occurrence.DownloadType;
 import org.gbif.api.model.occurrence.PredicateDownloadRequest;
 import org.gbif.api.model.occurrence.search.OccurrenceSearchParameter;
@@ -43,6 +44,7 @@ import org.gbif.api.vocabulary.OrganizationUsageSortField;
 import org.gbif.api.vocabulary.SortOrder;
 import org.gbif.api.vocabulary.UserRole;
 import org.gbif.registry.database.TestCaseDatabaseInitializer;
+import org.gbif.registry.persistence.mapper.DownloadStatisticsMapper;
 import org.gbif.registry.search.test.ElasticsearchTestContainerConfiguration;
 import org.gbif.registry.test.TestDataFactory;
 import org.gbif.registry.ws.client.OccurrenceDownloadClient;
@@ -56,8 +58,10 @@ import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.RegisterExtension;
@@ -80,6 +84,7 @@ import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
  * Runs tests for the {@link OccurrenceDownloadService} implementations. This is parameterized to
@@ -107,6 +112,8 @@ public class OccurrenceDownloadIT extends BaseItTest {
   }
   private final OccurrenceDownloadClient occurrenceDownloadClient;
 
+  @Autowired private DownloadStatisticsMapper downloadStatisticsMapper;
+
   // The following services are required to create dataset instances
   private final DatasetService datasetService;
   private final OrganizationService organizationService;
@@ -732,4 +739,94 @@ public class OccurrenceDownloadIT extends BaseItTest {
         Country.DENMARK.getIso2LetterCode(),
         countryUsages.getResults().get(0).getPublishingCountryCode());
   }
+
+  /** Usages sent again after the download was counted must only add their changes. */
+  @Test
+  public void testDownloadUsagesAfterStatisticsApplied() {
+    Download occurrenceDownload = getTestInstancePredicateDownload();
+    occurrenceDownloadResource.create(occurrenceDownload);
+
+    UUID nodeKey = nodeService.create(testDataFactory.newNode());
+    UUID organizationKey = organizationService.create(testDataFactory.newOrganization(nodeKey));
+    UUID installationKey =
+        installationService.create(testDataFactory.newInstallation(organizationKey));
+    UUID datasetKey =
+        datasetService.create(testDataFactory.newDataset(organizationKey, installationKey));
+    Dataset dataset2 = testDataFactory.newDataset(organizationKey, installationKey);
+    dataset2.setTitle("title2");
+    UUID dataset2Key = datasetService.create(dataset2);
+
+    Map<UUID, Long> usages = new HashMap<>();
+    usages.put(datasetKey, 1000L);
+    occurrenceDownloadResource.createUsages(occurrenceDownload.getKey(), usages);
+
+    // the download is counted when it succeeds
+    occurrenceDownload = occurrenceDownloadResource.get(occurrenceDownload.getKey());
+    occurrenceDownload.setStatus(Status.SUCCEEDED);
+    occurrenceDownload.setDoi(new DOI("doi:10.1234/1ASCDU"));
+    occurrenceDownloadResource.update(occurrenceDownload);
+    assertDownloadStatistics(datasetKey, 1L, 1000L);
+
+    // the same usages sent again change nothing
+    occurrenceDownloadResource.createUsages(occurrenceDownload.getKey(), usages);
+    assertDownloadStatistics(datasetKey, 1L, 1000L);
+
+    // a changed usage only adds its difference and a new one counts as a download
+    usages.put(datasetKey, 1500L);
+    usages.put(dataset2Key, 200L);
+    occurrenceDownloadResource.createUsages(occurrenceDownload.getKey(), usages);
+    occurrenceDownloadResource.createUsages(occurrenceDownload.getKey(), usages);
+    assertDownloadStatistics(datasetKey, 1L, 1500L);
+    assertDownloadStatistics(dataset2Key, 1L, 200L);
+  }
+
+  /**
+   * The monthly aggregation rebuilds the statistics of the downloads created in a month, so their
+   * records are pruned by creation date, even when they were added to the statistics later.
+   */
+  @Test
+  public void testStatisticsAppliedPrunedByDownloadCreation() throws InterruptedException {
+    Download occurrenceDownload = getTestInstancePredicateDownload();
+    occurrenceDownloadResource.create(occurrenceDownload);
+    String downloadKey = occurrenceDownload.getKey();
+
+    // the database timestamps have microseconds, leave some room around the dates
+    TimeUnit.MILLISECONDS.sleep(10);
+    Date afterCreation = new Date();
+    TimeUnit.MILLISECONDS.sleep(10);
+
+    occurrenceDownload = occurrenceDownloadResource.get(downloadKey);
+    occurrenceDownload.setStatus(Status.SUCCEEDED);
+    occurrenceDownload.setDoi(new DOI("doi:10.1234/1ASCDU"));
+    occurrenceDownloadResource.update(occurrenceDownload);
+    assertTrue(downloadStatisticsMapper.isDownloadStatisticsApplied(downloadKey));
+
+    // records of other download types and of downloads created later are kept
+    assertEquals(
+        0,
+        downloadStatisticsMapper.deleteDownloadStatisticsAppliedCreatedBefore(
+            afterCreation, DownloadType.EVENT));
+    assertEquals(
+        0,
+        downloadStatisticsMapper.deleteDownloadStatisticsAppliedCreatedBefore(
+            occurrenceDownload.getCreated(), DownloadType.OCCURRENCE));
+    assertTrue(downloadStatisticsMapper.isDownloadStatisticsApplied(downloadKey));
+
+    // the download was added to the statistics after the date, but created before it
+    assertEquals(
+        1,
+        downloadStatisticsMapper.deleteDownloadStatisticsAppliedCreatedBefore(
+            afterCreation, DownloadType.OCCURRENCE));
+    assertFalse(downloadStatisticsMapper.isDownloadStatisticsApplied(downloadKey));
+  }
+
+  private void assertDownloadStatistics(
+      UUID datasetKey, long expectedDownloads, long expectedRecords) {
+    List<DownloadStatistics> statistics =
+        downloadStatisticsMapper.getDownloadStatistics(
+            null, null, null, datasetKey, null, null, DownloadType.OCCURRENCE);
+    assertEquals(1, statistics.size());
+    assertEquals(expectedDownloads, statistics.get(0).getNumberDownloads());
+    assertEquals(expectedRecords, statistics.get(0).getTotalRecords());
+  }
 }
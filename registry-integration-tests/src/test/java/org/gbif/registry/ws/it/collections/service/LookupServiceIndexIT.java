@@ -0,0 +1,72 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.ws.it.collections.service;
+
+import org.gbif.api.service.collections.CollectionService;
+import org.gbif.api.service.collections.InstitutionService;
+import org.gbif.api.service.registry.DatasetService;
+import org.gbif.api.service.registry.InstallationService;
+import org.gbif.api.service.registry.NodeService;
+import org.gbif.api.service.registry.OrganizationService;
+import org.gbif.registry.service.collections.lookup.LookupIndex;
+import org.gbif.registry.service.collections.lookup.LookupService;
+import org.gbif.ws.client.filter.SimplePrincipalProvider;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.TestPropertySource;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the tests of {@link LookupServiceIT} with the {@link LookupIndex} enabled, so the lookups
+ * answered from memory are checked against the same expectations as the SQL lookup. The index is
+ * loaded after the data of each test is created, and the changes made by the tests themselves
+ * reach it through the collection events.
+ */
+@TestPropertySource(properties = "grscicoll.lookup.index.enabled=true")
+public class LookupServiceIndexIT extends LookupServiceIT {
+
+  private final LookupIndex lookupIndex;
+
+  @Autowired
+  public LookupServiceIndexIT(
+      SimplePrincipalProvider simplePrincipalProvider,
+      LookupService lookupService,
+      InstitutionService institutionService,
+      CollectionService collectionService,
+      DatasetService datasetService,
+      NodeService nodeService,
+      OrganizationService organizationService,
+      InstallationService installationService,
+      LookupIndex lookupIndex) {
+    super(
+        simplePrincipalProvider,
+        lookupService,
+        institutionService,
+        collectionService,
+        datasetService,
+        nodeService,
+        organizationService,
+        installationService);
+    this.lookupIndex = lookupIndex;
+  }
+
+  @BeforeEach
+  public void loadIndex() {
+    // runs after the data of LookupServiceIT is created, the tables are truncated without events
+    lookupIndex.reload();
+    assertTrue(lookupIndex.lookupInstitutions("I1", null, null, null).isPresent());
+  }
+}
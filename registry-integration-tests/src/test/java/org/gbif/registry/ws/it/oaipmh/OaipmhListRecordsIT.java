@@ -31,10 +31,13 @@ import org.gbif.ws.client.filter.SimplePrincipalProvider;
 
 import java.net.URI;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
 
 import org.apache.commons.io.IOUtils;
 import org.dspace.xoai.model.oaipmh.Record;
@@ -188,6 +191,37 @@ public class OaipmhListRecordsIT extends AbstractOaipmhEndpointIT {
         "ListRecords verb return all records when the number of records is higher than 'MaxListRecords'");
   }
 
+  /**
+   * Test that ListRecords verb returns each record once when a page ends among datasets with the
+   * same modified date, which are told apart by their keys in the resumption token.
+   */
+  @Test
+  public void testListRecordsPagingWithSameModifiedDate() throws Exception {
+    Organization organization = createOrganization(Country.DENMARK);
+    Installation installation = createInstallation(organization.getKey());
+    Date modified = new Date();
+    Set<String> datasetKeys = new TreeSet<>();
+    for (int i = 0; i < 5; i++) {
+      Dataset dataset =
+          createDataset(
+              organization.getKey(), installation.getKey(), DatasetType.OCCURRENCE, modified);
+      datasetKeys.add(dataset.getKey().toString());
+    }
+
+    Iterator<Record> records =
+        serviceProvider.listRecords(
+            ListRecordsParameters.request()
+                .withMetadataPrefix(EML_FORMAT.getMetadataPrefix())
+                .withSetSpec(
+                    OaipmhSetRepository.SetType.INSTALLATION.getSubsetPrefix()
+                        + installation.getKey().toString()));
+    List<String> identifiers = new ArrayList<>();
+    records.forEachRemaining(r -> identifiers.add(r.getHeader().getIdentifier()));
+
+    // all the datasets have the same modified date, so they are listed in key order
+    assertEquals(new ArrayList<>(datasetKeys), identifiers);
+  }
+
   @Test
   public void getListRecordsWithAugmentedMetadata() throws Exception {
     Organization org1 = createOrganization(Country.ZAMBIA);
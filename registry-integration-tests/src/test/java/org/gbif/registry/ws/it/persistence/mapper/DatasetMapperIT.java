@@ -0,0 +1,161 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.ws.it.persistence.mapper;
+
+import org.gbif.api.model.registry.Dataset;
+import org.gbif.api.model.registry.Installation;
+import org.gbif.api.model.registry.Organization;
+import org.gbif.registry.database.TestCaseDatabaseInitializer;
+import org.gbif.registry.persistence.mapper.DatasetMapper;
+import org.gbif.registry.persistence.mapper.OrganizationMapper;
+import org.gbif.registry.search.test.ElasticsearchTestContainerConfiguration;
+import org.gbif.registry.test.TestDataFactory;
+import org.gbif.registry.ws.it.BaseItTest;
+import org.gbif.ws.client.filter.SimplePrincipalProvider;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** Integration tests for the keyset paging queries of {@link DatasetMapper}. */
+class DatasetMapperIT extends BaseItTest {
+
+  @RegisterExtension
+  protected TestCaseDatabaseInitializer databaseRule =
+      new TestCaseDatabaseInitializer("dataset", "installation", "organization", "node");
+
+  private final DatasetMapper datasetMapper;
+  private final OrganizationMapper organizationMapper;
+  private final TestDataFactory testDataFactory;
+
+  private Organization organization;
+  private Installation installation;
+
+  @Autowired
+  public DatasetMapperIT(
+      DatasetMapper datasetMapper,
+      OrganizationMapper organizationMapper,
+      TestDataFactory testDataFactory,
+      SimplePrincipalProvider principalProvider,
+      ElasticsearchTestContainerConfiguration elasticsearchTestContainer) {
+    super(principalProvider, elasticsearchTestContainer);
+    this.datasetMapper = datasetMapper;
+    this.organizationMapper = organizationMapper;
+    this.testDataFactory = testDataFactory;
+  }
+
+  @BeforeEach
+  public void setup() {
+    organization = testDataFactory.newPersistedOrganization();
+    installation = testDataFactory.newPersistedInstallation(organization.getKey());
+  }
+
+  @Test
+  public void listAfterKeyTest() {
+    List<UUID> liveKeys = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      liveKeys.add(newDatasetKey());
+    }
+    UUID deletedKey = newDatasetKey();
+    datasetMapper.delete(deletedKey);
+
+    // pages of 2 over the 5 live datasets
+    List<UUID> pagedKeys = new ArrayList<>();
+    UUID lastKey = null;
+    List<Dataset> page;
+    int pages = 0;
+    do {
+      page = datasetMapper.listAfterKey(lastKey, 2);
+      assertTrue(page.size() <= 2);
+      page.forEach(d -> pagedKeys.add(d.getKey()));
+      if (!page.isEmpty()) {
+        lastKey = page.get(page.size() - 1).getKey();
+      }
+      pages++;
+    } while (page.size() == 2);
+
+    // ordered by key as the database sorts UUIDs, i.e. by their hex string, deleted datasets
+    // excluded
+    assertEquals(3, pages);
+    assertEquals(
+        liveKeys.stream().sorted(Comparator.comparing(UUID::toString)).collect(Collectors.toList()),
+        pagedKeys);
+    assertTrue(datasetMapper.listAfterKey(pagedKeys.get(4), 2).isEmpty());
+  }
+
+  @Test
+  public void listChangedSinceTest() throws InterruptedException {
+    UUID deletedKey = newDatasetKey();
+    newDatasetKey();
+    Organization otherOrganization = testDataFactory.newPersistedOrganization();
+    Installation otherInstallation =
+        testDataFactory.newPersistedInstallation(otherOrganization.getKey());
+    UUID otherKey =
+        testDataFactory
+            .newPersistedDataset(otherOrganization.getKey(), otherInstallation.getKey())
+            .getKey();
+
+    // the database timestamps have microseconds, leave some room around the since date
+    TimeUnit.MILLISECONDS.sleep(10);
+    Date since = new Date();
+    TimeUnit.MILLISECONDS.sleep(10);
+    assertTrue(datasetMapper.listChangedSince(since, null, 10).isEmpty());
+
+    // a deleted dataset and a dataset whose publishing organization changed
+    datasetMapper.delete(deletedKey);
+    Organization organizationToUpdate = organizationMapper.get(otherOrganization.getKey());
+    organizationToUpdate.setModifiedBy("test");
+    organizationMapper.update(organizationToUpdate);
+
+    List<Dataset> changed = datasetMapper.listChangedSince(since, null, 10);
+    assertEquals(2, changed.size());
+    Map<UUID, Dataset> changedByKey =
+        changed.stream().collect(Collectors.toMap(Dataset::getKey, d -> d));
+    assertNotNull(changedByKey.get(deletedKey).getDeleted());
+    assertNull(changedByKey.get(otherKey).getDeleted());
+
+    // keyset paging
+    List<Dataset> firstPage = datasetMapper.listChangedSince(since, null, 1);
+    List<Dataset> secondPage =
+        datasetMapper.listChangedSince(since, firstPage.get(0).getKey(), 1);
+    assertEquals(1, firstPage.size());
+    assertEquals(1, secondPage.size());
+    assertEquals(
+        changed.stream().map(Dataset::getKey).collect(Collectors.toList()),
+        Arrays.asList(firstPage.get(0).getKey(), secondPage.get(0).getKey()));
+    assertTrue(datasetMapper.listChangedSince(since, secondPage.get(0).getKey(), 1).isEmpty());
+  }
+
+  private UUID newDatasetKey() {
+    return testDataFactory
+        .newPersistedDataset(organization.getKey(), installation.getKey())
+        .getKey();
+  }
+}
@@ -0,0 +1,123 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.ws.it.persistence.mapper;
+
+import org.gbif.api.model.registry.Dataset;
+import org.gbif.api.model.registry.Installation;
+import org.gbif.api.model.registry.Organization;
+import org.gbif.registry.database.TestCaseDatabaseInitializer;
+import org.gbif.registry.persistence.mapper.EntityKeyRelationMapper;
+import org.gbif.registry.persistence.mapper.dto.EntityKeyRelationDto;
+import org.gbif.registry.search.test.ElasticsearchTestContainerConfiguration;
+import org.gbif.registry.test.TestDataFactory;
+import org.gbif.registry.ws.it.BaseItTest;
+import org.gbif.ws.client.filter.SimplePrincipalProvider;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** Integration tests for {@link EntityKeyRelationMapper}. */
+class EntityKeyRelationMapperIT extends BaseItTest {
+
+  @RegisterExtension
+  protected TestCaseDatabaseInitializer databaseRule =
+      new TestCaseDatabaseInitializer("dataset", "installation", "organization", "node");
+
+  private final EntityKeyRelationMapper mapper;
+  private final TestDataFactory testDataFactory;
+
+  private Organization organization;
+  private Installation installation;
+  private Dataset dataset;
+
+  @Autowired
+  public EntityKeyRelationMapperIT(
+      EntityKeyRelationMapper mapper,
+      TestDataFactory testDataFactory,
+      SimplePrincipalProvider principalProvider,
+      ElasticsearchTestContainerConfiguration elasticsearchTestContainer) {
+    super(principalProvider, elasticsearchTestContainer);
+    this.mapper = mapper;
+    this.testDataFactory = testDataFactory;
+  }
+
+  @BeforeEach
+  public void setup() {
+    organization = testDataFactory.newPersistedOrganization();
+    installation = testDataFactory.newPersistedInstallation(organization.getKey());
+    dataset = testDataFactory.newPersistedDataset(organization.getKey(), installation.getKey());
+  }
+
+  @Test
+  public void listDatasetRelationsTest() {
+    List<EntityKeyRelationDto> relations =
+        mapper.listDatasetRelations(Arrays.asList(dataset.getKey(), UUID.randomUUID()));
+
+    // unknown keys are ignored
+    assertEquals(1, relations.size());
+    EntityKeyRelationDto relation = relations.get(0);
+    assertEquals(dataset.getKey(), relation.getKey());
+    assertNull(relation.getParentKey());
+    assertEquals(installation.getKey(), relation.getInstallationKey());
+    assertEquals(organization.getKey(), relation.getOrganizationKey());
+    assertEquals(organization.getEndorsingNodeKey(), relation.getEndorsingNodeKey());
+  }
+
+  @Test
+  public void listInstallationRelationsTest() {
+    List<EntityKeyRelationDto> relations =
+        mapper.listInstallationRelations(Collections.singletonList(installation.getKey()));
+
+    assertEquals(1, relations.size());
+    assertEquals(installation.getKey(), relations.get(0).getKey());
+    assertEquals(organization.getKey(), relations.get(0).getOrganizationKey());
+    assertEquals(organization.getEndorsingNodeKey(), relations.get(0).getEndorsingNodeKey());
+  }
+
+  @Test
+  public void listOrganizationRelationsTest() {
+    List<EntityKeyRelationDto> relations =
+        mapper.listOrganizationRelations(Collections.singletonList(organization.getKey()));
+
+    assertEquals(1, relations.size());
+    assertEquals(organization.getKey(), relations.get(0).getKey());
+    assertEquals(organization.getEndorsingNodeKey(), relations.get(0).getEndorsingNodeKey());
+    assertTrue(
+        mapper.listOrganizationRelations(Collections.singletonList(UUID.randomUUID())).isEmpty());
+  }
+
+  @Test
+  public void listAncestorKeysTest() {
+    assertEquals(
+        new HashSet<>(
+            Arrays.asList(
+                dataset.getKey(),
+                installation.getKey(),
+                organization.getKey(),
+                organization.getEndorsingNodeKey())),
+        new HashSet<>(mapper.listAncestorKeys(dataset.getKey())));
+  }
+}
@@ -0,0 +1,133 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.ws.it.persistence.mapper;
+
+import org.gbif.api.model.registry.Installation;
+import org.gbif.api.model.registry.Metadata;
+import org.gbif.api.model.registry.Organization;
+import org.gbif.api.vocabulary.MetadataType;
+import org.gbif.registry.database.TestCaseDatabaseInitializer;
+import org.gbif.registry.persistence.mapper.MetadataMapper;
+import org.gbif.registry.persistence.mapper.dto.MetadataDatasetJsonDto;
+import org.gbif.registry.search.test.ElasticsearchTestContainerConfiguration;
+import org.gbif.registry.test.TestDataFactory;
+import org.gbif.registry.ws.it.BaseItTest;
+import org.gbif.ws.client.filter.SimplePrincipalProvider;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** Integration tests for the batched metadata queries of {@link MetadataMapper}. */
+class MetadataMapperIT extends BaseItTest {
+
+  @RegisterExtension
+  protected TestCaseDatabaseInitializer databaseRule =
+      new TestCaseDatabaseInitializer(
+          "metadata", "dataset", "installation", "organization", "node");
+
+  private final MetadataMapper metadataMapper;
+  private final TestDataFactory testDataFactory;
+
+  private Organization organization;
+  private Installation installation;
+
+  @Autowired
+  public MetadataMapperIT(
+      MetadataMapper metadataMapper,
+      TestDataFactory testDataFactory,
+      SimplePrincipalProvider principalProvider,
+      ElasticsearchTestContainerConfiguration elasticsearchTestContainer) {
+    super(principalProvider, elasticsearchTestContainer);
+    this.metadataMapper = metadataMapper;
+    this.testDataFactory = testDataFactory;
+  }
+
+  @BeforeEach
+  public void setup() {
+    organization = testDataFactory.newPersistedOrganization();
+    installation = testDataFactory.newPersistedInstallation(organization.getKey());
+  }
+
+  @Test
+  public void listPreferredTest() {
+    UUID severalDocumentsKey = newDatasetKey();
+    insertMetadata(severalDocumentsKey, MetadataType.DC);
+    insertMetadata(severalDocumentsKey, MetadataType.EML);
+    insertMetadata(severalDocumentsKey, MetadataType.EML);
+    UUID oneDocumentKey = newDatasetKey();
+    insertMetadata(oneDocumentKey, MetadataType.DC);
+    UUID noDocumentKey = newDatasetKey();
+
+    List<Metadata> preferred =
+        metadataMapper.listPreferred(
+            Arrays.asList(severalDocumentsKey, oneDocumentKey, noDocumentKey));
+
+    // one document per dataset, the first of the single dataset listing, datasets without
+    // documents left out
+    assertEquals(2, preferred.size());
+    Map<UUID, Integer> preferredKeys =
+        preferred.stream().collect(Collectors.toMap(Metadata::getDatasetKey, Metadata::getKey));
+    assertEquals(
+        metadataMapper.list(severalDocumentsKey, null).get(0).getKey(),
+        preferredKeys.get(severalDocumentsKey));
+    assertEquals(
+        metadataMapper.list(oneDocumentKey, null).get(0).getKey(),
+        preferredKeys.get(oneDocumentKey));
+
+    assertTrue(metadataMapper.listPreferred(Collections.singletonList(noDocumentKey)).isEmpty());
+  }
+
+  @Test
+  public void listDatasetJsonTest() {
+    UUID datasetKey = newDatasetKey();
+    int storedKey = insertMetadata(datasetKey, MetadataType.EML);
+    int notStoredKey = insertMetadata(datasetKey, MetadataType.DC);
+    metadataMapper.updateDatasetJson(storedKey, "{\"title\":\"Stored\"}");
+
+    // only the documents whose dataset JSON has been stored are returned
+    List<MetadataDatasetJsonDto> datasetJson =
+        metadataMapper.listDatasetJson(Arrays.asList(storedKey, notStoredKey));
+    assertEquals(1, datasetJson.size());
+    assertEquals(storedKey, datasetJson.get(0).getKey());
+    assertEquals(metadataMapper.getDatasetJson(storedKey), datasetJson.get(0).getDatasetJson());
+  }
+
+  private UUID newDatasetKey() {
+    return testDataFactory
+        .newPersistedDataset(organization.getKey(), installation.getKey())
+        .getKey();
+  }
+
+  private int insertMetadata(UUID datasetKey, MetadataType type) {
+    Metadata metadata = new Metadata();
+    metadata.setDatasetKey(datasetKey);
+    metadata.setType(type);
+    metadata.setCreatedBy("test");
+    metadataMapper.create(metadata, "<metadata/>".getBytes(StandardCharsets.UTF_8), null);
+    return metadata.getKey();
+  }
+}
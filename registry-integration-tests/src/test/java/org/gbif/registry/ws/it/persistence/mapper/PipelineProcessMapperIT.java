@@ -44,7 +44,9 @@ import java.time.OffsetDateTime;
 import java.time.ZoneOffset;
 import java.time.temporal.ChronoUnit;
 import java.util.Collections;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.RegisterExtension;
@@ -274,6 +276,64 @@ public class PipelineProcessMapperIT extends BaseItTest {
     assertListResult(null, 10, 0);
   }
 
+  @Test
+  public void listHistoryTest() throws InterruptedException {
+    final UUID datasetKey = insertDataset();
+    PipelineProcess withExecutions =
+        new PipelineProcess().setDatasetKey(datasetKey).setAttempt(1).setCreatedBy(TEST_USER);
+    pipelineProcessMapper.createIfNotExists(withExecutions);
+    for (int i = 0; i < 2; i++) {
+      PipelineExecution execution = new PipelineExecution().setCreatedBy(TEST_USER);
+      pipelineProcessMapper.addPipelineExecution(withExecutions.getKey(), execution);
+      for (StepType type : new StepType[] {StepType.DWCA_TO_VERBATIM, StepType.HDFS_VIEW}) {
+        pipelineProcessMapper.addPipelineStep(
+            execution.getKey(),
+            new PipelineStep()
+                .setType(type)
+                .setState(Status.COMPLETED)
+                .setStarted(OffsetDateTime.now(ZoneOffset.UTC))
+                .setCreatedBy(TEST_USER));
+      }
+    }
+    // the processes are listed newest first
+    TimeUnit.MILLISECONDS.sleep(10);
+    PipelineProcess withoutExecutions =
+        new PipelineProcess().setDatasetKey(datasetKey).setAttempt(2).setCreatedBy(TEST_USER);
+    pipelineProcessMapper.createIfNotExists(withoutExecutions);
+    pipelineProcessMapper.createIfNotExists(
+        new PipelineProcess().setDatasetKey(insertDataset()).setAttempt(1).setCreatedBy(TEST_USER));
+
+    List<PipelineProcess> history = pipelineProcessMapper.listHistory(datasetKey, DEFAULT_PAGE);
+    assertEquals(2, history.size());
+    assertEquals(withoutExecutions.getKey(), history.get(0).getKey());
+    assertEquals(withExecutions.getKey(), history.get(1).getKey());
+    assertEquals(3, pipelineProcessMapper.listHistory(null, DEFAULT_PAGE).size());
+
+    // the page limits the processes, not the joined rows of their executions and steps
+    List<PipelineProcess> firstPage =
+        pipelineProcessMapper.listHistory(datasetKey, PAGE.apply(1, 0L));
+    assertEquals(1, firstPage.size());
+    assertEquals(withoutExecutions.getKey(), firstPage.get(0).getKey());
+    assertTrue(firstPage.get(0).getExecutions().isEmpty());
+
+    List<PipelineProcess> secondPage =
+        pipelineProcessMapper.listHistory(datasetKey, PAGE.apply(1, 1L));
+    assertEquals(1, secondPage.size());
+    PipelineProcess processRetrieved = secondPage.get(0);
+    assertEquals(withExecutions.getKey(), processRetrieved.getKey());
+    assertEquals(datasetKey, processRetrieved.getDatasetKey());
+    assertEquals(1, processRetrieved.getAttempt());
+    assertEquals("title", processRetrieved.getDatasetTitle());
+    assertEquals(2, processRetrieved.getExecutions().size());
+    for (PipelineExecution execution : processRetrieved.getExecutions()) {
+      assertEquals(TEST_USER, execution.getCreatedBy());
+      assertEquals(2, execution.getSteps().size());
+      for (PipelineStep step : execution.getSteps()) {
+        assertEquals(Status.COMPLETED, step.getState());
+      }
+    }
+  }
+
   private void assertListResult(UUID datasetKey, Integer attempt, int expectedResult) {
     assertEquals(expectedResult, pipelineProcessMapper.count(datasetKey, attempt));
     assertEquals(
@@ -15,6 +15,7 @@ package org.gbif.registry.ws.it.security.jwt;
 
 import org.gbif.api.model.common.GbifUser;
 import org.gbif.registry.identity.service.IdentityService;
+import org.gbif.registry.identity.service.UserPrincipalCache;
 import org.gbif.registry.security.jwt.GbifJwtException;
 import org.gbif.registry.security.jwt.GbifJwtException.JwtErrorCode;
 import org.gbif.registry.security.jwt.JwtAuthenticateService;
@@ -35,7 +36,11 @@ import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -65,8 +70,7 @@ public class JwtAuthenticatorTest {
     config.setIssuer(ISSUER);
     String token = generateJwtWithMainImplementation(user.getUserName(), config);
 
-    JwtAuthenticateService jwtAuthenticator =
-        new JwtAuthenticateService(config, identityServiceMock);
+    JwtAuthenticateService jwtAuthenticator = newAuthenticator(config);
 
     GbifUser userAuthenticated = jwtAuthenticator.authenticate(token);
     assertEquals(user.getUserName(), userAuthenticated.getUserName());
@@ -81,8 +85,7 @@ public class JwtAuthenticatorTest {
 
     String token = generateJwtWithMainImplementation(user.getUserName(), config);
 
-    JwtAuthenticateService jwtAuthenticator =
-        new JwtAuthenticateService(config, identityServiceMock);
+    JwtAuthenticateService jwtAuthenticator = newAuthenticator(config);
 
     GbifJwtException exception =
         assertThrows(GbifJwtException.class, () -> jwtAuthenticator.authenticate(token));
@@ -102,8 +105,7 @@ public class JwtAuthenticatorTest {
     configParsing.setSigningKey(generateTestSigningKey("fake"));
     configParsing.setIssuer(ISSUER);
 
-    JwtAuthenticateService jwtAuthenticator =
-        new JwtAuthenticateService(configParsing, identityServiceMock);
+    JwtAuthenticateService jwtAuthenticator = newAuthenticator(configParsing);
 
     GbifJwtException exception =
         assertThrows(GbifJwtException.class, () -> jwtAuthenticator.authenticate(token));
@@ -124,8 +126,7 @@ public class JwtAuthenticatorTest {
     configParsing.setSigningKey(signingKey);
     configParsing.setIssuer("fake issuer");
 
-    JwtAuthenticateService jwtAuthenticator =
-        new JwtAuthenticateService(configParsing, identityServiceMock);
+    JwtAuthenticateService jwtAuthenticator = newAuthenticator(configParsing);
 
     GbifJwtException exception =
         assertThrows(GbifJwtException.class, () -> jwtAuthenticator.authenticate(token));
@@ -142,8 +143,7 @@ public class JwtAuthenticatorTest {
 
     String token = generateJwtWithMainImplementation("fake user", config);
 
-    JwtAuthenticateService jwtAuthenticator =
-        new JwtAuthenticateService(config, identityServiceMock);
+    JwtAuthenticateService jwtAuthenticator = newAuthenticator(config);
 
     GbifJwtException exception =
         assertThrows(GbifJwtException.class, () -> jwtAuthenticator.authenticate(token));
@@ -151,6 +151,50 @@ public class JwtAuthenticatorTest {
     assertEquals(JwtErrorCode.INVALID_USERNAME, exception.getErrorCode());
   }
 
+  @Test
+  public void refreshAfterLifetimeFractionTest() throws GbifJwtException {
+    when(identityServiceMock.get(USER_TEST)).thenReturn(user);
+    JwtConfiguration config = new JwtConfiguration();
+    config.setSigningKey(signingKey);
+    config.setExpiryTimeInMs(EXPIRY_TIME);
+    config.setIssuer(ISSUER);
+    String token = generateJwtWithMainImplementation(user.getUserName(), config);
+
+    // a new token is not needed until half of the lifetime has passed
+    config.setRefreshAfterLifetimeFraction(0.5);
+    JwtAuthenticateService jwtAuthenticator = newAuthenticator(config);
+    assertFalse(jwtAuthenticator.needsRefresh(jwtAuthenticator.authenticateToken(token)));
+
+    // always refreshed
+    config.setRefreshAfterLifetimeFraction(0);
+    jwtAuthenticator = newAuthenticator(config);
+    assertTrue(jwtAuthenticator.needsRefresh(jwtAuthenticator.authenticateToken(token)));
+  }
+
+  @Test
+  public void cachedUserTest() throws GbifJwtException {
+    when(identityServiceMock.get(USER_TEST)).thenReturn(user);
+    JwtConfiguration config = new JwtConfiguration();
+    config.setSigningKey(signingKey);
+    config.setExpiryTimeInMs(EXPIRY_TIME);
+    config.setIssuer(ISSUER);
+    String token = generateJwtWithMainImplementation(user.getUserName(), config);
+
+    JwtAuthenticateService jwtAuthenticator =
+        new JwtAuthenticateService(config, identityServiceMock, new UserPrincipalCache(30, 10));
+    jwtAuthenticator.authenticate(token);
+    GbifUser userAuthenticated = jwtAuthenticator.authenticate(token);
+
+    // the second call is served from the cache
+    assertEquals(user.getUserName(), userAuthenticated.getUserName());
+    verify(identityServiceMock, times(1)).get(USER_TEST);
+  }
+
+  /** Creates an authenticator that reads the user on every call. */
+  private JwtAuthenticateService newAuthenticator(JwtConfiguration config) {
+    return new JwtAuthenticateService(config, identityServiceMock, new UserPrincipalCache(0, 0));
+  }
+
   @SuppressWarnings("UnstableApiUsage")
   private static String generateTestSigningKey(String string) {
     return Hashing.sha256().hashString(string, StandardCharsets.UTF_8).toString();
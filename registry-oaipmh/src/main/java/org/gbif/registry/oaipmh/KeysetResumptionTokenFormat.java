@@ -0,0 +1,89 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.oaipmh;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+import org.dspace.xoai.dataprovider.exceptions.BadResumptionToken;
+import org.dspace.xoai.model.oaipmh.ResumptionToken;
+import org.dspace.xoai.services.api.ResumptionTokenFormat;
+import org.dspace.xoai.services.impl.SimpleResumptionTokenFormat;
+
+/**
+ * Resumption tokens of {@link SimpleResumptionTokenFormat} followed by the {@link RecordCursor} of
+ * the page they resume, so lists are paged by key instead of offset and are only counted once.
+ * Tokens without cursor are still accepted and paged by offset, as are cursors without the size of
+ * the list, which is then counted again.
+ */
+public class KeysetResumptionTokenFormat implements ResumptionTokenFormat {
+
+  private static final String CURSOR_SEPARATOR = ".";
+  private static final String CURSOR_FIELD_SEPARATOR = "|";
+
+  private final SimpleResumptionTokenFormat simpleFormat = new SimpleResumptionTokenFormat();
+
+  @Override
+  public ResumptionToken.Value parse(String resumptionToken) throws BadResumptionToken {
+    int separator = resumptionToken != null ? resumptionToken.lastIndexOf(CURSOR_SEPARATOR) : -1;
+    if (separator < 0) {
+      RecordCursor.setRequested(null);
+      return simpleFormat.parse(resumptionToken);
+    }
+
+    ResumptionToken.Value value = simpleFormat.parse(resumptionToken.substring(0, separator));
+    try {
+      String cursor =
+          new String(
+              Base64.getUrlDecoder().decode(resumptionToken.substring(separator + 1)),
+              StandardCharsets.UTF_8);
+      String[] fields = cursor.split(Pattern.quote(CURSOR_FIELD_SEPARATOR), -1);
+      if (fields.length < 2 || fields.length > 3) {
+        throw new BadResumptionToken();
+      }
+      RecordCursor.setRequested(
+          new RecordCursor(
+              (int) value.getOffset(),
+              fields[0],
+              UUID.fromString(fields[1]),
+              fields.length == 3 ? Long.valueOf(fields[2]) : null));
+    } catch (IllegalArgumentException e) {
+      throw new BadResumptionToken();
+    }
+    return value;
+  }
+
+  @Override
+  public String format(ResumptionToken.Value resumptionToken) {
+    String token = simpleFormat.format(resumptionToken);
+    RecordCursor cursor = RecordCursor.next((int) resumptionToken.getOffset());
+    if (cursor == null) {
+      return token;
+    }
+    StringBuilder fields =
+        new StringBuilder(cursor.getModified())
+            .append(CURSOR_FIELD_SEPARATOR)
+            .append(cursor.getKey());
+    if (cursor.getTotalSize() != null) {
+      fields.append(CURSOR_FIELD_SEPARATOR).append(cursor.getTotalSize());
+    }
+    String encodedCursor =
+        Base64.getUrlEncoder()
+            .withoutPadding()
+            .encodeToString(fields.toString().getBytes(StandardCharsets.UTF_8));
+    return token + CURSOR_SEPARATOR + encodedCursor;
+  }
+}
@@ -119,7 +119,14 @@ public class OaipmhEndpoint {
         .withSet(params.getSet())
         .withResumptionToken(params.getResumptionToken());
 
-    byte[] data = handleOAIRequest(reqBuilder.build());
+    byte[] data;
+    RequestedMetadataFormat.set(params.getMetadataPrefix(), params.getResumptionToken());
+    try {
+      data = handleOAIRequest(reqBuilder.build());
+    } finally {
+      RequestedMetadataFormat.clear();
+      RecordCursor.clear();
+    }
 
     return ResponseEntity.status(HttpStatus.OK).contentType(MediaType.APPLICATION_XML).body(data);
   }
@@ -14,10 +14,7 @@
 package org.gbif.registry.oaipmh;
 
 import org.gbif.api.exception.ServiceUnavailableException;
-import org.gbif.api.model.common.paging.PagingRequest;
 import org.gbif.api.model.common.paging.PagingResponse;
-import org.gbif.api.model.metrics.cube.OccurrenceCube;
-import org.gbif.api.model.metrics.cube.ReadBuilder;
 import org.gbif.api.model.registry.Dataset;
 import org.gbif.api.model.registry.Organization;
 import org.gbif.api.vocabulary.Country;
@@ -27,14 +24,18 @@ import org.gbif.metadata.eml.EMLWriter;
 import org.gbif.metrics.ws.client.CubeWsClient;
 import org.gbif.registry.oaipmh.OaipmhSetRepository.SetIdentification;
 import org.gbif.registry.persistence.mapper.DatasetMapper;
+import org.gbif.registry.persistence.mapper.OaipmhRecordMapper;
 import org.gbif.registry.persistence.mapper.OrganizationMapper;
+import org.gbif.registry.persistence.mapper.dto.OaipmhRecordDto;
 import org.gbif.registry.persistence.mapper.params.DatasetListParams;
+import org.gbif.registry.persistence.mapper.params.OaipmhRecordListParams;
 import org.gbif.registry.service.RegistryDatasetService;
 import org.gbif.ws.util.ExtraMediaTypes;
 
 import java.io.IOException;
 import java.io.StringWriter;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -42,6 +43,9 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
 import org.dspace.xoai.dataprovider.exceptions.IdDoesNotExistException;
@@ -54,11 +58,13 @@ import org.dspace.xoai.dataprovider.model.Set;
 import org.dspace.xoai.dataprovider.repository.ItemRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.util.LinkedMultiValueMap;
 
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 import jakarta.validation.constraints.NotNull;
 
@@ -68,10 +74,13 @@ import static org.gbif.registry.oaipmh.OaipmhSetRepository.SetType.INSTALLATION;
 
 /** Implementation of a XOAI ItemRepository for {@link Dataset}. */
 @SuppressWarnings({"UnstableApiUsage", "NullableProblems"})
-public class OaipmhItemRepository implements ItemRepository {
+public class OaipmhItemRepository implements ItemRepository, DisposableBean {
 
   private static final Logger LOG = LoggerFactory.getLogger(OaipmhItemRepository.class);
 
+  private static final String OAI_DC_PREFIX = "oai_dc";
+  private static final String EML_PREFIX = "eml";
+
   private final LoadingCache<UUID, Organization> ORGANIZATION_CACHE =
       CacheBuilder.newBuilder()
           .maximumSize(1000)
@@ -81,7 +90,12 @@ public class OaipmhItemRepository implements ItemRepository {
   private final RegistryDatasetService datasetService;
   private final OrganizationMapper organizationMapper;
   private final DatasetMapper datasetMapper;
+  private final OaipmhRecordMapper oaipmhRecordMapper;
   private final CubeWsClient metricsClient;
+  // occurrence counts only change when datasets are indexed, so they don't need to be exact
+  private final LoadingCache<UUID, Long> occurrenceCountCache;
+  private final long occurrenceCountExpiryMinutes;
+  private final ExecutorService renderExecutor;
 
   private final EMLWriter emlWriter;
   private final DublinCoreWriter dublinCoreWriter;
@@ -90,11 +104,25 @@ public class OaipmhItemRepository implements ItemRepository {
       RegistryDatasetService datasetService,
       DatasetMapper datasetMapper,
       OrganizationMapper organizationMapper,
-      CubeWsClient metricsClient) {
+      OaipmhRecordMapper oaipmhRecordMapper,
+      CubeWsClient metricsClient,
+      int renderThreads,
+      long occurrenceCountExpiryMinutes) {
     this.datasetService = datasetService;
     this.datasetMapper = datasetMapper;
     this.organizationMapper = organizationMapper;
+    this.oaipmhRecordMapper = oaipmhRecordMapper;
     this.metricsClient = metricsClient;
+    this.occurrenceCountExpiryMinutes = occurrenceCountExpiryMinutes;
+    this.occurrenceCountCache =
+        CacheBuilder.newBuilder()
+            .maximumSize(100_000)
+            .expireAfterWrite(occurrenceCountExpiryMinutes, TimeUnit.MINUTES)
+            .build(CacheLoader.from(this::loadOccurrenceCount));
+    this.renderExecutor =
+        Executors.newFixedThreadPool(
+            renderThreads,
+            new ThreadFactoryBuilder().setNameFormat("oaipmh-render-%d").setDaemon(true).build());
 
     // should eventually be injected
     emlWriter = EMLWriter.newInstance(false, true);
@@ -125,7 +153,7 @@ public class OaipmhItemRepository implements ItemRepository {
 
     if (dataset != null) {
       try {
-        return toOaipmhItem(dataset);
+        return toOaipmhItem(dataset, RequestedMetadataFormat.get());
       } catch (Exception e) {
         throw new ServiceUnavailableException("Failed to serialize dataset " + s + " to DC/EML", e);
       }
@@ -179,22 +207,12 @@ public class OaipmhItemRepository implements ItemRepository {
   @Override
   public ListItemIdentifiersResult getItemIdentifiers(
       List<ScopedFilter> list, int offset, int length, String set, Date from, Date until) {
-    // ask for length+1 to determine if there are more results
-    DatasetListWithTotalSize datasetList =
-        getDatasetListFromFilters(offset, length + 1, set, from, until);
-    List<ItemIdentifier> results = new ArrayList<>(datasetList.size());
-
-    boolean hasMoreResults = (datasetList.size() == length + 1);
-    // remove last element, it was only retrieve to determine hasMoreResults
-    if (hasMoreResults) {
-      datasetList.getList().remove(datasetList.size() - 1);
-    }
-
-    for (Dataset dataset : datasetList.getList()) {
-      results.add(toOaipmhItemIdentifier(dataset));
+    RecordPage page = listRecords(offset, length, set, from, until, false, null);
+    List<ItemIdentifier> results = new ArrayList<>(page.records.size());
+    for (OaipmhRecordDto record : page.records) {
+      results.add(new OaipmhItem(toDataset(record), getSets(record)));
     }
-
-    return new ListItemIdentifiersResult(hasMoreResults, results, (int) datasetList.getTotalSize());
+    return new ListItemIdentifiersResult(page.hasMoreResults, results, (int) page.totalSize);
   }
 
   /** See {@link #getItems(List, int, int, String, Date, Date) getItems} */
@@ -243,123 +261,302 @@ public class OaipmhItemRepository implements ItemRepository {
     return getItems(list, offset, length, set, null, until);
   }
 
-  /** Get items as {@link ListItemsResults} matching the provided filters. */
+  /**
+   * Get items as {@link ListItemsResults} matching the provided filters. The records are read from
+   * the record store, only the ones missing or outdated are rendered.
+   */
   @Override
   public ListItemsResults getItems(
       List<ScopedFilter> list, int offset, int length, String set, Date from, Date until) {
+    String metadataPrefix = RequestedMetadataFormat.get();
+    RecordPage page = listRecords(offset, length, set, from, until, true, metadataPrefix);
 
-    // ask for length+1 to determine if there are more results
-    DatasetListWithTotalSize datasetList =
-        getDatasetListFromFilters(offset, length + 1, set, from, until);
-    List<Item> results = new ArrayList<>(datasetList.size());
+    List<OaipmhRecordDto> stale = new ArrayList<>();
+    for (OaipmhRecordDto record : page.records) {
+      if (!record.isCurrent() || !hasFormat(record, metadataPrefix)) {
+        stale.add(record);
+      }
+    }
+    Map<UUID, OaipmhRecordDto> rendered = renderAndStore(stale);
+
+    List<Item> results = new ArrayList<>(page.records.size());
+    for (OaipmhRecordDto record : page.records) {
+      OaipmhRecordDto source =
+          record.isCurrent() && hasFormat(record, metadataPrefix)
+              ? record
+              : rendered.get(record.getDatasetKey());
+      // records that couldn't be rendered are logged and left out
+      if (source != null) {
+        results.add(
+            new OaipmhItem(toDataset(record), toXml(source, metadataPrefix), getSets(record)));
+      }
+    }
+    return new ListItemsResults(page.hasMoreResults, results, (int) page.totalSize);
+  }
 
-    boolean hasMoreResults = (datasetList.size() == length + 1);
-    // remove last element, it was only retrieve to determine hasMoreResults
-    if (hasMoreResults) {
-      datasetList.getList().remove(datasetList.size() - 1);
+  /**
+   * Renders the records of the datasets that are missing or outdated in the record store, walking
+   * through them in (modified, key) order. Records rendered longer ago than the occurrence counts
+   * are cached are outdated too, as the DublinCore documents include the occurrence count.
+   *
+   * @param batchSize number of datasets read and rendered at once
+   * @return number of records stored
+   */
+  public int refreshStaleRecords(int batchSize) {
+    int stored = 0;
+    String afterModified = null;
+    UUID afterKey = null;
+    Date renderedBefore =
+        new Date(
+            System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(occurrenceCountExpiryMinutes));
+    List<OaipmhRecordDto> stale;
+    do {
+      stale =
+          oaipmhRecordMapper.list(
+              OaipmhRecordListParams.builder()
+                  .staleOnly(true)
+                  .renderedBefore(renderedBefore)
+                  .afterModified(afterModified)
+                  .afterKey(afterKey)
+                  .limit(batchSize)
+                  .build());
+      if (!stale.isEmpty()) {
+        OaipmhRecordDto last = stale.get(stale.size() - 1);
+        afterModified = last.getModifiedText();
+        afterKey = last.getDatasetKey();
+        stored += renderAndStore(stale).size();
+      }
+    } while (stale.size() == batchSize);
+    return stored;
+  }
+
+  /**
+   * Renders both formats of the records in parallel and stores them.
+   *
+   * @return the stored records by dataset key
+   */
+  private Map<UUID, OaipmhRecordDto> renderAndStore(List<OaipmhRecordDto> records) {
+    if (records.isEmpty()) {
+      return Collections.emptyMap();
     }
 
+    // the datasets and their metadata documents are read at once
+    List<UUID> keys = new ArrayList<>(records.size());
+    for (OaipmhRecordDto record : records) {
+      keys.add(record.getDatasetKey());
+    }
     PagingResponse<Dataset> pagingResponse = new PagingResponse<>();
-    pagingResponse.setResults(datasetList.getList());
+    pagingResponse.setResults(datasetMapper.listByKeys(keys));
     pagingResponse = datasetService.augmentWithMetadata(pagingResponse);
 
-    try {
-      for (Dataset dataset : pagingResponse.getResults()) {
-        results.add(toOaipmhItem(dataset));
+    Map<UUID, Dataset> datasets = new HashMap<>();
+    Map<UUID, Future<String>> dcDocuments = new HashMap<>();
+    Map<UUID, Future<String>> emlDocuments = new HashMap<>();
+    for (Dataset dataset : pagingResponse.getResults()) {
+      datasets.put(dataset.getKey(), dataset);
+      dcDocuments.put(dataset.getKey(), renderExecutor.submit(() -> renderDc(dataset)));
+      emlDocuments.put(dataset.getKey(), renderExecutor.submit(() -> renderEml(dataset)));
+    }
+
+    Map<UUID, OaipmhRecordDto> stored = new HashMap<>();
+    for (OaipmhRecordDto record : records) {
+      UUID key = record.getDatasetKey();
+      Dataset dataset = datasets.get(key);
+      if (dataset == null) {
+        continue;
+      }
+      try {
+        OaipmhRecordDto rendered = new OaipmhRecordDto();
+        rendered.setDatasetKey(key);
+        rendered.setModifiedText(record.getModifiedText());
+        rendered.setOrganizationModifiedText(record.getOrganizationModifiedText());
+        rendered.setMetadataKey(record.getMetadataKey());
+        rendered.setCurrent(true);
+        rendered.setOaiDc(getRendered(dcDocuments.get(key), dataset, this::renderDc));
+        rendered.setEml(getRendered(emlDocuments.get(key), dataset, this::renderEml));
+        oaipmhRecordMapper.upsert(rendered);
+        stored.put(key, rendered);
+      } catch (IOException | RuntimeException e) {
+        // caused by https://github.com/DSpace/xoai/issues/31
+        LOG.error("Failed to serialize dataset {} to DC/EML", key, e);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new ServiceUnavailableException("Interrupted while serializing datasets", e);
       }
-    } catch (IOException e) {
-      // caused by https://github.com/DSpace/xoai/issues/31
-      LOG.error("Failed to serialize datasets to DC/EML", e);
     }
-    return new ListItemsResults(hasMoreResults, results, (int) datasetList.getTotalSize());
+    return stored;
   }
 
   /**
-   * Build a {@link OaipmhItem} instance from a {@link Dataset} and the {@link Set} it belongs to.
+   * Waits for a document rendered by the render executor. If the rendering failed there, the
+   * document is rendered again on the calling thread, so the dataset isn't silently left stale.
    */
-  private OaipmhItem toOaipmhItem(Dataset dataset) throws IOException {
-    Organization organization = null;
+  private String getRendered(Future<String> document, Dataset dataset, Renderer renderer)
+      throws IOException, InterruptedException {
     try {
-      organization = ORGANIZATION_CACHE.get(dataset.getPublishingOrganizationKey());
+      return document.get();
     } catch (ExecutionException e) {
-      LOG.error("Error while loading Organization from cache fro dataset {}", dataset, e);
+      LOG.warn(
+          "Failed to render dataset {} in the render executor, rendering it again",
+          dataset.getKey(),
+          e.getCause());
+      return renderer.render(dataset);
     }
-    List<Set> sets = getSets(organization, dataset);
-    Map<String, Object> additionalProperties = new HashMap<>();
-    additionalProperties.put(
-        DublinCoreWriter.ADDITIONAL_PROPERTY_DC_FORMAT, ExtraMediaTypes.APPLICATION_DWCA);
+  }
+
+  /** Renders a dataset in one of the metadata formats. */
+  @FunctionalInterface
+  private interface Renderer {
+    String render(Dataset dataset) throws IOException;
+  }
 
-    // get the occurrence counts for this dataset, only used in DublinCore
-    // This is designed to fail fast (short http timeout) and on failures which are expected to be
-    // exceptional
-    // events, it is simply omitted.  See the Guice RegistryWsSevletListener for the configuration
-    // of the timeout.
-    ReadBuilder readBuilder = new ReadBuilder();
-    readBuilder.at(OccurrenceCube.DATASET_KEY, dataset.getKey());
+  /** Stops the render threads, waiting for the renderings in progress. */
+  @Override
+  public void destroy() {
+    renderExecutor.shutdown();
     try {
-      LinkedMultiValueMap<String,String> params = new LinkedMultiValueMap<>();
-      params.add("datasetKey", dataset.getKey().toString());
-      long occurrenceCount = metricsClient.get(params);
-      if (occurrenceCount > 0) {
-        additionalProperties.put(DublinCoreWriter.ADDITIONAL_PROPERTY_OCC_COUNT, occurrenceCount);
+      if (!renderExecutor.awaitTermination(1, TimeUnit.MINUTES)) {
+        LOG.warn("OAI-PMH renderings did not finish in time");
+        renderExecutor.shutdownNow();
       }
-    } catch (Exception ex) {
-      LOG.warn(
-          "Unable to get occurrence count from cubeService for dataset {}. Omitting count.",
-          dataset.getKey(),
-          ex);
+    } catch (InterruptedException e) {
+      renderExecutor.shutdownNow();
+      Thread.currentThread().interrupt();
     }
+  }
 
-    /*
-     * The XOAI library doesn't provide us with the metadata type (EML / OAI DC), so both must be
-     * produced. An XSLT transform pulls out the one that's required. This is ugly, so see
-     * https://github.com/DSpace/xoai/issues/31
-     */
-    StringWriter xml = new StringWriter();
+  /**
+   * Build a {@link OaipmhItem} instance from a {@link Dataset} and the {@link Set} it belongs to.
+   *
+   * @param metadataPrefix the requested metadata format, if null all the formats are rendered
+   */
+  private OaipmhItem toOaipmhItem(Dataset dataset, String metadataPrefix) throws IOException {
+    Organization organization = getOrganization(dataset);
+    OaipmhRecordDto record = new OaipmhRecordDto();
+    if (metadataPrefix == null || OAI_DC_PREFIX.equals(metadataPrefix)) {
+      record.setOaiDc(renderDc(dataset));
+    }
+    if (metadataPrefix == null || EML_PREFIX.equals(metadataPrefix)) {
+      record.setEml(renderEml(dataset));
+    }
+    return new OaipmhItem(
+        dataset,
+        toXml(record, metadataPrefix),
+        getSets(
+            organization != null ? organization.getCountry() : null,
+            dataset.getInstallationKey(),
+            dataset.getType()));
+  }
 
-    xml.write("<root>");
+  /**
+   * The XOAI library doesn't provide us with the metadata type (EML / OAI DC), so it is taken from
+   * the request when possible, otherwise both must be produced. An XSLT transform pulls out the one
+   * that's required. This is ugly, so see https://github.com/DSpace/xoai/issues/31
+   */
+  private static String toXml(OaipmhRecordDto record, String metadataPrefix) {
+    StringBuilder xml = new StringBuilder("<root>");
+    if (metadataPrefix == null || OAI_DC_PREFIX.equals(metadataPrefix)) {
+      xml.append("<oaidc>\n").append(record.getOaiDc()).append("</oaidc>\n");
+    }
+    if (metadataPrefix == null || EML_PREFIX.equals(metadataPrefix)) {
+      xml.append("<eml>\n").append(record.getEml()).append("</eml>\n");
+    }
+    return xml.append("</root>\n").toString();
+  }
 
-    xml.write("<oaidc>\n");
-    dublinCoreWriter.writeTo(organization, dataset, additionalProperties, xml);
-    xml.write("</oaidc>\n");
+  private static boolean hasFormat(OaipmhRecordDto record, String metadataPrefix) {
+    boolean hasDc = record.getOaiDc() != null;
+    boolean hasEml = record.getEml() != null;
+    if (OAI_DC_PREFIX.equals(metadataPrefix)) {
+      return hasDc;
+    }
+    if (EML_PREFIX.equals(metadataPrefix)) {
+      return hasEml;
+    }
+    return hasDc && hasEml;
+  }
 
-    xml.write("<eml>\n");
-    emlWriter.writeTo(dataset, xml);
-    xml.write("</eml>\n");
+  private String renderDc(Dataset dataset) throws IOException {
+    Map<String, Object> additionalProperties = new HashMap<>();
+    additionalProperties.put(
+        DublinCoreWriter.ADDITIONAL_PROPERTY_DC_FORMAT, ExtraMediaTypes.APPLICATION_DWCA);
+    // the occurrence count is only used in DublinCore, it is omitted if it can't be retrieved
+    Long occurrenceCount = getOccurrenceCount(dataset.getKey());
+    if (occurrenceCount != null && occurrenceCount > 0) {
+      additionalProperties.put(DublinCoreWriter.ADDITIONAL_PROPERTY_OCC_COUNT, occurrenceCount);
+    }
 
-    xml.write("</root>\n");
-    return new OaipmhItem(dataset, xml.toString(), sets);
+    StringWriter xml = new StringWriter();
+    dublinCoreWriter.writeTo(getOrganization(dataset), dataset, additionalProperties, xml);
+    return xml.toString();
   }
 
-  private OaipmhItem toOaipmhItemIdentifier(Dataset dataset) {
-    Organization organization = null;
+  private String renderEml(Dataset dataset) throws IOException {
+    StringWriter xml = new StringWriter();
+    emlWriter.writeTo(dataset, xml);
+    return xml.toString();
+  }
+
+  private Organization getOrganization(Dataset dataset) {
     try {
-      organization = ORGANIZATION_CACHE.get(dataset.getPublishingOrganizationKey());
+      return ORGANIZATION_CACHE.get(dataset.getPublishingOrganizationKey());
     } catch (ExecutionException e) {
       LOG.error("Error while loading Organization from cache fro dataset {}", dataset, e);
+      return null;
     }
-    return new OaipmhItem(dataset, getSets(organization, dataset));
+  }
+
+  /**
+   * Gets the occurrence count of a dataset, cached. This is designed to fail fast (short http
+   * timeout) and on failures, which are expected to be exceptional events, null is returned.
+   */
+  private Long getOccurrenceCount(UUID datasetKey) {
+    try {
+      return occurrenceCountCache.get(datasetKey);
+    } catch (ExecutionException | RuntimeException ex) {
+      LOG.warn(
+          "Unable to get occurrence count from cubeService for dataset {}. Omitting count.",
+          datasetKey,
+          ex);
+      return null;
+    }
+  }
+
+  private Long loadOccurrenceCount(UUID datasetKey) {
+    LinkedMultiValueMap<String, String> params = new LinkedMultiValueMap<>();
+    params.add("datasetKey", datasetKey.toString());
+    return metricsClient.get(params);
+  }
+
+  /** The dataset fields used by {@link OaipmhItem}. */
+  private static Dataset toDataset(OaipmhRecordDto record) {
+    Dataset dataset = new Dataset();
+    dataset.setKey(record.getDatasetKey());
+    dataset.setModified(record.getModified());
+    dataset.setInstallationKey(record.getInstallationKey());
+    dataset.setType(record.getType());
+    return dataset;
+  }
+
+  private static List<Set> getSets(OaipmhRecordDto record) {
+    return getSets(record.getCountry(), record.getInstallationKey(), record.getType());
   }
 
   /**
    * Get the list of {@link org.dspace.xoai.dataprovider.model.Set} for a {@link Dataset}.
    *
-   * @param organization {@link Organization}, can be null
-   * @param dataset non-null {@link Dataset}
+   * @param publishingCountry country of the publishing organization, can be null
+   * @param installationKey non-null key of the installation serving the dataset
+   * @param type type of the dataset, can be null
    * @return list of all {@link org.dspace.xoai.dataprovider.model.Set} that the {@link Dataset}
    *     belongs to. Never null.
    */
-  private List<Set> getSets(Organization organization, @NotNull Dataset dataset) {
-    Country publishingCountry = null;
-
-    if (organization != null) {
-      publishingCountry = organization.getCountry();
-    }
-
+  private static List<Set> getSets(
+      Country publishingCountry, @NotNull UUID installationKey, DatasetType type) {
     List<Set> sets = new ArrayList<>();
-    sets.add(new Set(INSTALLATION.getSubsetPrefix() + dataset.getInstallationKey().toString()));
-    if (dataset.getType() != null) {
-      sets.add(new Set(DATASET_TYPE.getSubsetPrefix() + dataset.getType().name()));
+    sets.add(new Set(INSTALLATION.getSubsetPrefix() + installationKey.toString()));
+    if (type != null) {
+      sets.add(new Set(DATASET_TYPE.getSubsetPrefix() + type.name()));
     }
     if (publishingCountry != null) {
       sets.add(new Set(COUNTRY.getSubsetPrefix() + publishingCountry.getIso2LetterCode()));
@@ -368,25 +565,31 @@ public class OaipmhItemRepository implements ItemRepository {
   }
 
   /**
-   * Get a list of {@link Dataset} with total count based on filter(s).
+   * Get a page of datasets in (modified, key) order, with total count based on filter(s). When
+   * there are more results, the position of the next page and the total count are left in {@link
+   * RecordCursor}.
    *
    * @param set set name in the form of set:subset {@see
    *     http://www.openarchives.org/OAI/openarchivesprotocol.html#Set} XOAI library validates the
    *     set before calling the ItemRepository so we do not validate it again here.
-   * @return list of matching {@link Dataset} with total count. Never null.
+   * @param withMetadata whether the stored records are read
+   * @return page of matching datasets with total count. Never null.
    */
-  private DatasetListWithTotalSize getDatasetListFromFilters(
-      int offset, int length, String set, Date from, Date until) {
+  private RecordPage listRecords(
+      int offset,
+      int length,
+      String set,
+      Date from,
+      Date until,
+      boolean withMetadata,
+      String metadataPrefix) {
+
+    Country country = null;
+    UUID installationKey = null;
+    DatasetType datasetType = null;
 
     Optional<SetIdentification> setIdentification = OaipmhSetRepository.parseSetName(set);
-
-    List<Dataset> datasetList;
-    long datasetCount;
     if (setIdentification.isPresent()) {
-      Country country = null;
-      UUID installationKey = null;
-      DatasetType datasetType = null;
-
       String subSet = setIdentification.get().getSubSet();
       switch (setIdentification.get().getSetType()) {
         case COUNTRY:
@@ -399,62 +602,68 @@ public class OaipmhItemRepository implements ItemRepository {
           datasetType = DatasetType.fromString(subSet);
           break;
       }
-
-      DatasetListParams listParams =
-          DatasetListParams.builder()
-              .country(country)
-              .type(datasetType)
-              .installationKey(installationKey)
-              .from(from)
-              .to(until)
-              .page(new PagingRequest(offset, length))
-              .build();
-
-      datasetList = datasetMapper.list(listParams);
-      datasetCount = datasetMapper.count(listParams);
-    } else {
-      DatasetListParams listParams =
-          DatasetListParams.builder()
-              .from(from)
-              .to(until)
-              .page(new PagingRequest(offset, length))
-              .build();
-
-      datasetList = datasetMapper.list(listParams);
-      datasetCount = datasetMapper.count(listParams);
     }
 
-    return new DatasetListWithTotalSize(datasetCount, datasetList);
-  }
-
-  private static class DatasetListWithTotalSize {
+    // a cursor makes the query independent of the position of the page
+    RecordCursor cursor = RecordCursor.requested(offset);
 
-    private long totalSize;
-    private List<Dataset> list;
-
-    public DatasetListWithTotalSize(long totalSize, List<Dataset> list) {
-      this.totalSize = totalSize;
-      this.list = list;
+    // ask for length+1 to determine if there are more results
+    List<OaipmhRecordDto> records =
+        new ArrayList<>(
+            oaipmhRecordMapper.list(
+                OaipmhRecordListParams.builder()
+                    .country(country)
+                    .type(datasetType)
+                    .installationKey(installationKey)
+                    .from(from)
+                    .until(until)
+                    .withMetadata(withMetadata)
+                    .metadataPrefix(metadataPrefix)
+                    .afterModified(cursor != null ? cursor.getModified() : null)
+                    .afterKey(cursor != null ? cursor.getKey() : null)
+                    .offset(offset)
+                    .limit(length + 1)
+                    .build()));
+
+    boolean hasMoreResults = records.size() == length + 1;
+    // remove last element, it was only retrieve to determine hasMoreResults
+    if (hasMoreResults) {
+      records.remove(records.size() - 1);
     }
 
-    public int size() {
-      return list.size();
-    }
+    // the total is counted for the first page only, the next pages take it from the token
+    long totalSize =
+        cursor != null && cursor.getTotalSize() != null
+            ? cursor.getTotalSize()
+            : datasetMapper.count(
+                DatasetListParams.builder()
+                    .country(country)
+                    .type(datasetType)
+                    .installationKey(installationKey)
+                    .from(from)
+                    .to(until)
+                    .build());
 
-    public long getTotalSize() {
-      return totalSize;
+    if (hasMoreResults) {
+      OaipmhRecordDto last = records.get(records.size() - 1);
+      RecordCursor.setNext(
+          new RecordCursor(
+              offset + length, last.getModifiedText(), last.getDatasetKey(), totalSize));
     }
 
-    public void setTotalSize(int totalSize) {
-      this.totalSize = totalSize;
-    }
+    return new RecordPage(records, hasMoreResults, totalSize);
+  }
 
-    public List<Dataset> getList() {
-      return list;
-    }
+  private static class RecordPage {
+
+    private final List<OaipmhRecordDto> records;
+    private final boolean hasMoreResults;
+    private final long totalSize;
 
-    public void setList(List<Dataset> list) {
-      this.list = list;
+    RecordPage(List<OaipmhRecordDto> records, boolean hasMoreResults, long totalSize) {
+      this.records = records;
+      this.hasMoreResults = hasMoreResults;
+      this.totalSize = totalSize;
     }
   }
 }
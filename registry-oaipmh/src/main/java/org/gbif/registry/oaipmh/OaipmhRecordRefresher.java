@@ -0,0 +1,52 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.oaipmh;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import com.google.common.base.Stopwatch;
+
+/**
+ * Keeps the OAI-PMH record store up to date, so harvesters rarely have to wait for records to be
+ * rendered. Records found outdated while harvesting are rendered on the spot anyway.
+ */
+public class OaipmhRecordRefresher {
+
+  private static final Logger LOG = LoggerFactory.getLogger(OaipmhRecordRefresher.class);
+
+  private final OaipmhItemRepository itemRepository;
+  private final int batchSize;
+
+  public OaipmhRecordRefresher(OaipmhItemRepository itemRepository, int batchSize) {
+    this.itemRepository = itemRepository;
+    this.batchSize = batchSize;
+  }
+
+  @Scheduled(
+      initialDelayString = "${oaipmh.recordStoreRefreshInitialDelayMillis:60000}",
+      fixedDelayString = "${oaipmh.recordStoreRefreshDelayMillis:300000}")
+  public void refresh() {
+    Stopwatch stopwatch = Stopwatch.createStarted();
+    try {
+      int stored = itemRepository.refreshStaleRecords(batchSize);
+      if (stored > 0) {
+        LOG.info("Rendered {} OAI-PMH records in {}", stored, stopwatch);
+      }
+    } catch (RuntimeException e) {
+      LOG.error("Failed to refresh the OAI-PMH records", e);
+    }
+  }
+}
@@ -0,0 +1,90 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.oaipmh;
+
+import java.util.UUID;
+
+import jakarta.annotation.Nullable;
+
+/**
+ * Position of an OAI-PMH list, i.e. the modification date and key of the last dataset of a page,
+ * and the size of the list counted for its first page.
+ *
+ * <p>XOAI only passes an offset to the {@link org.dspace.xoai.dataprovider.repository
+ * .ItemRepository}, so the cursor travels in the resumption token (see {@link
+ * KeysetResumptionTokenFormat}) and is handed to the repository through the thread handling the
+ * request. A cursor is only used for the offset it was created for.
+ */
+final class RecordCursor {
+
+  private static final ThreadLocal<RecordCursor> REQUESTED = new ThreadLocal<>();
+  private static final ThreadLocal<RecordCursor> NEXT = new ThreadLocal<>();
+
+  private final int offset;
+  private final String modified;
+  private final UUID key;
+  @Nullable private final Long totalSize;
+
+  RecordCursor(int offset, String modified, UUID key, @Nullable Long totalSize) {
+    this.offset = offset;
+    this.modified = modified;
+    this.key = key;
+    this.totalSize = totalSize;
+  }
+
+  int getOffset() {
+    return offset;
+  }
+
+  String getModified() {
+    return modified;
+  }
+
+  UUID getKey() {
+    return key;
+  }
+
+  /** The size of the list, null if the token doesn't have it and it has to be counted. */
+  @Nullable
+  Long getTotalSize() {
+    return totalSize;
+  }
+
+  /** The cursor of the resumption token of the current request. */
+  @Nullable
+  static RecordCursor requested(int offset) {
+    RecordCursor cursor = REQUESTED.get();
+    return cursor != null && cursor.offset == offset ? cursor : null;
+  }
+
+  static void setRequested(@Nullable RecordCursor cursor) {
+    REQUESTED.set(cursor);
+  }
+
+  /** The cursor of the next page, to be included in the resumption token of the response. */
+  @Nullable
+  static RecordCursor next(int offset) {
+    RecordCursor cursor = NEXT.get();
+    return cursor != null && cursor.offset == offset ? cursor : null;
+  }
+
+  static void setNext(@Nullable RecordCursor cursor) {
+    NEXT.set(cursor);
+  }
+
+  static void clear() {
+    REQUESTED.remove();
+    NEXT.remove();
+  }
+}
@@ -0,0 +1,61 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.oaipmh;
+
+import org.dspace.xoai.dataprovider.exceptions.BadResumptionToken;
+
+import jakarta.annotation.Nullable;
+
+/**
+ * Holds the metadata prefix of the OAI-PMH request being handled by the current thread.
+ *
+ * <p>XOAI doesn't pass the metadata format to the {@link org.dspace.xoai.dataprovider.repository
+ * .ItemRepository}, so without it items have to be rendered in all the formats. See
+ * https://github.com/DSpace/xoai/issues/31
+ */
+final class RequestedMetadataFormat {
+
+  private static final ThreadLocal<String> METADATA_PREFIX = new ThreadLocal<>();
+
+  private static final KeysetResumptionTokenFormat RESUMPTION_TOKEN_FORMAT =
+      new KeysetResumptionTokenFormat();
+
+  private RequestedMetadataFormat() {}
+
+  /**
+   * Sets the metadata prefix of the request, taken from the resumption token if the request
+   * doesn't have it.
+   */
+  static void set(@Nullable String metadataPrefix, @Nullable String resumptionToken) {
+    String prefix = metadataPrefix;
+    if (prefix == null && resumptionToken != null) {
+      try {
+        prefix = RESUMPTION_TOKEN_FORMAT.parse(resumptionToken).getMetadataPrefix();
+      } catch (BadResumptionToken e) {
+        // XOAI reports the bad token to the client
+      }
+    }
+    METADATA_PREFIX.set(prefix);
+  }
+
+  /** The metadata prefix of the current request, null if unknown. */
+  @Nullable
+  static String get() {
+    return METADATA_PREFIX.get();
+  }
+
+  static void clear() {
+    METADATA_PREFIX.remove();
+  }
+}
@@ -24,6 +24,15 @@ public class OaipmhConfigurationProperties {
 
   private String adminEmail;
 
+  /** Number of threads rendering the records of ListRecords responses. */
+  private int renderThreads = 4;
+
+  /** Minutes the occurrence counts of the datasets are cached. */
+  private long occurrenceCountExpiryMinutes = 60;
+
+  /** Number of datasets rendered at once when refreshing the OAI-PMH record store. */
+  private int recordStoreRefreshBatchSize = 200;
+
   public String getBaseUrl() {
     return baseUrl;
   }
@@ -39,4 +48,28 @@ public class OaipmhConfigurationProperties {
   public void setAdminEmail(String adminEmail) {
     this.adminEmail = adminEmail;
   }
+
+  public int getRenderThreads() {
+    return renderThreads;
+  }
+
+  public void setRenderThreads(int renderThreads) {
+    this.renderThreads = renderThreads;
+  }
+
+  public long getOccurrenceCountExpiryMinutes() {
+    return occurrenceCountExpiryMinutes;
+  }
+
+  public void setOccurrenceCountExpiryMinutes(long occurrenceCountExpiryMinutes) {
+    this.occurrenceCountExpiryMinutes = occurrenceCountExpiryMinutes;
+  }
+
+  public int getRecordStoreRefreshBatchSize() {
+    return recordStoreRefreshBatchSize;
+  }
+
+  public void setRecordStoreRefreshBatchSize(int recordStoreRefreshBatchSize) {
+    this.recordStoreRefreshBatchSize = recordStoreRefreshBatchSize;
+  }
 }
@@ -14,9 +14,12 @@
 package org.gbif.registry.oaipmh.config;
 
 import org.gbif.metrics.ws.client.CubeWsClient;
+import org.gbif.registry.oaipmh.KeysetResumptionTokenFormat;
 import org.gbif.registry.oaipmh.OaipmhItemRepository;
+import org.gbif.registry.oaipmh.OaipmhRecordRefresher;
 import org.gbif.registry.oaipmh.OaipmhSetRepository;
 import org.gbif.registry.persistence.mapper.DatasetMapper;
+import org.gbif.registry.persistence.mapper.OaipmhRecordMapper;
 import org.gbif.registry.persistence.mapper.OrganizationMapper;
 import org.gbif.registry.service.RegistryDatasetService;
 
@@ -41,7 +44,6 @@ import org.dspace.xoai.dataprovider.repository.SetRepository;
 import org.dspace.xoai.model.oaipmh.DeletedRecord;
 import org.dspace.xoai.model.oaipmh.Granularity;
 import org.dspace.xoai.services.api.DateProvider;
-import org.dspace.xoai.services.impl.SimpleResumptionTokenFormat;
 import org.dspace.xoai.services.impl.UTCDateProvider;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -69,7 +71,7 @@ public class RegistryOaipmhConfiguration {
     return new Repository()
         .withItemRepository(itemRepository)
         .withSetRepository(setRepository)
-        .withResumptionTokenFormatter(new SimpleResumptionTokenFormat())
+        .withResumptionTokenFormatter(new KeysetResumptionTokenFormat())
         .withConfiguration(repositoryConfiguration);
   }
 
@@ -148,13 +150,28 @@ public class RegistryOaipmhConfiguration {
   }
 
   @Bean
-  public ItemRepository itemRepository(
+  public OaipmhItemRepository itemRepository(
       RegistryDatasetService datasetService,
       DatasetMapper datasetMapper,
       OrganizationMapper organizationMapper,
-      CubeWsClient metricsClient) {
+      OaipmhRecordMapper oaipmhRecordMapper,
+      CubeWsClient metricsClient,
+      OaipmhConfigurationProperties oaipmhConfigProperties) {
     return new OaipmhItemRepository(
-        datasetService, datasetMapper, organizationMapper, metricsClient);
+        datasetService,
+        datasetMapper,
+        organizationMapper,
+        oaipmhRecordMapper,
+        metricsClient,
+        oaipmhConfigProperties.getRenderThreads(),
+        oaipmhConfigProperties.getOccurrenceCountExpiryMinutes());
+  }
+
+  @Bean
+  public OaipmhRecordRefresher oaipmhRecordRefresher(
+      OaipmhItemRepository itemRepository, OaipmhConfigurationProperties oaipmhConfigProperties) {
+    return new OaipmhRecordRefresher(
+        itemRepository, oaipmhConfigProperties.getRecordStoreRefreshBatchSize());
   }
 
   @Bean
@@ -0,0 +1,143 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.oaipmh;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Date;
+import java.util.UUID;
+
+import org.dspace.xoai.dataprovider.exceptions.BadResumptionToken;
+import org.dspace.xoai.model.oaipmh.ResumptionToken;
+import org.dspace.xoai.services.impl.SimpleResumptionTokenFormat;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class KeysetResumptionTokenFormatTest {
+
+  private static final String MODIFIED = "2024-05-01 10:00:00.123456+00";
+
+  private final KeysetResumptionTokenFormat format = new KeysetResumptionTokenFormat();
+
+  @AfterEach
+  public void tearDown() {
+    RecordCursor.clear();
+  }
+
+  @Test
+  public void testRoundTripWithCursor() throws BadResumptionToken {
+    UUID key = UUID.randomUUID();
+    RecordCursor.setNext(new RecordCursor(20, MODIFIED, key, 42L));
+
+    String token = format.format(value(20));
+    RecordCursor.clear();
+    ResumptionToken.Value parsed = format.parse(token);
+
+    assertValue(value(20), parsed);
+    RecordCursor cursor = RecordCursor.requested(20);
+    assertNotNull(cursor);
+    assertEquals(MODIFIED, cursor.getModified());
+    assertEquals(key, cursor.getKey());
+    assertEquals(Long.valueOf(42), cursor.getTotalSize());
+  }
+
+  @Test
+  public void testCursorOfAnotherOffsetIsNotWritten() throws BadResumptionToken {
+    RecordCursor.setNext(new RecordCursor(40, MODIFIED, UUID.randomUUID(), 42L));
+
+    String token = format.format(value(20));
+
+    assertEquals(new SimpleResumptionTokenFormat().format(value(20)), token);
+    format.parse(token);
+    assertNull(RecordCursor.requested(20));
+  }
+
+  @Test
+  public void testLegacyTokenIsPagedByOffset() throws BadResumptionToken {
+    // a cursor left by a previous request of the thread must not be used
+    RecordCursor.setRequested(new RecordCursor(20, MODIFIED, UUID.randomUUID(), 42L));
+    String legacyToken = new SimpleResumptionTokenFormat().format(value(20));
+
+    ResumptionToken.Value parsed = format.parse(legacyToken);
+
+    assertValue(value(20), parsed);
+    assertNull(RecordCursor.requested(20));
+  }
+
+  @Test
+  public void testCursorWithoutTotalSize() throws BadResumptionToken {
+    UUID key = UUID.randomUUID();
+    String token =
+        new SimpleResumptionTokenFormat().format(value(20))
+            + "."
+            + encode(MODIFIED + "|" + key);
+
+    ResumptionToken.Value parsed = format.parse(token);
+
+    assertValue(value(20), parsed);
+    RecordCursor cursor = RecordCursor.requested(20);
+    assertNotNull(cursor);
+    assertEquals(key, cursor.getKey());
+    assertNull(cursor.getTotalSize());
+  }
+
+  @Test
+  public void testBadCursor() {
+    String token = new SimpleResumptionTokenFormat().format(value(20));
+
+    assertThrows(BadResumptionToken.class, () -> format.parse(token + "." + encode("garbage")));
+    assertThrows(
+        BadResumptionToken.class,
+        () -> format.parse(token + "." + encode(MODIFIED + "|not-a-key|1")));
+    assertThrows(
+        BadResumptionToken.class,
+        () -> format.parse(token + "." + encode(MODIFIED + "|" + UUID.randomUUID() + "|many")));
+    assertThrows(BadResumptionToken.class, () -> format.parse(token + ".%%%"));
+  }
+
+  @Test
+  public void testTokenDoesNotChangeWithoutCursor() throws BadResumptionToken {
+    String token = format.format(value(20));
+
+    assertEquals(new SimpleResumptionTokenFormat().format(value(20)), token);
+    assertEquals(20L, format.parse(token).getOffset());
+  }
+
+  private static ResumptionToken.Value value(long offset) {
+    return new ResumptionToken.Value()
+        .withOffset(offset)
+        .withMetadataPrefix("eml")
+        .withSetSpec("country:IS")
+        .withFrom(new Date(1_430_000_000_000L));
+  }
+
+  private static void assertValue(ResumptionToken.Value expected, ResumptionToken.Value actual) {
+    assertEquals(expected.getOffset(), actual.getOffset());
+    assertEquals(expected.getMetadataPrefix(), actual.getMetadataPrefix());
+    assertEquals(expected.getSetSpec(), actual.getSetSpec());
+    assertEquals(expected.getFrom(), actual.getFrom());
+    assertNull(actual.getUntil());
+  }
+
+  private static String encode(String cursor) {
+    return Base64.getUrlEncoder()
+        .withoutPadding()
+        .encodeToString(cursor.getBytes(StandardCharsets.UTF_8));
+  }
+}
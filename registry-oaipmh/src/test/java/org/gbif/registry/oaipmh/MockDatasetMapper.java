@@ -28,6 +28,8 @@ import org.gbif.api.vocabulary.Country;
 import org.gbif.registry.persistence.mapper.DatasetMapper;
 import org.gbif.registry.persistence.mapper.params.DatasetListParams;
 
+import java.util.Collection;
+import java.util.Date;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -98,6 +100,21 @@ public class MockDatasetMapper implements DatasetMapper {
     return null;
   }
 
+  @Override
+  public List<Dataset> listAfterKey(@Nullable @Param("afterKey") UUID afterKey, int limit) {
+    return null;
+  }
+
+  @Override
+  public List<Dataset> listByKeys(Collection<UUID> keys) {
+    return null;
+  }
+
+  @Override
+  public List<Dataset> listChangedSince(Date since, @Nullable UUID afterKey, int limit) {
+    return null;
+  }
+
   @Override
   public long count(@Nullable @Param("params") DatasetListParams params) {
     if (params.getCountry() != null) {
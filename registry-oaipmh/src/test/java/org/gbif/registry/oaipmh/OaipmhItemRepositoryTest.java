@@ -0,0 +1,192 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.oaipmh;
+
+import org.gbif.metrics.ws.client.CubeWsClient;
+import org.gbif.registry.persistence.mapper.DatasetMapper;
+import org.gbif.registry.persistence.mapper.OaipmhRecordMapper;
+import org.gbif.registry.persistence.mapper.OrganizationMapper;
+import org.gbif.registry.persistence.mapper.dto.OaipmhRecordDto;
+import org.gbif.registry.persistence.mapper.params.OaipmhRecordListParams;
+import org.gbif.registry.service.RegistryDatasetService;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.dspace.xoai.dataprovider.handlers.results.ListItemIdentifiersResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.AdditionalAnswers.returnsFirstArg;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class OaipmhItemRepositoryTest {
+
+  private static final String MODIFIED = "2024-05-01 10:00:00+00";
+
+  @Mock private RegistryDatasetService datasetService;
+  @Mock private DatasetMapper datasetMapper;
+  @Mock private OrganizationMapper organizationMapper;
+  @Mock private OaipmhRecordMapper oaipmhRecordMapper;
+  @Mock private CubeWsClient metricsClient;
+
+  private OaipmhItemRepository repository;
+
+  @BeforeEach
+  public void setUp() {
+    repository =
+        new OaipmhItemRepository(
+            datasetService,
+            datasetMapper,
+            organizationMapper,
+            oaipmhRecordMapper,
+            metricsClient,
+            1,
+            1);
+  }
+
+  @AfterEach
+  public void tearDown() {
+    RecordCursor.clear();
+  }
+
+  @Test
+  public void testListIsCountedOnceAndPagedByKey() {
+    // records sharing the same modification date are told apart by their keys
+    OaipmhRecordDto first = record(UUID.fromString("00000000-0000-0000-0000-000000000001"));
+    OaipmhRecordDto second = record(UUID.fromString("00000000-0000-0000-0000-000000000002"));
+    OaipmhRecordDto third = record(UUID.fromString("00000000-0000-0000-0000-000000000003"));
+    when(oaipmhRecordMapper.list(any(OaipmhRecordListParams.class)))
+        .thenReturn(Arrays.asList(first, second, third), Collections.singletonList(third));
+    when(datasetMapper.count(any())).thenReturn(3L);
+
+    ListItemIdentifiersResult page =
+        repository.getItemIdentifiers(Collections.emptyList(), 0, 2);
+    assertTrue(page.hasMore());
+    assertEquals(2, page.getResults().size());
+    assertEquals(3, page.getTotal());
+
+    // the cursor of the next page goes through the resumption token
+    RecordCursor next = RecordCursor.next(2);
+    assertNotNull(next);
+    assertEquals(second.getDatasetKey(), next.getKey());
+    assertEquals(MODIFIED, next.getModified());
+    assertEquals(Long.valueOf(3), next.getTotalSize());
+    RecordCursor.clear();
+    RecordCursor.setRequested(next);
+
+    page = repository.getItemIdentifiers(Collections.emptyList(), 2, 2);
+    assertFalse(page.hasMore());
+    assertEquals(1, page.getResults().size());
+    assertEquals(3, page.getTotal());
+    assertNull(RecordCursor.next(4));
+
+    verify(datasetMapper, times(1)).count(any());
+    ArgumentCaptor<OaipmhRecordListParams> params =
+        ArgumentCaptor.forClass(OaipmhRecordListParams.class);
+    verify(oaipmhRecordMapper, times(2)).list(params.capture());
+    assertNull(params.getAllValues().get(0).getAfterKey());
+    assertEquals(MODIFIED, params.getAllValues().get(1).getAfterModified());
+    assertEquals(second.getDatasetKey(), params.getAllValues().get(1).getAfterKey());
+  }
+
+  @Test
+  public void testListWithoutCursorIsCounted() {
+    when(oaipmhRecordMapper.list(any(OaipmhRecordListParams.class)))
+        .thenReturn(Collections.singletonList(record(UUID.randomUUID())));
+    when(datasetMapper.count(any())).thenReturn(11L);
+
+    // a legacy resumption token has no cursor, the page is found by offset
+    ListItemIdentifiersResult page =
+        repository.getItemIdentifiers(Collections.emptyList(), 10, 2);
+
+    assertEquals(11, page.getTotal());
+    verify(datasetMapper).count(any());
+  }
+
+  @Test
+  public void testStaleRecordsAreLoadedInOneQuery() {
+    OaipmhRecordDto first = record(UUID.randomUUID());
+    OaipmhRecordDto second = record(UUID.randomUUID());
+    when(oaipmhRecordMapper.list(any(OaipmhRecordListParams.class)))
+        .thenReturn(Arrays.asList(first, second));
+    when(datasetMapper.listByKeys(any())).thenReturn(Collections.emptyList());
+    when(datasetService.augmentWithMetadata(any())).then(returnsFirstArg());
+    when(datasetMapper.count(any())).thenReturn(2L);
+
+    repository.getItems(Collections.emptyList(), 0, 10);
+
+    verify(datasetMapper)
+        .listByKeys(Arrays.asList(first.getDatasetKey(), second.getDatasetKey()));
+    verify(datasetMapper, never()).get(any());
+  }
+
+  @Test
+  public void testRefreshLoadsEachBatchInOneQuery() {
+    List<OaipmhRecordDto> stale =
+        Arrays.asList(record(UUID.randomUUID()), record(UUID.randomUUID()));
+    when(oaipmhRecordMapper.list(any(OaipmhRecordListParams.class))).thenReturn(stale);
+    when(datasetMapper.listByKeys(any())).thenReturn(Collections.emptyList());
+    when(datasetService.augmentWithMetadata(any())).then(returnsFirstArg());
+
+    repository.refreshStaleRecords(10);
+
+    verify(datasetMapper, times(1)).listByKeys(any());
+    verify(datasetMapper, never()).get(any());
+  }
+
+  @Test
+  public void testRefreshRendersRecordsOlderThanTheOccurrenceCounts() {
+    when(oaipmhRecordMapper.list(any(OaipmhRecordListParams.class)))
+        .thenReturn(Collections.emptyList());
+
+    long start = System.currentTimeMillis();
+    repository.refreshStaleRecords(10);
+
+    // the occurrence counts are cached for a minute in these tests
+    ArgumentCaptor<OaipmhRecordListParams> params =
+        ArgumentCaptor.forClass(OaipmhRecordListParams.class);
+    verify(oaipmhRecordMapper).list(params.capture());
+    assertTrue(params.getValue().isStaleOnly());
+    long renderedBefore = params.getValue().getRenderedBefore().getTime();
+    assertTrue(renderedBefore >= start - TimeUnit.MINUTES.toMillis(1));
+    assertTrue(renderedBefore <= System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(1));
+  }
+
+  private static OaipmhRecordDto record(UUID key) {
+    OaipmhRecordDto record = new OaipmhRecordDto();
+    record.setDatasetKey(key);
+    record.setModifiedText(MODIFIED);
+    record.setInstallationKey(UUID.randomUUID());
+    return record;
+  }
+}
@@ -41,11 +41,19 @@ import org.gbif.registry.domain.doi.DoiType;
 import org.gbif.registry.domain.ws.DerivedDataset;
 import org.gbif.registry.domain.ws.DerivedDatasetUsage;
 import org.gbif.registry.persistence.facet.LtreeTypeHandler;
+import org.gbif.registry.persistence.mapper.NetworkEntityHydrationInterceptor;
 import org.gbif.registry.persistence.mapper.auxhandler.AlternativeCodesTypeHandler;
+import org.gbif.registry.persistence.mapper.collections.CollectionEntityHydrationInterceptor;
 import org.gbif.registry.persistence.mapper.collections.dto.*;
 import org.gbif.registry.persistence.mapper.collections.external.IDigBioCollectionDto;
 import org.gbif.registry.persistence.mapper.collections.external.IdentifierDto;
 import org.gbif.registry.persistence.mapper.collections.external.MachineTagDto;
+import org.gbif.registry.persistence.mapper.dto.DatasetAttemptDto;
+import org.gbif.registry.persistence.mapper.dto.EntityKeyRelationDto;
+import org.gbif.registry.persistence.mapper.dto.EntityRelationDto;
+import org.gbif.registry.persistence.mapper.dto.MessageOutboxDto;
+import org.gbif.registry.persistence.mapper.dto.MetadataDatasetJsonDto;
+import org.gbif.registry.persistence.mapper.dto.OaipmhRecordDto;
 import org.gbif.registry.persistence.mapper.dto.OrganizationGeoJsonDto;
 import org.gbif.registry.persistence.mapper.handler.*;
 
@@ -145,6 +153,13 @@ public class MyBatisConfiguration {
       configuration
           .getTypeAliasRegistry()
           .registerAlias("CollectionMatchedDto", CollectionMatchedDto.class);
+      configuration.getTypeAliasRegistry().registerAlias("LookupEntityDto", LookupEntityDto.class);
+      configuration
+          .getTypeAliasRegistry()
+          .registerAlias("LookupIdentifierDto", LookupIdentifierDto.class);
+      configuration
+          .getTypeAliasRegistry()
+          .registerAlias("LookupOccurrenceMappingDto", LookupOccurrenceMappingDto.class);
       configuration
           .getTypeAliasRegistry()
           .registerAlias("ChangeSuggestionDto", ChangeSuggestionDto.class);
@@ -231,6 +246,24 @@ public class MyBatisConfiguration {
       configuration
           .getTypeAliasRegistry()
           .registerAlias("OrganizationGeoJsonDto", OrganizationGeoJsonDto.class);
+      configuration
+          .getTypeAliasRegistry()
+          .registerAlias("EntityKeyRelationDto", EntityKeyRelationDto.class);
+      configuration
+          .getTypeAliasRegistry()
+          .registerAlias("MessageOutboxDto", MessageOutboxDto.class);
+      configuration
+          .getTypeAliasRegistry()
+          .registerAlias("MetadataDatasetJsonDto", MetadataDatasetJsonDto.class);
+      configuration
+          .getTypeAliasRegistry()
+          .registerAlias("OaipmhRecordDto", OaipmhRecordDto.class);
+      configuration
+          .getTypeAliasRegistry()
+          .registerAlias("DatasetAttemptDto", DatasetAttemptDto.class);
+      configuration
+          .getTypeAliasRegistry()
+          .registerAlias("EntityRelationDto", EntityRelationDto.class);
       configuration
         .getTypeAliasRegistry()
         .registerAlias("MachineDescriptorTypeHandler", MachineDescriptorTypeHandler.class);
@@ -251,6 +284,9 @@ public class MyBatisConfiguration {
         .getTypeAliasRegistry()
         .registerAlias("DataPackage", Dataset.DataPackage.class);
 
+      // loads the children of listed network entities in batches instead of a query per entity
+      configuration.addInterceptor(new NetworkEntityHydrationInterceptor());
+      configuration.addInterceptor(new CollectionEntityHydrationInterceptor());
     };
   }
 }
@@ -29,6 +29,7 @@ import java.util.UUID;
 import javax.annotation.Nullable;
 
 import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.cursor.Cursor;
 
 /** Mapper that perform operations on dataset usages in occurrence downloads. */
 public interface DatasetDownloadMapper {
@@ -52,6 +53,14 @@ public interface DatasetDownloadMapper {
       @Param("sortOrder") SortOrder sortOrder,
       @Nullable @Param("page") Pageable page);
 
+  /**
+   * Streams all the dataset usages of a download through a server side cursor, in the default
+   * order of {@link #listByDownload}. Like {@link #listByDownload} the downloads are not retrieved.
+   * The cursor has to be consumed and closed within a transaction.
+   */
+  Cursor<DatasetOccurrenceDownloadUsage> streamByDownload(
+      @Param("downloadKey") String downloadKey);
+
   void createOrUpdateUsages(
       @Param("downloadKey") String downloadKey,
       @Param("citationMap") Map<UUID, Long> downloadDataset);
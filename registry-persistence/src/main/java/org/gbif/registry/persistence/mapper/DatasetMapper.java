@@ -20,6 +20,8 @@ import org.gbif.api.model.registry.Installation;
 import org.gbif.api.vocabulary.Country;
 import org.gbif.registry.persistence.mapper.params.DatasetListParams;
 
+import java.util.Collection;
+import java.util.Date;
 import java.util.List;
 import java.util.Set;
 import java.util.UUID;
@@ -36,6 +38,36 @@ public interface DatasetMapper extends BaseNetworkEntityMapper<Dataset> {
 
   long count(@Param("params") DatasetListParams params);
 
+  /**
+   * Keyset paging over all the non deleted datasets, ordered by key.
+   *
+   * @param afterKey key of the last dataset of the previous page, null to start from the beginning
+   * @param limit maximum number of datasets to return
+   * @return the datasets whose key is greater than afterKey
+   */
+  List<Dataset> listAfterKey(@Nullable @Param("afterKey") UUID afterKey, @Param("limit") int limit);
+
+  /**
+   * Keyset paging over the datasets, deleted ones included, that were modified or deleted since the
+   * given date, or whose publishing organization, installation, hosting organization or networks
+   * were.
+   *
+   * @param since lower bound, inclusive, of the modified and deleted dates
+   * @param afterKey key of the last dataset of the previous page, null to start from the beginning
+   * @param limit maximum number of datasets to return
+   * @return the changed datasets whose key is greater than afterKey
+   */
+  List<Dataset> listChangedSince(
+      @Param("since") Date since,
+      @Nullable @Param("afterKey") UUID afterKey,
+      @Param("limit") int limit);
+
+  /**
+   * The datasets with the given keys, deleted ones included, with their sub resources loaded for
+   * all of them at once.
+   */
+  List<Dataset> listByKeys(@Param("keys") Collection<UUID> keys);
+
   // TODO: merge the others wiht the list?
   /** Obtains a list of all the datasets hosted by, but not published by, the given organization. */
   List<Dataset> listDatasetsHostedBy(
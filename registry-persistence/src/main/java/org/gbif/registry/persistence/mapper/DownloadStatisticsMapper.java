@@ -20,6 +20,7 @@ import org.gbif.api.model.occurrence.DownloadType;
 
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import javax.annotation.Nullable;
@@ -90,4 +91,47 @@ public interface DownloadStatisticsMapper {
       @Param("fromDate") Date fromDate,
       @Param("toDate") Date toDate,
       @Param("downloadType") DownloadType downloadType);
+
+  /**
+   * Records that the download was added to the statistics.
+   *
+   * @return 1 if the download wasn't recorded before, 0 otherwise
+   */
+  int markDownloadStatisticsApplied(
+      @Param("downloadKey") String downloadKey,
+      @Param("downloadType") DownloadType downloadType);
+
+  boolean isDownloadStatisticsApplied(@Param("downloadKey") String downloadKey);
+
+  /**
+   * Removes the records of the downloads of the given type created before the given date, whose
+   * statistics have been rebuilt by the monthly aggregation.
+   */
+  int deleteDownloadStatisticsAppliedCreatedBefore(
+      @Param("date") Date date, @Param("downloadType") DownloadType downloadType);
+
+  /** Adds the dataset usages of a successful download to the dataset statistics of its month. */
+  void addDownloadStats(
+      @Param("downloadKey") String downloadKey,
+      @Param("downloadType") DownloadType downloadType);
+
+  /**
+   * Adds the difference between the given usages and the ones stored for the download to the
+   * dataset statistics of its month. Datasets without a stored usage count as a new download.
+   * Must be called before the usages are stored, so sending the same usages twice adds nothing.
+   */
+  void addDownloadUsagesStats(
+      @Param("downloadKey") String downloadKey,
+      @Param("usages") Map<UUID, Long> usages,
+      @Param("downloadType") DownloadType downloadType);
+
+  /** Adds a successful download to the user country statistics of its month. */
+  void addDownloadUserStats(
+      @Param("downloadKey") String downloadKey,
+      @Param("downloadType") DownloadType downloadType);
+
+  /** Adds a successful download to the source statistics of its month. */
+  void addDownloadSourceStats(
+      @Param("downloadKey") String downloadKey,
+      @Param("downloadType") DownloadType downloadType);
 }
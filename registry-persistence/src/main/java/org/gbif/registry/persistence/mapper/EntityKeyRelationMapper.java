@@ -0,0 +1,51 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.persistence.mapper;
+
+import org.gbif.registry.persistence.mapper.dto.EntityKeyRelationDto;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+import org.apache.ibatis.annotations.Param;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Lightweight projections of the keys relating datasets, installations, organizations and nodes,
+ * for callers that only need to navigate the hierarchy and not the full entities. Deleted entities
+ * are included.
+ */
+@Repository
+public interface EntityKeyRelationMapper {
+
+  /**
+   * Datasets with their parent dataset, installation, publishing organization and the endorsing
+   * node of the publishing organization.
+   */
+  List<EntityKeyRelationDto> listDatasetRelations(@Param("keys") Collection<UUID> keys);
+
+  /** Installations with their hosting organization and its endorsing node. */
+  List<EntityKeyRelationDto> listInstallationRelations(@Param("keys") Collection<UUID> keys);
+
+  /** Organizations with their endorsing node. */
+  List<EntityKeyRelationDto> listOrganizationRelations(@Param("keys") Collection<UUID> keys);
+
+  /**
+   * The given key together with the keys of all the entities above it: the installation and
+   * publishing organization of a dataset, the hosting organization of an installation and the
+   * endorsing node of an organization.
+   */
+  List<UUID> listAncestorKeys(@Param("key") UUID key);
+}
@@ -0,0 +1,72 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.persistence.mapper;
+
+import org.gbif.registry.persistence.mapper.dto.MessageOutboxDto;
+
+import java.util.List;
+
+import org.apache.ibatis.annotations.Param;
+import org.springframework.stereotype.Repository;
+
+import jakarta.annotation.Nullable;
+
+/**
+ * Outbox of the messages to send to the message broker. Messages are written in the transaction of
+ * the change they notify and deleted once they have been sent.
+ */
+@Repository
+public interface MessageOutboxMapper {
+
+  /**
+   * Adds a message that can be sent once the given number of seconds have passed. The messages of
+   * the same entity key are sent in the order they were added.
+   */
+  void create(
+      @Param("messageClass") String messageClass,
+      @Param("payload") String payload,
+      @Nullable @Param("entityKey") String entityKey,
+      @Param("embargoSeconds") int embargoSeconds);
+
+  /**
+   * Takes the transaction-scoped lock that serializes the claims of all the relays, false if another
+   * relay holds it.
+   */
+  boolean tryLockClaims();
+
+  /**
+   * Claims the oldest messages that can be sent by making them unavailable for the given number of
+   * seconds, and returns them. A message isn't claimed while an older message of the same entity is
+   * unavailable, i.e. claimed by a relay or waiting for a retry.
+   */
+  List<MessageOutboxDto> claimAvailable(
+      @Param("limit") int limit, @Param("claimSeconds") long claimSeconds);
+
+  /** Makes claimed messages available again. */
+  void release(@Param("keys") List<Long> keys);
+
+  void delete(@Param("keys") List<Long> keys);
+
+  /** Records a failed attempt and postpones the message by the given number of seconds. */
+  void retryLater(
+      @Param("key") long key,
+      @Param("error") String error,
+      @Param("delaySeconds") long delaySeconds);
+
+  long count();
+
+  /** Seconds since the oldest message that can be sent became available, null if there's none. */
+  @Nullable
+  Long lagSeconds();
+}
@@ -15,8 +15,10 @@ package org.gbif.registry.persistence.mapper;
 
 import org.gbif.api.model.registry.Metadata;
 import org.gbif.api.vocabulary.MetadataType;
+import org.gbif.registry.persistence.mapper.dto.MetadataDatasetJsonDto;
 import org.gbif.registry.persistence.mapper.handler.ByteArrayWrapper;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
@@ -51,6 +53,36 @@ public interface MetadataMapper {
    */
   String getContentJson(@Param("key") int key);
 
+  /**
+   * Return the dataset parsed from a metadata entry, serialized as JSON.
+   *
+   * @param key of the metadata record
+   * @return the dataset JSON, or {@code null} if the metadata record doesn't exist or its dataset
+   *     JSON hasn't been generated yet
+   */
+  String getDatasetJson(@Param("key") int key);
+
+  /**
+   * Returns the stored dataset JSON of several metadata entries. Entries whose dataset JSON hasn't
+   * been generated yet are not returned.
+   */
+  List<MetadataDatasetJsonDto> listDatasetJson(@Param("keys") Collection<Integer> keys);
+
+  /** Stores the dataset parsed from a metadata entry, serialized as JSON. */
+  void updateDatasetJson(@Param("key") int key, @Param("datasetJson") String datasetJson);
+
+  /**
+   * Lists metadata keys in ascending order, for batch processing.
+   *
+   * @param afterKey only keys greater than this one are returned
+   * @param missingDatasetJson if true only the entries without dataset JSON are returned
+   * @param limit maximum number of keys to return
+   */
+  List<Integer> listKeys(
+      @Param("afterKey") int afterKey,
+      @Param("missingDatasetJson") boolean missingDatasetJson,
+      @Param("limit") int limit);
+
   /** Stores a new metadata document with its source document as a byte array exactly as it was. */
   int create(
       @Param("meta") Metadata metadata,
@@ -67,4 +99,10 @@ public interface MetadataMapper {
    * @param type optional metadata type to filter
    */
   List<Metadata> list(@Param("key") UUID datasetKey, @Param("type") @Nullable MetadataType type);
+
+  /**
+   * Returns the preferred metadata entry of each of the given datasets, i.e. the first one in the
+   * order of {@link #list(UUID, MetadataType)}. Datasets without metadata are left out.
+   */
+  List<Metadata> listPreferred(@Param("datasetKeys") Collection<UUID> datasetKeys);
 }
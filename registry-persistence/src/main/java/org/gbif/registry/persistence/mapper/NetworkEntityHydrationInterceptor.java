@@ -0,0 +1,287 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.persistence.mapper;
+
+import org.gbif.api.model.registry.Comment;
+import org.gbif.api.model.registry.Commentable;
+import org.gbif.api.model.registry.Contact;
+import org.gbif.api.model.registry.Contactable;
+import org.gbif.api.model.registry.Dataset;
+import org.gbif.api.model.registry.Endpoint;
+import org.gbif.api.model.registry.Endpointable;
+import org.gbif.api.model.registry.Identifiable;
+import org.gbif.api.model.registry.Identifier;
+import org.gbif.api.model.registry.MachineTag;
+import org.gbif.api.model.registry.MachineTaggable;
+import org.gbif.api.model.registry.Network;
+import org.gbif.api.model.registry.NetworkEntity;
+import org.gbif.api.model.registry.Organization;
+import org.gbif.api.model.registry.Tag;
+import org.gbif.api.model.registry.Taggable;
+import org.gbif.registry.persistence.mapper.dto.EntityRelationDto;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+import java.util.function.ObjIntConsumer;
+
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ListMultimap;
+
+/**
+ * Loads the children of the network entities returned by list statements in batches.
+ *
+ * <p>The list statements of datasets, organizations, installations, nodes and networks use result
+ * maps without nested selects (e.g. {@code DATASET_LIST_MAP}). Once the page is read, this
+ * interceptor loads each kind of child (contacts, endpoints, tags, counts...) for all the entities
+ * of the page with one {@link NetworkEntityRelationMapper} query and sets them on the entities, so
+ * the number of queries doesn't depend on the page size. Single entity statements keep using the
+ * nested selects of the full result maps.
+ *
+ * <p>Children are not loaded for statements executed with a {@link ResultHandler}.
+ */
+@Intercepts(
+    @Signature(
+        type = Executor.class,
+        method = "query",
+        args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class}))
+public class NetworkEntityHydrationInterceptor implements Interceptor {
+
+  private static final String RELATIONS = NetworkEntityRelationMapper.class.getName() + ".";
+
+  private enum Relation {
+    CONTACTS,
+    ENDPOINTS,
+    MACHINE_TAGS,
+    TAGS,
+    IDENTIFIERS,
+    COMMENTS
+  }
+
+  private static final String DATASET = "dataset";
+  private static final String ORGANIZATION = "organization";
+  private static final String INSTALLATION = "installation";
+  private static final String NODE = "node";
+  private static final String NETWORK = "network";
+
+  /** Table name of the entities by the id of the result map returning them. */
+  private static final Map<String, String> ENTITIES =
+      ImmutableMap.<String, String>builder()
+          .put(DatasetMapper.class.getName() + ".DATASET_LIST_MAP", DATASET)
+          .put(OrganizationMapper.class.getName() + ".ORGANIZATION_LIST_MAP", ORGANIZATION)
+          .put(InstallationMapper.class.getName() + ".INSTALLATION_LIST_MAP", INSTALLATION)
+          .put(NodeMapper.class.getName() + ".NODE_LIST_MAP", NODE)
+          .put(NetworkMapper.class.getName() + ".NETWORK_LIST_MAP", NETWORK)
+          .build();
+
+  /** The same children as the nested selects of the full result maps of each entity. */
+  private static final Map<String, Set<Relation>> RELATIONS_BY_ENTITY =
+      ImmutableMap.<String, Set<Relation>>builder()
+          .put(DATASET, EnumSet.allOf(Relation.class))
+          .put(ORGANIZATION, EnumSet.allOf(Relation.class))
+          .put(
+              INSTALLATION,
+              EnumSet.of(
+                  Relation.CONTACTS,
+                  Relation.ENDPOINTS,
+                  Relation.MACHINE_TAGS,
+                  Relation.TAGS,
+                  Relation.COMMENTS))
+          .put(NODE, EnumSet.complementOf(EnumSet.of(Relation.CONTACTS)))
+          .put(
+              NETWORK,
+              EnumSet.of(
+                  Relation.CONTACTS,
+                  Relation.ENDPOINTS,
+                  Relation.MACHINE_TAGS,
+                  Relation.TAGS,
+                  Relation.COMMENTS))
+          .build();
+
+  @Override
+  public Object intercept(Invocation invocation) throws Throwable {
+    Object result = invocation.proceed();
+
+    MappedStatement statement = (MappedStatement) invocation.getArgs()[0];
+    if (!(result instanceof List)
+        || ((List<?>) result).isEmpty()
+        || statement.getResultMaps().size() != 1) {
+      return result;
+    }
+
+    String entity = ENTITIES.get(statement.getResultMaps().get(0).getId());
+    if (entity != null) {
+      List<NetworkEntity> entities = new ArrayList<>();
+      for (Object o : (List<?>) result) {
+        entities.add((NetworkEntity) o);
+      }
+      new Loader((Executor) invocation.getTarget(), statement).hydrate(entity, entities);
+    }
+    return result;
+  }
+
+  /** Runs the relation statements through the executor of the intercepted query. */
+  private static class Loader {
+
+    private final Executor executor;
+    private final MappedStatement statement;
+
+    Loader(Executor executor, MappedStatement statement) {
+      this.executor = executor;
+      this.statement = statement;
+    }
+
+    void hydrate(String entity, List<NetworkEntity> entities) throws SQLException {
+      Set<UUID> keys = new LinkedHashSet<>();
+      entities.forEach(e -> keys.add(e.getKey()));
+      Set<Relation> relations = RELATIONS_BY_ENTITY.get(entity);
+
+      if (relations.contains(Relation.CONTACTS)) {
+        this.<Contact>set(
+            entities,
+            load("listContacts", entity, keys),
+            (e, l) -> ((Contactable) e).setContacts(l));
+      }
+      if (relations.contains(Relation.ENDPOINTS)) {
+        ListMultimap<Object, Object> endpoints = load("listEndpoints", entity, keys);
+        loadEndpointMachineTags(endpoints.values());
+        this.<Endpoint>set(entities, endpoints, (e, l) -> ((Endpointable) e).setEndpoints(l));
+      }
+      if (relations.contains(Relation.MACHINE_TAGS)) {
+        this.<MachineTag>set(
+            entities,
+            load("listMachineTags", entity, keys),
+            (e, l) -> ((MachineTaggable) e).setMachineTags(l));
+      }
+      if (relations.contains(Relation.TAGS)) {
+        this.<Tag>set(
+            entities, load("listTags", entity, keys), (e, l) -> ((Taggable) e).setTags(l));
+      }
+      if (relations.contains(Relation.IDENTIFIERS)) {
+        this.<Identifier>set(
+            entities,
+            load("listIdentifiers", entity, keys),
+            (e, l) -> ((Identifiable) e).setIdentifiers(l));
+      }
+      if (relations.contains(Relation.COMMENTS)) {
+        this.<Comment>set(
+            entities,
+            load("listComments", entity, keys),
+            (e, l) -> ((Commentable) e).setComments(l));
+      }
+
+      if (DATASET.equals(entity)) {
+        this.<UUID>set(
+            entities,
+            load("listDatasetNetworks", entity, keys),
+            (e, l) -> ((Dataset) e).setNetworkKeys(l));
+        setCount(
+            entities,
+            load("countDatasetConstituents", entity, keys),
+            (e, c) -> ((Dataset) e).setNumConstituents(c));
+        ListMultimap<Object, Object> dwca = load("listDatasetDwca", entity, keys);
+        for (NetworkEntity e : entities) {
+          List<Object> values = dwca.get(e.getKey());
+          ((Dataset) e).setDwca(values.isEmpty() ? null : (Dataset.DwcA) values.get(0));
+        }
+      } else if (ORGANIZATION.equals(entity)) {
+        setCount(
+            entities,
+            load("countPublishedDatasets", entity, keys),
+            (e, c) -> ((Organization) e).setNumPublishedDatasets(c));
+      } else if (NETWORK.equals(entity)) {
+        setCount(
+            entities,
+            load("countNetworkConstituents", entity, keys),
+            (e, c) -> ((Network) e).setNumConstituents(c));
+      }
+    }
+
+    private void loadEndpointMachineTags(Collection<Object> endpoints) throws SQLException {
+      if (endpoints.isEmpty()) {
+        return;
+      }
+      Set<Integer> endpointKeys = new LinkedHashSet<>();
+      endpoints.forEach(e -> endpointKeys.add(((Endpoint) e).getKey()));
+      ListMultimap<Object, Object> machineTags =
+          load("listEndpointMachineTags", null, endpointKeys);
+      for (Object o : endpoints) {
+        Endpoint endpoint = (Endpoint) o;
+        List<MachineTag> endpointMachineTags = new ArrayList<>();
+        machineTags.get(endpoint.getKey()).forEach(mt -> endpointMachineTags.add((MachineTag) mt));
+        endpoint.setMachineTags(endpointMachineTags);
+      }
+    }
+
+    /** Children of each owner, in the order returned by the query. */
+    private ListMultimap<Object, Object> load(String relation, String entity, Collection<?> keys)
+        throws SQLException {
+      Map<String, Object> params = new HashMap<>();
+      params.put("entity", entity);
+      params.put("keys", keys);
+      List<EntityRelationDto> rows =
+          executor.query(
+              statement.getConfiguration().getMappedStatement(RELATIONS + relation),
+              params,
+              RowBounds.DEFAULT,
+              Executor.NO_RESULT_HANDLER);
+
+      ListMultimap<Object, Object> children = ArrayListMultimap.create();
+      for (EntityRelationDto row : rows) {
+        children.put(row.getOwnerKey(), row.getValue());
+      }
+      return children;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> void set(
+        List<NetworkEntity> entities,
+        ListMultimap<Object, Object> children,
+        BiConsumer<NetworkEntity, List<T>> setter) {
+      for (NetworkEntity e : entities) {
+        List<T> values = new ArrayList<>();
+        children.get(e.getKey()).forEach(v -> values.add((T) v));
+        setter.accept(e, values);
+      }
+    }
+
+    private void setCount(
+        List<NetworkEntity> entities,
+        ListMultimap<Object, Object> counts,
+        ObjIntConsumer<NetworkEntity> setter) {
+      for (NetworkEntity e : entities) {
+        List<Object> values = counts.get(e.getKey());
+        setter.accept(e, values.isEmpty() ? 0 : (Integer) values.get(0));
+      }
+    }
+  }
+}
@@ -0,0 +1,72 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.persistence.mapper;
+
+import org.gbif.registry.persistence.mapper.dto.EntityRelationDto;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+import org.apache.ibatis.annotations.Param;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Loads the children of many network entities at once, one query per kind of child. The {@code
+ * entity} parameter is the table name of the owning entity (dataset, installation, organization,
+ * node or network) and is used as a prefix of the join tables, so it must never come from user
+ * input.
+ *
+ * <p>Each row carries the key of its owner, and rows keep the order of the equivalent queries of the
+ * entity mappers.
+ */
+@Repository
+public interface NetworkEntityRelationMapper {
+
+  List<EntityRelationDto> listContacts(
+      @Param("entity") String entity, @Param("keys") Collection<UUID> keys);
+
+  /** Endpoints without their machine tags, see {@link #listEndpointMachineTags(Collection)}. */
+  List<EntityRelationDto> listEndpoints(
+      @Param("entity") String entity, @Param("keys") Collection<UUID> keys);
+
+  List<EntityRelationDto> listEndpointMachineTags(@Param("keys") Collection<Integer> keys);
+
+  List<EntityRelationDto> listMachineTags(
+      @Param("entity") String entity, @Param("keys") Collection<UUID> keys);
+
+  List<EntityRelationDto> listTags(
+      @Param("entity") String entity, @Param("keys") Collection<UUID> keys);
+
+  List<EntityRelationDto> listIdentifiers(
+      @Param("entity") String entity, @Param("keys") Collection<UUID> keys);
+
+  List<EntityRelationDto> listComments(
+      @Param("entity") String entity, @Param("keys") Collection<UUID> keys);
+
+  /** Non-deleted networks of the datasets. */
+  List<EntityRelationDto> listDatasetNetworks(@Param("keys") Collection<UUID> keys);
+
+  /** DwC-A metadata of the datasets. */
+  List<EntityRelationDto> listDatasetDwca(@Param("keys") Collection<UUID> keys);
+
+  /** Number of non-deleted constituents of the datasets, zero counts are omitted. */
+  List<EntityRelationDto> countDatasetConstituents(@Param("keys") Collection<UUID> keys);
+
+  /** Number of non-deleted datasets published by the organizations, zero counts are omitted. */
+  List<EntityRelationDto> countPublishedDatasets(@Param("keys") Collection<UUID> keys);
+
+  /** Number of non-deleted datasets of the networks, zero counts are omitted. */
+  List<EntityRelationDto> countNetworkConstituents(@Param("keys") Collection<UUID> keys);
+}
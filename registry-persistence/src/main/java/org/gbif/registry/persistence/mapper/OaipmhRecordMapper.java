@@ -0,0 +1,36 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.persistence.mapper;
+
+import org.gbif.registry.persistence.mapper.dto.OaipmhRecordDto;
+import org.gbif.registry.persistence.mapper.params.OaipmhRecordListParams;
+
+import java.util.List;
+
+import org.apache.ibatis.annotations.Param;
+import org.springframework.stereotype.Repository;
+
+/** Store of the rendered OAI-PMH records of the datasets. */
+@Repository
+public interface OaipmhRecordMapper {
+
+  /**
+   * Lists the non deleted datasets ordered by modification date and key, with their stored records
+   * when requested.
+   */
+  List<OaipmhRecordDto> list(@Param("params") OaipmhRecordListParams params);
+
+  /** Stores the records of a dataset, replacing the existing ones. */
+  void upsert(OaipmhRecordDto record);
+}
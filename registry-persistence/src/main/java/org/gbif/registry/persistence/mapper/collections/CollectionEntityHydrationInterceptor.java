@@ -0,0 +1,211 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.persistence.mapper.collections;
+
+import org.gbif.api.model.collections.Address;
+import org.gbif.api.model.collections.CollectionEntity;
+import org.gbif.api.model.collections.Contact;
+import org.gbif.api.model.collections.Contactable;
+import org.gbif.api.model.collections.MasterSourceMetadata;
+import org.gbif.api.model.collections.OccurrenceMappeable;
+import org.gbif.api.model.collections.OccurrenceMapping;
+import org.gbif.api.model.registry.Comment;
+import org.gbif.api.model.registry.Commentable;
+import org.gbif.api.model.registry.Identifiable;
+import org.gbif.api.model.registry.Identifier;
+import org.gbif.api.model.registry.MachineTag;
+import org.gbif.api.model.registry.MachineTaggable;
+import org.gbif.api.model.registry.Tag;
+import org.gbif.api.model.registry.Taggable;
+import org.gbif.registry.persistence.mapper.collections.dto.CollectionDto;
+import org.gbif.registry.persistence.mapper.dto.EntityRelationDto;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ListMultimap;
+
+/**
+ * Loads the children of the collections and institutions returned by list statements in batches.
+ *
+ * <p>The GRSciColl counterpart of the {@link
+ * org.gbif.registry.persistence.mapper.NetworkEntityHydrationInterceptor}: the list statements use
+ * result maps without nested selects (e.g. {@code COLLECTION_LIST_MAP}) and, once the page is read,
+ * each kind of child (contacts, addresses, tags, occurrence mappings...) is loaded for all the
+ * entities of the page with one {@link CollectionEntityRelationMapper} query. Collections listed as
+ * {@link CollectionDto} are unwrapped first.
+ *
+ * <p>Children are not loaded for statements executed with a {@link ResultHandler}.
+ */
+@Intercepts(
+    @Signature(
+        type = Executor.class,
+        method = "query",
+        args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class}))
+public class CollectionEntityHydrationInterceptor implements Interceptor {
+
+  private static final String RELATIONS = CollectionEntityRelationMapper.class.getName() + ".";
+
+  private static final String COLLECTION = "collection";
+  private static final String INSTITUTION = "institution";
+
+  /** Table name of the entities by the id of the result map returning them. */
+  private static final Map<String, String> ENTITIES =
+      ImmutableMap.<String, String>builder()
+          .put(CollectionMapper.class.getName() + ".COLLECTION_LIST_MAP", COLLECTION)
+          .put(CollectionMapper.class.getName() + ".COLLECTION_DTO_LIST_MAP", COLLECTION)
+          .put(InstitutionMapper.class.getName() + ".INSTITUTION_LIST_MAP", INSTITUTION)
+          .build();
+
+  @Override
+  public Object intercept(Invocation invocation) throws Throwable {
+    Object result = invocation.proceed();
+
+    MappedStatement statement = (MappedStatement) invocation.getArgs()[0];
+    if (!(result instanceof List)
+        || ((List<?>) result).isEmpty()
+        || statement.getResultMaps().size() != 1) {
+      return result;
+    }
+
+    String entity = ENTITIES.get(statement.getResultMaps().get(0).getId());
+    if (entity != null) {
+      List<CollectionEntity> entities = new ArrayList<>();
+      for (Object o : (List<?>) result) {
+        entities.add(
+            o instanceof CollectionDto
+                ? ((CollectionDto) o).getCollection()
+                : (CollectionEntity) o);
+      }
+      new Loader((Executor) invocation.getTarget(), statement).hydrate(entity, entities);
+    }
+    return result;
+  }
+
+  /** Runs the relation statements through the executor of the intercepted query. */
+  private static class Loader {
+
+    private final Executor executor;
+    private final MappedStatement statement;
+
+    Loader(Executor executor, MappedStatement statement) {
+      this.executor = executor;
+      this.statement = statement;
+    }
+
+    void hydrate(String entity, List<CollectionEntity> entities) throws SQLException {
+      Set<UUID> keys = new LinkedHashSet<>();
+      entities.forEach(e -> keys.add(e.getKey()));
+
+      this.<Contact>set(
+          entities,
+          load("listContactPersons", entity, keys),
+          (e, l) -> ((Contactable) e).setContactPersons(l));
+      this.<MachineTag>set(
+          entities,
+          load("listMachineTags", entity, keys),
+          (e, l) -> ((MachineTaggable) e).setMachineTags(l));
+      this.<Tag>set(
+          entities, load("listTags", entity, keys), (e, l) -> ((Taggable) e).setTags(l));
+      this.<Identifier>set(
+          entities,
+          load("listIdentifiers", entity, keys),
+          (e, l) -> ((Identifiable) e).setIdentifiers(l));
+      this.<Comment>set(
+          entities,
+          load("listComments", entity, keys),
+          (e, l) -> ((Commentable) e).setComments(l));
+      this.<OccurrenceMapping>set(
+          entities,
+          load("listOccurrenceMappings", entity, keys),
+          (e, l) -> ((OccurrenceMappeable) e).setOccurrenceMappings(l));
+
+      this.<Address>setSingle(
+          entities, load("listAddresses", entity, keys), CollectionEntity::setAddress);
+      this.<Address>setSingle(
+          entities,
+          load("listMailingAddresses", entity, keys),
+          CollectionEntity::setMailingAddress);
+      this.<MasterSourceMetadata>setSingle(
+          entities,
+          load("listMasterSourceMetadata", entity, keys),
+          CollectionEntity::setMasterSourceMetadata);
+    }
+
+    /** Children of each owner, in the order returned by the query. */
+    private ListMultimap<Object, Object> load(String relation, String entity, Collection<?> keys)
+        throws SQLException {
+      Map<String, Object> params = new HashMap<>();
+      params.put("entity", entity);
+      params.put("keys", keys);
+      List<EntityRelationDto> rows =
+          executor.query(
+              statement.getConfiguration().getMappedStatement(RELATIONS + relation),
+              params,
+              RowBounds.DEFAULT,
+              Executor.NO_RESULT_HANDLER);
+
+      ListMultimap<Object, Object> children = ArrayListMultimap.create();
+      for (EntityRelationDto row : rows) {
+        children.put(row.getOwnerKey(), row.getValue());
+      }
+      return children;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> void set(
+        List<CollectionEntity> entities,
+        ListMultimap<Object, Object> children,
+        BiConsumer<CollectionEntity, List<T>> setter) {
+      for (CollectionEntity e : entities) {
+        List<T> values = new ArrayList<>();
+        children.get(e.getKey()).forEach(v -> values.add((T) v));
+        setter.accept(e, values);
+      }
+    }
+
+    /** Sets the child of each owner having one, like the nested selects of single children. */
+    @SuppressWarnings("unchecked")
+    private <T> void setSingle(
+        List<CollectionEntity> entities,
+        ListMultimap<Object, Object> children,
+        BiConsumer<CollectionEntity, T> setter) {
+      for (CollectionEntity e : entities) {
+        List<Object> values = children.get(e.getKey());
+        if (!values.isEmpty()) {
+          setter.accept(e, (T) values.get(0));
+        }
+      }
+    }
+  }
+}
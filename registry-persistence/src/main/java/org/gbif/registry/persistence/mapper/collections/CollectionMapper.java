@@ -19,6 +19,7 @@ import org.gbif.registry.persistence.mapper.collections.dto.CollectionDto;
 import org.gbif.registry.persistence.mapper.collections.dto.CollectionMatchedDto;
 import org.gbif.registry.persistence.mapper.collections.dto.MasterSourceOrganizationDto;
 import org.gbif.registry.persistence.mapper.collections.params.CollectionListParams;
+import org.gbif.registry.persistence.mapper.params.Count;
 
 import java.util.List;
 import java.util.UUID;
@@ -70,4 +71,7 @@ public interface CollectionMapper
       @Param("organizationKey") UUID organizationKey);
 
   List<UUID> getAllKeys();
+
+  /** Current occurrence and type specimen counts of all the non-deleted entities. */
+  List<Count> getAllCounts();
 }
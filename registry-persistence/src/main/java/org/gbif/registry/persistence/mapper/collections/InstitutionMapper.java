@@ -18,6 +18,7 @@ import org.gbif.api.model.registry.search.collections.KeyCodeNameResult;
 import org.gbif.registry.persistence.mapper.collections.dto.InstitutionGeoJsonDto;
 import org.gbif.registry.persistence.mapper.collections.dto.InstitutionMatchedDto;
 import org.gbif.registry.persistence.mapper.collections.params.InstitutionListParams;
+import org.gbif.registry.persistence.mapper.params.Count;
 
 import java.util.List;
 import java.util.UUID;
@@ -52,4 +53,7 @@ public interface InstitutionMapper
   List<InstitutionGeoJsonDto> listGeoJson(@Param("params") InstitutionListParams searchParams);
 
   List<UUID> getAllKeys();
+
+  /** Current occurrence and type specimen counts of all the non-deleted entities. */
+  List<Count> getAllCounts();
 }
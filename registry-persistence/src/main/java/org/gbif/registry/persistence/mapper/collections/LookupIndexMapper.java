@@ -0,0 +1,48 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.persistence.mapper.collections;
+
+import org.gbif.registry.persistence.mapper.collections.dto.LookupEntityDto;
+import org.gbif.registry.persistence.mapper.collections.dto.LookupIdentifierDto;
+import org.gbif.registry.persistence.mapper.collections.dto.LookupOccurrenceMappingDto;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+import org.apache.ibatis.annotations.Param;
+import org.springframework.stereotype.Repository;
+
+import jakarta.annotation.Nullable;
+
+/**
+ * Loads the fields used by the lookup of non-deleted institutions and collections, so they can be
+ * indexed in memory. When the keys are null all the entities are loaded.
+ *
+ * <p>The {@code entity} parameter is the table name of the entity (institution or collection) and
+ * is used as a prefix of the join tables, so it must never come from user input.
+ */
+@Repository
+public interface LookupIndexMapper {
+
+  List<LookupEntityDto> listInstitutions(@Nullable @Param("keys") Collection<UUID> keys);
+
+  List<LookupEntityDto> listCollections(@Nullable @Param("keys") Collection<UUID> keys);
+
+  List<LookupIdentifierDto> listIdentifiers(
+      @Param("entity") String entity, @Nullable @Param("keys") Collection<UUID> keys);
+
+  List<LookupOccurrenceMappingDto> listOccurrenceMappings(
+      @Param("entity") String entity, @Nullable @Param("keys") Collection<UUID> keys);
+}
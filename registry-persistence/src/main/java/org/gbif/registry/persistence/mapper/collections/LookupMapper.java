@@ -30,4 +30,11 @@ public interface LookupMapper<T extends EntityMatchedDto> {
       @Nullable @Param("identifier") String identifier,
       @Nullable @Param("key") UUID key,
       @Nullable @Param("datasetKey") UUID datasetKey);
+
+  /**
+   * Same as {@link #lookup} but it only returns the entities whose name matches the code or the
+   * identifier.
+   */
+  List<T> lookupByName(
+      @Nullable @Param("code") String code, @Nullable @Param("identifier") String identifier);
 }
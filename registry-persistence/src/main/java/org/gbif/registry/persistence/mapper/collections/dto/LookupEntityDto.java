@@ -0,0 +1,40 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.persistence.mapper.collections.dto;
+
+import org.gbif.api.vocabulary.Country;
+
+import java.util.List;
+import java.util.UUID;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/** Fields of an institution or collection needed to answer lookups from memory. */
+@Setter
+@Getter
+public class LookupEntityDto {
+
+  private UUID key;
+  private String code;
+  private String name;
+  private List<String> alternativeCodes;
+  private boolean active;
+  private Country addressCountry;
+  private Country mailingAddressCountry;
+  // only for collections
+  private UUID institutionKey;
+  private String institutionCode;
+  private String institutionName;
+}
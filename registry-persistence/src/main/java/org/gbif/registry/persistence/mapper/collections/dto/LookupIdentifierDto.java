@@ -0,0 +1,31 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.persistence.mapper.collections.dto;
+
+import org.gbif.api.vocabulary.IdentifierType;
+
+import java.util.UUID;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/** Identifier of an institution or collection. */
+@Setter
+@Getter
+public class LookupIdentifierDto {
+
+  private UUID entityKey;
+  private IdentifierType type;
+  private String identifier;
+}
@@ -0,0 +1,32 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.persistence.mapper.dto;
+
+import java.util.UUID;
+
+import lombok.Data;
+
+/**
+ * Keys relating an entity to its parents in the dataset, installation, organization and node
+ * hierarchy. Only the keys that apply to the kind of entity are set.
+ */
+@Data
+public class EntityKeyRelationDto {
+
+  private UUID key;
+  private UUID parentKey;
+  private UUID installationKey;
+  private UUID organizationKey;
+  private UUID endorsingNodeKey;
+}
@@ -0,0 +1,32 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.persistence.mapper.dto;
+
+import lombok.Data;
+
+/**
+ * A child of a network entity, such as a contact, a tag or a count, together with the key of the
+ * entity owning it. Used to load the children of many entities in one query.
+ */
+@Data
+public class EntityRelationDto {
+
+  /** Key of the owning entity, a UUID for network entities and an integer for endpoints. */
+  private Object ownerKey;
+
+  /** Key of the child when it has one, used to tell apart the rows of the same owner. */
+  private Object childKey;
+
+  private Object value;
+}
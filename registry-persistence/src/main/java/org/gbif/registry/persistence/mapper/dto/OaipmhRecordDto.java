@@ -0,0 +1,45 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.persistence.mapper.dto;
+
+import org.gbif.api.vocabulary.Country;
+import org.gbif.api.vocabulary.DatasetType;
+
+import java.util.Date;
+import java.util.UUID;
+
+import lombok.Data;
+
+/**
+ * A dataset in OAI-PMH with its rendered records. The modification dates are kept as the text
+ * returned by the database, so they can be compared without losing precision.
+ */
+@Data
+public class OaipmhRecordDto {
+
+  private UUID datasetKey;
+  private Date modified;
+  private String modifiedText;
+  private String organizationModifiedText;
+  private Integer metadataKey;
+  private UUID installationKey;
+  private DatasetType type;
+  private Country country;
+
+  /** Whether the stored records were rendered from the current dataset. */
+  private boolean current;
+
+  private String oaiDc;
+  private String eml;
+}
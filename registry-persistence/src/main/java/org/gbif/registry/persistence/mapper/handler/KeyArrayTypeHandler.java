@@ -0,0 +1,70 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.persistence.mapper.handler;
+
+import java.sql.Array;
+import java.sql.CallableStatement;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.UUID;
+
+import org.apache.ibatis.type.BaseTypeHandler;
+import org.apache.ibatis.type.JdbcType;
+
+/**
+ * {@link org.apache.ibatis.type.TypeHandler} binding a collection of UUID or integer keys as a
+ * single SQL array, to be used in {@code = ANY(#{keys})} conditions.
+ */
+public class KeyArrayTypeHandler extends BaseTypeHandler<Collection<?>> {
+
+  @Override
+  public void setNonNullParameter(
+      PreparedStatement ps, int i, Collection<?> parameter, JdbcType jdbcType)
+      throws SQLException {
+    Object first = parameter.isEmpty() ? null : parameter.iterator().next();
+    String typeName = first instanceof Integer ? "integer" : "uuid";
+    if (first != null && !(first instanceof Integer) && !(first instanceof UUID)) {
+      throw new IllegalArgumentException("Unsupported key type " + first.getClass());
+    }
+    Array array = ps.getConnection().createArrayOf(typeName, parameter.toArray());
+    ps.setArray(i, array);
+  }
+
+  @Override
+  public Collection<?> getNullableResult(ResultSet rs, String columnName) throws SQLException {
+    return toCollection(rs.getArray(columnName));
+  }
+
+  @Override
+  public Collection<?> getNullableResult(ResultSet rs, int columnIndex) throws SQLException {
+    return toCollection(rs.getArray(columnIndex));
+  }
+
+  @Override
+  public Collection<?> getNullableResult(CallableStatement cs, int columnIndex)
+      throws SQLException {
+    return toCollection(cs.getArray(columnIndex));
+  }
+
+  private Collection<?> toCollection(Array pgArray) throws SQLException {
+    if (pgArray == null) {
+      return new ArrayList<>();
+    }
+    return new ArrayList<>(Arrays.asList((Object[]) pgArray.getArray()));
+  }
+}
@@ -0,0 +1,63 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.persistence.mapper.params;
+
+import org.gbif.api.vocabulary.Country;
+import org.gbif.api.vocabulary.DatasetType;
+
+import java.util.Date;
+import java.util.UUID;
+
+import jakarta.annotation.Nullable;
+import lombok.Builder;
+import lombok.Getter;
+
+/** Filters and paging of the OAI-PMH records. */
+@Builder
+@Getter
+public class OaipmhRecordListParams {
+
+  @Nullable private Country country;
+  @Nullable private DatasetType type;
+  @Nullable private UUID installationKey;
+  @Nullable private Date from;
+  @Nullable private Date until;
+
+  /** Only records that are missing or not current. */
+  private boolean staleOnly;
+
+  /**
+   * With {@link #staleOnly}, records rendered before this date are stale too, e.g. because the
+   * occurrence counts they show may have changed since.
+   */
+  @Nullable private Date renderedBefore;
+
+  /** Whether the rendered records are returned, otherwise only the identification of the items. */
+  private boolean withMetadata;
+
+  /** Format of the rendered records returned, both formats when null. */
+  @Nullable private String metadataPrefix;
+
+  /**
+   * Keyset paging: records after this dataset modification date, as returned in {@code
+   * modifiedText}, and dataset key. When not set, {@link #offset} is used instead.
+   */
+  @Nullable private String afterModified;
+
+  @Nullable private UUID afterKey;
+
+  private int offset;
+
+  private int limit;
+}
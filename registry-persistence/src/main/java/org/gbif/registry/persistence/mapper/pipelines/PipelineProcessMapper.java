@@ -20,8 +20,10 @@ import org.gbif.api.model.pipelines.PipelineStep;
 import org.gbif.api.model.pipelines.StepRunner;
 import org.gbif.api.model.pipelines.StepType;
 import org.gbif.api.model.pipelines.ws.SearchResult;
+import org.gbif.registry.persistence.mapper.dto.DatasetAttemptDto;
 
 import java.time.OffsetDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -76,6 +78,16 @@ public interface PipelineProcessMapper {
   Optional<Integer> getLastSuccessfulAttempt(
       @Param("datasetKey") UUID datasetKey, @Param("stepType") StepType stepType);
 
+  /** Last attempt of each of the datasets, datasets without attempts are left out. */
+  List<DatasetAttemptDto> getLastAttempts(@Param("datasetKeys") Collection<UUID> datasetKeys);
+
+  /**
+   * Last attempt of each of the datasets where the step completed, datasets without such attempt
+   * are left out.
+   */
+  List<DatasetAttemptDto> getLastSuccessfulAttempts(
+      @Param("datasetKeys") Collection<UUID> datasetKeys, @Param("stepType") StepType stepType);
+
   Long getRunningExecutionKey(@Param("datasetKey") UUID datasetKey);
 
   /**
@@ -135,6 +147,17 @@ public interface PipelineProcessMapper {
       @Nullable @Param("attempt") Integer attempt,
       @Nullable @Param("page") Pageable page);
 
+  /**
+   * Lists {@link PipelineProcess} with their executions, steps and dataset title, reading the whole
+   * page in a single query.
+   *
+   * @param datasetKey dataset key
+   * @param page page to specify the offset and the limit
+   * @return list of {@link PipelineProcess}
+   */
+  List<PipelineProcess> listHistory(
+      @Nullable @Param("datasetKey") UUID datasetKey, @Nullable @Param("page") Pageable page);
+
   /** Counts the number of {@link PipelineProcess} based in the search parameters. */
   long count(
       @Nullable @Param("datasetKey") UUID datasetKey, @Nullable @Param("attempt") Integer attempt);
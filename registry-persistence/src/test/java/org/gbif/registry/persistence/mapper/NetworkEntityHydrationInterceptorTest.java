@@ -0,0 +1,245 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.persistence.mapper;
+
+import org.gbif.api.model.registry.Comment;
+import org.gbif.api.model.registry.Contact;
+import org.gbif.api.model.registry.Dataset;
+import org.gbif.api.model.registry.Endpoint;
+import org.gbif.api.model.registry.Identifier;
+import org.gbif.api.model.registry.MachineTag;
+import org.gbif.api.model.registry.Tag;
+import org.gbif.registry.persistence.mapper.dto.EntityRelationDto;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ResultMap;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class NetworkEntityHydrationInterceptorTest {
+
+  private static final String RELATIONS = NetworkEntityRelationMapper.class.getName() + ".";
+
+  private static final Method QUERY;
+
+  static {
+    try {
+      QUERY =
+          Executor.class.getMethod(
+              "query", MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class);
+    } catch (NoSuchMethodException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private final NetworkEntityHydrationInterceptor interceptor =
+      new NetworkEntityHydrationInterceptor();
+
+  private Configuration configuration;
+  private Executor executor;
+
+  /** Rows returned by the executor by statement id. */
+  private Map<String, List<?>> rows;
+
+  /** Parameters of the relation statements executed, by statement id. */
+  private Map<String, Map<String, Object>> params;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    configuration = new Configuration();
+    for (String relation :
+        Arrays.asList(
+            "listContacts",
+            "listEndpoints",
+            "listEndpointMachineTags",
+            "listMachineTags",
+            "listTags",
+            "listIdentifiers",
+            "listComments",
+            "listDatasetNetworks",
+            "listDatasetDwca",
+            "countDatasetConstituents")) {
+      configuration.addMappedStatement(
+          statement(RELATIONS + relation, EntityRelationDto.class.getName(), Object.class));
+    }
+
+    rows = new HashMap<>();
+    params = new HashMap<>();
+    executor = Mockito.mock(Executor.class);
+    when(executor.query(any(MappedStatement.class), any(), any(), any()))
+        .thenAnswer(
+            invocation -> {
+              MappedStatement statement = invocation.getArgument(0);
+              if (statement.getId().startsWith(RELATIONS)) {
+                params.put(statement.getId(), invocation.getArgument(1));
+              }
+              return rows.getOrDefault(statement.getId(), Collections.emptyList());
+            });
+  }
+
+  @Test
+  void hydrateMultiRowPage() throws Throwable {
+    Dataset full = dataset();
+    Dataset partial = dataset();
+    Dataset empty = dataset();
+
+    Contact contact = new Contact();
+    contact.setKey(1);
+    Endpoint endpoint = new Endpoint();
+    endpoint.setKey(10);
+    MachineTag endpointMachineTag = new MachineTag("ns", "endpoint", "1");
+    MachineTag machineTag = new MachineTag("ns", "dataset", "1");
+    Tag tag1 = new Tag();
+    tag1.setValue("tag1");
+    Tag tag2 = new Tag();
+    tag2.setValue("tag2");
+    Identifier identifier = new Identifier();
+    identifier.setIdentifier("id");
+    Comment comment = new Comment();
+    comment.setContent("comment");
+    UUID networkKey = UUID.randomUUID();
+
+    relation("listContacts", full.getKey(), contact);
+    relation("listEndpoints", full.getKey(), endpoint);
+    relation("listEndpointMachineTags", endpoint.getKey(), endpointMachineTag);
+    relation("listMachineTags", full.getKey(), machineTag);
+    relation("listTags", full.getKey(), tag1, partial.getKey(), tag2);
+    relation("listIdentifiers", partial.getKey(), identifier);
+    relation("listComments", full.getKey(), comment);
+    relation("listDatasetNetworks", full.getKey(), networkKey);
+    relation("countDatasetConstituents", full.getKey(), 3);
+
+    List<Dataset> page = Arrays.asList(full, partial, empty);
+    Object result = intercept(DatasetMapper.class.getName() + ".DATASET_LIST_MAP", page);
+
+    assertEquals(page, result);
+
+    assertEquals(Collections.singletonList(contact), full.getContacts());
+    assertEquals(Collections.singletonList(endpoint), full.getEndpoints());
+    assertEquals(Collections.singletonList(endpointMachineTag), endpoint.getMachineTags());
+    assertEquals(Collections.singletonList(machineTag), full.getMachineTags());
+    assertEquals(Collections.singletonList(tag1), full.getTags());
+    assertTrue(full.getIdentifiers().isEmpty());
+    assertEquals(Collections.singletonList(comment), full.getComments());
+    assertEquals(Collections.singletonList(networkKey), full.getNetworkKeys());
+    assertEquals(3, full.getNumConstituents());
+
+    assertEquals(Collections.singletonList(tag2), partial.getTags());
+    assertEquals(Collections.singletonList(identifier), partial.getIdentifiers());
+    assertTrue(partial.getContacts().isEmpty());
+
+    // rows without children get empty collections, not the ones of another row
+    assertTrue(empty.getContacts().isEmpty());
+    assertTrue(empty.getEndpoints().isEmpty());
+    assertTrue(empty.getMachineTags().isEmpty());
+    assertTrue(empty.getTags().isEmpty());
+    assertTrue(empty.getIdentifiers().isEmpty());
+    assertTrue(empty.getComments().isEmpty());
+    assertTrue(empty.getNetworkKeys().isEmpty());
+    assertEquals(0, empty.getNumConstituents());
+    assertNull(empty.getDwca());
+
+    // one query per relation for the whole page
+    verify(executor, times(11)).query(any(MappedStatement.class), any(), any(), any());
+    assertEquals(
+        Arrays.asList(full.getKey(), partial.getKey(), empty.getKey()),
+        new ArrayList<>((Collection<?>) params.get(RELATIONS + "listContacts").get("keys")));
+    assertEquals("dataset", params.get(RELATIONS + "listContacts").get("entity"));
+    assertEquals(
+        Collections.singletonList(endpoint.getKey()),
+        new ArrayList<>(
+            (Collection<?>) params.get(RELATIONS + "listEndpointMachineTags").get("keys")));
+  }
+
+  @Test
+  void fullResultMapNotHydrated() throws Throwable {
+    Dataset dataset = dataset();
+
+    intercept(DatasetMapper.class.getName() + ".DATASET_MAP", Collections.singletonList(dataset));
+
+    // only the intercepted query, the nested selects of the full map load the children
+    verify(executor).query(any(MappedStatement.class), any(), any(), any());
+    assertTrue(dataset.getContacts().isEmpty());
+  }
+
+  @Test
+  void emptyPageNotHydrated() throws Throwable {
+    intercept(DatasetMapper.class.getName() + ".DATASET_LIST_MAP", Collections.emptyList());
+
+    verify(executor).query(any(MappedStatement.class), any(), any(), any());
+  }
+
+  private Object intercept(String resultMapId, List<?> page) throws Throwable {
+    MappedStatement list = statement("test.list", resultMapId, Dataset.class);
+    rows.put(list.getId(), page);
+    return interceptor.intercept(
+        new Invocation(executor, QUERY, new Object[] {list, null, RowBounds.DEFAULT, null}));
+  }
+
+  /** Adds the rows of a relation, given as pairs of owner key and value. */
+  private void relation(String relation, Object... ownersAndValues) {
+    List<EntityRelationDto> relationRows = new ArrayList<>();
+    for (int i = 0; i < ownersAndValues.length; i += 2) {
+      EntityRelationDto row = new EntityRelationDto();
+      row.setOwnerKey(ownersAndValues[i]);
+      row.setValue(ownersAndValues[i + 1]);
+      relationRows.add(row);
+    }
+    rows.put(RELATIONS + relation, relationRows);
+  }
+
+  private MappedStatement statement(String id, String resultMapId, Class<?> type) {
+    ResultMap resultMap =
+        new ResultMap.Builder(configuration, resultMapId, type, new ArrayList<>()).build();
+    return new MappedStatement.Builder(
+            configuration,
+            id,
+            new StaticSqlSource(configuration, "SELECT 1"),
+            SqlCommandType.SELECT)
+        .resultMaps(Collections.singletonList(resultMap))
+        .build();
+  }
+
+  private static Dataset dataset() {
+    Dataset dataset = new Dataset();
+    dataset.setKey(UUID.randomUUID());
+    return dataset;
+  }
+}
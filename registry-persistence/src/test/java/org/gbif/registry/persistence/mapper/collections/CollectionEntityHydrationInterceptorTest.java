@@ -0,0 +1,259 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.persistence.mapper.collections;
+
+import org.gbif.api.model.collections.Address;
+import org.gbif.api.model.collections.Collection;
+import org.gbif.api.model.collections.Contact;
+import org.gbif.api.model.collections.Institution;
+import org.gbif.api.model.collections.MasterSourceMetadata;
+import org.gbif.api.model.collections.OccurrenceMapping;
+import org.gbif.api.model.registry.Comment;
+import org.gbif.api.model.registry.Identifier;
+import org.gbif.api.model.registry.MachineTag;
+import org.gbif.api.model.registry.Tag;
+import org.gbif.api.vocabulary.collections.Source;
+import org.gbif.registry.persistence.mapper.collections.dto.CollectionDto;
+import org.gbif.registry.persistence.mapper.dto.EntityRelationDto;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ResultMap;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CollectionEntityHydrationInterceptorTest {
+
+  private static final String RELATIONS = CollectionEntityRelationMapper.class.getName() + ".";
+
+  private static final List<String> ALL_RELATIONS =
+      Arrays.asList(
+          "listContactPersons",
+          "listMachineTags",
+          "listTags",
+          "listIdentifiers",
+          "listComments",
+          "listOccurrenceMappings",
+          "listAddresses",
+          "listMailingAddresses",
+          "listMasterSourceMetadata");
+
+  private static final Method QUERY;
+
+  static {
+    try {
+      QUERY =
+          Executor.class.getMethod(
+              "query", MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class);
+    } catch (NoSuchMethodException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private final CollectionEntityHydrationInterceptor interceptor =
+      new CollectionEntityHydrationInterceptor();
+
+  private Configuration configuration;
+  private Executor executor;
+
+  /** Rows returned by the executor by statement id. */
+  private Map<String, List<?>> rows;
+
+  /** Parameters of the relation statements executed, by statement id. */
+  private Map<String, Map<String, Object>> params;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    configuration = new Configuration();
+    for (String relation : ALL_RELATIONS) {
+      configuration.addMappedStatement(
+          statement(RELATIONS + relation, EntityRelationDto.class.getName(), Object.class));
+    }
+
+    rows = new HashMap<>();
+    params = new HashMap<>();
+    executor = Mockito.mock(Executor.class);
+    when(executor.query(any(MappedStatement.class), any(), any(), any()))
+        .thenAnswer(
+            invocation -> {
+              MappedStatement statement = invocation.getArgument(0);
+              if (statement.getId().startsWith(RELATIONS)) {
+                params.put(statement.getId(), invocation.getArgument(1));
+              }
+              return rows.getOrDefault(statement.getId(), Collections.emptyList());
+            });
+  }
+
+  @Test
+  void hydrateInstitutionPage() throws Throwable {
+    Institution full = institution();
+    Institution empty = institution();
+
+    Contact contact = new Contact();
+    contact.setKey(1);
+    MachineTag machineTag = new MachineTag("ns", "institution", "1");
+    Tag tag = new Tag();
+    tag.setValue("tag");
+    Identifier identifier = new Identifier();
+    identifier.setIdentifier("id");
+    Comment comment = new Comment();
+    comment.setContent("comment");
+    OccurrenceMapping occurrenceMapping = new OccurrenceMapping();
+    occurrenceMapping.setCode("code");
+    Address address = new Address();
+    address.setKey(1);
+    Address mailingAddress = new Address();
+    mailingAddress.setKey(2);
+    MasterSourceMetadata masterSourceMetadata = new MasterSourceMetadata(Source.IH_IRN, "foo");
+
+    relation("listContactPersons", full.getKey(), contact);
+    relation("listMachineTags", full.getKey(), machineTag);
+    relation("listTags", full.getKey(), tag);
+    relation("listIdentifiers", full.getKey(), identifier);
+    relation("listComments", full.getKey(), comment);
+    relation("listOccurrenceMappings", full.getKey(), occurrenceMapping);
+    relation("listAddresses", full.getKey(), address);
+    relation("listMailingAddresses", full.getKey(), mailingAddress);
+    relation("listMasterSourceMetadata", full.getKey(), masterSourceMetadata);
+
+    List<Institution> page = Arrays.asList(full, empty);
+    Object result = intercept(InstitutionMapper.class.getName() + ".INSTITUTION_LIST_MAP", page);
+
+    assertEquals(page, result);
+
+    assertEquals(Collections.singletonList(contact), full.getContactPersons());
+    assertEquals(Collections.singletonList(machineTag), full.getMachineTags());
+    assertEquals(Collections.singletonList(tag), full.getTags());
+    assertEquals(Collections.singletonList(identifier), full.getIdentifiers());
+    assertEquals(Collections.singletonList(comment), full.getComments());
+    assertEquals(Collections.singletonList(occurrenceMapping), full.getOccurrenceMappings());
+    assertEquals(address, full.getAddress());
+    assertEquals(mailingAddress, full.getMailingAddress());
+    assertEquals(masterSourceMetadata, full.getMasterSourceMetadata());
+
+    // rows without children get empty collections, not the ones of another row
+    assertTrue(empty.getContactPersons().isEmpty());
+    assertTrue(empty.getMachineTags().isEmpty());
+    assertTrue(empty.getTags().isEmpty());
+    assertTrue(empty.getIdentifiers().isEmpty());
+    assertTrue(empty.getComments().isEmpty());
+    assertTrue(empty.getOccurrenceMappings().isEmpty());
+    assertNull(empty.getAddress());
+    assertNull(empty.getMailingAddress());
+    assertNull(empty.getMasterSourceMetadata());
+
+    // one query per relation for the whole page
+    verify(executor, times(1 + ALL_RELATIONS.size()))
+        .query(any(MappedStatement.class), any(), any(), any());
+    for (String relation : ALL_RELATIONS) {
+      assertEquals("institution", params.get(RELATIONS + relation).get("entity"));
+      assertEquals(
+          Arrays.asList(full.getKey(), empty.getKey()),
+          new ArrayList<>((java.util.Collection<?>) params.get(RELATIONS + relation).get("keys")));
+    }
+  }
+
+  @Test
+  void hydrateCollectionDtoPage() throws Throwable {
+    Collection collection = new Collection();
+    collection.setKey(UUID.randomUUID());
+    CollectionDto dto = new CollectionDto();
+    dto.setCollection(collection);
+
+    Tag tag = new Tag();
+    tag.setValue("tag");
+    relation("listTags", collection.getKey(), tag);
+
+    intercept(
+        CollectionMapper.class.getName() + ".COLLECTION_DTO_LIST_MAP",
+        Collections.singletonList(dto));
+
+    assertEquals(Collections.singletonList(tag), collection.getTags());
+    assertTrue(collection.getContactPersons().isEmpty());
+    assertEquals("collection", params.get(RELATIONS + "listTags").get("entity"));
+  }
+
+  @Test
+  void fullResultMapNotHydrated() throws Throwable {
+    Institution institution = institution();
+
+    intercept(
+        InstitutionMapper.class.getName() + ".INSTITUTION_MAP",
+        Collections.singletonList(institution));
+
+    // only the intercepted query, the nested selects of the full map load the children
+    verify(executor).query(any(MappedStatement.class), any(), any(), any());
+  }
+
+  private Object intercept(String resultMapId, List<?> page) throws Throwable {
+    MappedStatement list = statement("test.list", resultMapId, Object.class);
+    rows.put(list.getId(), page);
+    return interceptor.intercept(
+        new Invocation(executor, QUERY, new Object[] {list, null, RowBounds.DEFAULT, null}));
+  }
+
+  /** Adds the rows of a relation, given as pairs of owner key and value. */
+  private void relation(String relation, Object... ownersAndValues) {
+    List<EntityRelationDto> relationRows = new ArrayList<>();
+    for (int i = 0; i < ownersAndValues.length; i += 2) {
+      EntityRelationDto row = new EntityRelationDto();
+      row.setOwnerKey(ownersAndValues[i]);
+      row.setValue(ownersAndValues[i + 1]);
+      relationRows.add(row);
+    }
+    rows.put(RELATIONS + relation, relationRows);
+  }
+
+  private MappedStatement statement(String id, String resultMapId, Class<?> type) {
+    ResultMap resultMap =
+        new ResultMap.Builder(configuration, resultMapId, type, new ArrayList<>()).build();
+    return new MappedStatement.Builder(
+            configuration,
+            id,
+            new StaticSqlSource(configuration, "SELECT 1"),
+            SqlCommandType.SELECT)
+        .resultMaps(Collections.singletonList(resultMap))
+        .build();
+  }
+
+  private static Institution institution() {
+    Institution institution = new Institution();
+    institution.setKey(UUID.randomUUID());
+    return institution;
+  }
+}
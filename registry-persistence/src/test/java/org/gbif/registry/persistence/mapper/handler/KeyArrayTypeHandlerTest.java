@@ -0,0 +1,114 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.persistence.mapper.handler;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.UUID;
+
+import org.apache.ibatis.type.JdbcType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class KeyArrayTypeHandlerTest {
+
+  private final KeyArrayTypeHandler handler = new KeyArrayTypeHandler();
+
+  private PreparedStatement ps;
+  private Connection connection;
+  private Array array;
+
+  @BeforeEach
+  void setUp() throws SQLException {
+    ps = Mockito.mock(PreparedStatement.class);
+    connection = Mockito.mock(Connection.class);
+    array = Mockito.mock(Array.class);
+    when(ps.getConnection()).thenReturn(connection);
+  }
+
+  @Test
+  void bindUuidKeys() throws SQLException {
+    UUID key1 = UUID.randomUUID();
+    UUID key2 = UUID.randomUUID();
+    when(connection.createArrayOf("uuid", new Object[] {key1, key2})).thenReturn(array);
+
+    handler.setParameter(ps, 1, Arrays.asList(key1, key2), JdbcType.ARRAY);
+
+    verify(ps).setArray(1, array);
+  }
+
+  @Test
+  void bindIntegerKeys() throws SQLException {
+    when(connection.createArrayOf("integer", new Object[] {1, 2})).thenReturn(array);
+
+    handler.setParameter(ps, 2, Arrays.asList(1, 2), JdbcType.ARRAY);
+
+    verify(ps).setArray(2, array);
+  }
+
+  @Test
+  void bindNoKeys() throws SQLException {
+    when(connection.createArrayOf("uuid", new Object[0])).thenReturn(array);
+
+    handler.setParameter(ps, 1, Collections.emptyList(), JdbcType.ARRAY);
+
+    verify(ps).setArray(1, array);
+  }
+
+  @Test
+  void bindUnsupportedKeys() throws SQLException {
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> handler.setParameter(ps, 1, Collections.singletonList("key"), JdbcType.ARRAY));
+
+    verify(connection, never()).createArrayOf(anyString(), any());
+  }
+
+  @Test
+  void readArray() throws SQLException {
+    UUID key = UUID.randomUUID();
+    ResultSet rs = Mockito.mock(ResultSet.class);
+    when(rs.getArray("keys")).thenReturn(array);
+    when(array.getArray()).thenReturn(new UUID[] {key});
+
+    Collection<?> keys = handler.getResult(rs, "keys");
+
+    assertEquals(Collections.singletonList(key), keys);
+  }
+
+  @Test
+  void readNullArray() throws SQLException {
+    ResultSet rs = Mockito.mock(ResultSet.class);
+
+    Collection<?> keys = handler.getResult(rs, "keys");
+
+    assertTrue(keys.isEmpty());
+  }
+}
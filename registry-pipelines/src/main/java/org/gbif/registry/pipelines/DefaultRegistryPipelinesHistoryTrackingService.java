@@ -48,6 +48,7 @@ import org.gbif.registry.mail.BaseEmailModel;
 import org.gbif.registry.mail.EmailCategory;
 import org.gbif.registry.mail.EmailSender;
 import org.gbif.registry.mail.pipelines.PipelinesEmailManager;
+import org.gbif.registry.persistence.mapper.dto.DatasetAttemptDto;
 import org.gbif.registry.persistence.mapper.pipelines.PipelineProcessMapper;
 import org.gbif.registry.pipelines.issues.GithubApiClient;
 import org.gbif.registry.pipelines.issues.GithubApiClient.Issue;
@@ -65,6 +66,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -72,10 +74,6 @@ import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import javax.annotation.Nullable;
@@ -85,7 +83,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -133,7 +130,7 @@ public class DefaultRegistryPipelinesHistoryTrackingService
 
   private final PipelineProcessMapper mapper;
   private final DatasetService datasetService;
-  private final ExecutorService executorService;
+  private final PipelinesRerunDispatcher rerunDispatcher;
   private final EmailSender emailSender;
   private final PipelinesEmailManager pipelinesEmailManager;
   private final GithubApiClient githubApiClient;
@@ -151,7 +148,7 @@ public class DefaultRegistryPipelinesHistoryTrackingService
       @Autowired GithubApiClient githubApiClient,
       @Autowired IssueCreator issueCreator,
       @Autowired PipelineWorkflowResolver workflowResolver,
-      @Value("${pipelines.doAllThreads}") Integer threadPoolSize) {
+      @Autowired PipelinesRerunDispatcher rerunDispatcher) {
     this.objectMapper = objectMapper;
     this.publisher = publisher;
     this.mapper = mapper;
@@ -161,10 +158,7 @@ public class DefaultRegistryPipelinesHistoryTrackingService
     this.githubApiClient = githubApiClient;
     this.issueCreator = issueCreator;
     this.workflowResolver = workflowResolver;
-    this.executorService =
-        Optional.ofNullable(threadPoolSize)
-            .map(Executors::newFixedThreadPool)
-            .orElse(Executors.newSingleThreadExecutor());
+    this.rerunDispatcher = rerunDispatcher;
   }
 
   @Override
@@ -220,57 +214,89 @@ public class DefaultRegistryPipelinesHistoryTrackingService
       Set<String> interpretTypes,
       boolean excludeEventSteps,
       boolean onlyIncludeRequestedStep) {
+    if (datasetsToInclude == null || datasetsToInclude.isEmpty()) {
+      throw new RuntimeException("datasetsToExclude can't be null or empty");
+    }
+    if (useLastSuccessful && steps.size() != 1) {
+      throw new IllegalArgumentException(
+          "When using the last successful attempt you must pass 1 and only 1 step");
+    }
+
     String prefix = OffsetDateTime.now(ZoneOffset.UTC).format(DateTimeFormatter.ofPattern("yyyyMMddHHmm"));
-    CompletableFuture.runAsync(
-        () ->
-            doOnAllDatasets(
-                datasetKey ->
-                    runLastAttempt(
-                        datasetKey,
-                        steps,
-                        reason,
-                        user,
-                        prefix,
-                        useLastSuccessful,
-                        markPreviousAttemptAsFailed,
-                        interpretTypes,
-                        excludeEventSteps,
-                        onlyIncludeRequestedStep),
-                datasetsToExclude,
-                datasetsToInclude),
-        executorService);
+    List<UUID> datasetKeys =
+        datasetsToInclude.stream()
+            .filter(PredicateUtils.not(datasetsToExclude::contains))
+            .collect(Collectors.toList());
+
+    RerunProgress rerun =
+        rerunDispatcher.dispatch(
+            user,
+            reason,
+            steps,
+            datasetKeys,
+            chunk -> findAttempts(chunk, steps, useLastSuccessful),
+            (datasetKey, attempt) ->
+                runPipelineAttempt(
+                    datasetKey,
+                    attempt,
+                    steps,
+                    reason,
+                    user,
+                    prefix,
+                    markPreviousAttemptAsFailed,
+                    interpretTypes,
+                    excludeEventSteps,
+                    onlyIncludeRequestedStep));
 
     return RunPipelineResponse.builder()
         .setResponseStatus(RunPipelineResponse.ResponseStatus.OK)
         .setSteps(steps)
+        .setMessage("Rerun " + rerun.getKey() + " queued")
         .build();
   }
 
-  /** Utility method to run batch jobs on all dataset elements */
-  private void doOnAllDatasets(
-      Consumer<UUID> onDataset, List<UUID> datasetsToExclude, List<UUID> datasetsToInclude) {
-
-    if (datasetsToInclude == null || datasetsToInclude.isEmpty()) {
-      throw new RuntimeException("datasetsToExclude can't be null or empty");
+  /** Finds the attempts to rerun of a chunk of datasets, with one query when possible. */
+  private Map<UUID, Integer> findAttempts(
+      List<UUID> datasetKeys, Set<StepType> steps, boolean useLastSuccessful) {
+    List<DatasetAttemptDto> attempts;
+    if (!useLastSuccessful) {
+      attempts = mapper.getLastAttempts(datasetKeys);
+    } else if (steps.contains(StepType.TO_VERBATIM)) {
+      // the verbatim step depends on the endpoint of each dataset
+      Map<UUID, Integer> datasetAttempts = new HashMap<>();
+      for (UUID datasetKey : datasetKeys) {
+        try {
+          datasetAttempts.put(datasetKey, findAttempt(datasetKey, steps, true));
+        } catch (IllegalArgumentException ex) {
+          LOG.warn(ex.getMessage());
+        }
+      }
+      return datasetAttempts;
+    } else {
+      attempts = mapper.getLastSuccessfulAttempts(datasetKeys, steps.iterator().next());
     }
+    return attempts.stream()
+        .collect(Collectors.toMap(DatasetAttemptDto::getDatasetKey, DatasetAttemptDto::getAttempt));
+  }
 
-    datasetsToInclude.stream()
-        .filter(PredicateUtils.not(datasetsToExclude::contains))
-        .forEach(
-            datasetKey ->
-                CompletableFuture.runAsync(
-                    () -> {
-                      try {
-                        LOG.info("trying to rerun dataset {}", datasetKey);
-                        onDataset.accept(datasetKey);
-                      } catch (Exception ex) {
-                        LOG.error(
-                            "Error processing dataset {} while rerunning all datasets: {}",
-                            datasetKey,
-                            ex.getMessage());
-                      }
-                    },
-                    executorService));
+  @Override
+  public List<RerunProgress> listReruns() {
+    return rerunDispatcher.list();
+  }
+
+  @Override
+  public Optional<RerunProgress> getRerun(UUID rerunKey) {
+    return rerunDispatcher.get(rerunKey);
+  }
+
+  @Override
+  public boolean cancelRerun(UUID rerunKey) {
+    return rerunDispatcher.cancel(rerunKey);
+  }
+
+  @Override
+  public boolean setRerunRate(UUID rerunKey, double datasetsPerSecond) {
+    return rerunDispatcher.setRate(rerunKey, datasetsPerSecond);
   }
 
   private Set<StepType> selectCorrectVerbatimSteps(Set<StepType> steps, Dataset dataset) {
@@ -389,10 +415,8 @@ public class DefaultRegistryPipelinesHistoryTrackingService
   @Override
   public PagingResponse<PipelineProcess> history(Pageable pageable) {
     long count = mapper.count(null, null);
-    List<PipelineProcess> statuses = mapper.list(null, null, pageable);
-
-    // add needed fields for the view
-    statuses.forEach(this::setDatasetTitle);
+    // the dataset titles needed for the view are read along with the processes
+    List<PipelineProcess> statuses = mapper.listHistory(null, pageable);
 
     return new PagingResponse<>(pageable, count, statuses);
   }
@@ -402,10 +426,8 @@ public class DefaultRegistryPipelinesHistoryTrackingService
     Objects.requireNonNull(datasetKey, DATASET_KEY_CANNOT_BE_NULL);
 
     long count = mapper.count(datasetKey, null);
-    List<PipelineProcess> statuses = mapper.list(datasetKey, null, pageable);
-
-    // add needed fields for the view
-    statuses.forEach(this::setDatasetTitle);
+    // the dataset titles needed for the view are read along with the processes
+    List<PipelineProcess> statuses = mapper.listHistory(datasetKey, pageable);
 
     return new PagingResponse<>(pageable, count, statuses);
   }
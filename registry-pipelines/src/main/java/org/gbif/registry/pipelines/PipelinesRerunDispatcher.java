@@ -0,0 +1,209 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.pipelines;
+
+import org.gbif.api.model.pipelines.RunPipelineResponse;
+import org.gbif.api.model.pipelines.StepType;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Reruns the pipelines of many datasets in the background.
+ *
+ * <p>The datasets are handled in chunks whose attempts are looked up at once, and the reruns are
+ * started at a bounded rate, so a rerun of every dataset doesn't flood the message broker and the
+ * database. Requests are run one after the other, so the rate of each one is the rate of all. The
+ * rate of a rerun can be changed while it runs, up to a configured maximum; its progress can be
+ * queried and it can be cancelled.
+ */
+@Component
+public class PipelinesRerunDispatcher {
+
+  private static final Logger LOG = LoggerFactory.getLogger(PipelinesRerunDispatcher.class);
+
+  private final int batchSize;
+  private final double datasetsPerSecond;
+  private final double maxDatasetsPerSecond;
+  private final ExecutorService executor;
+  // the most recent reruns, finished ones included
+  private final Cache<UUID, RerunProgress> reruns =
+      CacheBuilder.newBuilder().maximumSize(100).build();
+
+  public PipelinesRerunDispatcher(
+      @Value("${pipelines.rerun.batchSize:1000}") int batchSize,
+      @Value("${pipelines.rerun.datasetsPerSecond:50}") double datasetsPerSecond,
+      @Value("${pipelines.rerun.maxDatasetsPerSecond:500}") double maxDatasetsPerSecond) {
+    Preconditions.checkArgument(
+        datasetsPerSecond > 0 && datasetsPerSecond <= maxDatasetsPerSecond,
+        "The rerun rate must be positive and not above the maximum");
+    this.batchSize = batchSize;
+    this.datasetsPerSecond = datasetsPerSecond;
+    this.maxDatasetsPerSecond = maxDatasetsPerSecond;
+    this.executor =
+        Executors.newSingleThreadExecutor(
+            new ThreadFactoryBuilder().setNameFormat("pipelines-rerun-%d").setDaemon(true).build());
+  }
+
+  /**
+   * Queues the rerun of the datasets.
+   *
+   * @param attemptLookup finds the attempts to rerun of a chunk of datasets
+   * @param runner reruns an attempt of a dataset
+   * @return the progress of the rerun
+   */
+  public RerunProgress dispatch(
+      String user,
+      String reason,
+      Set<StepType> steps,
+      List<UUID> datasetKeys,
+      Function<List<UUID>, Map<UUID, Integer>> attemptLookup,
+      BiFunction<UUID, Integer, RunPipelineResponse> runner) {
+    RerunProgress progress =
+        new RerunProgress(
+            UUID.randomUUID(), user, reason, steps, datasetKeys.size(), datasetsPerSecond);
+    reruns.put(progress.getKey(), progress);
+    executor.execute(() -> run(progress, datasetKeys, attemptLookup, runner));
+    return progress;
+  }
+
+  /** The most recent reruns, newest first. */
+  public List<RerunProgress> list() {
+    return reruns.asMap().values().stream()
+        .sorted(Comparator.comparing(RerunProgress::getCreated).reversed())
+        .collect(Collectors.toList());
+  }
+
+  public Optional<RerunProgress> get(UUID key) {
+    return Optional.ofNullable(reruns.getIfPresent(key));
+  }
+
+  /**
+   * Stops a rerun, the datasets already dispatched aren't affected.
+   *
+   * @return false if the rerun doesn't exist or is already finished
+   */
+  public boolean cancel(UUID key) {
+    RerunProgress progress = reruns.getIfPresent(key);
+    return progress != null && progress.cancel();
+  }
+
+  /**
+   * Changes the number of datasets per second of a queued or running rerun.
+   *
+   * @return false if the rerun doesn't exist or is already finished
+   * @throws IllegalArgumentException if the rate isn't positive or is above the maximum
+   */
+  public boolean setRate(UUID key, double datasetsPerSecond) {
+    if (!(datasetsPerSecond > 0 && datasetsPerSecond <= maxDatasetsPerSecond)) {
+      throw new IllegalArgumentException(
+          "The rerun rate must be above 0 and at most " + maxDatasetsPerSecond + " per second");
+    }
+    RerunProgress progress = reruns.getIfPresent(key);
+    if (progress == null || progress.isFinished()) {
+      return false;
+    }
+    progress.setDatasetsPerSecond(datasetsPerSecond);
+    return true;
+  }
+
+  /** Stops the reruns, queued ones are dropped. */
+  @PreDestroy
+  public void close() {
+    executor.shutdownNow();
+  }
+
+  private void run(
+      RerunProgress progress,
+      List<UUID> datasetKeys,
+      Function<List<UUID>, Map<UUID, Integer>> attemptLookup,
+      BiFunction<UUID, Integer, RunPipelineResponse> runner) {
+    if (!progress.started()) {
+      LOG.info("Rerun {} was cancelled before starting", progress.getKey());
+      return;
+    }
+    LOG.info("Starting rerun {} of {} datasets", progress.getKey(), progress.getTotal());
+    try {
+      for (List<UUID> chunk : Lists.partition(datasetKeys, batchSize)) {
+        if (progress.isCancelRequested()) {
+          break;
+        }
+        Map<UUID, Integer> attempts = attemptLookup.apply(chunk);
+        for (UUID datasetKey : chunk) {
+          if (progress.isCancelRequested()) {
+            break;
+          }
+          Integer attempt = attempts.get(datasetKey);
+          if (attempt == null) {
+            LOG.warn("Couldn't find last attempt for dataset {}", datasetKey);
+            progress.skipped();
+            continue;
+          }
+
+          progress.acquire();
+          try {
+            RunPipelineResponse response = runner.apply(datasetKey, attempt);
+            if (response.getResponseStatus() == RunPipelineResponse.ResponseStatus.OK) {
+              progress.dispatched();
+            } else if (response.getResponseStatus() == RunPipelineResponse.ResponseStatus.ERROR) {
+              LOG.warn("Rerun of dataset {} failed: {}", datasetKey, response.getMessage());
+              progress.failed();
+            } else {
+              progress.skipped();
+            }
+          } catch (Exception ex) {
+            LOG.error(
+                "Error processing dataset {} while rerunning all datasets: {}",
+                datasetKey,
+                ex.getMessage());
+            progress.failed();
+          }
+        }
+      }
+    } catch (Exception ex) {
+      LOG.error("Rerun {} stopped", progress.getKey(), ex);
+    } finally {
+      progress.finished();
+      LOG.info(
+          "Rerun {} {}: {} dispatched, {} skipped, {} failed",
+          progress.getKey(),
+          progress.getState(),
+          progress.getDispatched(),
+          progress.getSkipped(),
+          progress.getFailed());
+    }
+  }
+}
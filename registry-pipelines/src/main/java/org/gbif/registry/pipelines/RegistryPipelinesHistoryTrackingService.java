@@ -25,6 +25,7 @@ import org.gbif.api.model.pipelines.ws.SearchResult;
 
 import java.time.OffsetDateTime;
 import java.util.List;
+import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
 
@@ -93,6 +94,36 @@ public interface RegistryPipelinesHistoryTrackingService {
       boolean excludeEventSteps,
       boolean onlyIncludeRequestedStep);
 
+  /**
+   * Lists the most recent reruns of many datasets started by {@link #runLastAttempt(Set, String,
+   * String, List, List, boolean, boolean, Set, boolean, boolean)}, newest first.
+   */
+  List<RerunProgress> listReruns();
+
+  /**
+   * Gets the progress of a rerun of many datasets.
+   *
+   * @param rerunKey key of the rerun
+   */
+  Optional<RerunProgress> getRerun(UUID rerunKey);
+
+  /**
+   * Cancels a rerun of many datasets, the datasets already dispatched aren't affected.
+   *
+   * @param rerunKey key of the rerun
+   * @return false if the rerun doesn't exist or is already finished
+   */
+  boolean cancelRerun(UUID rerunKey);
+
+  /**
+   * Changes the number of datasets per second of a rerun of many datasets that hasn't finished.
+   *
+   * @param rerunKey key of the rerun
+   * @param datasetsPerSecond the new rate, up to pipelines.rerun.maxDatasetsPerSecond
+   * @return false if the rerun doesn't exist or is already finished
+   */
+  boolean setRerunRate(UUID rerunKey, double datasetsPerSecond);
+
   /**
    * Executes a previously run attempt.
    *
@@ -0,0 +1,187 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.pipelines;
+
+import org.gbif.api.model.pipelines.StepType;
+
+import java.util.Date;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.util.concurrent.RateLimiter;
+
+/** Progress of a rerun of the pipelines of many datasets, see {@link PipelinesRerunDispatcher}. */
+public class RerunProgress {
+
+  public enum State {
+    QUEUED,
+    RUNNING,
+    COMPLETED,
+    CANCELLED
+  }
+
+  private final UUID key;
+  private final String user;
+  private final String reason;
+  private final Set<StepType> steps;
+  private final long total;
+  private final Date created = new Date();
+  private final RateLimiter rateLimiter;
+
+  private final AtomicLong dispatched = new AtomicLong();
+  private final AtomicLong skipped = new AtomicLong();
+  private final AtomicLong failed = new AtomicLong();
+
+  private volatile State state = State.QUEUED;
+  private volatile boolean cancelRequested;
+  private volatile Date started;
+  private volatile Date finished;
+
+  RerunProgress(
+      UUID key,
+      String user,
+      String reason,
+      Set<StepType> steps,
+      long total,
+      double datasetsPerSecond) {
+    this.key = key;
+    this.user = user;
+    this.reason = reason;
+    this.steps = steps;
+    this.total = total;
+    this.rateLimiter = RateLimiter.create(datasetsPerSecond);
+  }
+
+  public UUID getKey() {
+    return key;
+  }
+
+  public String getUser() {
+    return user;
+  }
+
+  public String getReason() {
+    return reason;
+  }
+
+  public Set<StepType> getSteps() {
+    return steps;
+  }
+
+  public State getState() {
+    return state;
+  }
+
+  public Date getCreated() {
+    return created;
+  }
+
+  public Date getStarted() {
+    return started;
+  }
+
+  public Date getFinished() {
+    return finished;
+  }
+
+  /** Number of datasets to rerun. */
+  public long getTotal() {
+    return total;
+  }
+
+  /** Datasets whose messages were sent. */
+  public long getDispatched() {
+    return dispatched.get();
+  }
+
+  /** Datasets without an attempt to rerun or already running. */
+  public long getSkipped() {
+    return skipped.get();
+  }
+
+  /** Datasets whose messages couldn't be created or sent. */
+  public long getFailed() {
+    return failed.get();
+  }
+
+  public long getProcessed() {
+    return dispatched.get() + skipped.get() + failed.get();
+  }
+
+  /** Maximum number of datasets rerun per second. */
+  public double getDatasetsPerSecond() {
+    return rateLimiter.getRate();
+  }
+
+  void setDatasetsPerSecond(double datasetsPerSecond) {
+    rateLimiter.setRate(datasetsPerSecond);
+  }
+
+  /** Waits until the next dataset can be rerun. */
+  void acquire() {
+    rateLimiter.acquire();
+  }
+
+  boolean isCancelRequested() {
+    return cancelRequested;
+  }
+
+  /**
+   * Cancels the rerun, a queued one is finished straight away.
+   *
+   * @return false if the rerun was already finished
+   */
+  synchronized boolean cancel() {
+    if (finished != null) {
+      return false;
+    }
+    cancelRequested = true;
+    if (state == State.QUEUED) {
+      finished();
+    }
+    return true;
+  }
+
+  boolean isFinished() {
+    return finished != null;
+  }
+
+  /** @return false if the rerun was cancelled before it started */
+  synchronized boolean started() {
+    if (finished != null) {
+      return false;
+    }
+    started = new Date();
+    state = State.RUNNING;
+    return true;
+  }
+
+  synchronized void finished() {
+    finished = new Date();
+    state = cancelRequested ? State.CANCELLED : State.COMPLETED;
+  }
+
+  void dispatched() {
+    dispatched.incrementAndGet();
+  }
+
+  void skipped() {
+    skipped.incrementAndGet();
+  }
+
+  void failed() {
+    failed.incrementAndGet();
+  }
+}
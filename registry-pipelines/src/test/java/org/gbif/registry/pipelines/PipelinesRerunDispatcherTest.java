@@ -0,0 +1,257 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.pipelines;
+
+import org.gbif.api.model.pipelines.RunPipelineResponse;
+import org.gbif.api.model.pipelines.StepType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PipelinesRerunDispatcherTest {
+
+  private static final Set<StepType> STEPS = Collections.singleton(StepType.HDFS_VIEW);
+
+  private PipelinesRerunDispatcher dispatcher;
+
+  @BeforeEach
+  public void setUp() {
+    dispatcher = new PipelinesRerunDispatcher(2, 1000, 2000);
+  }
+
+  @AfterEach
+  public void tearDown() {
+    dispatcher.close();
+  }
+
+  @Test
+  public void testDispatchesAllDatasetsInChunks() throws Exception {
+    List<UUID> datasetKeys = datasetKeys(5);
+    UUID withoutAttempt = datasetKeys.get(1);
+    UUID failing = datasetKeys.get(2);
+    UUID throwing = datasetKeys.get(3);
+    List<List<UUID>> chunks = new CopyOnWriteArrayList<>();
+    List<UUID> run = new CopyOnWriteArrayList<>();
+
+    Function<List<UUID>, Map<UUID, Integer>> lookup =
+        chunk -> {
+          chunks.add(chunk);
+          return chunk.stream()
+              .filter(k -> !k.equals(withoutAttempt))
+              .collect(Collectors.toMap(k -> k, k -> 3));
+        };
+    BiFunction<UUID, Integer, RunPipelineResponse> runner =
+        (datasetKey, attempt) -> {
+          assertEquals(3, attempt);
+          run.add(datasetKey);
+          if (datasetKey.equals(throwing)) {
+            throw new IllegalStateException("Broker down");
+          }
+          return response(
+              datasetKey.equals(failing)
+                  ? RunPipelineResponse.ResponseStatus.ERROR
+                  : RunPipelineResponse.ResponseStatus.OK);
+        };
+
+    RerunProgress progress =
+        dispatcher.dispatch("admin", "test", STEPS, datasetKeys, lookup, runner);
+    awaitFinished(progress);
+
+    assertEquals(RerunProgress.State.COMPLETED, progress.getState());
+    assertEquals(
+        Arrays.asList(
+            datasetKeys.subList(0, 2), datasetKeys.subList(2, 4), datasetKeys.subList(4, 5)),
+        chunks);
+    assertEquals(4, run.size());
+    assertFalse(run.contains(withoutAttempt));
+    assertEquals(5, progress.getTotal());
+    assertEquals(2, progress.getDispatched());
+    assertEquals(1, progress.getSkipped());
+    assertEquals(2, progress.getFailed());
+    assertEquals(5, progress.getProcessed());
+    assertNotNull(progress.getStarted());
+  }
+
+  @Test
+  public void testCancelRunningRerun() throws Exception {
+    List<UUID> run = new CopyOnWriteArrayList<>();
+    RerunProgress[] progress = new RerunProgress[1];
+    CountDownLatch dispatched = new CountDownLatch(1);
+
+    progress[0] =
+        dispatcher.dispatch(
+            "admin",
+            "test",
+            STEPS,
+            datasetKeys(5),
+            allWithAttempt(),
+            (datasetKey, attempt) -> {
+              await(dispatched);
+              run.add(datasetKey);
+              // cancelled while the first dataset is dispatched
+              assertTrue(dispatcher.cancel(progress[0].getKey()));
+              return response(RunPipelineResponse.ResponseStatus.OK);
+            });
+    dispatched.countDown();
+    awaitFinished(progress[0]);
+
+    assertEquals(RerunProgress.State.CANCELLED, progress[0].getState());
+    assertEquals(1, run.size());
+    assertEquals(1, progress[0].getDispatched());
+    assertFalse(dispatcher.cancel(progress[0].getKey()));
+  }
+
+  @Test
+  public void testCancelQueuedRerun() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    RerunProgress first =
+        dispatcher.dispatch(
+            "admin",
+            "first",
+            STEPS,
+            datasetKeys(1),
+            allWithAttempt(),
+            (datasetKey, attempt) -> {
+              await(release);
+              return response(RunPipelineResponse.ResponseStatus.OK);
+            });
+    List<UUID> run = new CopyOnWriteArrayList<>();
+    RerunProgress second =
+        dispatcher.dispatch(
+            "admin",
+            "second",
+            STEPS,
+            datasetKeys(3),
+            allWithAttempt(),
+            (datasetKey, attempt) -> {
+              run.add(datasetKey);
+              return response(RunPipelineResponse.ResponseStatus.OK);
+            });
+
+    // the second rerun waits for the first one, it is cancelled straight away
+    assertTrue(dispatcher.cancel(second.getKey()));
+    assertEquals(RerunProgress.State.CANCELLED, second.getState());
+    assertNotNull(second.getFinished());
+
+    release.countDown();
+    awaitFinished(first);
+    // reruns are run in order, so the cancelled one was taken before the next one finishes
+    RerunProgress third =
+        dispatcher.dispatch(
+            "admin", "third", STEPS, Collections.emptyList(), allWithAttempt(), (k, a) -> null);
+    awaitFinished(third);
+    assertEquals(RerunProgress.State.COMPLETED, first.getState());
+    assertEquals(RerunProgress.State.CANCELLED, second.getState());
+    assertTrue(run.isEmpty());
+    assertEquals(0, second.getProcessed());
+  }
+
+  @Test
+  public void testSetRate() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    RerunProgress progress =
+        dispatcher.dispatch(
+            "admin",
+            "test",
+            STEPS,
+            datasetKeys(1),
+            allWithAttempt(),
+            (datasetKey, attempt) -> {
+              await(release);
+              return response(RunPipelineResponse.ResponseStatus.OK);
+            });
+    assertEquals(1000, progress.getDatasetsPerSecond(), 0.001);
+
+    assertTrue(dispatcher.setRate(progress.getKey(), 5));
+    assertEquals(5, progress.getDatasetsPerSecond(), 0.001);
+    assertThrows(IllegalArgumentException.class, () -> dispatcher.setRate(progress.getKey(), 0));
+    assertThrows(
+        IllegalArgumentException.class, () -> dispatcher.setRate(progress.getKey(), 2001));
+    assertFalse(dispatcher.setRate(UUID.randomUUID(), 5));
+
+    release.countDown();
+    awaitFinished(progress);
+    assertFalse(dispatcher.setRate(progress.getKey(), 5));
+  }
+
+  @Test
+  public void testListNewestFirst() throws Exception {
+    RerunProgress first =
+        dispatcher.dispatch(
+            "admin", "first", STEPS, Collections.emptyList(), allWithAttempt(), (k, a) -> null);
+    awaitFinished(first);
+    Thread.sleep(5);
+    RerunProgress second =
+        dispatcher.dispatch(
+            "admin", "second", STEPS, Collections.emptyList(), allWithAttempt(), (k, a) -> null);
+    awaitFinished(second);
+
+    assertEquals(Arrays.asList(second, first), dispatcher.list());
+    assertEquals(first, dispatcher.get(first.getKey()).orElse(null));
+    assertFalse(dispatcher.get(UUID.randomUUID()).isPresent());
+  }
+
+  private static List<UUID> datasetKeys(int count) {
+    return IntStream.range(0, count)
+        .mapToObj(i -> UUID.randomUUID())
+        .collect(Collectors.toCollection(ArrayList::new));
+  }
+
+  private static Function<List<UUID>, Map<UUID, Integer>> allWithAttempt() {
+    return chunk -> chunk.stream().collect(Collectors.toMap(k -> k, k -> 1));
+  }
+
+  private static RunPipelineResponse response(RunPipelineResponse.ResponseStatus status) {
+    return RunPipelineResponse.builder().setResponseStatus(status).build();
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      assertTrue(latch.await(10, TimeUnit.SECONDS));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static void awaitFinished(RerunProgress progress) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 10_000;
+    while (progress.getFinished() == null && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertNotNull(progress.getFinished(), "Rerun didn't finish in time");
+  }
+}
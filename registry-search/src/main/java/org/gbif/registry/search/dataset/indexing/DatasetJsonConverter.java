@@ -40,9 +40,11 @@ import java.util.Collection;
 import java.util.Comparator;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.UUID;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -85,24 +87,15 @@ public class DatasetJsonConverter {
 
   private final ObjectMapper mapper;
 
-  private Long occurrenceCount;
-
-  private Long nameUsagesCount;
-
   private final String defaultChecklistKey;
 
+  // both totals are cached by the client, which is safe to call from concurrent converters
   private Long getOccurrenceCount() {
-    if (occurrenceCount == null) {
-      occurrenceCount = gbifWsClient.getOccurrenceRecordCount();
-    }
-    return Optional.ofNullable(occurrenceCount).orElse(1L);
+    return Optional.ofNullable(gbifWsClient.getOccurrenceRecordCount()).orElse(1L);
   }
 
   private Long getNameUsagesCount() {
-    if (nameUsagesCount == null) {
-      nameUsagesCount = gbifWsClient.taxonSearchCount(defaultChecklistKey);
-    }
-    return Optional.ofNullable(nameUsagesCount).orElse(1L);
+    return Optional.ofNullable(gbifWsClient.taxonSearchCount(defaultChecklistKey)).orElse(1L);
   }
 
   @Autowired
@@ -118,7 +111,6 @@ public class DatasetJsonConverter {
     consumers.add(this::maintenanceFieldsTransforms);
     consumers.add(this::addTitles);
     consumers.add(this::enumTransforms);
-    consumers.add(this::addOccurrenceSpeciesCounts);
   }
 
   public static DatasetJsonConverter create(
@@ -133,12 +125,26 @@ public class DatasetJsonConverter {
   }
 
   public ObjectNode convert(Dataset dataset) {
+    return convert(dataset, new RemoteEnrichment());
+  }
+
+  /**
+   * Converts a page of datasets. The occurrence counts, checklist metrics and networks of all the
+   * datasets are resolved upfront in bulk instead of calling the remote services per dataset.
+   */
+  public List<ObjectNode> convert(List<Dataset> datasets) {
+    Enrichment enrichment = new PrefetchedEnrichment(datasets);
+    return datasets.stream().map(d -> convert(d, enrichment)).collect(Collectors.toList());
+  }
+
+  private ObjectNode convert(Dataset dataset, Enrichment enrichment) {
     ObjectNode datasetAsJson = mapper.valueToTree(dataset);
     consumers.forEach(c -> c.accept(datasetAsJson));
+    addOccurrenceSpeciesCounts(datasetAsJson, enrichment);
     addDecades(dataset, datasetAsJson);
     addKeyword(dataset, datasetAsJson);
     addCountryCoverage(dataset, datasetAsJson);
-    addNetworks(dataset, datasetAsJson);
+    addNetworks(datasetAsJson, enrichment.networks(dataset));
     addCategoriesWithParents(dataset, datasetAsJson);
     addMachineTags(dataset, datasetAsJson);
     addMachineTagSearchFields(dataset, datasetAsJson);
@@ -148,7 +154,10 @@ public class DatasetJsonConverter {
   }
 
   public void addNetworks(Dataset dataset, ObjectNode datasetJsonNode) {
-    List<Network> networks = gbifWsClient.getNetworks(dataset.getKey());
+    addNetworks(datasetJsonNode, gbifWsClient.getNetworks(dataset.getKey()));
+  }
+
+  private void addNetworks(ObjectNode datasetJsonNode, List<Network> networks) {
     if (networks != null) {
       ArrayNode networkKeys = mapper.createArrayNode();
       ArrayNode networkTitles = mapper.createArrayNode();
@@ -167,6 +176,16 @@ public class DatasetJsonConverter {
     return mapper.writeValueAsString(convert(dataset));
   }
 
+  /** Converts a page of datasets resolving their remote data in bulk, see {@link #convert(List)}. */
+  @SneakyThrows
+  public List<String> convertAsJsonStrings(List<Dataset> datasets) {
+    List<String> jsons = new ArrayList<>(datasets.size());
+    for (ObjectNode node : convert(datasets)) {
+      jsons.add(mapper.writeValueAsString(node));
+    }
+    return jsons;
+  }
+
   private void addTitles(ObjectNode dataset) {
     if (dataset.has("title")) {
       dataset.put("titleAutocomplete", dataset.get("title").asText());
@@ -209,7 +228,8 @@ public class DatasetJsonConverter {
     }
   }
 
-  private void addRecordCounts(ObjectNode dataset, Long datasetOccurrenceCount) {
+  private void addRecordCounts(
+      ObjectNode dataset, Long datasetOccurrenceCount, Enrichment enrichment) {
     int scale = 12;
     String datasetKey = dataset.get("key").textValue();
     dataset.put("occurrenceCount", datasetOccurrenceCount);
@@ -229,7 +249,7 @@ public class DatasetJsonConverter {
 
     if (dataset.hasNonNull("type")
         && DatasetType.CHECKLIST.name().equals(dataset.get("type").asText())) {
-      Long nameCount = gbifWsClient.getChecklistMetricsNameCount(datasetKey);
+      Long nameCount = enrichment.checklistNameCount(datasetKey);
 
       if (Objects.nonNull(nameCount)) {
         nameUsagesPercentage = nameCount / getNameUsagesCount().doubleValue();
@@ -352,13 +372,13 @@ public class DatasetJsonConverter {
     }
   }
 
-  private void addOccurrenceSpeciesCounts(ObjectNode datasetJsonNode) {
+  private void addOccurrenceSpeciesCounts(ObjectNode datasetJsonNode, Enrichment enrichment) {
     String datasetKey = datasetJsonNode.get("key").textValue();
-    Long count = gbifWsClient.getDatasetRecordCount(datasetKey);
+    Long count = enrichment.recordCount(datasetKey);
     if (count == null) {
       log.warn("Dataset {} with 0 count", datasetKey);
     }
-    addRecordCounts(datasetJsonNode, count);
+    addRecordCounts(datasetJsonNode, count, enrichment);
   }
 
   private void addCategoriesWithParents(Dataset dataset, ObjectNode datasetJsonNode) {
@@ -464,4 +484,78 @@ public class DatasetJsonConverter {
     ArrayNode arrayNode = node.putArray(field);
     values.forEach(arrayNode::add);
   }
+
+  /** Remote data used to enrich the datasets. */
+  private interface Enrichment {
+
+    Long recordCount(String datasetKey);
+
+    Long checklistNameCount(String datasetKey);
+
+    List<Network> networks(Dataset dataset);
+  }
+
+  /** Calls the remote services for each dataset. */
+  private class RemoteEnrichment implements Enrichment {
+
+    @Override
+    public Long recordCount(String datasetKey) {
+      return gbifWsClient.getDatasetRecordCount(datasetKey);
+    }
+
+    @Override
+    public Long checklistNameCount(String datasetKey) {
+      return gbifWsClient.getChecklistMetricsNameCount(datasetKey);
+    }
+
+    @Override
+    public List<Network> networks(Dataset dataset) {
+      return gbifWsClient.getNetworks(dataset.getKey());
+    }
+  }
+
+  /** Resolves the remote data of a page of datasets in bulk. */
+  private class PrefetchedEnrichment implements Enrichment {
+
+    private final Map<String, Long> recordCounts;
+    private final Map<String, Long> checklistNameCounts;
+
+    PrefetchedEnrichment(List<Dataset> datasets) {
+      recordCounts =
+          gbifWsClient.getDatasetRecordCounts(
+              datasets.stream().map(d -> d.getKey().toString()).collect(Collectors.toList()));
+      checklistNameCounts =
+          gbifWsClient.getChecklistMetricsNameCounts(
+              datasets.stream()
+                  .filter(d -> DatasetType.CHECKLIST == d.getType())
+                  .map(d -> d.getKey().toString())
+                  .collect(Collectors.toList()));
+    }
+
+    @Override
+    public Long recordCount(String datasetKey) {
+      return recordCounts.get(datasetKey);
+    }
+
+    @Override
+    public Long checklistNameCount(String datasetKey) {
+      return checklistNameCounts.get(datasetKey);
+    }
+
+    @Override
+    public List<Network> networks(Dataset dataset) {
+      if (dataset.getNetworkKeys() == null) {
+        return gbifWsClient.getNetworks(dataset.getKey());
+      }
+      // network keys are already in the dataset, the networks are looked up in a cache
+      List<Network> networks = new ArrayList<>();
+      for (UUID networkKey : dataset.getNetworkKeys()) {
+        Network network = gbifWsClient.getNetwork(networkKey.toString());
+        if (network != null && network.getDeleted() == null) {
+          networks.add(network);
+        }
+      }
+      return networks;
+    }
+  }
 }
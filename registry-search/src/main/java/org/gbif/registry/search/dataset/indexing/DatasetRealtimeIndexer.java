@@ -32,5 +32,30 @@ public interface DatasetRealtimeIndexer {
 
   void delete(Dataset dataset);
 
+  /**
+   * Updates only the organization fields of its published and hosted datasets, without converting
+   * the datasets again.
+   */
+  void updateFields(Organization organization);
+
+  /** Updates only the installation and hosting organization fields of its datasets. */
+  void updateFields(Installation installation);
+
+  /** Updates only the network titles of its datasets. */
+  void updateFields(Network network);
+
+  /** Updates queued or being sent to the index. */
   int getPendingUpdates();
+
+  /** Updates waiting in the queue to be flushed. */
+  int getQueueDepth();
+
+  /** Time taken by the last flush of the queue. */
+  long getLastFlushLatencyMillis();
+
+  /** Longest time taken by a flush of the queue. */
+  long getMaxFlushLatencyMillis();
+
+  /** Number of updates replaced by a later update of the same dataset before being flushed. */
+  long getCoalescedUpdates();
 }
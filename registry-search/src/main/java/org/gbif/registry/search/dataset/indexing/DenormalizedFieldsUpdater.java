@@ -0,0 +1,204 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.search.dataset.indexing;
+
+import org.gbif.api.model.registry.Installation;
+import org.gbif.api.model.registry.Network;
+import org.gbif.api.model.registry.Organization;
+import org.gbif.registry.search.dataset.indexing.ws.GbifWsClient;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.Conflicts;
+import co.elastic.clients.elasticsearch.core.UpdateByQueryResponse;
+import co.elastic.clients.json.JsonData;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Patches in place the organization, installation and network fields that {@link
+ * DatasetJsonConverter} denormalizes into the dataset documents, using update by query requests.
+ *
+ * <p>The rest of the document is left untouched, so the datasets don't need to be converted again.
+ * Scripts set the same fields, with the same values, as the converter does.
+ *
+ * <p>Update by query only sees refreshed documents, so the index is refreshed before an update if
+ * documents were written since the last one. Otherwise datasets indexed just before would be
+ * missed and keep the old values.
+ */
+@Slf4j
+class DenormalizedFieldsUpdater {
+
+  private static final String PUBLISHER_SCRIPT =
+      "ctx._source.publishingOrganizationTitle = params.title;"
+          + "ctx._source.publishingOrganizationTitleAutocomplete = params.title;"
+          + "if (params.country != null) { ctx._source.publishingCountry = params.country; }"
+          + " else { ctx._source.remove('publishingCountry'); }"
+          + "if (params.endorsingNodeKey != null) {"
+          + " ctx._source.endorsingNodeKey = params.endorsingNodeKey; }"
+          + " else { ctx._source.remove('endorsingNodeKey'); }";
+
+  private static final String HOST_SCRIPT =
+      "ctx._source.hostingOrganizationTitle = params.title;"
+          + "ctx._source.hostingOrganizationTitleAutocomplete = params.title;"
+          + "if (params.country != null) { ctx._source.hostingCountry = params.country; }"
+          + " else { ctx._source.remove('hostingCountry'); }";
+
+  private static final String INSTALLATION_SCRIPT =
+      "ctx._source.installationTitle = params.title;"
+          + "ctx._source.installationTitleAutocomplete = params.title;"
+          + "if (params.hostingOrganizationKey != null) {"
+          + " ctx._source.hostingOrganizationKey = params.hostingOrganizationKey;"
+          + " ctx._source.hostingOrganizationTitle = params.hostingOrganizationTitle;"
+          + " ctx._source.hostingOrganizationTitleAutocomplete = params.hostingOrganizationTitle;"
+          + " if (params.hostingCountry != null) {"
+          + " ctx._source.hostingCountry = params.hostingCountry; }"
+          + " else { ctx._source.remove('hostingCountry'); }"
+          + "} else {"
+          + " ctx._source.remove('hostingOrganizationKey');"
+          + " ctx._source.remove('hostingOrganizationTitle');"
+          + " ctx._source.remove('hostingOrganizationTitleAutocomplete');"
+          + " ctx._source.remove('hostingCountry'); }";
+
+  // networkKeys and networkTitles are parallel arrays
+  private static final String NETWORK_SCRIPT =
+      "int i = ctx._source.networkKeys.indexOf(params.key);"
+          + "if (i >= 0 && ctx._source.networkTitles != null"
+          + " && i < ctx._source.networkTitles.size()) {"
+          + " ctx._source.networkTitles[i] = params.title; }"
+          + " else { ctx.op = 'noop'; }";
+
+  private final ElasticsearchClient elasticsearchClient;
+  private final GbifWsClient gbifWsClient;
+  private final String index;
+
+  private final AtomicBoolean unrefreshedWrites = new AtomicBoolean();
+
+  DenormalizedFieldsUpdater(
+      ElasticsearchClient elasticsearchClient, GbifWsClient gbifWsClient, String index) {
+    this.elasticsearchClient = elasticsearchClient;
+    this.gbifWsClient = gbifWsClient;
+    this.index = index;
+  }
+
+  /** Records that documents were written to the index, so the next update refreshes it first. */
+  void written() {
+    unrefreshedWrites.set(true);
+  }
+
+  /** Updates the datasets published or hosted by the organization, returns the number updated. */
+  long update(Organization organization) throws IOException {
+    String key = organization.getKey().toString();
+    String country =
+        Objects.nonNull(organization.getCountry())
+            ? organization.getCountry().getIso2LetterCode()
+            : null;
+
+    Map<String, JsonData> publisherParams = new HashMap<>();
+    putParam(publisherParams, "title", organization.getTitle());
+    putParam(publisherParams, "country", country);
+    putParam(
+        publisherParams,
+        "endorsingNodeKey",
+        Objects.toString(organization.getEndorsingNodeKey(), null));
+    long updated =
+        updateByQuery("publishingOrganizationKey", key, PUBLISHER_SCRIPT, publisherParams);
+
+    Map<String, JsonData> hostParams = new HashMap<>();
+    putParam(hostParams, "title", organization.getTitle());
+    putParam(hostParams, "country", country);
+    return updated + updateByQuery("hostingOrganizationKey", key, HOST_SCRIPT, hostParams);
+  }
+
+  /** Updates the datasets served by the installation, returns the number updated. */
+  long update(Installation installation) throws IOException {
+    Map<String, JsonData> params = new HashMap<>();
+    putParam(params, "title", installation.getTitle());
+    if (Objects.nonNull(installation.getOrganizationKey())) {
+      Organization hostingOrg =
+          gbifWsClient.getOrganization(installation.getOrganizationKey().toString());
+      if (Objects.nonNull(hostingOrg)) {
+        putParam(params, "hostingOrganizationKey", hostingOrg.getKey().toString());
+        putParam(params, "hostingOrganizationTitle", hostingOrg.getTitle());
+        if (Objects.nonNull(hostingOrg.getCountry())) {
+          putParam(params, "hostingCountry", hostingOrg.getCountry().getIso2LetterCode());
+        }
+      }
+    }
+    return updateByQuery(
+        "installationKey", installation.getKey().toString(), INSTALLATION_SCRIPT, params);
+  }
+
+  /** Updates the datasets that are part of the network, returns the number updated. */
+  long update(Network network) throws IOException {
+    String key = network.getKey().toString();
+    Map<String, JsonData> params = new HashMap<>();
+    putParam(params, "key", key);
+    putParam(params, "title", network.getTitle());
+    return updateByQuery("networkKeys", key, NETWORK_SCRIPT, params);
+  }
+
+  private long updateByQuery(
+      String field, String value, String script, Map<String, JsonData> params)
+      throws IOException {
+    if (unrefreshedWrites.getAndSet(false)) {
+      try {
+        elasticsearchClient.indices().refresh(r -> r.index(index));
+      } catch (IOException | RuntimeException ex) {
+        unrefreshedWrites.set(true);
+        throw ex;
+      }
+    }
+    UpdateByQueryResponse response =
+        elasticsearchClient.updateByQuery(
+            u ->
+                u.index(index)
+                    .query(q -> q.term(t -> t.field(field).value(value)))
+                    .script(s -> s.source(script).lang("painless").params(params))
+                    .conflicts(Conflicts.Proceed));
+
+    if (response.failures() != null && !response.failures().isEmpty()) {
+      throw new IllegalStateException(
+          "Update by query of "
+              + field
+              + "="
+              + value
+              + " had "
+              + response.failures().size()
+              + " failures, first: "
+              + response.failures().get(0));
+    }
+    if (Optional.ofNullable(response.versionConflicts()).orElse(0L) > 0) {
+      // these documents were rewritten in full while the update was running
+      log.debug(
+          "Update by query of {}={} skipped {} documents with version conflicts",
+          field,
+          value,
+          response.versionConflicts());
+    }
+    return Optional.ofNullable(response.updated()).orElse(0L);
+  }
+
+  private static void putParam(Map<String, JsonData> params, String name, String value) {
+    // painless sees missing params as null
+    if (value != null) {
+      params.put(name, JsonData.of(value));
+    }
+  }
+}
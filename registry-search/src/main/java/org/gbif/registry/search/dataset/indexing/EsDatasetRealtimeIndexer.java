@@ -18,71 +18,118 @@ import org.gbif.api.model.registry.Installation;
 import org.gbif.api.model.registry.Network;
 import org.gbif.api.model.registry.Organization;
 import org.gbif.api.util.iterables.Iterables;
+import org.gbif.registry.search.dataset.indexing.es.EsBulkIndexer;
+import org.gbif.registry.search.dataset.indexing.es.EsClient;
 import org.gbif.registry.search.dataset.indexing.es.IndexingConstants;
 import org.gbif.registry.search.dataset.indexing.ws.GbifWsClient;
 
-import java.io.ByteArrayInputStream;
-import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
-import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
-import co.elastic.clients.elasticsearch.ElasticsearchAsyncClient;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
 import co.elastic.clients.elasticsearch.ElasticsearchClient;
-import co.elastic.clients.elasticsearch.core.BulkRequest;
-import co.elastic.clients.elasticsearch.core.DeleteRequest;
-import co.elastic.clients.elasticsearch.core.IndexRequest;
-import co.elastic.clients.elasticsearch.core.bulk.BulkOperation;
-import co.elastic.clients.elasticsearch.core.bulk.IndexOperation;
-import co.elastic.clients.json.JsonData;
 import lombok.extern.slf4j.Slf4j;
 
+/**
+ * Indexes datasets in Elasticsearch using a write-behind queue keyed by dataset key.
+ *
+ * <p>Updates are not sent right away: they are queued and flushed every {@code debounceMillis}
+ * (or as soon as the queue reaches {@code maxQueueSize}). Repeated updates of the same dataset
+ * within that window collapse into a single operation with the latest state, and the flushed
+ * operations are sent as size-bounded bulks. The index is not refreshed explicitly, documents
+ * become searchable after the refresh interval of the index.
+ */
 @Slf4j
 @Component
-public class EsDatasetRealtimeIndexer implements DatasetRealtimeIndexer {
+public class EsDatasetRealtimeIndexer implements DatasetRealtimeIndexer, DisposableBean {
 
-  private final ElasticsearchAsyncClient elasticsearchAsyncClient;
+  // number of datasets converted together, remote lookups are done in bulk for each chunk
+  private static final int CONVERSION_CHUNK_SIZE = 200;
+
+  /** Latest pending write of a dataset: the dataset to index or a deletion. */
+  private static class PendingWrite {
+    private final Dataset dataset;
+    private final boolean delete;
+
+    private PendingWrite(Dataset dataset, boolean delete) {
+      this.dataset = dataset;
+      this.delete = delete;
+    }
+  }
 
   private final DatasetJsonConverter datasetJsonConverter;
 
   private final GbifWsClient gbifWsClient;
 
-  private final AtomicInteger pendingUpdates;
-
   private final String index;
 
-  private final ElasticsearchClient elasticsearchClient;
+  private final int maxQueueSize;
+
+  private final EsBulkIndexer bulkIndexer;
+
+  private final DenormalizedFieldsUpdater denormalizedFieldsUpdater;
+
+  private final ScheduledExecutorService flushExecutor;
 
-  /** Serializes index writes per dataset key so a slower earlier write cannot overwrite a newer one. */
-  private final ConcurrentHashMap<UUID, CompletableFuture<Void>> inFlightByKey =
-      new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<UUID, PendingWrite> queue = new ConcurrentHashMap<>();
+
+  private final AtomicBoolean earlyFlushRequested = new AtomicBoolean();
+
+  // writes taken from the queue that are not yet acknowledged by Elasticsearch
+  private final AtomicInteger inFlight = new AtomicInteger();
+
+  // partial updates of denormalized fields waiting or running
+  private final AtomicInteger pendingFieldUpdates = new AtomicInteger();
+
+  private final AtomicLong coalescedUpdates = new AtomicLong();
+  private final AtomicLong lastFlushLatencyMillis = new AtomicLong();
+  private final AtomicLong maxFlushLatencyMillis = new AtomicLong();
 
   @Autowired
   public EsDatasetRealtimeIndexer(
-    ElasticsearchAsyncClient elasticsearchAsyncClient,
     ElasticsearchClient elasticsearchClient,
     DatasetJsonConverter datasetJsonConverter,
     GbifWsClient gbifWsClient,
-    @Value("${elasticsearch.registry.index}") String index) {
-    this.elasticsearchAsyncClient = elasticsearchAsyncClient;
-    this.elasticsearchClient = elasticsearchClient;
+    @Value("${elasticsearch.registry.index}") String index,
+    @Value("${elasticsearch.registry.realtime.debounceMillis:1000}") long debounceMillis,
+    @Value("${elasticsearch.registry.realtime.maxQueueSize:10000}") int maxQueueSize,
+    @Value("${elasticsearch.registry.realtime.maxConcurrentBulks:2}") int maxConcurrentBulks) {
     this.datasetJsonConverter = datasetJsonConverter;
     this.gbifWsClient = gbifWsClient;
     this.index = index;
-    pendingUpdates = new AtomicInteger();
-  }
+    this.maxQueueSize = maxQueueSize;
+
+    EsBulkIndexer.BulkConfiguration bulkConfiguration = new EsBulkIndexer.BulkConfiguration();
+    bulkConfiguration.setMaxConcurrentBulks(maxConcurrentBulks);
+    this.bulkIndexer = new EsBulkIndexer(new EsClient(elasticsearchClient), bulkConfiguration);
+    this.denormalizedFieldsUpdater =
+      new DenormalizedFieldsUpdater(elasticsearchClient, gbifWsClient, index);
 
-  private IndexRequest<?> toIndexRequest(Dataset dataset) {
-    String jsonString = datasetJsonConverter.convertAsJsonString(dataset);
-    return IndexRequest.of(i -> i
-      .id(dataset.getKey().toString())
-      .index(index)
-      .withJson(new ByteArrayInputStream(jsonString.getBytes(StandardCharsets.UTF_8))));
+    this.flushExecutor =
+      Executors.newSingleThreadScheduledExecutor(
+        new ThreadFactoryBuilder()
+          .setNameFormat("dataset-realtime-indexer-%d")
+          .setDaemon(true)
+          .build());
+    flushExecutor.scheduleWithFixedDelay(
+      this::flushQuietly, debounceMillis, debounceMillis, TimeUnit.MILLISECONDS);
   }
 
   @Override
@@ -90,87 +137,13 @@ public class EsDatasetRealtimeIndexer implements DatasetRealtimeIndexer {
     if (dataset.getKey() == null) {
       return;
     }
-    UUID key = dataset.getKey();
-    pendingUpdates.incrementAndGet();
-    try {
-      IndexRequest<?> indexRequest = toIndexRequest(dataset);
-      CompletableFuture<Void> chain =
-          inFlightByKey.compute(
-              key,
-              (datasetKey, previous) -> {
-                CompletableFuture<Void> afterPrevious =
-                    previous != null ? previous : CompletableFuture.completedFuture(null);
-                return afterPrevious
-                    .handle((ignored, ex) -> null)
-                    .thenCompose(
-                        ignored ->
-                            elasticsearchAsyncClient
-                                .index(indexRequest)
-                                .thenAccept(
-                                    response ->
-                                        log.info("Dataset indexed {}, result {}", key, response))
-                                .exceptionally(
-                                    ex -> {
-                                      log.error("Error indexing dataset {}", dataset, ex);
-                                      return null;
-                                    })
-                                .thenApply(ignored2 -> null));
-              });
-
-      chain.whenComplete(
-          (ignored, ex) -> {
-            pendingUpdates.decrementAndGet();
-            inFlightByKey.compute(key, (datasetKey, current) -> current == chain ? null : current);
-          });
-    } catch (Exception ex) {
-      log.error("Error indexing dataset {}", dataset, ex);
-      pendingUpdates.decrementAndGet();
-    }
+    gbifWsClient.purge(dataset);
+    enqueue(dataset.getKey(), new PendingWrite(dataset, false));
   }
 
   @Override
   public void index(Iterable<Dataset> datasets) {
-    final AtomicInteger updatesCount = new AtomicInteger();
-    BulkRequest.Builder bulkBuilder = new BulkRequest.Builder();
-
-    datasets.forEach(
-      dataset -> {
-        String jsonString = datasetJsonConverter.convertAsJsonString(dataset);
-        bulkBuilder.operations(BulkOperation.of(op -> op.index(IndexOperation.of(io -> io
-          .id(dataset.getKey().toString())
-          .index(index)
-          .document(JsonData.fromJson(jsonString))))));
-        updatesCount.incrementAndGet();
-      });
-    if (updatesCount.get() > 0) {
-      pendingUpdates.getAndAdd(updatesCount.get());
-      try {
-        elasticsearchAsyncClient.bulk(bulkBuilder.build())
-          .thenAccept(bulkResponse -> {
-            if (bulkResponse.errors()) {
-              log.error("Error indexing datasets - bulk operation had errors");
-              bulkResponse.items().forEach(item -> {
-                if (item.error() != null) {
-                  log.error("Bulk item error: {}", item.error().reason());
-                }
-              });
-            } else {
-              log.info("Datasets indexed successfully");
-              // Refresh index to make indexed data searchable immediately
-              refreshIndex();
-            }
-            pendingUpdates.addAndGet(-updatesCount.get());
-          })
-          .exceptionally(ex -> {
-            log.error("Error indexing datasets", ex);
-            pendingUpdates.addAndGet(-updatesCount.get());
-            return null;
-          });
-      } catch (Exception ex) {
-        log.error("Error indexing datasets", ex);
-        pendingUpdates.addAndGet(-updatesCount.get());
-      }
-    }
+    datasets.forEach(this::index);
   }
 
   @Override
@@ -235,29 +208,16 @@ public class EsDatasetRealtimeIndexer implements DatasetRealtimeIndexer {
 
   @Override
   public void delete(Dataset dataset) {
-    pendingUpdates.incrementAndGet();
-    DeleteRequest deleteRequest = DeleteRequest.of(d -> d
-      .id(dataset.getKey().toString())
-      .index(IndexingConstants.ALIAS));
-    try {
-      elasticsearchAsyncClient.delete(deleteRequest)
-        .thenAccept(deleteResponse -> {
-          log.info("Dataset deleted {}, result {}", dataset.getKey(), deleteResponse);
-          pendingUpdates.decrementAndGet();
-        })
-        .exceptionally(ex -> {
-          log.error("Error deleting dataset {}", dataset, ex);
-          pendingUpdates.decrementAndGet();
-          return null;
-        });
-    } catch (Exception ex) {
-      log.error("Error deleting dataset {}", dataset, ex);
-      pendingUpdates.decrementAndGet();
+    if (dataset.getKey() == null) {
+      return;
     }
+    enqueue(dataset.getKey(), new PendingWrite(dataset, true));
   }
 
   @Override
   public void index(Network network) {
+    // first purge cache
+    gbifWsClient.purge(network);
     // Update hosted datasets for the organization
     try {
       log.debug("Updating hosted datasets for installation {}", network.getKey());
@@ -273,16 +233,189 @@ public class EsDatasetRealtimeIndexer implements DatasetRealtimeIndexer {
     }
   }
 
+  @Override
+  public void updateFields(Organization organization) {
+    gbifWsClient.purge(organization);
+    updateFields(
+      "organization " + organization.getKey(),
+      () -> denormalizedFieldsUpdater.update(organization),
+      () -> index(organization));
+  }
+
+  @Override
+  public void updateFields(Installation installation) {
+    gbifWsClient.purge(installation);
+    updateFields(
+      "installation " + installation.getKey(),
+      () -> denormalizedFieldsUpdater.update(installation),
+      () -> index(installation));
+  }
+
+  @Override
+  public void updateFields(Network network) {
+    gbifWsClient.purge(network);
+    updateFields(
+      "network " + network.getKey(),
+      () -> denormalizedFieldsUpdater.update(network),
+      () -> index(network));
+  }
+
+  /**
+   * Runs the partial update on the flush executor, so it never races with the bulks of the queue.
+   * If it fails the datasets are reindexed in full.
+   */
+  private void updateFields(String entity, Callable<Long> update, Runnable fullReindex) {
+    pendingFieldUpdates.incrementAndGet();
+    try {
+      flushExecutor.execute(
+        () -> {
+          try {
+            long start = System.currentTimeMillis();
+            long updated = update.call();
+            log.info(
+              "Updated fields of {} datasets of {} in {} ms",
+              updated,
+              entity,
+              System.currentTimeMillis() - start);
+          } catch (Exception ex) {
+            log.error("Unable to update fields of datasets of {}, reindexing them", entity, ex);
+            fullReindex.run();
+          } finally {
+            pendingFieldUpdates.decrementAndGet();
+          }
+        });
+    } catch (RejectedExecutionException ex) {
+      pendingFieldUpdates.decrementAndGet();
+      fullReindex.run();
+    }
+  }
+
   @Override
   public int getPendingUpdates() {
-    return pendingUpdates.get();
+    return queue.size() + inFlight.get() + pendingFieldUpdates.get();
   }
 
-  private void refreshIndex() {
+  @Override
+  public int getQueueDepth() {
+    return queue.size();
+  }
+
+  @Override
+  public long getLastFlushLatencyMillis() {
+    return lastFlushLatencyMillis.get();
+  }
+
+  @Override
+  public long getMaxFlushLatencyMillis() {
+    return maxFlushLatencyMillis.get();
+  }
+
+  @Override
+  public long getCoalescedUpdates() {
+    return coalescedUpdates.get();
+  }
+
+  private void enqueue(UUID key, PendingWrite write) {
+    if (queue.put(key, write) != null) {
+      coalescedUpdates.incrementAndGet();
+    }
+    if (queue.size() >= maxQueueSize
+        && !flushExecutor.isShutdown()
+        && earlyFlushRequested.compareAndSet(false, true)) {
+      flushExecutor.execute(this::flushQuietly);
+    }
+  }
+
+  private void flushQuietly() {
+    try {
+      flush();
+    } catch (Exception ex) {
+      // an exception would cancel the scheduled flushes
+      log.error("Error flushing the dataset indexing queue", ex);
+    }
+  }
+
+  /**
+   * Sends the queued writes and waits for their bulks to complete, so a later flush of the same
+   * dataset can never overtake an earlier one. Only called from the flush executor.
+   */
+  private void flush() {
+    earlyFlushRequested.set(false);
+    if (queue.isEmpty()) {
+      return;
+    }
+    long start = System.currentTimeMillis();
+    List<Dataset> toIndex = new ArrayList<>();
+    int deleted = 0;
+    try {
+      for (UUID key : queue.keySet()) {
+        // counted as in flight before leaving the queue so pending updates never drop too early
+        inFlight.incrementAndGet();
+        PendingWrite write = queue.remove(key);
+        if (write == null) {
+          inFlight.decrementAndGet();
+        } else if (write.delete) {
+          bulkIndexer.delete(IndexingConstants.ALIAS, key.toString());
+          deleted++;
+        } else {
+          toIndex.add(write.dataset);
+        }
+      }
+
+      for (List<Dataset> chunk : Lists.partition(toIndex, CONVERSION_CHUNK_SIZE)) {
+        indexChunk(chunk);
+      }
+      bulkIndexer.awaitCompletion();
+    } finally {
+      inFlight.set(0);
+      denormalizedFieldsUpdater.written();
+    }
+
+    long latency = System.currentTimeMillis() - start;
+    lastFlushLatencyMillis.set(latency);
+    maxFlushLatencyMillis.accumulateAndGet(latency, Math::max);
+    log.info(
+      "Flushed {} dataset updates and {} deletions in {} ms",
+      toIndex.size(),
+      deleted,
+      latency);
+  }
+
+  private void indexChunk(List<Dataset> datasets) {
+    List<String> jsons;
+    try {
+      jsons = datasetJsonConverter.convertAsJsonStrings(datasets);
+    } catch (Exception ex) {
+      log.warn("Error converting {} datasets, converting one by one", datasets.size(), ex);
+      datasets.forEach(this::indexOne);
+      return;
+    }
+    for (int i = 0; i < datasets.size(); i++) {
+      bulkIndexer.index(index, datasets.get(i).getKey().toString(), jsons.get(i));
+    }
+  }
+
+  private void indexOne(Dataset dataset) {
     try {
-      elasticsearchClient.indices().refresh(r -> r.index(index));
+      bulkIndexer.index(
+        index, dataset.getKey().toString(), datasetJsonConverter.convertAsJsonString(dataset));
     } catch (Exception ex) {
-      log.warn("Failed to refresh index after indexing", ex);
+      log.error("Error indexing dataset {}", dataset.getKey(), ex);
+    }
+  }
+
+  /** Flushes the writes still in the queue before shutting down. */
+  @Override
+  public void destroy() {
+    flushExecutor.shutdown();
+    try {
+      if (!flushExecutor.awaitTermination(1, TimeUnit.MINUTES)) {
+        log.warn("Dataset indexing queue did not finish flushing in time");
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
     }
+    flushQuietly();
+    bulkIndexer.close();
   }
 }
@@ -0,0 +1,296 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.search.dataset.indexing.es;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.base.Stopwatch;
+
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
+import co.elastic.clients.elasticsearch.core.BulkRequest;
+import co.elastic.clients.elasticsearch.core.BulkResponse;
+import co.elastic.clients.elasticsearch.core.bulk.BulkOperation;
+import co.elastic.clients.elasticsearch.core.bulk.BulkResponseItem;
+import co.elastic.clients.json.JsonData;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Buffers index and delete operations into bulks bounded by size in bytes and number of actions.
+ *
+ * <p>Bulks are sent by a fixed number of workers. Callers block when all the workers are busy, so
+ * Elasticsearch applies back-pressure to the producers instead of piling up requests in memory.
+ * Items rejected with a 429 (or whole bulks failing) are retried with exponential backoff. Items
+ * that can't be indexed are counted as failed, see {@link BulkStats#getFailedItems()}.
+ */
+@Slf4j
+public class EsBulkIndexer implements Closeable {
+
+  private static final int TOO_MANY_REQUESTS = 429;
+
+  // rough size of the action metadata line of each operation
+  private static final int ACTION_OVERHEAD_BYTES = 100;
+
+  /** Settings of the bulk indexer. */
+  @Data
+  public static class BulkConfiguration {
+
+    /** Number of bulk requests that can be sent to Elasticsearch at the same time. */
+    private int maxConcurrentBulks = 4;
+
+    /** A bulk is sent when its estimated size reaches this amount of megabytes. */
+    private int maxBulkSizeMb = 10;
+
+    /** A bulk is sent when it contains this number of operations. */
+    private int maxBulkActions = 5_000;
+
+    /** Number of times rejected items are retried before giving up on them. */
+    private int maxRetries = 6;
+
+    /** Initial wait before retrying rejected items, doubled on each attempt. */
+    private long initialBackoffMillis = 500;
+
+    /** Upper bound of the wait between retries. */
+    private long maxBackoffMillis = 30_000;
+  }
+
+  /** Counters of the bulk indexer. */
+  @Data
+  public static class BulkStats {
+    private final long operations;
+    private final long bytes;
+    private final long bulks;
+    private final long retriedItems;
+    private final long failedItems;
+    private final long elapsedMillis;
+
+    public double operationsPerSecond() {
+      return elapsedMillis > 0 ? operations * 1000D / elapsedMillis : 0D;
+    }
+
+    public double megabytesPerSecond() {
+      return elapsedMillis > 0 ? (bytes / (1024D * 1024D)) * 1000D / elapsedMillis : 0D;
+    }
+
+    @Override
+    public String toString() {
+      return String.format(
+          "%d operations in %d bulks (%.1f MB), %.1f docs/s, %.2f MB/s, %d retried, %d failed",
+          operations,
+          bulks,
+          bytes / (1024D * 1024D),
+          operationsPerSecond(),
+          megabytesPerSecond(),
+          retriedItems,
+          failedItems);
+    }
+  }
+
+  private final EsClient esClient;
+  private final BulkConfiguration config;
+  private final long maxBulkSizeBytes;
+  private final ExecutorService executor;
+  private final Semaphore bulksInFlight;
+  private final Stopwatch stopwatch = Stopwatch.createUnstarted();
+
+  private final AtomicLong operations = new AtomicLong();
+  private final AtomicLong bytes = new AtomicLong();
+  private final AtomicLong bulks = new AtomicLong();
+  private final AtomicLong retriedItems = new AtomicLong();
+  private final AtomicLong failedItems = new AtomicLong();
+
+  // guarded by this
+  private List<BulkOperation> buffer = new ArrayList<>();
+  private long bufferBytes;
+
+  public EsBulkIndexer(EsClient esClient, BulkConfiguration config) {
+    this.esClient = esClient;
+    this.config = config;
+    this.maxBulkSizeBytes = config.getMaxBulkSizeMb() * 1024L * 1024L;
+    this.executor = Executors.newFixedThreadPool(config.getMaxConcurrentBulks());
+    this.bulksInFlight = new Semaphore(config.getMaxConcurrentBulks());
+  }
+
+  /** Adds an index operation, it may block if the maximum number of bulks in flight is reached. */
+  public void index(String indexName, String id, String json) {
+    add(
+        BulkOperation.of(
+            op -> op.index(io -> io.index(indexName).id(id).document(JsonData.fromJson(json)))),
+        json.getBytes(StandardCharsets.UTF_8).length);
+  }
+
+  /** Adds a delete operation, it may block if the maximum number of bulks in flight is reached. */
+  public void delete(String indexName, String id) {
+    add(BulkOperation.of(op -> op.delete(d -> d.index(indexName).id(id))), 0);
+  }
+
+  /** Adds an operation whose payload has the given size in bytes. */
+  public void add(BulkOperation operation, long sizeInBytes) {
+    List<BulkOperation> toSend = null;
+    long toSendBytes = 0;
+    synchronized (this) {
+      if (!stopwatch.isRunning()) {
+        stopwatch.start();
+      }
+      buffer.add(operation);
+      bufferBytes += sizeInBytes + ACTION_OVERHEAD_BYTES;
+      if (bufferBytes >= maxBulkSizeBytes || buffer.size() >= config.getMaxBulkActions()) {
+        toSend = buffer;
+        toSendBytes = bufferBytes;
+        buffer = new ArrayList<>();
+        bufferBytes = 0;
+      }
+    }
+    if (toSend != null) {
+      submit(toSend, toSendBytes);
+    }
+  }
+
+  /** Sends the buffered operations, without waiting for the response. */
+  public void flush() {
+    List<BulkOperation> toSend;
+    long toSendBytes;
+    synchronized (this) {
+      toSend = buffer;
+      toSendBytes = bufferBytes;
+      buffer = new ArrayList<>();
+      bufferBytes = 0;
+    }
+    if (!toSend.isEmpty()) {
+      submit(toSend, toSendBytes);
+    }
+  }
+
+  /** Sends the buffered operations and waits until all the bulks in flight are completed. */
+  public void awaitCompletion() {
+    flush();
+    bulksInFlight.acquireUninterruptibly(config.getMaxConcurrentBulks());
+    bulksInFlight.release(config.getMaxConcurrentBulks());
+  }
+
+  /** Number of bulks being sent at this moment. */
+  public int getBulksInFlight() {
+    return config.getMaxConcurrentBulks() - bulksInFlight.availablePermits();
+  }
+
+  public BulkStats getStats() {
+    return new BulkStats(
+        operations.get(),
+        bytes.get(),
+        bulks.get(),
+        retriedItems.get(),
+        failedItems.get(),
+        stopwatch.elapsed(TimeUnit.MILLISECONDS));
+  }
+
+  private void submit(List<BulkOperation> bulkOperations, long sizeInBytes) {
+    // blocks the producer until a worker is free
+    bulksInFlight.acquireUninterruptibly();
+    try {
+      executor.execute(
+          () -> {
+            try {
+              send(bulkOperations);
+              operations.addAndGet(bulkOperations.size());
+              bytes.addAndGet(sizeInBytes);
+              bulks.incrementAndGet();
+            } finally {
+              bulksInFlight.release();
+            }
+          });
+    } catch (RuntimeException ex) {
+      bulksInFlight.release();
+      throw ex;
+    }
+  }
+
+  private void send(List<BulkOperation> bulkOperations) {
+    List<BulkOperation> pending = bulkOperations;
+    int attempt = 0;
+    while (!pending.isEmpty()) {
+      List<BulkOperation> rejected = new ArrayList<>();
+      try {
+        BulkResponse response =
+            esClient.bulk(new BulkRequest.Builder().operations(pending).build());
+        if (response.errors()) {
+          // items of the response are in the same order as the operations of the request
+          List<BulkResponseItem> items = response.items();
+          for (int i = 0; i < items.size(); i++) {
+            BulkResponseItem item = items.get(i);
+            if (item.error() == null) {
+              continue;
+            }
+            if (item.status() == TOO_MANY_REQUESTS && attempt < config.getMaxRetries()) {
+              rejected.add(pending.get(i));
+            } else {
+              failedItems.incrementAndGet();
+              log.error(
+                  "Indexing failure: index={}, id={}, error={}",
+                  item.index(),
+                  item.id(),
+                  item.error());
+            }
+          }
+        }
+      } catch (ElasticsearchException | IOException ex) {
+        if (attempt >= config.getMaxRetries()) {
+          failedItems.addAndGet(pending.size());
+          log.error("Bulk of {} operations failed after {} retries", pending.size(), attempt, ex);
+          return;
+        }
+        log.warn("Bulk of {} operations failed, retrying", pending.size(), ex);
+        rejected = pending;
+      } catch (Exception ex) {
+        // not a transient failure (e.g. the request can't be serialized), retrying won't help
+        failedItems.addAndGet(pending.size());
+        log.error("Bulk of {} operations failed", pending.size(), ex);
+        return;
+      }
+
+      if (!rejected.isEmpty()) {
+        retriedItems.addAndGet(rejected.size());
+        backoff(attempt);
+        attempt++;
+      }
+      pending = rejected;
+    }
+  }
+
+  private void backoff(int attempt) {
+    long wait =
+        Math.min(
+            config.getInitialBackoffMillis() << Math.min(attempt, 20),
+            config.getMaxBackoffMillis());
+    try {
+      TimeUnit.MILLISECONDS.sleep(wait);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  @Override
+  public void close() {
+    awaitCompletion();
+    executor.shutdown();
+  }
+}
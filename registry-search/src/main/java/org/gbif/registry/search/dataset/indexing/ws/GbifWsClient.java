@@ -27,7 +27,9 @@ import org.gbif.api.model.registry.Network;
 import org.gbif.api.model.registry.Organization;
 
 import java.io.InputStream;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 public interface GbifWsClient {
@@ -36,6 +38,14 @@ public interface GbifWsClient {
 
   void purge(Organization organization);
 
+  void purge(Network network);
+
+  /** Removes the cached values of the dataset, such as its data package and record counts. */
+  void purge(Dataset dataset);
+
+  /** Logs the hits and misses of the caches. */
+  void logCacheStatistics();
+
   PagingResponse<Dataset> listDatasets(PagingRequest pagingRequest);
 
   Installation getInstallation(String installationKey);
@@ -61,6 +71,15 @@ public interface GbifWsClient {
 
   Long getChecklistMetricsNameCount(String datasetKey);
 
+  /**
+   * Occurrence counts of several datasets, resolved with faceted occurrence searches instead of a
+   * call per dataset. Datasets without occurrences have a count of zero.
+   */
+  Map<String, Long> getDatasetRecordCounts(Collection<String> datasetKeys);
+
+  /** Checklist metrics name counts of several datasets, keyed by dataset key. */
+  Map<String, Long> getChecklistMetricsNameCounts(Collection<String> datasetKeys);
+
   Long taxonSearchCount(String datasetKey);
 
   SearchResponse<Occurrence, OccurrenceSearchParameter> occurrenceSearch(
@@ -68,5 +87,7 @@ public interface GbifWsClient {
 
   List<Network> getNetworks(UUID datasetKey);
 
+  Network getNetwork(String networkKey);
+
   DataPackage getDataPackage(UUID datasetKey);
 }
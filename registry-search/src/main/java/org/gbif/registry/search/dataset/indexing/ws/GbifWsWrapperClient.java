@@ -15,6 +15,7 @@ package org.gbif.registry.search.dataset.indexing.ws;
 
 import org.gbif.api.model.common.paging.PagingRequest;
 import org.gbif.api.model.common.paging.PagingResponse;
+import org.gbif.api.model.common.search.Facet;
 import org.gbif.api.model.common.search.SearchResponse;
 import org.gbif.api.model.occurrence.Occurrence;
 import org.gbif.api.model.occurrence.search.OccurrenceSearchParameter;
@@ -34,7 +35,10 @@ import org.gbif.occurrence.ws.client.OccurrenceWsSearchClient;
 import org.gbif.registry.search.dataset.indexing.ws.taxon.TaxonApiClient;
 
 import java.io.InputStream;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import org.cache2k.Cache;
@@ -42,11 +46,13 @@ import org.cache2k.Cache2kBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Component;
 import org.springframework.util.LinkedMultiValueMap;
 
 import com.fasterxml.jackson.databind.JsonNode;
+import com.google.common.collect.Iterables;
 
 /** Retrofit {@link GbifApiService} client. */
 @Component
@@ -55,6 +61,9 @@ public class GbifWsWrapperClient implements GbifWsClient {
 
   private static final Logger LOG = LoggerFactory.getLogger(GbifWsWrapperClient.class);
 
+  // dataset keys per occurrence search, bounded to keep the request URL short
+  private static final int RECORD_COUNTS_BATCH_SIZE = 100;
+
   // Uses a cache for installations to avoid too many external calls
   Cache<String, Installation> installationCache =
       Cache2kBuilder.of(String.class, Installation.class)
@@ -73,6 +82,17 @@ public class GbifWsWrapperClient implements GbifWsClient {
           .loader(this::loadOrganization)
           .build();
 
+  // key of the single entry of the occurrence total cache
+  private static final String ALL_OCCURRENCES = "all";
+
+  // Size-bounded caches that expire, for the values that change without registry events
+  private final MeteredCache<String, Network> networkCache;
+  private final MeteredCache<String, Long> recordCountCache;
+  private final MeteredCache<String, Long> occurrenceTotalCache;
+  private final MeteredCache<String, Long> checklistNameCountCache;
+  private final MeteredCache<String, Long> taxonSearchCountCache;
+  private final MeteredCache<UUID, DataPackage> dataPackageCache;
+
   private final InstallationService installationService;
   private final OrganizationService organizationService;
   private final DatasetService datasetService;
@@ -97,7 +117,9 @@ public class GbifWsWrapperClient implements GbifWsClient {
       OccurrenceWsSearchClient occurrenceWsSearchClient,
       CubeWsClient cubeWsClient,
       TaxonApiClient taxonApiClient,
-      DatasetDataPackageService datasetDataPackageClient) {
+      DatasetDataPackageService datasetDataPackageClient,
+      @Value("${gbifApi.cache.maxEntries:100000}") long cacheMaxEntries,
+      @Value("${gbifApi.cache.expireAfterWriteMinutes:60}") long cacheExpireAfterWriteMinutes) {
     this.installationService = installationService;
     this.organizationService = organizationService;
     this.datasetService = datasetService;
@@ -106,6 +128,55 @@ public class GbifWsWrapperClient implements GbifWsClient {
     this.taxonApiClient = taxonApiClient;
     this.cubeWsClient = cubeWsClient;
     this.datasetDataPackageClient = datasetDataPackageClient;
+
+    networkCache =
+        new MeteredCache<>(
+            "networks",
+            String.class,
+            Network.class,
+            cacheMaxEntries,
+            cacheExpireAfterWriteMinutes,
+            this::loadNetwork);
+    recordCountCache =
+        new MeteredCache<>(
+            "occurrenceCounts",
+            String.class,
+            Long.class,
+            cacheMaxEntries,
+            cacheExpireAfterWriteMinutes,
+            this::loadDatasetRecordCount);
+    occurrenceTotalCache =
+        new MeteredCache<>(
+            "occurrenceTotal",
+            String.class,
+            Long.class,
+            1,
+            cacheExpireAfterWriteMinutes,
+            k -> cubeWsClient.get(new LinkedMultiValueMap<>()));
+    checklistNameCountCache =
+        new MeteredCache<>(
+            "checklistNameCounts",
+            String.class,
+            Long.class,
+            cacheMaxEntries,
+            cacheExpireAfterWriteMinutes,
+            this::loadChecklistMetricsNameCount);
+    taxonSearchCountCache =
+        new MeteredCache<>(
+            "taxonSearchCounts",
+            String.class,
+            Long.class,
+            cacheMaxEntries,
+            cacheExpireAfterWriteMinutes,
+            this::loadTaxonSearchCount);
+    dataPackageCache =
+        new MeteredCache<>(
+            "dataPackages",
+            UUID.class,
+            DataPackage.class,
+            cacheMaxEntries,
+            cacheExpireAfterWriteMinutes,
+            datasetDataPackageClient::get);
   }
 
   @Override
@@ -118,6 +189,36 @@ public class GbifWsWrapperClient implements GbifWsClient {
     organizationCache.remove(organization.getKey().toString());
   }
 
+  @Override
+  public void purge(Network network) {
+    networkCache.remove(network.getKey().toString());
+  }
+
+  @Override
+  public void purge(Dataset dataset) {
+    dataPackageCache.remove(dataset.getKey());
+    // a crawl changes the counts, the dataset is re-indexed with fresh ones
+    String datasetKey = dataset.getKey().toString();
+    recordCountCache.remove(datasetKey);
+    checklistNameCountCache.remove(datasetKey);
+    taxonSearchCountCache.remove(datasetKey);
+  }
+
+  @Override
+  public void logCacheStatistics() {
+    for (MeteredCache<?, ?> cache :
+        new MeteredCache<?, ?>[] {
+          networkCache,
+          recordCountCache,
+          occurrenceTotalCache,
+          checklistNameCountCache,
+          taxonSearchCountCache,
+          dataPackageCache
+        }) {
+      LOG.info("Cache {}", cache);
+    }
+  }
+
   @Override
   public PagingResponse<Dataset> listDatasets(PagingRequest pagingRequest) {
     return datasetService.list(pagingRequest);
@@ -172,6 +273,10 @@ public class GbifWsWrapperClient implements GbifWsClient {
 
   @Override
   public Long getDatasetRecordCount(String datasetKey) {
+    return recordCountCache.get(datasetKey);
+  }
+
+  private Long loadDatasetRecordCount(String datasetKey) {
     LinkedMultiValueMap<String,String> params = new LinkedMultiValueMap<>();
     params.add("datasetKey", datasetKey);
     return cubeWsClient.get(params);
@@ -179,37 +284,89 @@ public class GbifWsWrapperClient implements GbifWsClient {
 
   @Override
   public Long getOccurrenceRecordCount() {
-    return cubeWsClient.get(new LinkedMultiValueMap<>());
+    return occurrenceTotalCache.get(ALL_OCCURRENCES);
+  }
+
+  @Override
+  public Map<String, Long> getDatasetRecordCounts(Collection<String> datasetKeys) {
+    return recordCountCache.getAll(datasetKeys, this::loadDatasetRecordCounts);
+  }
+
+  private Map<String, Long> loadDatasetRecordCounts(Iterable<String> datasetKeys) {
+    Map<String, Long> counts = new HashMap<>();
+    for (List<String> batch : Iterables.partition(datasetKeys, RECORD_COUNTS_BATCH_SIZE)) {
+      try {
+        OccurrenceSearchRequest request = new OccurrenceSearchRequest();
+        request.setLimit(0);
+        request.addFacets(OccurrenceSearchParameter.DATASET_KEY);
+        request.setFacetLimit(batch.size());
+        batch.forEach(k -> request.addParameter(OccurrenceSearchParameter.DATASET_KEY, k));
+
+        // the response doesn't include the datasets without occurrences
+        batch.forEach(k -> counts.put(k, 0L));
+        for (Facet<OccurrenceSearchParameter> facet :
+            occurrenceWsSearchClient.search(request).getFacets()) {
+          for (Facet.Count count : facet.getCounts()) {
+            counts.put(count.getName(), count.getCount());
+          }
+        }
+      } catch (Exception e) {
+        LOG.warn(
+            "Failed to get occurrence counts of {} datasets, getting them one by one",
+            batch.size(),
+            e);
+        batch.forEach(k -> counts.put(k, loadDatasetRecordCount(k)));
+      }
+    }
+    return counts;
+  }
+
+  @Override
+  public Map<String, Long> getChecklistMetricsNameCounts(Collection<String> datasetKeys) {
+    // the checklist API doesn't offer metrics of several datasets in one call
+    Map<String, Long> counts = new HashMap<>();
+    datasetKeys.forEach(k -> counts.put(k, getChecklistMetricsNameCount(k)));
+    return counts;
   }
 
   @Override
   public Long getChecklistMetricsNameCount(String datasetKey) {
     try {
-      JsonNode response = taxonApiClient.getMetrics(UUID.fromString(datasetKey));
-      if (response != null) {
-        JsonNode nameCountNode = response.get("nameCount");
-        return nameCountNode != null ? nameCountNode.asLong() : null;
-      }
+      return checklistNameCountCache.get(datasetKey);
     } catch (Exception e) {
       LOG.warn("Failed to get checklist metrics for dataset {}", datasetKey, e);
     }
     return null;
   }
 
+  private Long loadChecklistMetricsNameCount(String datasetKey) {
+    JsonNode response = taxonApiClient.getMetrics(UUID.fromString(datasetKey));
+    if (response != null) {
+      JsonNode nameCountNode = response.get("nameCount");
+      return nameCountNode != null ? nameCountNode.asLong() : null;
+    }
+    return null;
+  }
+
   @Override
   public Long taxonSearchCount(String datasetKey) {
     try {
-      JsonNode response = taxonApiClient.search(datasetKey, new LinkedMultiValueMap<>());
-      if (response != null) {
-        JsonNode countNode = response.get("count");
-        return countNode != null ? countNode.asLong() : null;
-      }
+      return taxonSearchCountCache.get(datasetKey);
     } catch (Exception e) {
       LOG.warn("Failed to get taxon search count", e);
     }
     return null;
   }
 
+  private Long loadTaxonSearchCount(String datasetKey) {
+    JsonNode response = taxonApiClient.search(datasetKey, new LinkedMultiValueMap<>());
+    if (response != null) {
+      JsonNode countNode = response.get("count");
+      return countNode != null ? countNode.asLong() : null;
+    }
+    return null;
+  }
+
   @Override
   public SearchResponse<Occurrence, OccurrenceSearchParameter> occurrenceSearch(
       OccurrenceSearchRequest searchRequest) {
@@ -221,8 +378,17 @@ public class GbifWsWrapperClient implements GbifWsClient {
     return datasetService.listNetworks(datasetKey);
   }
 
+  @Override
+  public Network getNetwork(String networkKey) {
+    return networkCache.get(networkKey);
+  }
+
+  private Network loadNetwork(String networkKey) {
+    return networkService.get(UUID.fromString(networkKey));
+  }
+
   @Override
   public DataPackage getDataPackage(UUID datasetKey) {
-    return datasetDataPackageClient.get(datasetKey);
+    return dataPackageCache.get(datasetKey);
   }
 }
@@ -0,0 +1,163 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.search.dataset.indexing.ws;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import org.cache2k.Cache;
+import org.cache2k.Cache2kBuilder;
+import org.cache2k.CacheEntry;
+
+/**
+ * Size-bounded cache2k cache with expiry that counts its hits and misses.
+ *
+ * <p>Values are loaded through the cache loader, so concurrent requests of the same missing key
+ * wait for a single load. Failed loads are not cached, the exception is thrown to every waiting
+ * caller and the next request tries again. The same goes for bulk loads: a key being loaded by a
+ * bulk load is not loaded again by a concurrent one, which waits for it instead.
+ */
+class MeteredCache<K, V> {
+
+  private final String name;
+  private final Cache<K, V> cache;
+  private final AtomicLong requests = new AtomicLong();
+  // values loaded from the source, concurrent requests of a key being loaded are not misses
+  private final AtomicLong misses = new AtomicLong();
+  // bulk loads in progress, by key
+  private final Map<K, CompletableFuture<Map<K, V>>> pending = new ConcurrentHashMap<>();
+
+  MeteredCache(
+      String name,
+      Class<K> keyType,
+      Class<V> valueType,
+      long maxEntries,
+      long expireAfterWriteMinutes,
+      Function<K, V> loader) {
+    this.name = name;
+    this.cache =
+        Cache2kBuilder.of(keyType, valueType)
+            .entryCapacity(maxEntries)
+            .expireAfterWrite(expireAfterWriteMinutes, TimeUnit.MINUTES)
+            .disableStatistics(true)
+            .permitNullValues(true)
+            .loader(
+                key -> {
+                  misses.incrementAndGet();
+                  return loader.apply(key);
+                })
+            .build();
+  }
+
+  /** Gets the value, loading it if it's not cached. */
+  V get(K key) {
+    requests.incrementAndGet();
+    return cache.get(key);
+  }
+
+  /**
+   * Gets the cached values of the keys, the missing ones are loaded all together by the bulk
+   * loader and cached. Keys already being loaded by another call are not loaded again, their values
+   * are taken from that load once it finishes.
+   */
+  Map<K, V> getAll(Iterable<K> keys, Function<Iterable<K>, Map<K, V>> bulkLoader) {
+    Map<K, V> values = new HashMap<>();
+    List<K> missing = new ArrayList<>();
+    Map<K, CompletableFuture<Map<K, V>>> loadedElsewhere = new HashMap<>();
+    CompletableFuture<Map<K, V>> load = new CompletableFuture<>();
+    for (K key : keys) {
+      requests.incrementAndGet();
+      CacheEntry<K, V> entry = cache.peekEntry(key);
+      if (entry != null) {
+        values.put(key, entry.getValue());
+        continue;
+      }
+      CompletableFuture<Map<K, V>> other = pending.putIfAbsent(key, load);
+      if (other == null) {
+        missing.add(key);
+      } else if (other != load) {
+        loadedElsewhere.put(key, other);
+      }
+    }
+
+    // the keys of this call are loaded before waiting for the others, so calls can't wait for
+    // each other
+    if (!missing.isEmpty()) {
+      misses.addAndGet(missing.size());
+      try {
+        Map<K, V> loaded = bulkLoader.apply(missing);
+        cache.putAll(loaded);
+        values.putAll(loaded);
+        load.complete(loaded);
+      } catch (RuntimeException | Error e) {
+        load.completeExceptionally(e);
+        throw e;
+      } finally {
+        missing.forEach(key -> pending.remove(key, load));
+      }
+    }
+
+    for (Map.Entry<K, CompletableFuture<Map<K, V>>> waiting : loadedElsewhere.entrySet()) {
+      Map<K, V> loaded = join(waiting.getValue());
+      if (loaded.containsKey(waiting.getKey())) {
+        values.put(waiting.getKey(), loaded.get(waiting.getKey()));
+      }
+    }
+    return values;
+  }
+
+  private static <T> T join(CompletableFuture<T> future) {
+    try {
+      return future.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw e;
+    }
+  }
+
+  void remove(K key) {
+    cache.remove(key);
+  }
+
+  String getName() {
+    return name;
+  }
+
+  long getHits() {
+    return requests.get() - misses.get();
+  }
+
+  long getMisses() {
+    return misses.get();
+  }
+
+  @Override
+  public String toString() {
+    long total = requests.get();
+    long hits = getHits();
+    return String.format(
+        "%s: %d hits, %d misses (%.1f%% hit rate)",
+        name, hits, misses.get(), total > 0 ? hits * 100D / total : 0D);
+  }
+}
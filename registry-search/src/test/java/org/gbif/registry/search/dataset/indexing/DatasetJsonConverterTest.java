@@ -0,0 +1,141 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.search.dataset.indexing;
+
+import org.gbif.api.model.registry.Dataset;
+import org.gbif.api.model.registry.Network;
+import org.gbif.api.vocabulary.DatasetType;
+import org.gbif.registry.search.dataset.indexing.ws.GbifWsClient;
+import org.gbif.vocabulary.client.ConceptClient;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class DatasetJsonConverterTest {
+
+  @Mock private GbifWsClient gbifWsClient;
+  @Mock private ConceptClient conceptClient;
+
+  private DatasetJsonConverter converter;
+
+  @BeforeEach
+  public void setUp() {
+    converter = DatasetJsonConverter.create(gbifWsClient, conceptClient, "checklistKey");
+  }
+
+  @Test
+  public void testPageResolvedInBulk() {
+    Network network = network(null);
+    Network deletedNetwork = network(new Date());
+    Dataset occurrence1 = dataset(DatasetType.OCCURRENCE);
+    occurrence1.setNetworkKeys(Arrays.asList(network.getKey(), deletedNetwork.getKey()));
+    Dataset occurrence2 = dataset(DatasetType.OCCURRENCE);
+    Dataset checklist = dataset(DatasetType.CHECKLIST);
+    checklist.setNetworkKeys(Collections.singletonList(network.getKey()));
+
+    Map<String, Long> recordCounts = new HashMap<>();
+    recordCounts.put(occurrence1.getKey().toString(), 10L);
+    recordCounts.put(occurrence2.getKey().toString(), 0L);
+    recordCounts.put(checklist.getKey().toString(), 5L);
+    when(gbifWsClient.getDatasetRecordCounts(
+            Arrays.asList(
+                occurrence1.getKey().toString(),
+                occurrence2.getKey().toString(),
+                checklist.getKey().toString())))
+        .thenReturn(recordCounts);
+    when(gbifWsClient.getChecklistMetricsNameCounts(
+            Collections.singletonList(checklist.getKey().toString())))
+        .thenReturn(Collections.singletonMap(checklist.getKey().toString(), 20L));
+    when(gbifWsClient.getNetwork(network.getKey().toString())).thenReturn(network);
+    when(gbifWsClient.getNetwork(deletedNetwork.getKey().toString())).thenReturn(deletedNetwork);
+    when(gbifWsClient.getOccurrenceRecordCount()).thenReturn(100L);
+    when(gbifWsClient.taxonSearchCount("checklistKey")).thenReturn(200L);
+
+    List<ObjectNode> nodes = converter.convert(Arrays.asList(occurrence1, occurrence2, checklist));
+
+    assertEquals(3, nodes.size());
+    assertEquals(10L, nodes.get(0).get("occurrenceCount").asLong());
+    assertEquals(0L, nodes.get(1).get("occurrenceCount").asLong());
+    assertEquals(5L, nodes.get(2).get("occurrenceCount").asLong());
+    assertEquals(20L, nodes.get(2).get("nameUsagesCount").asLong());
+    assertFalse(nodes.get(0).has("nameUsagesCount"));
+
+    // deleted networks are left out
+    assertEquals(1, nodes.get(0).get("networkKeys").size());
+    assertEquals(network.getKey().toString(), nodes.get(0).get("networkKeys").get(0).asText());
+    assertEquals(network.getTitle(), nodes.get(0).get("networkTitles").get(0).asText());
+    assertEquals(0, nodes.get(1).get("networkKeys").size());
+    assertEquals(1, nodes.get(2).get("networkKeys").size());
+
+    // nothing is resolved per dataset
+    verify(gbifWsClient, never()).getDatasetRecordCount(anyString());
+    verify(gbifWsClient, never()).getChecklistMetricsNameCount(anyString());
+    verify(gbifWsClient, never()).getNetworks(any());
+  }
+
+  @Test
+  public void testSingleDatasetResolvedRemotely() {
+    Network network = network(null);
+    Dataset dataset = dataset(DatasetType.OCCURRENCE);
+    when(gbifWsClient.getDatasetRecordCount(dataset.getKey().toString())).thenReturn(10L);
+    when(gbifWsClient.getNetworks(dataset.getKey()))
+        .thenReturn(Collections.singletonList(network));
+    when(gbifWsClient.getOccurrenceRecordCount()).thenReturn(100L);
+
+    ObjectNode node = converter.convert(dataset);
+
+    assertEquals(10L, node.get("occurrenceCount").asLong());
+    assertEquals(network.getKey().toString(), node.get("networkKeys").get(0).asText());
+    verify(gbifWsClient, never()).getDatasetRecordCounts(any());
+  }
+
+  private static Dataset dataset(DatasetType type) {
+    Dataset dataset = new Dataset();
+    dataset.setKey(UUID.randomUUID());
+    dataset.setTitle("Dataset");
+    dataset.setType(type);
+    dataset.setNetworkKeys(Collections.emptyList());
+    return dataset;
+  }
+
+  private static Network network(Date deleted) {
+    Network network = new Network();
+    network.setKey(UUID.randomUUID());
+    network.setTitle("Network " + network.getKey());
+    network.setDeleted(deleted);
+    return network;
+  }
+}
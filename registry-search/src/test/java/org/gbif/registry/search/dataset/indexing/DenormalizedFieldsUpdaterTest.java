@@ -0,0 +1,105 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.search.dataset.indexing;
+
+import org.gbif.api.model.registry.Network;
+import org.gbif.registry.search.dataset.indexing.ws.GbifWsClient;
+
+import java.io.IOException;
+import java.util.UUID;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch.core.UpdateByQueryResponse;
+import co.elastic.clients.elasticsearch.indices.ElasticsearchIndicesClient;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@SuppressWarnings("unchecked")
+public class DenormalizedFieldsUpdaterTest {
+
+  @Mock private ElasticsearchClient elasticsearchClient;
+  @Mock private ElasticsearchIndicesClient indicesClient;
+  @Mock private GbifWsClient gbifWsClient;
+  @Mock private UpdateByQueryResponse response;
+
+  private DenormalizedFieldsUpdater updater;
+  private Network network;
+
+  @BeforeEach
+  public void setUp() {
+    updater = new DenormalizedFieldsUpdater(elasticsearchClient, gbifWsClient, "dataset");
+    network = new Network();
+    network.setKey(UUID.randomUUID());
+    network.setTitle("Network");
+  }
+
+  @Test
+  public void testRefreshesBeforeUpdatingAfterWrites() throws IOException {
+    when(elasticsearchClient.indices()).thenReturn(indicesClient);
+    when(elasticsearchClient.updateByQuery(any(Function.class))).thenReturn(response);
+    when(response.updated()).thenReturn(3L);
+
+    updater.written();
+    assertEquals(3L, updater.update(network));
+
+    InOrder inOrder = inOrder(indicesClient, elasticsearchClient);
+    inOrder.verify(indicesClient).refresh(any(Function.class));
+    inOrder.verify(elasticsearchClient).updateByQuery(any(Function.class));
+
+    // nothing was written since, so the next update doesn't refresh again
+    updater.update(network);
+    verify(indicesClient, times(1)).refresh(any(Function.class));
+  }
+
+  @Test
+  public void testNoRefreshWithoutWrites() throws IOException {
+    when(elasticsearchClient.updateByQuery(any(Function.class))).thenReturn(response);
+
+    updater.update(network);
+
+    verify(elasticsearchClient, never()).indices();
+  }
+
+  @Test
+  public void testFailedRefreshIsRetried() throws IOException {
+    when(elasticsearchClient.indices()).thenReturn(indicesClient);
+    when(indicesClient.refresh(any(Function.class)))
+        .thenThrow(new IOException("Connection refused"))
+        .thenReturn(null);
+    when(elasticsearchClient.updateByQuery(any(Function.class))).thenReturn(response);
+
+    updater.written();
+    assertThrows(IOException.class, () -> updater.update(network));
+    verify(elasticsearchClient, never()).updateByQuery(any(Function.class));
+
+    updater.update(network);
+    verify(indicesClient, times(2)).refresh(any(Function.class));
+  }
+}
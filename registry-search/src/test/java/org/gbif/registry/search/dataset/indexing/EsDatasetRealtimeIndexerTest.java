@@ -0,0 +1,159 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.search.dataset.indexing;
+
+import org.gbif.api.model.registry.Dataset;
+import org.gbif.registry.search.dataset.indexing.es.IndexingConstants;
+import org.gbif.registry.search.dataset.indexing.ws.GbifWsClient;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch.core.BulkRequest;
+import co.elastic.clients.elasticsearch.core.BulkResponse;
+import co.elastic.clients.elasticsearch.core.bulk.BulkOperation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@SuppressWarnings("unchecked")
+public class EsDatasetRealtimeIndexerTest {
+
+  private static final String INDEX = "dataset_test";
+
+  @Mock private ElasticsearchClient elasticsearchClient;
+  @Mock private DatasetJsonConverter datasetJsonConverter;
+  @Mock private GbifWsClient gbifWsClient;
+
+  private final List<BulkRequest> bulks = Collections.synchronizedList(new ArrayList<>());
+
+  @BeforeEach
+  public void setUp() throws IOException {
+    when(elasticsearchClient.bulk(any(BulkRequest.class)))
+        .thenAnswer(
+            invocation -> {
+              bulks.add(invocation.getArgument(0));
+              return BulkResponse.of(b -> b.errors(false).took(1).items(Collections.emptyList()));
+            });
+  }
+
+  @Test
+  public void testUpdatesOfADatasetCoalesced() {
+    when(datasetJsonConverter.convertAsJsonStrings(anyList()))
+        .thenAnswer(
+            invocation ->
+                ((List<Dataset>) invocation.getArgument(0))
+                    .stream().map(d -> "{}").collect(Collectors.toList()));
+    // no scheduled flush during the test, the queue is flushed on destroy
+    EsDatasetRealtimeIndexer indexer = newIndexer(3_600_000, 10_000);
+
+    Dataset updated = dataset("v1");
+    indexer.index(updated);
+    updated = copy(updated, "v2");
+    indexer.index(updated);
+    updated = copy(updated, "v3");
+    indexer.index(updated);
+    Dataset deleted = dataset("deleted");
+    indexer.index(deleted);
+    indexer.delete(deleted);
+
+    assertEquals(2, indexer.getQueueDepth());
+    assertEquals(3, indexer.getCoalescedUpdates());
+
+    indexer.destroy();
+
+    // only the latest state of each dataset is sent, in a single bulk
+    ArgumentCaptor<List<Dataset>> converted = ArgumentCaptor.forClass(List.class);
+    verify(datasetJsonConverter).convertAsJsonStrings(converted.capture());
+    assertEquals(1, converted.getValue().size());
+    assertEquals("v3", converted.getValue().get(0).getTitle());
+
+    assertEquals(1, bulks.size());
+    List<BulkOperation> operations = bulks.get(0).operations();
+    assertEquals(2, operations.size());
+    BulkOperation index = operations.stream().filter(BulkOperation::isIndex).findFirst().get();
+    assertEquals(INDEX, index.index().index());
+    assertEquals(updated.getKey().toString(), index.index().id());
+    BulkOperation delete = operations.stream().filter(BulkOperation::isDelete).findFirst().get();
+    assertEquals(IndexingConstants.ALIAS, delete.delete().index());
+    assertEquals(deleted.getKey().toString(), delete.delete().id());
+    assertEquals(0, indexer.getPendingUpdates());
+  }
+
+  @Test
+  public void testFullQueueFlushedEarly() throws InterruptedException {
+    when(datasetJsonConverter.convertAsJsonStrings(anyList()))
+        .thenAnswer(
+            invocation ->
+                ((List<Dataset>) invocation.getArgument(0))
+                    .stream().map(d -> "{}").collect(Collectors.toList()));
+    EsDatasetRealtimeIndexer indexer = newIndexer(3_600_000, 2);
+
+    indexer.index(dataset("d1"));
+    indexer.index(dataset("d2"));
+
+    // the queue reached its maximum size, it is flushed without waiting for the debounce time
+    long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+    while (indexer.getPendingUpdates() > 0 && System.currentTimeMillis() < deadline) {
+      TimeUnit.MILLISECONDS.sleep(10);
+    }
+    assertEquals(0, indexer.getPendingUpdates());
+    assertEquals(1, bulks.size());
+    assertEquals(2, bulks.get(0).operations().size());
+
+    indexer.destroy();
+    assertEquals(1, bulks.size());
+  }
+
+  private EsDatasetRealtimeIndexer newIndexer(long debounceMillis, int maxQueueSize) {
+    return new EsDatasetRealtimeIndexer(
+        elasticsearchClient,
+        datasetJsonConverter,
+        gbifWsClient,
+        INDEX,
+        debounceMillis,
+        maxQueueSize,
+        1);
+  }
+
+  private static Dataset dataset(String title) {
+    Dataset dataset = new Dataset();
+    dataset.setKey(UUID.randomUUID());
+    dataset.setTitle(title);
+    return dataset;
+  }
+
+  private static Dataset copy(Dataset dataset, String title) {
+    Dataset copy = dataset(title);
+    copy.setKey(dataset.getKey());
+    return copy;
+  }
+}
@@ -0,0 +1,103 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.search.dataset.indexing.ws;
+
+import org.gbif.api.model.registry.Dataset;
+import org.gbif.api.service.registry.DatasetDataPackageService;
+import org.gbif.api.service.registry.DatasetService;
+import org.gbif.api.service.registry.InstallationService;
+import org.gbif.api.service.registry.NetworkService;
+import org.gbif.api.service.registry.OrganizationService;
+import org.gbif.metrics.ws.client.CubeWsClient;
+import org.gbif.occurrence.ws.client.OccurrenceWsSearchClient;
+import org.gbif.registry.search.dataset.indexing.ws.taxon.TaxonApiClient;
+
+import java.util.UUID;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class GbifWsWrapperClientTest {
+
+  @Mock private InstallationService installationService;
+  @Mock private OrganizationService organizationService;
+  @Mock private DatasetService datasetService;
+  @Mock private NetworkService networkService;
+  @Mock private OccurrenceWsSearchClient occurrenceWsSearchClient;
+  @Mock private CubeWsClient cubeWsClient;
+  @Mock private TaxonApiClient taxonApiClient;
+  @Mock private DatasetDataPackageService datasetDataPackageClient;
+
+  private GbifWsWrapperClient client;
+
+  @BeforeEach
+  public void setUp() {
+    client =
+        new GbifWsWrapperClient(
+            installationService,
+            organizationService,
+            datasetService,
+            networkService,
+            occurrenceWsSearchClient,
+            cubeWsClient,
+            taxonApiClient,
+            datasetDataPackageClient,
+            100,
+            60);
+  }
+
+  @Test
+  public void testPurgeDatasetReloadsCounts() {
+    Dataset dataset = new Dataset();
+    dataset.setKey(UUID.randomUUID());
+    String datasetKey = dataset.getKey().toString();
+    when(cubeWsClient.get(any())).thenReturn(10L, 20L);
+    when(taxonApiClient.getMetrics(dataset.getKey()))
+        .thenReturn(JsonNodeFactory.instance.objectNode().put("nameCount", 1))
+        .thenReturn(JsonNodeFactory.instance.objectNode().put("nameCount", 2));
+    when(taxonApiClient.search(eq(datasetKey), any()))
+        .thenReturn(JsonNodeFactory.instance.objectNode().put("count", 3))
+        .thenReturn(JsonNodeFactory.instance.objectNode().put("count", 4));
+
+    // the counts are cached
+    for (int i = 0; i < 2; i++) {
+      assertEquals(10L, client.getDatasetRecordCount(datasetKey));
+      assertEquals(1L, client.getChecklistMetricsNameCount(datasetKey));
+      assertEquals(3L, client.taxonSearchCount(datasetKey));
+    }
+
+    // until the dataset is crawled again
+    client.purge(dataset);
+    assertEquals(20L, client.getDatasetRecordCount(datasetKey));
+    assertEquals(2L, client.getChecklistMetricsNameCount(datasetKey));
+    assertEquals(4L, client.taxonSearchCount(datasetKey));
+
+    verify(cubeWsClient, times(2)).get(any());
+    verify(taxonApiClient, times(2)).getMetrics(dataset.getKey());
+    verify(taxonApiClient, times(2)).search(eq(datasetKey), any());
+  }
+}
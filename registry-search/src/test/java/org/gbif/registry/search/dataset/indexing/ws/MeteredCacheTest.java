@@ -0,0 +1,170 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.search.dataset.indexing.ws;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MeteredCacheTest {
+
+  private final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+  private final MeteredCache<String, Long> cache =
+      new MeteredCache<>("test", String.class, Long.class, 100, 10, key -> (long) key.length());
+
+  @AfterEach
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testCachedValuesAreNotLoadedAgain() {
+    RecordingLoader loader = new RecordingLoader(null);
+
+    assertEquals(values("a", "bb"), cache.getAll(Arrays.asList("a", "bb"), loader));
+    assertEquals(values("a", "bb", "ccc"), cache.getAll(Arrays.asList("a", "bb", "ccc"), loader));
+
+    assertEquals(
+        Arrays.asList(Arrays.asList("a", "bb"), Collections.singletonList("ccc")), loader.calls);
+    assertEquals(3, cache.getMisses());
+    assertEquals(2, cache.getHits());
+  }
+
+  @Test
+  public void testConcurrentBulkLoadsLoadEachKeyOnce() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    RecordingLoader loader = new RecordingLoader(release);
+
+    Future<Map<String, Long>> first =
+        executor.submit(() -> cache.getAll(Arrays.asList("a", "bb", "ccc"), loader));
+    assertTrue(loader.blocked.await(10, TimeUnit.SECONDS));
+
+    // "bb" and "ccc" are being loaded by the first call, only "dddd" is loaded by the second
+    Future<Map<String, Long>> second =
+        executor.submit(() -> cache.getAll(Arrays.asList("bb", "ccc", "dddd"), loader));
+    assertTrue(loader.awaitCalls(2));
+    release.countDown();
+
+    assertEquals(values("a", "bb", "ccc"), first.get(10, TimeUnit.SECONDS));
+    assertEquals(values("bb", "ccc", "dddd"), second.get(10, TimeUnit.SECONDS));
+    assertEquals(
+        Arrays.asList(Arrays.asList("a", "bb", "ccc"), Collections.singletonList("dddd")),
+        loader.calls);
+    assertEquals(4, cache.getMisses());
+
+    // all of them are cached now
+    assertEquals(
+        values("a", "bb", "ccc", "dddd"),
+        cache.getAll(Arrays.asList("a", "bb", "ccc", "dddd"), loader));
+    assertEquals(2, loader.calls.size());
+  }
+
+  @Test
+  public void testFailedBulkLoadIsThrownToWaitingCallsAndRetried() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    RecordingLoader failingLoader = new RecordingLoader(release);
+    failingLoader.failure = new IllegalStateException("Service unavailable");
+
+    Future<Map<String, Long>> first =
+        executor.submit(() -> cache.getAll(Arrays.asList("a", "bb"), failingLoader));
+    assertTrue(failingLoader.blocked.await(10, TimeUnit.SECONDS));
+    Future<Map<String, Long>> second =
+        executor.submit(() -> cache.getAll(Collections.singletonList("bb"), failingLoader));
+    // the second call has nothing to load, wait until it is waiting for the first one
+    Thread.sleep(200);
+    release.countDown();
+
+    ExecutionException firstFailure =
+        assertThrows(ExecutionException.class, () -> first.get(10, TimeUnit.SECONDS));
+    assertInstanceOf(IllegalStateException.class, firstFailure.getCause());
+    ExecutionException secondFailure =
+        assertThrows(ExecutionException.class, () -> second.get(10, TimeUnit.SECONDS));
+    assertInstanceOf(IllegalStateException.class, secondFailure.getCause());
+
+    // the failure isn't cached
+    RecordingLoader loader = new RecordingLoader(null);
+    assertEquals(values("a", "bb"), cache.getAll(Arrays.asList("a", "bb"), loader));
+    assertEquals(1, loader.calls.size());
+  }
+
+  private static Map<String, Long> values(String... keys) {
+    Map<String, Long> values = new HashMap<>();
+    for (String key : keys) {
+      values.put(key, (long) key.length());
+    }
+    return values;
+  }
+
+  /**
+   * Records the keys of each call. Calls loading "a" wait until released, and fail if a failure is
+   * set.
+   */
+  private static class RecordingLoader implements Function<Iterable<String>, Map<String, Long>> {
+
+    private final CountDownLatch release;
+    private final CountDownLatch blocked = new CountDownLatch(1);
+    private final List<List<String>> calls = Collections.synchronizedList(new ArrayList<>());
+    private volatile RuntimeException failure;
+
+    RecordingLoader(CountDownLatch release) {
+      this.release = release;
+    }
+
+    @Override
+    public Map<String, Long> apply(Iterable<String> keys) {
+      List<String> keyList = new ArrayList<>();
+      keys.forEach(keyList::add);
+      calls.add(keyList);
+      if (release != null && keyList.contains("a")) {
+        blocked.countDown();
+        try {
+          release.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        if (failure != null) {
+          throw failure;
+        }
+      }
+      return values(keyList.toArray(new String[0]));
+    }
+
+    boolean awaitCalls(int expected) throws InterruptedException {
+      long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+      while (calls.size() < expected && System.currentTimeMillis() < deadline) {
+        Thread.sleep(10);
+      }
+      return calls.size() >= expected;
+    }
+  }
+}
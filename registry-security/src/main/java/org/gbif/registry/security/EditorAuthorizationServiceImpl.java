@@ -20,11 +20,8 @@ import org.gbif.api.model.registry.Metadata;
 import org.gbif.api.model.registry.NetworkEntity;
 import org.gbif.api.model.registry.Organization;
 import org.gbif.api.vocabulary.TagNamespace;
-import org.gbif.registry.persistence.mapper.DatasetMapper;
-import org.gbif.registry.persistence.mapper.InstallationMapper;
 import org.gbif.registry.persistence.mapper.MachineTagMapper;
 import org.gbif.registry.persistence.mapper.MetadataMapper;
-import org.gbif.registry.persistence.mapper.OrganizationMapper;
 import org.gbif.registry.persistence.mapper.UserRightsMapper;
 
 import java.util.UUID;
@@ -34,6 +31,11 @@ import org.slf4j.LoggerFactory;
 import org.springframework.context.annotation.Primary;
 import org.springframework.stereotype.Service;
 
+/**
+ * Editor rights checks. Rights over datasets, installations and organizations also come from the
+ * entities above them, which are resolved by the {@link EditorRightsResolver} from cached
+ * projections of the keys instead of loading the full entities.
+ */
 @Service
 @Primary
 public class EditorAuthorizationServiceImpl implements EditorAuthorizationService {
@@ -41,25 +43,19 @@ public class EditorAuthorizationServiceImpl implements EditorAuthorizationServic
   private static final Logger LOG = LoggerFactory.getLogger(EditorAuthorizationServiceImpl.class);
 
   private final UserRightsMapper userRightsMapper;
-  private final OrganizationMapper organizationMapper;
-  private final DatasetMapper datasetMapper;
-  private final InstallationMapper installationMapper;
   private final MachineTagMapper machineTagMapper;
   private final MetadataMapper metadataMapper;
+  private final EditorRightsResolver editorRightsResolver;
 
   public EditorAuthorizationServiceImpl(
-      OrganizationMapper organizationMapper,
-      DatasetMapper datasetMapper,
-      InstallationMapper installationMapper,
       UserRightsMapper userRightsMapper,
       MachineTagMapper machineTagMapper,
-      MetadataMapper metadataMapper) {
-    this.organizationMapper = organizationMapper;
-    this.datasetMapper = datasetMapper;
-    this.installationMapper = installationMapper;
+      MetadataMapper metadataMapper,
+      EditorRightsResolver editorRightsResolver) {
     this.userRightsMapper = userRightsMapper;
     this.machineTagMapper = machineTagMapper;
     this.metadataMapper = metadataMapper;
+    this.editorRightsResolver = editorRightsResolver;
   }
 
   @Override
@@ -114,7 +110,7 @@ public class EditorAuthorizationServiceImpl implements EditorAuthorizationServic
     if (name == null || key == null) {
       return false;
     }
-    boolean allowed = userRightsMapper.keyExistsForUser(name, key);
+    boolean allowed = editorRightsResolver.hasRight(name, key);
     LOG.debug("User {} {} allowed to edit entity {}", name, allowed ? "is" : "is not", key);
     return allowed;
   }
@@ -124,27 +120,13 @@ public class EditorAuthorizationServiceImpl implements EditorAuthorizationServic
     if (name == null || entity == null) {
       return false;
     }
-    UUID key = entity.getKey();
-    boolean allowed = key != null && userRightsMapper.keyExistsForUser(name, key);
-    LOG.debug("User {} {} allowed to edit entity {}", name, allowed ? "is" : "is not", key);
-    return allowed;
+    return allowedToModifyEntity(name, entity.getKey());
   }
 
   @Override
   public boolean allowedToModifyDataset(String name, UUID datasetKey) {
-    if (name == null) {
-      return false;
-    }
-    if (allowedToModifyEntity(name, datasetKey)) {
-      return true;
-    }
-    Dataset d = datasetMapper.get(datasetKey);
-    // try installation rights
-    if (d != null && allowedToModifyInstallation(name, d.getInstallationKey())) {
-      return true;
-    }
-    // try higher organization or node rights
-    return d != null && allowedToModifyOrganization(name, d.getPublishingOrganizationKey());
+    // the dataset itself, its installation or the higher organization or node rights
+    return allowedInHierarchy(name, datasetKey);
   }
 
   @Override
@@ -162,15 +144,8 @@ public class EditorAuthorizationServiceImpl implements EditorAuthorizationServic
 
   @Override
   public boolean allowedToModifyOrganization(String name, UUID orgKey) {
-    if (name == null) {
-      return false;
-    }
-    if (allowedToModifyEntity(name, orgKey)) {
-      return true;
-    }
-    // try endorsing node
-    Organization o = organizationMapper.get(orgKey);
-    return o != null && allowedToModifyEntity(name, o.getEndorsingNodeKey());
+    // the organization itself or its endorsing node
+    return allowedInHierarchy(name, orgKey);
   }
 
   @Override
@@ -188,15 +163,8 @@ public class EditorAuthorizationServiceImpl implements EditorAuthorizationServic
 
   @Override
   public boolean allowedToModifyInstallation(String name, UUID installationKey) {
-    if (name == null) {
-      return false;
-    }
-    if (allowedToModifyEntity(name, installationKey)) {
-      return true;
-    }
-    // try higher organization or node rights
-    Installation inst = installationMapper.get(installationKey);
-    return inst != null && allowedToModifyOrganization(name, inst.getOrganizationKey());
+    // the installation itself or the higher organization or node rights
+    return allowedInHierarchy(name, installationKey);
   }
 
   @Override
@@ -223,4 +191,13 @@ public class EditorAuthorizationServiceImpl implements EditorAuthorizationServic
     }
     return allowedToModifyDataset(name, metadata.getDatasetKey());
   }
+
+  private boolean allowedInHierarchy(String name, UUID key) {
+    if (name == null || key == null) {
+      return false;
+    }
+    boolean allowed = editorRightsResolver.hasRightInHierarchy(name, key);
+    LOG.debug("User {} {} allowed to edit entity {}", name, allowed ? "is" : "is not", key);
+    return allowed;
+  }
 }
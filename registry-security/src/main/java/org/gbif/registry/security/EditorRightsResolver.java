@@ -0,0 +1,134 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.security;
+
+import org.gbif.registry.identity.service.EditorRightsListener;
+import org.gbif.registry.persistence.mapper.EntityKeyRelationMapper;
+import org.gbif.registry.persistence.mapper.UserRightsMapper;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+
+/**
+ * Resolves the editor rights of users over the entities of the dataset, installation,
+ * organization and node hierarchy.
+ *
+ * <p>The keys a user has editor rights on and the ancestor keys of an entity are cached for a short
+ * time, so repeated checks of the same user and entity within a burst of requests don't hit the
+ * database. The caches of this instance are invalidated once changes to the editor rights or to the
+ * parents of an entity are committed. Other instances and processes only see the change when their
+ * entries expire, so a revoked right can still be used there for up to
+ * registry.security.editorRightsCache.expireSeconds (5 by default).
+ */
+@Component
+public class EditorRightsResolver implements EditorRightsListener {
+
+  private static final Logger LOG = LoggerFactory.getLogger(EditorRightsResolver.class);
+
+  private final LoadingCache<String, Set<UUID>> userRights;
+  private final LoadingCache<UUID, Set<UUID>> ancestorKeys;
+
+  public EditorRightsResolver(
+      UserRightsMapper userRightsMapper,
+      EntityKeyRelationMapper entityKeyRelationMapper,
+      @Value("${registry.security.editorRightsCache.expireSeconds:5}") long expireSeconds,
+      @Value("${registry.security.editorRightsCache.maxSize:10000}") long maxSize) {
+    this.userRights =
+        CacheBuilder.newBuilder()
+            .expireAfterWrite(expireSeconds, TimeUnit.SECONDS)
+            .maximumSize(maxSize)
+            .build(
+                new CacheLoader<String, Set<UUID>>() {
+                  @Override
+                  public Set<UUID> load(String username) {
+                    return Collections.unmodifiableSet(
+                        new HashSet<>(userRightsMapper.getKeysByUser(username)));
+                  }
+                });
+    this.ancestorKeys =
+        CacheBuilder.newBuilder()
+            .expireAfterWrite(expireSeconds, TimeUnit.SECONDS)
+            .maximumSize(maxSize)
+            .build(
+                new CacheLoader<UUID, Set<UUID>>() {
+                  @Override
+                  public Set<UUID> load(UUID key) {
+                    return Collections.unmodifiableSet(
+                        new HashSet<>(entityKeyRelationMapper.listAncestorKeys(key)));
+                  }
+                });
+  }
+
+  /** Whether the user has editor rights on the given key itself. */
+  public boolean hasRight(String username, UUID key) {
+    if (username == null || key == null) {
+      return false;
+    }
+    return userRights.getUnchecked(username).contains(key);
+  }
+
+  /**
+   * Whether the user has editor rights on the given entity or on any of the entities above it: the
+   * installation, organizations and endorsing node of a dataset, the organization and endorsing
+   * node of an installation or the endorsing node of an organization.
+   */
+  public boolean hasRightInHierarchy(String username, UUID key) {
+    if (username == null || key == null) {
+      return false;
+    }
+    Set<UUID> rights = userRights.getUnchecked(username);
+    if (rights.isEmpty()) {
+      return false;
+    }
+    if (rights.contains(key)) {
+      return true;
+    }
+    return !Collections.disjoint(rights, ancestorKeys.getUnchecked(key));
+  }
+
+  /** To be called when the editor rights of a user change. */
+  public void invalidateUser(String username) {
+    if (username != null) {
+      LOG.debug("Invalidating cached editor rights of user {}", username);
+      userRights.invalidate(username);
+    }
+  }
+
+  @Override
+  public void editorRightsChanged(String username) {
+    invalidateUser(username);
+  }
+
+  /**
+   * To be called when the parents of an entity change, e.g. a dataset moves to another
+   * organization. All the cached hierarchies are dropped since the entity may be an ancestor of
+   * other cached entities.
+   */
+  public void invalidateHierarchy() {
+    LOG.debug("Invalidating cached entity hierarchies");
+    ancestorKeys.invalidateAll();
+  }
+}
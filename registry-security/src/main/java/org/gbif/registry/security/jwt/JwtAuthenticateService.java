@@ -15,11 +15,14 @@ package org.gbif.registry.security.jwt;
 
 import org.gbif.api.model.common.GbifUser;
 import org.gbif.api.service.common.IdentityAccessService;
+import org.gbif.registry.identity.service.UserPrincipalCache;
 
+import java.util.Date;
 import java.util.Optional;
 
 import javax.crypto.SecretKey;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 
@@ -32,19 +35,55 @@ import io.jsonwebtoken.security.Keys;
 @Service
 public class JwtAuthenticateService {
 
+  /** A valid token together with its user. */
+  public static class AuthenticatedToken {
+
+    private final GbifUser user;
+    private final Date issuedAt;
+    private final Date expiration;
+
+    AuthenticatedToken(GbifUser user, Date issuedAt, Date expiration) {
+      this.user = user;
+      this.issuedAt = issuedAt;
+      this.expiration = expiration;
+    }
+
+    public GbifUser getUser() {
+      return user;
+    }
+
+    public Date getIssuedAt() {
+      return issuedAt;
+    }
+
+    public Date getExpiration() {
+      return expiration;
+    }
+  }
+
   private final String issuer;
   private final SecretKey signingKey;
+  private final double refreshAfterLifetimeFraction;
   private final IdentityAccessService identityService;
+  private final UserPrincipalCache userPrincipalCache;
 
+  @Autowired
   public JwtAuthenticateService(
       JwtConfiguration jwtConfiguration,
-      @Qualifier("baseIdentityAccessService") IdentityAccessService identityService) {
+      @Qualifier("baseIdentityAccessService") IdentityAccessService identityService,
+      UserPrincipalCache userPrincipalCache) {
     this.issuer = jwtConfiguration.getIssuer();
     this.signingKey = Keys.hmacShaKeyFor(jwtConfiguration.getSigningKey().getBytes());
+    this.refreshAfterLifetimeFraction = jwtConfiguration.getRefreshAfterLifetimeFraction();
     this.identityService = identityService;
+    this.userPrincipalCache = userPrincipalCache;
   }
 
   public GbifUser authenticate(String token) throws GbifJwtException {
+    return authenticateToken(token).getUser();
+  }
+
+  public AuthenticatedToken authenticateToken(String token) throws GbifJwtException {
     // validate and parse the token
     Claims claims;
     try {
@@ -70,7 +109,24 @@ public class JwtAuthenticateService {
             .filter(v -> !v.isEmpty())
             .orElseThrow(() -> new GbifJwtException(GbifJwtException.JwtErrorCode.INVALID_TOKEN));
 
-    return Optional.ofNullable(identityService.get(username))
-        .orElseThrow(() -> new GbifJwtException(GbifJwtException.JwtErrorCode.INVALID_USERNAME));
+    GbifUser user =
+        Optional.ofNullable(userPrincipalCache.get(username, identityService::get))
+            .orElseThrow(
+                () -> new GbifJwtException(GbifJwtException.JwtErrorCode.INVALID_USERNAME));
+
+    return new AuthenticatedToken(user, claims.getIssuedAt(), claims.getExpiration());
+  }
+
+  /**
+   * Whether a new token has to be issued, i.e. the token is past the configured fraction of its
+   * lifetime. Tokens without issue or expiration time are always refreshed.
+   */
+  public boolean needsRefresh(AuthenticatedToken token) {
+    if (token.getIssuedAt() == null || token.getExpiration() == null) {
+      return true;
+    }
+    long issuedAt = token.getIssuedAt().getTime();
+    long lifetime = token.getExpiration().getTime() - issuedAt;
+    return System.currentTimeMillis() - issuedAt >= lifetime * refreshAfterLifetimeFraction;
   }
 }
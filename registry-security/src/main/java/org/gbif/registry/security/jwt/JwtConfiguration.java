@@ -26,6 +26,12 @@ public class JwtConfiguration {
   @NotNull private String issuer;
   @NotNull private String signingKey;
 
+  /**
+   * Fraction of the lifetime of a token after which a new token is issued on requests authenticated
+   * with it. 0 issues a new token on every request.
+   */
+  private double refreshAfterLifetimeFraction = 0.5;
+
   public long getExpiryTimeInMs() {
     return expiryTimeInMs;
   }
@@ -49,4 +55,12 @@ public class JwtConfiguration {
   public void setSigningKey(String signingKey) {
     this.signingKey = signingKey;
   }
+
+  public double getRefreshAfterLifetimeFraction() {
+    return refreshAfterLifetimeFraction;
+  }
+
+  public void setRefreshAfterLifetimeFraction(double refreshAfterLifetimeFraction) {
+    this.refreshAfterLifetimeFraction = refreshAfterLifetimeFraction;
+  }
 }
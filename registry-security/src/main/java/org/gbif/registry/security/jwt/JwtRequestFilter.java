@@ -16,17 +16,16 @@ package org.gbif.registry.security.jwt;
 import org.gbif.api.model.common.GbifUser;
 import org.gbif.ws.security.GbifAuthentication;
 import org.gbif.ws.security.GbifAuthenticationToken;
+import org.gbif.ws.security.GbifUserPrincipal;
 
 import java.io.IOException;
 import java.util.Optional;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.http.HttpStatus;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
@@ -41,22 +40,20 @@ import static org.springframework.http.HttpHeaders.ACCESS_CONTROL_EXPOSE_HEADERS
 /**
  * Filter to validate the JWT tokens.
  *
- * <p>If the token is not present this validation is skipped.
+ * <p>If the token is not present this validation is skipped. A new token is only issued when the
+ * token of the request is past a fraction of its lifetime, see {@link
+ * JwtConfiguration#getRefreshAfterLifetimeFraction()}.
  */
 @Component
 public class JwtRequestFilter extends OncePerRequestFilter {
 
   private static final Logger LOG = LoggerFactory.getLogger(JwtRequestFilter.class);
 
-  private final UserDetailsService userDetailsService;
   private final JwtAuthenticateService jwtAuthenticateService;
   private final JwtIssuanceService jwtIssuanceService;
 
   public JwtRequestFilter(
-      @Qualifier("registryUserDetailsService") UserDetailsService userDetailsService,
-      JwtAuthenticateService jwtAuthenticateService,
-      JwtIssuanceService jwtIssuanceService) {
-    this.userDetailsService = userDetailsService;
+      JwtAuthenticateService jwtAuthenticateService, JwtIssuanceService jwtIssuanceService) {
     this.jwtAuthenticateService = jwtAuthenticateService;
     this.jwtIssuanceService = jwtIssuanceService;
   }
@@ -72,21 +69,25 @@ public class JwtRequestFilter extends OncePerRequestFilter {
       LOG.debug("No JWT token present.");
     } else {
       try {
-        final GbifUser gbifUser = jwtAuthenticateService.authenticate(token.get());
+        final JwtAuthenticateService.AuthenticatedToken authenticatedToken =
+            jwtAuthenticateService.authenticateToken(token.get());
+        final GbifUser gbifUser = authenticatedToken.getUser();
 
         LOG.debug("JWT successfully validated for user {}", gbifUser.getUserName());
 
-        final UserDetails userDetails =
-            userDetailsService.loadUserByUsername(gbifUser.getUserName());
+        // same principal as the registryUserDetailsService, without reading the user again
+        final UserDetails userDetails = new GbifUserPrincipal(gbifUser);
 
         final GbifAuthentication gbifAuthentication =
             new GbifAuthenticationToken(userDetails, userDetails.getAuthorities());
         SecurityContextHolder.getContext().setAuthentication(gbifAuthentication);
 
         // refresh the token and add it to the headers
-        final String newToken = jwtIssuanceService.generateJwt(gbifUser.getUserName());
-        response.addHeader(HEADER_TOKEN, newToken);
-        response.addHeader(ACCESS_CONTROL_EXPOSE_HEADERS, HEADER_TOKEN);
+        if (jwtAuthenticateService.needsRefresh(authenticatedToken)) {
+          final String newToken = jwtIssuanceService.generateJwt(gbifUser.getUserName());
+          response.addHeader(HEADER_TOKEN, newToken);
+          response.addHeader(ACCESS_CONTROL_EXPOSE_HEADERS, HEADER_TOKEN);
+        }
       } catch (GbifJwtException e) {
         LOG.warn("JWT validation failed: {}", e.getErrorCode());
         response.setStatus(HttpStatus.UNAUTHORIZED.value());
@@ -0,0 +1,112 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.security;
+
+import org.gbif.registry.persistence.mapper.EntityKeyRelationMapper;
+import org.gbif.registry.persistence.mapper.UserRightsMapper;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.UUID;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class EditorRightsResolverTest {
+
+  private static final String USER = "editor";
+
+  private final UUID nodeKey = UUID.randomUUID();
+  private final UUID organizationKey = UUID.randomUUID();
+  private final UUID datasetKey = UUID.randomUUID();
+
+  @Mock private UserRightsMapper userRightsMapper;
+  @Mock private EntityKeyRelationMapper entityKeyRelationMapper;
+
+  private EditorRightsResolver resolver;
+
+  @BeforeEach
+  public void setUp() {
+    // the cache enabled, as in production
+    resolver = new EditorRightsResolver(userRightsMapper, entityKeyRelationMapper, 60, 100);
+  }
+
+  @Test
+  public void testRightsAreCached() {
+    when(userRightsMapper.getKeysByUser(USER))
+        .thenReturn(Collections.singletonList(organizationKey));
+    when(entityKeyRelationMapper.listAncestorKeys(datasetKey))
+        .thenReturn(Arrays.asList(datasetKey, organizationKey, nodeKey));
+
+    for (int i = 0; i < 3; i++) {
+      assertTrue(resolver.hasRight(USER, organizationKey));
+      assertFalse(resolver.hasRight(USER, datasetKey));
+      assertTrue(resolver.hasRightInHierarchy(USER, datasetKey));
+      assertFalse(resolver.hasRightInHierarchy(USER, nodeKey));
+    }
+
+    verify(userRightsMapper, times(1)).getKeysByUser(USER);
+    verify(entityKeyRelationMapper, times(1)).listAncestorKeys(datasetKey);
+  }
+
+  @Test
+  public void testUserWithoutRightsSkipsHierarchy() {
+    when(userRightsMapper.getKeysByUser(USER)).thenReturn(Collections.emptyList());
+
+    assertFalse(resolver.hasRightInHierarchy(USER, datasetKey));
+
+    verify(entityKeyRelationMapper, never()).listAncestorKeys(datasetKey);
+  }
+
+  @Test
+  public void testRevokedRightIsNotUsedAfterChange() {
+    when(userRightsMapper.getKeysByUser(USER))
+        .thenReturn(Collections.singletonList(organizationKey))
+        .thenReturn(Collections.emptyList());
+    assertTrue(resolver.hasRight(USER, organizationKey));
+
+    // called by the identity service once the revocation is committed
+    resolver.editorRightsChanged(USER);
+
+    assertFalse(resolver.hasRight(USER, organizationKey));
+    verify(userRightsMapper, times(2)).getKeysByUser(USER);
+  }
+
+  @Test
+  public void testHierarchyIsReloadedAfterInvalidation() {
+    UUID otherOrganizationKey = UUID.randomUUID();
+    when(userRightsMapper.getKeysByUser(USER))
+        .thenReturn(Collections.singletonList(organizationKey));
+    when(entityKeyRelationMapper.listAncestorKeys(datasetKey))
+        .thenReturn(Arrays.asList(datasetKey, organizationKey, nodeKey))
+        .thenReturn(Arrays.asList(datasetKey, otherOrganizationKey, nodeKey));
+    assertTrue(resolver.hasRightInHierarchy(USER, datasetKey));
+
+    // the dataset moved to another organization
+    resolver.invalidateHierarchy();
+
+    assertFalse(resolver.hasRightInHierarchy(USER, datasetKey));
+  }
+}
@@ -41,6 +41,33 @@ public interface RegistryDatasetService {
 
   byte[] getMetadataDocument(int metadataKey);
 
+  /**
+   * Parses a metadata document and stores the resulting dataset as JSON along with the document,
+   * so reads of the dataset don't need to parse it again.
+   *
+   * @param metadataKey key of the metadata document
+   * @return false if the document doesn't exist or cannot be parsed
+   */
+  boolean storeMetadataDatasetJson(int metadataKey);
+
+  /**
+   * Same as {@link #storeMetadataDatasetJson(int)} for a document just created, which is parsed
+   * from the given content instead of being read back from the database.
+   *
+   * @param metadata the stored metadata document
+   * @param document content of the metadata document
+   * @return false if the document cannot be parsed
+   */
+  boolean storeMetadataDatasetJson(Metadata metadata, byte[] document);
+
+  /**
+   * Removes a metadata document from the cache of parsed documents, to be called when the document
+   * is added or deleted.
+   *
+   * @param metadataKey key of the metadata document
+   */
+  void evictParsedMetadata(int metadataKey);
+
   List<DerivedDatasetUsage> ensureDerivedDatasetDatasetUsagesValid(Map<String, Long> data);
 
   /**
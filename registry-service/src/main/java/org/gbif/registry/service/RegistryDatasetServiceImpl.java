@@ -34,31 +34,42 @@ import org.gbif.registry.persistence.mapper.DatasetMapper;
 import org.gbif.registry.persistence.mapper.MetadataMapper;
 import org.gbif.registry.persistence.mapper.NetworkMapper;
 import org.gbif.registry.persistence.mapper.OrganizationMapper;
+import org.gbif.registry.persistence.mapper.dto.MetadataDatasetJsonDto;
 import org.gbif.registry.persistence.mapper.handler.ByteArrayWrapper;
 import org.gbif.registry.persistence.mapper.params.DatasetListParams;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 
 import org.owasp.html.HtmlPolicyBuilder;
 import org.owasp.html.PolicyFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.base.Strings;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.annotation.Nullable;
 
 @SuppressWarnings("UnstableApiUsage")
@@ -80,16 +91,40 @@ public class RegistryDatasetServiceImpl implements RegistryDatasetService {
 
   private final DatasetMapper datasetMapper;
   private final MetadataMapper metadataMapper;
+  // parsed metadata documents are stored and cached as JSON, so every request gets its own copy to
+  // merge into
+  private final ObjectMapper objectMapper;
   private final LoadingCache<UUID, Organization> organizationCache;
   private final LoadingCache<UUID, Set<UUID>> datasetKeysInNetworkCache;
+  // metadata documents are never updated, only added and deleted, so they are cached by key
+  private final Cache<Integer, String> parsedMetadataCache;
 
   public RegistryDatasetServiceImpl(
       MetadataMapper metadataMapper,
       NetworkMapper networkMapper,
       OrganizationMapper organizationMapper,
-      DatasetMapper datasetMapper) {
+      DatasetMapper datasetMapper,
+      @Qualifier("registryObjectMapper") ObjectMapper objectMapper,
+      @Value("${registry.metadataCache.maxSizeMb:128}") long metadataCacheMaxSizeMb,
+      @Autowired(required = false) @Nullable MeterRegistry meterRegistry) {
     this.metadataMapper = metadataMapper;
     this.datasetMapper = datasetMapper;
+    this.objectMapper = objectMapper;
+    this.parsedMetadataCache =
+        CacheBuilder.newBuilder()
+            .maximumWeight(metadataCacheMaxSizeMb * 1024 * 1024)
+            .weigher((Integer key, String json) -> json.length())
+            .recordStats()
+            .build();
+    if (meterRegistry != null) {
+      meterRegistry.gauge(
+          "registry.metadataCache.hitRatio", parsedMetadataCache, c -> c.stats().hitRate());
+      meterRegistry.gauge(
+          "registry.metadataCache.averageLoadMillis",
+          parsedMetadataCache,
+          c -> c.stats().averageLoadPenalty() / 1_000_000D);
+      meterRegistry.gauge("registry.metadataCache.size", parsedMetadataCache, Cache::size);
+    }
     this.organizationCache =
         CacheBuilder.newBuilder()
             .expireAfterWrite(5, TimeUnit.MINUTES)
@@ -145,9 +180,15 @@ public class RegistryDatasetServiceImpl implements RegistryDatasetService {
    */
   @Override
   public PagingResponse<Dataset> augmentWithMetadata(PagingResponse<Dataset> resp) {
+    List<UUID> keys = new ArrayList<>(resp.getResults().size());
+    for (Dataset d : resp.getResults()) {
+      keys.add(d.getKey());
+    }
+    Map<UUID, Dataset> metadataDatasets = getPreferredMetadataDatasets(keys);
+
     List<Dataset> augmented = Lists.newArrayList();
     for (Dataset d : resp.getResults()) {
-      augmented.add(setGeneratedCitation(merge(getPreferredMetadataDataset(d.getKey()), d)));
+      augmented.add(setGeneratedCitation(merge(metadataDatasets.get(d.getKey()), d)));
     }
     resp.setResults(augmented);
     return resp;
@@ -291,28 +332,131 @@ public class RegistryDatasetServiceImpl implements RegistryDatasetService {
     List<Metadata> docs = listMetadata(key, null);
     if (!docs.isEmpty()) {
       // the list is sorted by priority already, just pick the first!
-      Integer metadataKey = docs.get(0).getKey();
-      byte[] metadataDocument = getMetadataDocument(metadataKey);
-      try {
-        switch (docs.get(0).getType()) {
-          case DC:
-            return DatasetDcParser.build(metadataDocument);
-          case EML:
-            return DatasetEmlParser.build(metadataDocument);
-          case DWC_DP:
-            return DwcDpMetadataParser.build(metadataDocument);
-          case COL_DP:
-            return ColDpMetadataParser.build(metadataDocument);
-        }
-      } catch (IOException | IllegalArgumentException e) {
-        // Not sure if we should not propagate an Exception to return a 500 instead
-        LOG.error("Stored metadata document {} cannot be read", metadataKey, e);
+      return readMetadataDataset(docs.get(0));
+    }
+
+    return null;
+  }
+
+  /**
+   * Returns the parsed, preferred metadata documents of several datasets, keyed by dataset. The
+   * documents are listed with a single query, and the dataset JSON of the ones not cached is read
+   * with another one.
+   */
+  private Map<UUID, Dataset> getPreferredMetadataDatasets(List<UUID> datasetKeys) {
+    Map<UUID, Dataset> result = new HashMap<>();
+    if (datasetKeys.isEmpty()) {
+      return result;
+    }
+
+    List<Metadata> preferred = metadataMapper.listPreferred(datasetKeys);
+    List<Integer> notCached = new ArrayList<>();
+    for (Metadata metadata : preferred) {
+      if (parsedMetadataCache.getIfPresent(metadata.getKey()) == null) {
+        notCached.add(metadata.getKey());
+      }
+    }
+    if (!notCached.isEmpty()) {
+      for (MetadataDatasetJsonDto stored : metadataMapper.listDatasetJson(notCached)) {
+        parsedMetadataCache.put(stored.getKey(), stored.getDatasetJson());
       }
     }
 
+    // documents without stored JSON are parsed one by one by the cache loader
+    for (Metadata metadata : preferred) {
+      Dataset dataset = readMetadataDataset(metadata);
+      if (dataset != null) {
+        result.put(metadata.getDatasetKey(), dataset);
+      }
+    }
+    return result;
+  }
+
+  @Nullable
+  private Dataset readMetadataDataset(Metadata metadata) {
+    try {
+      String json = parsedMetadataCache.get(metadata.getKey(), () -> loadDatasetJson(metadata));
+      return objectMapper.readValue(json, Dataset.class);
+    } catch (ExecutionException | UncheckedExecutionException e) {
+      Throwable cause = e.getCause();
+      if (!(cause instanceof IOException || cause instanceof IllegalArgumentException)) {
+        Throwables.throwIfUnchecked(cause);
+        throw new IllegalStateException(cause);
+      }
+      // Not sure if we should not propagate an Exception to return a 500 instead
+      LOG.error("Stored metadata document {} cannot be read", metadata.getKey(), cause);
+    } catch (IOException e) {
+      LOG.error("Cached metadata document {} cannot be read", metadata.getKey(), e);
+    }
     return null;
   }
 
+  /**
+   * Gets the dataset JSON stored with the metadata document, parsing the document if it hasn't been
+   * stored yet.
+   */
+  private String loadDatasetJson(Metadata metadata) throws IOException {
+    String json = metadataMapper.getDatasetJson(metadata.getKey());
+    return json != null
+        ? json
+        : parseMetadata(metadata.getType(), getMetadataDocument(metadata.getKey()));
+  }
+
+  /**
+   * Parses a metadata document and returns the resulting dataset as JSON, which is {@code null}
+   * when the document doesn't produce a dataset.
+   */
+  private String parseMetadata(MetadataType type, byte[] metadataDocument) throws IOException {
+    Dataset dataset;
+    switch (type) {
+      case DC:
+        dataset = DatasetDcParser.build(metadataDocument);
+        break;
+      case EML:
+        dataset = DatasetEmlParser.build(metadataDocument);
+        break;
+      case DWC_DP:
+        dataset = DwcDpMetadataParser.build(metadataDocument);
+        break;
+      case COL_DP:
+        dataset = ColDpMetadataParser.build(metadataDocument);
+        break;
+      default:
+        dataset = null;
+    }
+    return objectMapper.writeValueAsString(dataset);
+  }
+
+  @Override
+  public boolean storeMetadataDatasetJson(int metadataKey) {
+    Metadata metadata = metadataMapper.get(metadataKey);
+    if (metadata == null) {
+      return false;
+    }
+    byte[] document = getMetadataDocument(metadataKey);
+    return document != null && storeMetadataDatasetJson(metadata, document);
+  }
+
+  @Override
+  public boolean storeMetadataDatasetJson(Metadata metadata, byte[] document) {
+    try {
+      String json = parseMetadata(metadata.getType(), document);
+      metadataMapper.updateDatasetJson(metadata.getKey(), json);
+      // documents never change, so the stored JSON can be cached straight away
+      parsedMetadataCache.put(metadata.getKey(), json);
+      return true;
+    } catch (IOException | IllegalArgumentException e) {
+      LOG.error("Stored metadata document {} cannot be read", metadata.getKey(), e);
+      parsedMetadataCache.invalidate(metadata.getKey());
+      return false;
+    }
+  }
+
+  @Override
+  public void evictParsedMetadata(int metadataKey) {
+    parsedMetadataCache.invalidate(metadataKey);
+  }
+
   @Override
   public List<Metadata> listMetadata(UUID datasetKey, @Nullable MetadataType type) {
     return metadataMapper.list(datasetKey, type);
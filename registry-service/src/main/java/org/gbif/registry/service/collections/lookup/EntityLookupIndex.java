@@ -0,0 +1,178 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.service.collections.lookup;
+
+import org.gbif.api.vocabulary.IdentifierType;
+import org.gbif.registry.persistence.mapper.collections.dto.LookupEntityDto;
+import org.gbif.registry.persistence.mapper.collections.dto.LookupIdentifierDto;
+import org.gbif.registry.persistence.mapper.collections.dto.LookupOccurrenceMappingDto;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * In-memory index of the institutions or the collections by the fields used in the lookup: codes,
+ * alternative codes, identifiers and the datasets of the occurrence mappings.
+ *
+ * <p>Readers don't lock, so while an entity is being replaced they may briefly miss it. Writers
+ * have to be serialized by the caller.
+ */
+class EntityLookupIndex {
+
+  // same as the normalize_identifier function of the DB, which only replaces the first match
+  private static final Pattern IDENTIFIER_PREFIX_PATTERN =
+      Pattern.compile("http://|https://|urn:uuid:|urn:lsid:");
+
+  /** An entity with the identifiers and occurrence mappings it has at the time of indexing. */
+  static class IndexedEntity {
+    private final LookupEntityDto entity;
+    private final List<LookupIdentifierDto> identifiers;
+    private final List<LookupOccurrenceMappingDto> occurrenceMappings;
+
+    IndexedEntity(
+        LookupEntityDto entity,
+        List<LookupIdentifierDto> identifiers,
+        List<LookupOccurrenceMappingDto> occurrenceMappings) {
+      this.entity = entity;
+      this.identifiers = identifiers;
+      this.occurrenceMappings = occurrenceMappings;
+    }
+
+    LookupEntityDto getEntity() {
+      return entity;
+    }
+
+    List<LookupIdentifierDto> getIdentifiers() {
+      return identifiers;
+    }
+
+    List<LookupOccurrenceMappingDto> getOccurrenceMappings() {
+      return occurrenceMappings;
+    }
+  }
+
+  private final Map<UUID, IndexedEntity> entities = new ConcurrentHashMap<>();
+  private final Map<String, Set<UUID>> byCode = new ConcurrentHashMap<>();
+  private final Map<String, Set<UUID>> byAlternativeCode = new ConcurrentHashMap<>();
+  private final Map<String, Set<UUID>> byIdentifier = new ConcurrentHashMap<>();
+  private final Map<UUID, Set<UUID>> byDataset = new ConcurrentHashMap<>();
+  private final Map<UUID, Set<UUID>> byInstitution = new ConcurrentHashMap<>();
+
+  int size() {
+    return entities.size();
+  }
+
+  IndexedEntity get(UUID key) {
+    return entities.get(key);
+  }
+
+  /** Entities whose code is the given one, ignoring case. */
+  Set<UUID> findByCode(String code) {
+    return find(byCode, lowerCase(code));
+  }
+
+  /** Entities that have the given alternative code, ignoring case. */
+  Set<UUID> findByAlternativeCode(String code) {
+    return find(byAlternativeCode, lowerCase(code));
+  }
+
+  /** Entities with an identifier, other than their GRSciColl ID, equivalent to the given one. */
+  Set<UUID> findByIdentifier(String identifier) {
+    return find(byIdentifier, normalizeIdentifier(identifier));
+  }
+
+  /** Entities with occurrence mappings of the dataset. */
+  Set<UUID> findByDataset(UUID datasetKey) {
+    return find(byDataset, datasetKey);
+  }
+
+  /** Collections that belong to the institution. */
+  Set<UUID> findByInstitution(UUID institutionKey) {
+    return find(byInstitution, institutionKey);
+  }
+
+  void put(IndexedEntity indexedEntity) {
+    remove(indexedEntity.getEntity().getKey());
+    entities.put(indexedEntity.getEntity().getKey(), indexedEntity);
+    updateIndexes(indexedEntity, true);
+  }
+
+  void remove(UUID key) {
+    IndexedEntity removed = entities.remove(key);
+    if (removed != null) {
+      updateIndexes(removed, false);
+    }
+  }
+
+  private void updateIndexes(IndexedEntity indexedEntity, boolean add) {
+    LookupEntityDto entity = indexedEntity.getEntity();
+    UUID key = entity.getKey();
+    if (entity.getCode() != null) {
+      update(byCode, lowerCase(entity.getCode()), key, add);
+    }
+    if (entity.getAlternativeCodes() != null) {
+      entity
+          .getAlternativeCodes()
+          .forEach(c -> update(byAlternativeCode, lowerCase(c), key, add));
+    }
+    indexedEntity.getIdentifiers().stream()
+        .filter(i -> i.getType() != IdentifierType.GRSCICOLL_ID && i.getIdentifier() != null)
+        .forEach(i -> update(byIdentifier, normalizeIdentifier(i.getIdentifier()), key, add));
+    indexedEntity
+        .getOccurrenceMappings()
+        .forEach(om -> update(byDataset, om.getDatasetKey(), key, add));
+    if (entity.getInstitutionKey() != null) {
+      update(byInstitution, entity.getInstitutionKey(), key, add);
+    }
+  }
+
+  private static <K> void update(Map<K, Set<UUID>> index, K indexKey, UUID key, boolean add) {
+    if (add) {
+      index.computeIfAbsent(indexKey, k -> ConcurrentHashMap.newKeySet()).add(key);
+    } else {
+      index.computeIfPresent(
+          indexKey,
+          (k, keys) -> {
+            keys.remove(key);
+            return keys.isEmpty() ? null : keys;
+          });
+    }
+  }
+
+  private static <K> Set<UUID> find(Map<K, Set<UUID>> index, K key) {
+    if (key == null) {
+      return Collections.emptySet();
+    }
+    Set<UUID> keys = index.get(key);
+    return keys != null ? keys : Collections.emptySet();
+  }
+
+  static String lowerCase(String value) {
+    return value != null ? value.toLowerCase(Locale.ROOT) : null;
+  }
+
+  static String normalizeIdentifier(String value) {
+    return value != null
+        ? IDENTIFIER_PREFIX_PATTERN.matcher(StringUtils.strip(value, " ")).replaceFirst("")
+        : null;
+  }
+}
@@ -0,0 +1,505 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.service.collections.lookup;
+
+import org.gbif.api.model.collections.Collection;
+import org.gbif.api.model.collections.CollectionEntity;
+import org.gbif.api.model.collections.Institution;
+import org.gbif.api.model.collections.OccurrenceMapping;
+import org.gbif.api.model.registry.Identifier;
+import org.gbif.registry.events.EventManager;
+import org.gbif.registry.events.collections.CreateCollectionEntityEvent;
+import org.gbif.registry.events.collections.DeleteCollectionEntityEvent;
+import org.gbif.registry.events.collections.ReplaceEntityEvent;
+import org.gbif.registry.events.collections.SubEntityCollectionEvent;
+import org.gbif.registry.events.collections.UpdateCollectionEntityEvent;
+import org.gbif.registry.persistence.mapper.collections.LookupIndexMapper;
+import org.gbif.registry.persistence.mapper.collections.dto.BaseEntityMatchedDto;
+import org.gbif.registry.persistence.mapper.collections.dto.CollectionMatchedDto;
+import org.gbif.registry.persistence.mapper.collections.dto.InstitutionMatchedDto;
+import org.gbif.registry.persistence.mapper.collections.dto.LookupEntityDto;
+import org.gbif.registry.persistence.mapper.collections.dto.LookupIdentifierDto;
+import org.gbif.registry.persistence.mapper.collections.dto.LookupOccurrenceMappingDto;
+import org.gbif.registry.service.collections.lookup.EntityLookupIndex.IndexedEntity;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.Multimaps;
+import com.google.common.eventbus.Subscribe;
+
+import static org.gbif.registry.service.collections.lookup.EntityLookupIndex.lowerCase;
+
+/**
+ * Keeps in memory the codes, alternative codes, identifiers and occurrence mappings of all the
+ * non-deleted institutions and collections, so the lookup can find them without querying the DB.
+ * The matches by name are not indexed because they rely on the text functions of the DB.
+ *
+ * <p>The index is loaded in the background and reloaded periodically. In between, the entities
+ * are refreshed one by one when the collection events are received, once the changes are
+ * committed, so changes made through other instances of the registry show up after the next
+ * reload. Until the index is loaded the lookups
+ * return empty and the callers have to query the DB.
+ */
+@Component
+public class LookupIndex {
+
+  private static final Logger LOG = LoggerFactory.getLogger(LookupIndex.class);
+
+  private static final String INSTITUTION = "institution";
+  private static final String COLLECTION = "collection";
+
+  /** Both indexes, replaced as a whole on each reload. */
+  private static class Snapshot {
+    private final EntityLookupIndex institutions;
+    private final EntityLookupIndex collections;
+
+    private Snapshot(EntityLookupIndex institutions, EntityLookupIndex collections) {
+      this.institutions = institutions;
+      this.collections = collections;
+    }
+  }
+
+  private final LookupIndexMapper lookupIndexMapper;
+  private final boolean enabled;
+
+  private volatile Snapshot snapshot;
+
+  // orders the loads of the refreshed entities
+  private final AtomicLong loadSequence = new AtomicLong();
+
+  // guards the writes to the snapshot and the fields below, it's never held while querying the DB
+  private final Object writeLock = new Object();
+  // sequence of the last load applied to each entity
+  private final Map<UUID, Long> appliedLoads = new HashMap<>();
+  private Set<UUID> institutionsChangedDuringReload;
+  private Set<UUID> collectionsChangedDuringReload;
+
+  @Autowired
+  public LookupIndex(
+      LookupIndexMapper lookupIndexMapper,
+      EventManager eventManager,
+      @Value("${grscicoll.lookup.index.enabled:true}") boolean enabled) {
+    this.lookupIndexMapper = lookupIndexMapper;
+    this.enabled = enabled;
+    if (enabled) {
+      // the entities are refreshed once the changes are committed
+      eventManager.register(this);
+    }
+  }
+
+  /**
+   * Institutions that match by key, identifier, code, alternative code or occurrence mapping. As
+   * in the DB lookup there is a row per identifier of the institution. Empty if the index is not
+   * loaded.
+   */
+  public Optional<List<InstitutionMatchedDto>> lookupInstitutions(
+      String code, String identifier, UUID key, UUID datasetKey) {
+    Snapshot current = snapshot;
+    if (current == null) {
+      return Optional.empty();
+    }
+
+    EntityLookupIndex index = current.institutions;
+    Predicate<LookupOccurrenceMappingDto> mappingFilter =
+        om ->
+            (code == null
+                    || om.getCode() == null
+                    || lowerCase(om.getCode()).equals(lowerCase(code)))
+                && (identifier == null
+                    || om.getIdentifier() == null
+                    || om.getIdentifier().equals(identifier));
+    Map<UUID, InstitutionMatchedDto> matches =
+        findMatches(
+            index,
+            code,
+            identifier,
+            key,
+            datasetKey,
+            mappingFilter,
+            LookupIndex::toInstitutionMatch);
+
+    List<InstitutionMatchedDto> result = new ArrayList<>();
+    matches.forEach(
+        (k, match) -> {
+          IndexedEntity entity = index.get(k);
+          if (entity == null || entity.getIdentifiers().isEmpty()) {
+            result.add(match);
+            return;
+          }
+          for (LookupIdentifierDto identifierDto : entity.getIdentifiers()) {
+            InstitutionMatchedDto row = toInstitutionMatch(entity.getEntity());
+            copyMatchFlags(match, row);
+            row.setIdentifier(identifierDto.getIdentifier());
+            result.add(row);
+          }
+        });
+    return Optional.of(result);
+  }
+
+  /**
+   * Collections that match by key, identifier, code, alternative code or occurrence mapping. Empty
+   * if the index is not loaded.
+   */
+  public Optional<List<CollectionMatchedDto>> lookupCollections(
+      String code, String parentCode, String identifier, UUID key, UUID datasetKey) {
+    Snapshot current = snapshot;
+    if (current == null) {
+      return Optional.empty();
+    }
+
+    Predicate<LookupOccurrenceMappingDto> mappingFilter =
+        om ->
+            (code == null || om.getCode() == null || om.getCode().equals(code))
+                && (parentCode == null
+                    || om.getParentCode() == null
+                    || lowerCase(om.getParentCode()).equals(lowerCase(parentCode)))
+                && (identifier == null
+                    || om.getIdentifier() == null
+                    || om.getIdentifier().equals(identifier));
+    Map<UUID, CollectionMatchedDto> matches =
+        findMatches(
+            current.collections,
+            code,
+            identifier,
+            key,
+            datasetKey,
+            mappingFilter,
+            LookupIndex::toCollectionMatch);
+    return Optional.of(new ArrayList<>(matches.values()));
+  }
+
+  private static <T extends BaseEntityMatchedDto> Map<UUID, T> findMatches(
+      EntityLookupIndex index,
+      String code,
+      String identifier,
+      UUID key,
+      UUID datasetKey,
+      Predicate<LookupOccurrenceMappingDto> mappingFilter,
+      Function<LookupEntityDto, T> toMatch) {
+    Map<UUID, T> matches = new LinkedHashMap<>();
+    if (key != null) {
+      addMatches(matches, index, Set.of(key), toMatch, m -> m.setKeyMatch(true));
+    }
+    if (identifier != null) {
+      addMatches(
+          matches,
+          index,
+          index.findByIdentifier(identifier),
+          toMatch,
+          m -> m.setIdentifierMatch(true));
+    }
+    if (code != null) {
+      addMatches(matches, index, index.findByCode(code), toMatch, m -> m.setCodeMatch(true));
+      addMatches(
+          matches,
+          index,
+          index.findByAlternativeCode(code),
+          toMatch,
+          m -> m.setAlternativeCodeMatch(true));
+    }
+    if (datasetKey != null) {
+      Set<UUID> mapped = new HashSet<>();
+      for (UUID k : index.findByDataset(datasetKey)) {
+        IndexedEntity entity = index.get(k);
+        if (entity != null
+            && entity.getOccurrenceMappings().stream()
+                .anyMatch(om -> datasetKey.equals(om.getDatasetKey()) && mappingFilter.test(om))) {
+          mapped.add(k);
+        }
+      }
+      addMatches(matches, index, mapped, toMatch, m -> m.setExplicitMapping(true));
+    }
+    return matches;
+  }
+
+  private static <T extends BaseEntityMatchedDto> void addMatches(
+      Map<UUID, T> matches,
+      EntityLookupIndex index,
+      Set<UUID> keys,
+      Function<LookupEntityDto, T> toMatch,
+      Consumer<T> reason) {
+    for (UUID k : keys) {
+      IndexedEntity entity = index.get(k);
+      if (entity != null) {
+        reason.accept(matches.computeIfAbsent(k, x -> toMatch.apply(entity.getEntity())));
+      }
+    }
+  }
+
+  private static InstitutionMatchedDto toInstitutionMatch(LookupEntityDto entity) {
+    InstitutionMatchedDto match = new InstitutionMatchedDto();
+    setEntityFields(entity, match);
+    match.setAlternativeCodes(entity.getAlternativeCodes());
+    return match;
+  }
+
+  private static CollectionMatchedDto toCollectionMatch(LookupEntityDto entity) {
+    CollectionMatchedDto match = new CollectionMatchedDto();
+    setEntityFields(entity, match);
+    match.setInstitutionKey(entity.getInstitutionKey());
+    match.setInstitutionCode(entity.getInstitutionCode());
+    match.setInstitutionName(entity.getInstitutionName());
+    return match;
+  }
+
+  private static void setEntityFields(LookupEntityDto entity, BaseEntityMatchedDto match) {
+    match.setKey(entity.getKey());
+    match.setCode(entity.getCode());
+    match.setName(entity.getName());
+    match.setActive(entity.isActive());
+    match.setAddressCountry(entity.getAddressCountry());
+    match.setMailingAddressCountry(entity.getMailingAddressCountry());
+  }
+
+  private static void copyMatchFlags(BaseEntityMatchedDto from, BaseEntityMatchedDto to) {
+    to.setKeyMatch(from.isKeyMatch());
+    to.setIdentifierMatch(from.isIdentifierMatch());
+    to.setCodeMatch(from.isCodeMatch());
+    to.setAlternativeCodeMatch(from.isAlternativeCodeMatch());
+    to.setExplicitMapping(from.isExplicitMapping());
+  }
+
+  /** Loads all the entities into new indexes and replaces the current ones. */
+  @Scheduled(
+      initialDelayString = "${grscicoll.lookup.index.initialDelayMillis:0}",
+      fixedDelayString = "${grscicoll.lookup.index.reloadDelayMillis:900000}")
+  public void reload() {
+    if (!enabled) {
+      return;
+    }
+
+    Stopwatch stopwatch = Stopwatch.createStarted();
+    synchronized (writeLock) {
+      institutionsChangedDuringReload = new HashSet<>();
+      collectionsChangedDuringReload = new HashSet<>();
+    }
+    Set<UUID> changedInstitutions = Collections.emptySet();
+    Set<UUID> changedCollections = Collections.emptySet();
+    try {
+      Snapshot loaded = new Snapshot(new EntityLookupIndex(), new EntityLookupIndex());
+      load(INSTITUTION, null).forEach(loaded.institutions::put);
+      load(COLLECTION, null).forEach(loaded.collections::put);
+
+      synchronized (writeLock) {
+        snapshot = loaded;
+        changedInstitutions = institutionsChangedDuringReload;
+        changedCollections = collectionsChangedDuringReload;
+        institutionsChangedDuringReload = null;
+        collectionsChangedDuringReload = null;
+      }
+      LOG.info(
+          "Loaded {} institutions and {} collections into the lookup index in {}",
+          loaded.institutions.size(),
+          loaded.collections.size(),
+          stopwatch);
+    } catch (RuntimeException e) {
+      LOG.error("Failed to load the lookup index", e);
+    } finally {
+      synchronized (writeLock) {
+        institutionsChangedDuringReload = null;
+        collectionsChangedDuringReload = null;
+      }
+    }
+
+    // the entities changed while loading may have been read before the change
+    refresh(changedInstitutions, changedCollections);
+  }
+
+  @Subscribe
+  public final <T extends CollectionEntity> void onCreate(CreateCollectionEntityEvent<T> event) {
+    UUID key = event.getNewObject().getKey();
+    afterCommit(() -> refreshEntity(event.getCollectionEntityClass(), key));
+  }
+
+  @Subscribe
+  public final <T extends CollectionEntity> void onUpdate(UpdateCollectionEntityEvent<T> event) {
+    UUID key = event.getNewObject().getKey();
+    afterCommit(() -> refreshEntity(event.getCollectionEntityClass(), key));
+  }
+
+  @Subscribe
+  public final <T extends CollectionEntity> void onDelete(DeleteCollectionEntityEvent<T> event) {
+    UUID key = event.getOldObject().getKey();
+    afterCommit(() -> refreshEntity(event.getCollectionEntityClass(), key));
+  }
+
+  @Subscribe
+  public final <T extends CollectionEntity, R> void onSubEntityChange(
+      SubEntityCollectionEvent<T, R> event) {
+    // the other sub entities are not used in the lookup
+    if (Identifier.class.isAssignableFrom(event.getSubEntityClass())
+        || OccurrenceMapping.class.isAssignableFrom(event.getSubEntityClass())) {
+      UUID key = event.getCollectionEntityKey();
+      afterCommit(() -> refreshEntity(event.getCollectionEntityClass(), key));
+    }
+  }
+
+  @Subscribe
+  public final <T extends CollectionEntity> void onReplace(ReplaceEntityEvent<T> event) {
+    // an institution can be converted into a collection, so both kinds of entities are refreshed
+    Set<UUID> keys =
+        new HashSet<>(Arrays.asList(event.getTargetEntityKey(), event.getReplacementKey()));
+    keys.remove(null);
+    afterCommit(() -> refresh(keys, keys));
+  }
+
+  /**
+   * Runs the refresh once the transaction that made the change commits, so the index never sees
+   * uncommitted changes or changes that are rolled back. Events dispatched asynchronously arrive
+   * after the commit already, outside any transaction, and are refreshed straight away.
+   */
+  private static void afterCommit(Runnable refresh) {
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(
+          new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+              refresh.run();
+            }
+          });
+    } else {
+      refresh.run();
+    }
+  }
+
+  private void refreshEntity(Class<?> entityClass, UUID key) {
+    if (key == null) {
+      return;
+    }
+    if (Institution.class.equals(entityClass)) {
+      refresh(Set.of(key), Set.of());
+    } else if (Collection.class.equals(entityClass)) {
+      refresh(Set.of(), Set.of(key));
+    }
+  }
+
+  /**
+   * Reads the entities from the DB and replaces them in the index. The DB is queried without
+   * holding the write lock, which is only taken to swap the entities.
+   */
+  private void refresh(Set<UUID> institutionKeys, Set<UUID> collectionKeys) {
+    if (institutionKeys.isEmpty() && collectionKeys.isEmpty()) {
+      return;
+    }
+    try {
+      synchronized (writeLock) {
+        if (institutionsChangedDuringReload != null) {
+          institutionsChangedDuringReload.addAll(institutionKeys);
+          collectionsChangedDuringReload.addAll(collectionKeys);
+        }
+      }
+      Snapshot current = snapshot;
+      if (current == null) {
+        // the first load reads them
+        return;
+      }
+
+      long sequence = loadSequence.incrementAndGet();
+      Set<UUID> collectionsToRefresh = new HashSet<>(collectionKeys);
+      // the collections keep the code and name of their institution
+      institutionKeys.forEach(
+          k -> collectionsToRefresh.addAll(current.collections.findByInstitution(k)));
+      List<IndexedEntity> institutions =
+          institutionKeys.isEmpty() ? Collections.emptyList() : load(INSTITUTION, institutionKeys);
+      List<IndexedEntity> collections =
+          collectionsToRefresh.isEmpty()
+              ? Collections.emptyList()
+              : load(COLLECTION, collectionsToRefresh);
+
+      synchronized (writeLock) {
+        Snapshot target = snapshot;
+        replace(target.institutions, institutionKeys, institutions, sequence);
+        replace(target.collections, collectionsToRefresh, collections, sequence);
+      }
+    } catch (RuntimeException e) {
+      // the next reload will fix the index
+      LOG.error(
+          "Failed to refresh the institutions {} and collections {} of the lookup index",
+          institutionKeys,
+          collectionKeys,
+          e);
+    }
+  }
+
+  /**
+   * Replaces the entities with the loaded ones, it has to be called holding the write lock. An
+   * entity is left as it is if a load that started later was already applied, since the data of
+   * this load may predate it.
+   */
+  private void replace(
+      EntityLookupIndex index, Set<UUID> keys, List<IndexedEntity> loaded, long sequence) {
+    Map<UUID, IndexedEntity> loadedByKey = new HashMap<>();
+    loaded.forEach(e -> loadedByKey.put(e.getEntity().getKey(), e));
+    for (UUID key : keys) {
+      Long applied = appliedLoads.get(key);
+      if (applied != null && applied > sequence) {
+        continue;
+      }
+      appliedLoads.put(key, sequence);
+      IndexedEntity indexedEntity = loadedByKey.get(key);
+      if (indexedEntity != null) {
+        index.put(indexedEntity);
+      } else {
+        // deleted or not found
+        index.remove(key);
+      }
+    }
+  }
+
+  private List<IndexedEntity> load(String entity, Set<UUID> keys) {
+    List<LookupEntityDto> entities =
+        INSTITUTION.equals(entity)
+            ? lookupIndexMapper.listInstitutions(keys)
+            : lookupIndexMapper.listCollections(keys);
+    ImmutableListMultimap<UUID, LookupIdentifierDto> identifiers =
+        Multimaps.index(
+            lookupIndexMapper.listIdentifiers(entity, keys), LookupIdentifierDto::getEntityKey);
+    ImmutableListMultimap<UUID, LookupOccurrenceMappingDto> occurrenceMappings =
+        Multimaps.index(
+            lookupIndexMapper.listOccurrenceMappings(entity, keys),
+            LookupOccurrenceMappingDto::getEntityKey);
+
+    List<IndexedEntity> result = new ArrayList<>(entities.size());
+    for (LookupEntityDto e : entities) {
+      result.add(
+          new IndexedEntity(e, identifiers.get(e.getKey()), occurrenceMappings.get(e.getKey())));
+    }
+    return result;
+  }
+}
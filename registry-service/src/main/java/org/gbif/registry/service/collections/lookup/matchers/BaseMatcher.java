@@ -20,6 +20,7 @@ import org.gbif.registry.persistence.mapper.collections.LookupMapper;
 import org.gbif.registry.persistence.mapper.collections.dto.BaseEntityMatchedDto;
 import org.gbif.registry.persistence.mapper.collections.dto.EntityMatchedDto;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
@@ -214,6 +215,17 @@ public abstract class BaseMatcher<T extends EntityMatchedDto, R extends EntityMa
 
     UUID key = parseUUID(identifier);
 
+    // only the matches by name need the DB when the lookup index is loaded
+    Optional<List<T>> indexMatches =
+        getIndexMatches(code, parentCode, identifier, key, datasetKey);
+    if (indexMatches.isPresent()) {
+      List<T> matches = new ArrayList<>(indexMatches.get());
+      if (code != null || identifier != null) {
+        matches.addAll(getLookupMapper().lookupByName(code, identifier));
+      }
+      return matches;
+    }
+
     return getLookupMapper().lookup(code, parentCode, identifier, key, datasetKey);
   }
 
@@ -286,5 +298,9 @@ public abstract class BaseMatcher<T extends EntityMatchedDto, R extends EntityMa
 
   abstract LookupMapper<T> getLookupMapper();
 
+  /** Matches found in the lookup index, empty if the index is not available. */
+  abstract Optional<List<T>> getIndexMatches(
+      String code, String parentCode, String identifier, UUID key, UUID datasetKey);
+
   abstract R toEntityMatched(T dto);
 }
@@ -20,6 +20,7 @@ import org.gbif.api.model.collections.lookup.Match;
 import org.gbif.registry.persistence.mapper.collections.CollectionMapper;
 import org.gbif.registry.persistence.mapper.collections.LookupMapper;
 import org.gbif.registry.persistence.mapper.collections.dto.CollectionMatchedDto;
+import org.gbif.registry.service.collections.lookup.LookupIndex;
 import org.gbif.registry.service.collections.lookup.Matches;
 
 import java.net.URI;
@@ -35,12 +36,16 @@ import static org.gbif.api.model.collections.lookup.Match.Reason.INST_COLL_MISMA
 public class CollectionMatcher extends BaseMatcher<CollectionMatchedDto, CollectionMatched> {
 
   private final CollectionMapper collectionMapper;
+  private final LookupIndex lookupIndex;
 
   @Autowired
   public CollectionMatcher(
-      CollectionMapper collectionMapper, @Value("${api.root.url}") String apiBaseUrl) {
+      CollectionMapper collectionMapper,
+      LookupIndex lookupIndex,
+      @Value("${api.root.url}") String apiBaseUrl) {
     super(apiBaseUrl);
     this.collectionMapper = collectionMapper;
+    this.lookupIndex = lookupIndex;
   }
 
   public Matches<CollectionMatched> matchCollections(
@@ -152,6 +157,12 @@ public class CollectionMatcher extends BaseMatcher<CollectionMatchedDto, Collect
     return collectionMapper;
   }
 
+  @Override
+  Optional<List<CollectionMatchedDto>> getIndexMatches(
+      String code, String parentCode, String identifier, UUID key, UUID datasetKey) {
+    return lookupIndex.lookupCollections(code, parentCode, identifier, key, datasetKey);
+  }
+
   @Override
   CollectionMatched toEntityMatched(CollectionMatchedDto dto) {
     CollectionMatched collectionMatched = new CollectionMatched();
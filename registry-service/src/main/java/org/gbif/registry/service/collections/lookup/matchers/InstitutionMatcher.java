@@ -19,6 +19,7 @@ import org.gbif.api.model.collections.lookup.Match;
 import org.gbif.registry.persistence.mapper.collections.InstitutionMapper;
 import org.gbif.registry.persistence.mapper.collections.LookupMapper;
 import org.gbif.registry.persistence.mapper.collections.dto.InstitutionMatchedDto;
+import org.gbif.registry.service.collections.lookup.LookupIndex;
 import org.gbif.registry.service.collections.lookup.Matches;
 
 import java.net.URI;
@@ -26,6 +27,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
 import java.util.function.UnaryOperator;
@@ -45,12 +47,16 @@ public class InstitutionMatcher extends BaseMatcher<InstitutionMatchedDto, Insti
 
   private static final Pattern WHITESPACE_PATTERN = Pattern.compile("[\\h\\s+]");
   private final InstitutionMapper institutionMapper;
+  private final LookupIndex lookupIndex;
 
   @Autowired
   public InstitutionMatcher(
-      InstitutionMapper institutionMapper, @Value("${api.root.url}") String apiBaseUrl) {
+      InstitutionMapper institutionMapper,
+      LookupIndex lookupIndex,
+      @Value("${api.root.url}") String apiBaseUrl) {
     super(apiBaseUrl);
     this.institutionMapper = institutionMapper;
+    this.lookupIndex = lookupIndex;
   }
 
   public Matches<InstitutionMatched> matchInstitutions(LookupParams params) {
@@ -162,6 +168,12 @@ public class InstitutionMatcher extends BaseMatcher<InstitutionMatchedDto, Insti
     return institutionMapper;
   }
 
+  @Override
+  Optional<List<InstitutionMatchedDto>> getIndexMatches(
+      String code, String parentCode, String identifier, UUID key, UUID datasetKey) {
+    return lookupIndex.lookupInstitutions(code, identifier, key, datasetKey);
+  }
+
   @Override
   InstitutionMatched toEntityMatched(InstitutionMatchedDto dto) {
     InstitutionMatched institutionMatched = new InstitutionMatched();
@@ -52,7 +52,7 @@ public class ChangeSuggestionCountryUpdater {
     DescriptorChangeSuggestionMapper descriptorChangeSuggestionMapper) {
     this.changeSuggestionMapper = changeSuggestionMapper;
     this.descriptorChangeSuggestionMapper = descriptorChangeSuggestionMapper;
-    eventManager.register(this);
+    eventManager.registerSynchronous(this);
   }
 
   @Subscribe
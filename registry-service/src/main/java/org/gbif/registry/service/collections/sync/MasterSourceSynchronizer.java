@@ -84,7 +84,7 @@ public class MasterSourceSynchronizer {
     this.emailManager = emailManager;
     this.emailSender = emailSender;
     this.conceptClient = conceptClient;
-    eventManager.register(this);
+    eventManager.registerSynchronous(this);
   }
 
   @Subscribe
@@ -14,28 +14,52 @@
 package org.gbif.registry.service;
 
 import org.gbif.api.model.common.DOI;
+import org.gbif.api.model.common.paging.PagingRequest;
+import org.gbif.api.model.common.paging.PagingResponse;
 import org.gbif.api.model.registry.Dataset;
+import org.gbif.api.model.registry.Metadata;
+import org.gbif.api.vocabulary.DatasetType;
 import org.gbif.api.vocabulary.License;
+import org.gbif.api.vocabulary.MetadataType;
+import org.gbif.metadata.eml.parse.DatasetEmlParser;
 import org.gbif.registry.domain.ws.DerivedDatasetUsage;
 import org.gbif.registry.persistence.mapper.DatasetMapper;
+import org.gbif.registry.persistence.mapper.MetadataMapper;
+import org.gbif.registry.persistence.mapper.NetworkMapper;
+import org.gbif.registry.persistence.mapper.OrganizationMapper;
+import org.gbif.registry.persistence.mapper.dto.MetadataDatasetJsonDto;
 import org.gbif.registry.persistence.mapper.params.DatasetListParams;
+import org.gbif.ws.json.JacksonJsonObjectMapperProvider;
 
+import java.io.InputStream;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -49,8 +73,119 @@ class RegistryDatasetServiceImplTest {
   private final DOI DOI_1 = new DOI("10.21373/12345");
   private final DOI DOI_2 = new DOI("10.21373/54321");
 
+  // the mapper registered as registryObjectMapper by the web services
+  private final ObjectMapper objectMapper = JacksonJsonObjectMapperProvider.getObjectMapper();
+
+  @Mock private MetadataMapper metadataMapper;
+  @Mock private NetworkMapper networkMapper;
+  @Mock private OrganizationMapper organizationMapper;
   @Mock private DatasetMapper datasetMapper;
-  @InjectMocks private RegistryDatasetServiceImpl registryDatasetService;
+  private RegistryDatasetServiceImpl registryDatasetService;
+
+  @BeforeEach
+  public void setUp() {
+    registryDatasetService =
+        new RegistryDatasetServiceImpl(
+            metadataMapper,
+            networkMapper,
+            organizationMapper,
+            datasetMapper,
+            objectMapper,
+            128,
+            null);
+  }
+
+  @Test
+  public void testDatasetJsonRoundTrip() throws Exception {
+    Dataset dataset = fullyPopulatedDataset();
+    // make sure the sample document populates the nested structures
+    assertFalse(dataset.getContacts().isEmpty());
+    assertFalse(dataset.getGeographicCoverages().isEmpty());
+    assertFalse(dataset.getTaxonomicCoverages().isEmpty());
+    assertFalse(dataset.getTemporalCoverages().isEmpty());
+    assertFalse(dataset.getKeywordCollections().isEmpty());
+    assertFalse(dataset.getBibliographicCitations().isEmpty());
+    assertNotNull(dataset.getProject());
+    assertNotNull(dataset.getSamplingDescription());
+
+    String json = objectMapper.writeValueAsString(dataset);
+
+    assertEquals(dataset, objectMapper.readValue(json, Dataset.class));
+  }
+
+  @Test
+  public void testStoreMetadataDatasetJsonParsesOnce() throws Exception {
+    byte[] document = sampleDocument();
+    UUID datasetKey = UUID.randomUUID();
+    Metadata metadata = new Metadata();
+    metadata.setKey(7);
+    metadata.setDatasetKey(datasetKey);
+    metadata.setType(MetadataType.EML);
+    when(metadataMapper.list(datasetKey, null)).thenReturn(Collections.singletonList(metadata));
+
+    registryDatasetService.storeMetadataDatasetJson(metadata, document);
+
+    ArgumentCaptor<String> json = ArgumentCaptor.forClass(String.class);
+    verify(metadataMapper).updateDatasetJson(eq(7), json.capture());
+    Dataset expected = DatasetEmlParser.build(document);
+    assertEquals(expected, objectMapper.readValue(json.getValue(), Dataset.class));
+
+    // the dataset is read from the cache, the document isn't read or parsed again
+    assertEquals(expected, registryDatasetService.getPreferredMetadataDataset(datasetKey));
+    verify(metadataMapper, never()).getDatasetJson(anyInt());
+    verify(metadataMapper, never()).getDocument(anyInt());
+  }
+
+  @Test
+  public void testAugmentWithMetadataReadsPageInBulk() throws Exception {
+    Dataset parsed = DatasetEmlParser.build(sampleDocument());
+    String json = objectMapper.writeValueAsString(parsed);
+    Dataset withMetadata1 = prepareDataset(UUID_1, DOI_1);
+    Dataset withMetadata2 = prepareDataset(UUID_2, DOI_2);
+    Dataset withoutMetadata = prepareDataset(UUID.randomUUID(), null);
+    List<UUID> keys =
+        Arrays.asList(withMetadata1.getKey(), withMetadata2.getKey(), withoutMetadata.getKey());
+    when(metadataMapper.listPreferred(keys))
+        .thenReturn(Arrays.asList(newMetadata(1, UUID_1), newMetadata(2, UUID_2)));
+    when(metadataMapper.listDatasetJson(Arrays.asList(1, 2)))
+        .thenReturn(Arrays.asList(newDatasetJson(1, json), newDatasetJson(2, json)));
+
+    PagingResponse<Dataset> page =
+        registryDatasetService.augmentWithMetadata(
+            new PagingResponse<>(
+                new PagingRequest(0, 3),
+                3L,
+                Arrays.asList(withMetadata1, withMetadata2, withoutMetadata)));
+
+    // the documents are merged with the persisted datasets, in the order of the page
+    assertEquals(3, page.getResults().size());
+    for (int i = 0; i < 2; i++) {
+      Dataset augmented = page.getResults().get(i);
+      assertEquals(keys.get(i), augmented.getKey());
+      assertEquals("Title", augmented.getTitle());
+      assertEquals(parsed.getGeographicCoverages(), augmented.getGeographicCoverages());
+      assertEquals(parsed.getTaxonomicCoverages(), augmented.getTaxonomicCoverages());
+    }
+    assertEquals(withoutMetadata.getKey(), page.getResults().get(2).getKey());
+    assertNull(page.getResults().get(2).getProject());
+
+    // the page is read with two queries, not with a query per dataset
+    verify(metadataMapper, never()).list(any(), any());
+    verify(metadataMapper, never()).getDatasetJson(anyInt());
+    verify(metadataMapper, never()).getDocument(anyInt());
+
+    // the stored JSON is cached, a second read of the page only lists the preferred documents
+    registryDatasetService.augmentWithMetadata(
+        new PagingResponse<>(
+            new PagingRequest(0, 3),
+            3L,
+            Arrays.asList(
+                prepareDataset(UUID_1, DOI_1),
+                prepareDataset(UUID_2, DOI_2),
+                prepareDataset(withoutMetadata.getKey(), null))));
+    verify(metadataMapper, times(2)).listPreferred(keys);
+    verify(metadataMapper, times(1)).listDatasetJson(anyCollection());
+  }
 
   @Test
   public void testEnsureDerivedDatasetDatasetUsagesValidDuplicates() {
@@ -132,6 +267,44 @@ class RegistryDatasetServiceImplTest {
     verify(datasetMapper).list(any(DatasetListParams.class));
   }
 
+  private static byte[] sampleDocument() throws Exception {
+    try (InputStream in =
+        RegistryDatasetServiceImplTest.class.getResourceAsStream("/metadata/sample.xml")) {
+      return in.readAllBytes();
+    }
+  }
+
+  /** A dataset with the fields of a parsed metadata document and the registry ones. */
+  private static Dataset fullyPopulatedDataset() throws Exception {
+    Dataset dataset = DatasetEmlParser.build(sampleDocument());
+    dataset.setKey(UUID.randomUUID());
+    dataset.setPublishingOrganizationKey(UUID.randomUUID());
+    dataset.setInstallationKey(UUID.randomUUID());
+    dataset.setType(DatasetType.OCCURRENCE);
+    dataset.setDoi(new DOI("10.21373/abcdef"));
+    dataset.setLicense(License.CC_BY_4_0);
+    dataset.setCreatedBy("creator");
+    dataset.setModifiedBy("modifier");
+    dataset.setCreated(new Date(1_700_000_000_000L));
+    dataset.setModified(new Date(1_700_000_100_000L));
+    return dataset;
+  }
+
+  private static Metadata newMetadata(int key, UUID datasetKey) {
+    Metadata metadata = new Metadata();
+    metadata.setKey(key);
+    metadata.setDatasetKey(datasetKey);
+    metadata.setType(MetadataType.EML);
+    return metadata;
+  }
+
+  private static MetadataDatasetJsonDto newDatasetJson(int key, String json) {
+    MetadataDatasetJsonDto datasetJson = new MetadataDatasetJsonDto();
+    datasetJson.setKey(key);
+    datasetJson.setDatasetJson(json);
+    return datasetJson;
+  }
+
   private Dataset prepareDataset(UUID key, DOI doi) {
     Dataset dataset = new Dataset();
     dataset.setKey(key);
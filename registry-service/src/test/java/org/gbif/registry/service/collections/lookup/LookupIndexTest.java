@@ -0,0 +1,229 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.service.collections.lookup;
+
+import org.gbif.api.model.collections.Collection;
+import org.gbif.api.model.collections.Institution;
+import org.gbif.api.vocabulary.IdentifierType;
+import org.gbif.registry.events.EventManager;
+import org.gbif.registry.events.collections.DeleteCollectionEntityEvent;
+import org.gbif.registry.events.collections.UpdateCollectionEntityEvent;
+import org.gbif.registry.persistence.mapper.collections.LookupIndexMapper;
+import org.gbif.registry.persistence.mapper.collections.dto.CollectionMatchedDto;
+import org.gbif.registry.persistence.mapper.collections.dto.InstitutionMatchedDto;
+import org.gbif.registry.persistence.mapper.collections.dto.LookupEntityDto;
+import org.gbif.registry.persistence.mapper.collections.dto.LookupIdentifierDto;
+import org.gbif.registry.persistence.mapper.collections.dto.LookupOccurrenceMappingDto;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/** Tests the {@link LookupIndex}. */
+public class LookupIndexTest {
+
+  private static final UUID I1_KEY = UUID.randomUUID();
+  private static final UUID C1_KEY = UUID.randomUUID();
+  private static final UUID DATASET_KEY = UUID.randomUUID();
+
+  private final LookupIndexMapper lookupIndexMapper = mock(LookupIndexMapper.class);
+  private final LookupIndex lookupIndex =
+      new LookupIndex(lookupIndexMapper, mock(EventManager.class), true);
+
+  @BeforeEach
+  public void load() {
+    when(lookupIndexMapper.listInstitutions(null))
+        .thenReturn(Collections.singletonList(entity(I1_KEY, "I1", "Institution 1", "II1")));
+    when(lookupIndexMapper.listIdentifiers("institution", null))
+        .thenReturn(
+            Arrays.asList(
+                identifier(I1_KEY, IdentifierType.LSID, "urn:lsid:inst"),
+                identifier(I1_KEY, IdentifierType.GRSCICOLL_ID, "12345")));
+
+    LookupEntityDto c1 = entity(C1_KEY, "C1", "Collection 1", "CC1");
+    c1.setInstitutionKey(I1_KEY);
+    c1.setInstitutionCode("I1");
+    when(lookupIndexMapper.listCollections(null)).thenReturn(Collections.singletonList(c1));
+    when(lookupIndexMapper.listOccurrenceMappings("collection", null))
+        .thenReturn(Collections.singletonList(occurrenceMapping(C1_KEY, "MC", "MI")));
+  }
+
+  @Test
+  public void notLoadedTest() {
+    assertFalse(lookupIndex.lookupInstitutions("I1", null, null, null).isPresent());
+    assertFalse(lookupIndex.lookupCollections("C1", null, null, null, null).isPresent());
+  }
+
+  @Test
+  public void lookupInstitutionsTest() {
+    lookupIndex.reload();
+
+    // a row per identifier, like the DB lookup
+    List<InstitutionMatchedDto> matches =
+        lookupIndex.lookupInstitutions("i1", null, null, null).get();
+    assertEquals(2, matches.size());
+    assertTrue(matches.stream().allMatch(m -> m.isCodeMatch() && !m.isAlternativeCodeMatch()));
+    assertTrue(matches.stream().anyMatch(m -> "12345".equals(m.getIdentifier())));
+
+    matches = lookupIndex.lookupInstitutions("ii1", null, null, null).get();
+    assertTrue(matches.stream().allMatch(InstitutionMatchedDto::isAlternativeCodeMatch));
+
+    matches = lookupIndex.lookupInstitutions(null, "inst", null, null).get();
+    assertTrue(matches.stream().allMatch(InstitutionMatchedDto::isIdentifierMatch));
+
+    // the GRSciColl IDs are not used to match
+    assertTrue(lookupIndex.lookupInstitutions(null, "12345", null, null).get().isEmpty());
+
+    matches = lookupIndex.lookupInstitutions(null, I1_KEY.toString(), I1_KEY, null).get();
+    assertTrue(matches.stream().allMatch(m -> m.isKeyMatch() && !m.isIdentifierMatch()));
+  }
+
+  @Test
+  public void lookupCollectionsOccurrenceMappingsTest() {
+    lookupIndex.reload();
+
+    List<CollectionMatchedDto> matches =
+        lookupIndex.lookupCollections("MC", null, "MI", null, DATASET_KEY).get();
+    assertEquals(1, matches.size());
+    assertTrue(matches.get(0).isExplicitMapping());
+    assertEquals("I1", matches.get(0).getInstitutionCode());
+
+    // the code of the mappings of collections is case sensitive
+    assertTrue(lookupIndex.lookupCollections("mc", null, null, null, DATASET_KEY).get().isEmpty());
+    assertTrue(
+        lookupIndex.lookupCollections(null, null, "other", null, DATASET_KEY).get().isEmpty());
+    assertTrue(
+        lookupIndex.lookupCollections(null, null, null, null, UUID.randomUUID()).get().isEmpty());
+  }
+
+  @Test
+  public void refreshFromEventsTest() {
+    lookupIndex.reload();
+
+    LookupEntityDto updated = entity(I1_KEY, "I1-NEW", "Institution 1", null);
+    when(lookupIndexMapper.listInstitutions(Set.of(I1_KEY)))
+        .thenReturn(Collections.singletonList(updated));
+    LookupEntityDto c1 = entity(C1_KEY, "C1", "Collection 1", null);
+    c1.setInstitutionKey(I1_KEY);
+    c1.setInstitutionCode("I1-NEW");
+    when(lookupIndexMapper.listCollections(Set.of(C1_KEY)))
+        .thenReturn(Collections.singletonList(c1));
+
+    Institution institution = new Institution();
+    institution.setKey(I1_KEY);
+    lookupIndex.onUpdate(UpdateCollectionEntityEvent.newInstance(institution, institution));
+
+    assertTrue(lookupIndex.lookupInstitutions("I1", null, null, null).get().isEmpty());
+    assertEquals(1, lookupIndex.lookupInstitutions("I1-NEW", null, null, null).get().size());
+    // the collections of the institution are refreshed too
+    List<CollectionMatchedDto> collectionMatches =
+        lookupIndex.lookupCollections("C1", null, null, null, null).get();
+    assertEquals("I1-NEW", collectionMatches.get(0).getInstitutionCode());
+
+    when(lookupIndexMapper.listCollections(Set.of(C1_KEY))).thenReturn(Collections.emptyList());
+    Collection collection = new Collection();
+    collection.setKey(C1_KEY);
+    lookupIndex.onDelete(DeleteCollectionEntityEvent.newInstance(collection, collection));
+    assertTrue(lookupIndex.lookupCollections("C1", null, null, null, null).get().isEmpty());
+  }
+
+  @Test
+  public void refreshAfterCommitTest() {
+    lookupIndex.reload();
+
+    when(lookupIndexMapper.listInstitutions(Set.of(I1_KEY)))
+        .thenReturn(Collections.singletonList(entity(I1_KEY, "I1-NEW", "Institution 1", null)));
+    Institution institution = new Institution();
+    institution.setKey(I1_KEY);
+
+    TransactionSynchronizationManager.initSynchronization();
+    try {
+      lookupIndex.onUpdate(UpdateCollectionEntityEvent.newInstance(institution, institution));
+
+      // not visible until the change is committed
+      verify(lookupIndexMapper, never()).listInstitutions(Set.of(I1_KEY));
+      assertEquals(2, lookupIndex.lookupInstitutions("I1", null, null, null).get().size());
+
+      TransactionSynchronizationManager.getSynchronizations()
+          .forEach(TransactionSynchronization::afterCommit);
+    } finally {
+      TransactionSynchronizationManager.clearSynchronization();
+    }
+    assertTrue(lookupIndex.lookupInstitutions("I1", null, null, null).get().isEmpty());
+    assertEquals(1, lookupIndex.lookupInstitutions("I1-NEW", null, null, null).get().size());
+  }
+
+  @Test
+  public void noRefreshOnRollbackTest() {
+    lookupIndex.reload();
+
+    Collection collection = new Collection();
+    collection.setKey(C1_KEY);
+
+    TransactionSynchronizationManager.initSynchronization();
+    try {
+      lookupIndex.onDelete(DeleteCollectionEntityEvent.newInstance(collection, collection));
+      TransactionSynchronizationManager.getSynchronizations()
+          .forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+    } finally {
+      TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    verify(lookupIndexMapper, never()).listCollections(Set.of(C1_KEY));
+    assertEquals(1, lookupIndex.lookupCollections("C1", null, null, null, null).get().size());
+  }
+
+  private static LookupEntityDto entity(UUID key, String code, String name, String altCode) {
+    LookupEntityDto dto = new LookupEntityDto();
+    dto.setKey(key);
+    dto.setCode(code);
+    dto.setName(name);
+    dto.setAlternativeCodes(
+        altCode != null ? Collections.singletonList(altCode) : Collections.emptyList());
+    return dto;
+  }
+
+  private static LookupIdentifierDto identifier(UUID key, IdentifierType type, String identifier) {
+    LookupIdentifierDto dto = new LookupIdentifierDto();
+    dto.setEntityKey(key);
+    dto.setType(type);
+    dto.setIdentifier(identifier);
+    return dto;
+  }
+
+  private static LookupOccurrenceMappingDto occurrenceMapping(
+      UUID key, String code, String identifier) {
+    LookupOccurrenceMappingDto dto = new LookupOccurrenceMappingDto();
+    dto.setEntityKey(key);
+    dto.setDatasetKey(DATASET_KEY);
+    dto.setCode(code);
+    dto.setIdentifier(identifier);
+    return dto;
+  }
+}
@@ -42,6 +42,7 @@ import org.springframework.scheduling.annotation.EnableScheduling;
       "org.gbif.registry.ws.advice",
       "org.gbif.registry.ws.config",
       "org.gbif.registry.ws.resources",
+      "org.gbif.registry.ws.security",
       "org.gbif.registry.ws.surety",
       "org.gbif.registry.security",
       "org.gbif.registry.persistence",
@@ -30,8 +30,12 @@ import org.gbif.api.vocabulary.License;
 import org.gbif.api.vocabulary.Rank;
 import org.gbif.api.vocabulary.collections.MasterSourceType;
 
+import java.io.BufferedWriter;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.Writer;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
 import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
 import java.util.Arrays;
@@ -41,25 +45,33 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.UUID;
+import java.util.function.Consumer;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
 
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
 import org.supercsv.cellprocessor.*;
 import org.supercsv.cellprocessor.ift.CellProcessor;
-import org.supercsv.io.CsvBeanWriter;
-import org.supercsv.io.CsvMapWriter;
-import org.supercsv.io.ICsvBeanWriter;
-import org.supercsv.io.ICsvMapWriter;
-import org.supercsv.io.dozer.CsvDozerBeanWriter;
-import org.supercsv.prefs.CsvPreference;
 import org.supercsv.util.CsvContext;
 
 import com.fasterxml.jackson.databind.util.StdDateFormat;
 
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.Builder;
 import lombok.Data;
 import lombok.SneakyThrows;
 
+/**
+ * Exports beans or maps as CSV or TSV.
+ *
+ * <p>Rows are streamed: the value of each field is read with a getter resolved once per class,
+ * formatted by its cell processor and written through a reused row buffer, so the memory used
+ * doesn't depend on the number of rows.
+ */
 @Data
 @Builder
 public class CsvWriter<T> {
@@ -67,6 +79,8 @@ public class CsvWriter<T> {
   // Delimiter used for list/array of elements
   public static final String ARRAY_DELIMITER = ";";
 
+  private static final int BUFFER_SIZE = 64 * 1024;
+
   private final String[] header;
 
   private final String[] fields;
@@ -79,7 +93,7 @@ public class CsvWriter<T> {
 
   private final ExportFormat preference;
 
-  // Use dozer if set to true.
+  // Bean class of the rows, fields can be nested paths like "collection.key".
   private Class<?> forClass;
 
   /** Creates an CsvWriter/exporter of DownloadStatistics. */
@@ -594,53 +608,126 @@ public class CsvWriter<T> {
         .collect(Collectors.joining(delimiter));
   }
 
-  private CsvPreference csvPreference() {
+  private char delimiter() {
     if (ExportFormat.CSV == preference) {
-      return CsvPreference.STANDARD_PREFERENCE;
+      return ',';
     } else if (ExportFormat.TSV == preference) {
-      return CsvPreference.TAB_PREFERENCE;
+      return '\t';
     }
     throw new IllegalArgumentException("Export format not supported " + preference);
   }
 
+  /** Writes the map rows to the response, compressed with gzip if the client accepts it. */
+  @SneakyThrows
+  public void exportMap(HttpServletResponse response) {
+    exportMap(response.getOutputStream(), useGzip(response));
+  }
+
+  /** Writes the map rows as UTF-8 to the output stream, compressed with gzip if requested. */
+  @SneakyThrows
+  public void exportMap(OutputStream outputStream, boolean gzip) {
+    write(outputStream, gzip, this::exportMap);
+  }
+
   @SneakyThrows
   public void exportMap(Writer writer) {
-    try (ICsvMapWriter mapWriter = new CsvMapWriter(writer, csvPreference())) {
-      mapWriter.writeHeader(header);
-      for (Map<String, T> o : mapPager) {
-        mapWriter.write(o, fields, processors);
+    DelimitedRowWriter rows = new DelimitedRowWriter(writer, delimiter());
+    rows.row(header);
+    CsvContext context = new CsvContext(1, 1, 1);
+    for (Map<String, T> o : mapPager) {
+      nextRow(context);
+      for (int i = 0; i < fields.length; i++) {
+        rows.cell(process(i, o.get(fields[i]), context));
       }
+      rows.endRow();
     }
+    rows.flush();
   }
 
+  /** Writes the rows to the response, compressed with gzip if the client accepts it. */
   @SneakyThrows
-  public void export(Writer writer) {
-    if (forClass != null) {
-      exportUsingDozerBeanWriter(writer);
-    } else {
-      exportUsingBeanWriter(writer);
-    }
+  public void export(HttpServletResponse response) {
+    export(response.getOutputStream(), useGzip(response));
   }
 
+  /** Writes the rows as UTF-8 to the output stream, compressed with gzip if requested. */
   @SneakyThrows
-  private void exportUsingBeanWriter(Writer writer) {
-    try (ICsvBeanWriter beanWriter = new CsvBeanWriter(writer, csvPreference())) {
-      beanWriter.writeHeader(header);
-      for (T o : pager) {
-        beanWriter.write(o, fields, processors);
+  public void export(OutputStream outputStream, boolean gzip) {
+    write(outputStream, gzip, this::export);
+  }
+
+  @SneakyThrows
+  public void export(Writer writer) {
+    DelimitedRowWriter rows = new DelimitedRowWriter(writer, delimiter());
+    rows.row(header);
+    CsvContext context = new CsvContext(1, 1, 1);
+    Class<?> rowClass = null;
+    FieldAccessor[] accessors = new FieldAccessor[fields.length];
+    for (T o : pager) {
+      if (o.getClass() != rowClass) {
+        rowClass = o.getClass();
+        for (int i = 0; i < fields.length; i++) {
+          accessors[i] = FieldAccessor.of(rowClass, fields[i]);
+        }
       }
+      nextRow(context);
+      for (int i = 0; i < fields.length; i++) {
+        rows.cell(process(i, accessors[i].get(o), context));
+      }
+      rows.endRow();
     }
+    rows.flush();
+  }
+
+  private static void nextRow(CsvContext context) {
+    context.setRowNumber(context.getRowNumber() + 1);
+    context.setLineNumber(context.getRowNumber());
+    context.setColumnNumber(0);
+  }
+
+  private Object process(int column, Object value, CsvContext context) {
+    context.setColumnNumber(column + 1);
+    if (processors == null || processors[column] == null) {
+      return value;
+    }
+    return processors[column].execute(value, context);
   }
 
   @SneakyThrows
-  private void exportUsingDozerBeanWriter(Writer writer) {
-    try (CsvDozerBeanWriter beanWriter = new CsvDozerBeanWriter(writer, csvPreference())) {
-      beanWriter.writeHeader(header);
-      beanWriter.configureBeanMapping(forClass, fields);
-      for (T o : pager) {
-        beanWriter.write(o, processors);
-      }
+  private static void write(OutputStream outputStream, boolean gzip, Consumer<Writer> export) {
+    GZIPOutputStream gzipStream = gzip ? new GZIPOutputStream(outputStream, BUFFER_SIZE) : null;
+    Writer writer =
+        new BufferedWriter(
+            new OutputStreamWriter(
+                gzip ? gzipStream : outputStream, StandardCharsets.UTF_8),
+            BUFFER_SIZE);
+    export.accept(writer);
+    writer.flush();
+    if (gzipStream != null) {
+      gzipStream.finish();
+    }
+  }
+
+  /**
+   * Compresses the response if the current request accepts gzip. The response then depends on the
+   * Accept-Encoding header, so caches are told to vary on it.
+   */
+  private static boolean useGzip(HttpServletResponse response) {
+    if (!(RequestContextHolder.getRequestAttributes()
+        instanceof ServletRequestAttributes attributes)) {
+      return false;
+    }
+    if (response.getHeaders(HttpHeaders.VARY).stream()
+        .noneMatch(vary -> vary.toLowerCase().contains("accept-encoding"))) {
+      response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+    }
+    HttpServletRequest request = attributes.getRequest();
+    String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+    if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+      response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+      return true;
     }
+    return false;
   }
 
   /** Null aware UUID processor. */
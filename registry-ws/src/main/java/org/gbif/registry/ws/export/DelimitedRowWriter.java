@@ -0,0 +1,104 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.ws.export;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Encodes rows of delimited text into a reusable buffer and writes them to a {@link Writer}.
+ *
+ * <p>Cells are escaped like SuperCSV does with its standard preferences: cells containing the
+ * delimiter, a quote or a line break are quoted, quotes are doubled and line breaks are written as
+ * {@code \r\n}.
+ */
+final class DelimitedRowWriter {
+
+  private static final char QUOTE = '"';
+  private static final String END_OF_LINE = "\r\n";
+
+  private final Writer writer;
+  private final char delimiter;
+
+  // reused for every row
+  private final StringBuilder row = new StringBuilder(512);
+  private final StringBuilder cell = new StringBuilder(128);
+  private int column;
+
+  DelimitedRowWriter(Writer writer, char delimiter) {
+    this.writer = writer;
+    this.delimiter = delimiter;
+  }
+
+  /** Appends a cell to the current row, null values are written as empty cells. */
+  void cell(Object value) {
+    if (column++ > 0) {
+      row.append(delimiter);
+    }
+    if (value != null) {
+      encode(value.toString());
+    }
+  }
+
+  /** Writes the current row and starts a new one. */
+  void endRow() throws IOException {
+    row.append(END_OF_LINE);
+    writer.append(row);
+    row.setLength(0);
+    column = 0;
+  }
+
+  void row(String[] values) throws IOException {
+    for (String value : values) {
+      cell(value);
+    }
+    endRow();
+  }
+
+  void flush() throws IOException {
+    writer.flush();
+  }
+
+  private void encode(String value) {
+    cell.setLength(0);
+    boolean needsQuotes = false;
+    int length = value.length();
+    for (int i = 0; i < length; i++) {
+      char c = value.charAt(i);
+      if (c == delimiter) {
+        needsQuotes = true;
+        cell.append(c);
+      } else if (c == QUOTE) {
+        needsQuotes = true;
+        cell.append(QUOTE).append(QUOTE);
+      } else if (c == '\r') {
+        needsQuotes = true;
+        cell.append(END_OF_LINE);
+        if (i + 1 < length && value.charAt(i + 1) == '\n') {
+          i++;
+        }
+      } else if (c == '\n') {
+        needsQuotes = true;
+        cell.append(END_OF_LINE);
+      } else {
+        cell.append(c);
+      }
+    }
+    if (needsQuotes) {
+      row.append(QUOTE).append(cell).append(QUOTE);
+    } else {
+      row.append(cell);
+    }
+  }
+}
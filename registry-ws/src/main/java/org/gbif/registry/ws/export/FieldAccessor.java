@@ -0,0 +1,108 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.ws.export;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Reads the value of a field path, like {@code key} or {@code collection.key}, from a bean.
+ *
+ * <p>Getters are resolved once per class and field path and invoked through method handles, so no
+ * reflection lookups are done per row. A null value in the middle of a path returns null.
+ */
+final class FieldAccessor {
+
+  private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+  private static final Map<Class<?>, Map<String, FieldAccessor>> ACCESSORS =
+      new ConcurrentHashMap<>();
+
+  private final MethodHandle[] getters;
+
+  private FieldAccessor(MethodHandle[] getters) {
+    this.getters = getters;
+  }
+
+  /** Gets the accessor of the field path for the given class, resolving it the first time. */
+  static FieldAccessor of(Class<?> beanClass, String fieldPath) {
+    return ACCESSORS
+        .computeIfAbsent(beanClass, c -> new ConcurrentHashMap<>())
+        .computeIfAbsent(fieldPath, p -> resolve(beanClass, p));
+  }
+
+  private static FieldAccessor resolve(Class<?> beanClass, String fieldPath) {
+    String[] names = fieldPath.split("\\.");
+    MethodHandle[] getters = new MethodHandle[names.length];
+    Class<?> currentClass = beanClass;
+    for (int i = 0; i < names.length; i++) {
+      Method getter = findGetter(currentClass, names[i]);
+      try {
+        getters[i] = unreflect(getter).asType(GETTER_TYPE);
+      } catch (IllegalAccessException e) {
+        throw new IllegalArgumentException(
+            "Getter of " + names[i] + " in " + currentClass.getName() + " is not accessible", e);
+      }
+      currentClass = getter.getReturnType();
+    }
+    return new FieldAccessor(getters);
+  }
+
+  private static MethodHandle unreflect(Method getter) throws IllegalAccessException {
+    try {
+      return MethodHandles.publicLookup().unreflect(getter);
+    } catch (IllegalAccessException e) {
+      // public getters inherited from a non public class
+      getter.setAccessible(true);
+      return MethodHandles.lookup().unreflect(getter);
+    }
+  }
+
+  /** Same getter conventions as SuperCSV: getX, or isX and hasX for booleans. */
+  private static Method findGetter(Class<?> beanClass, String name) {
+    String suffix = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    for (String prefix : new String[] {"get", "is", "has"}) {
+      try {
+        Method method = beanClass.getMethod(prefix + suffix);
+        if ("get".equals(prefix)
+            || method.getReturnType() == boolean.class
+            || method.getReturnType() == Boolean.class) {
+          return method;
+        }
+      } catch (NoSuchMethodException e) {
+        // try the next prefix
+      }
+    }
+    throw new IllegalArgumentException(
+        "No getter found for field " + name + " in " + beanClass.getName());
+  }
+
+  Object get(Object bean) {
+    Object value = bean;
+    try {
+      for (int i = 0; i < getters.length && value != null; i++) {
+        value = (Object) getters[i].invokeExact(value);
+      }
+    } catch (RuntimeException | Error e) {
+      throw e;
+    } catch (Throwable e) {
+      throw new IllegalStateException(e);
+    }
+    return value;
+  }
+}
@@ -49,10 +49,7 @@ import org.gbif.registry.ws.provider.PartialDate;
 import org.gbif.registry.ws.util.DateUtils;
 import org.gbif.ws.WebApplicationException;
 
-import java.io.BufferedWriter;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
-import java.io.Writer;
 import java.lang.annotation.ElementType;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
@@ -72,6 +69,7 @@ import java.util.TreeMap;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
+import org.apache.ibatis.cursor.Cursor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.Marker;
@@ -141,9 +139,6 @@ public class BaseDownloadResource implements OccurrenceDownloadService {
   // Page size to iterate over download stats export service
   private static final int STATS_EXPORT_LIMIT = 7_500;
 
-  // Page size to iterate over download stats export service
-  private static final int EXPORT_LIMIT = 5_000;
-
   // Export header prefix
   private static final String FILE_HEADER_PRE = "attachment; filename=datasets_download_usage_";
 
@@ -160,6 +155,10 @@ public class BaseDownloadResource implements OccurrenceDownloadService {
   private static final EnumSet<Download.Status> FAILED_STATES =
       EnumSet.of(Download.Status.KILLED, Download.Status.CANCELLED, Download.Status.FAILED);
 
+  // states counted in the download statistics
+  private static final EnumSet<Download.Status> SUCCESSFUL_STATES =
+      EnumSet.of(Download.Status.SUCCEEDED, Download.Status.FILE_ERASED);
+
   @Target({ElementType.METHOD, ElementType.TYPE})
   @Retention(RetentionPolicy.RUNTIME)
   @Parameter(name = "key", description = "The key of the download", in = ParameterIn.PATH)
@@ -454,9 +453,26 @@ public class BaseDownloadResource implements OccurrenceDownloadService {
     }
 
     downloadMapper.update(download);
+
+    if (SUCCESSFUL_STATES.contains(download.getStatus())
+        && !SUCCESSFUL_STATES.contains(currentDownload.getStatus())) {
+      addToStatistics(download.getKey());
+    }
     return downloadMapper.get(download.getKey());
   }
 
+  /**
+   * Adds a download that just succeeded to the statistics of the month it was created, so they
+   * don't have to wait for the monthly aggregation. Each download is only added once.
+   */
+  private void addToStatistics(String downloadKey) {
+    if (downloadStatisticsMapper.markDownloadStatisticsApplied(downloadKey, downloadType) > 0) {
+      downloadStatisticsMapper.addDownloadStats(downloadKey, downloadType);
+      downloadStatisticsMapper.addDownloadUserStats(downloadKey, downloadType);
+      downloadStatisticsMapper.addDownloadSourceStats(downloadKey, downloadType);
+    }
+  }
+
   @Hidden
   @PutMapping(
     value = {"{key}/license"},
@@ -548,16 +564,20 @@ public class BaseDownloadResource implements OccurrenceDownloadService {
     return listDatasetUsagesInternal(key, page, download, datasetTitle, sortBy, sortOrder);
   }
 
+  /**
+   * Exports all the dataset usages of a download. The usages are read through a single database
+   * cursor, that's why it runs in a read-only transaction. An unknown download has no usages, so
+   * its export only has the header.
+   */
+  @Transactional(readOnly = true)
   public void exportListDatasetUsagesByKey(
       HttpServletResponse response, String key, ExportFormat format) throws IOException {
-
     response.setHeader(
         HttpHeaders.CONTENT_DISPOSITION, FILE_HEADER_PRE + key + '.' + format.name().toLowerCase());
 
-    try (Writer writer = new BufferedWriter(new OutputStreamWriter(response.getOutputStream()))) {
-      CsvWriter.datasetOccurrenceDownloadUsageCsvWriter(
-              Iterables.datasetOccurrenceDownloadUsages(this, key, EXPORT_LIMIT), format)
-          .export(writer);
+    try (Cursor<DatasetOccurrenceDownloadUsage> usages =
+        datasetDownloadMapper.streamByDownload(key)) {
+      CsvWriter.datasetOccurrenceDownloadUsageCsvWriter(usages, format).export(response);
     }
   }
 
@@ -683,12 +703,20 @@ public class BaseDownloadResource implements OccurrenceDownloadService {
     LOG.debug("Dataset citations for download key {}:", downloadKey);
     datasetCitations.forEach((key, value) -> LOG.debug("{} - {}", key, value));
 
+    // usages created after the download was added to the statistics are added on their own
+    boolean addToStatistics = downloadStatisticsMapper.isDownloadStatisticsApplied(downloadKey);
+
     Iterators.partition(datasetCitations.entrySet().iterator(), BATCH_SIZE)
         .forEachRemaining(
-            batch ->
-                datasetDownloadMapper.createOrUpdateUsages(
-                    downloadKey,
-                    batch.stream().collect(Collectors.toMap(Entry::getKey, Entry::getValue))));
+            batch -> {
+              Map<UUID, Long> usages =
+                  batch.stream().collect(Collectors.toMap(Entry::getKey, Entry::getValue));
+              if (addToStatistics) {
+                // only the changes against the stored usages are added, resent usages add nothing
+                downloadStatisticsMapper.addDownloadUsagesStats(downloadKey, usages, downloadType);
+              }
+              datasetDownloadMapper.createOrUpdateUsages(downloadKey, usages);
+            });
   }
 
   @Override
@@ -875,19 +903,17 @@ public class BaseDownloadResource implements OccurrenceDownloadService {
     response.setHeader(
         HttpHeaders.CONTENT_DISPOSITION, EXPORT_FILE_HEADER_PRE + format.name().toLowerCase());
 
-    try (Writer writer = new BufferedWriter(new OutputStreamWriter(response.getOutputStream()))) {
-      CsvWriter.downloadStatisticsCsvWriter(
-              Iterables.downloadStatistics(
-                  this,
-                  fromDate,
-                  toDate,
-                  publishingCountry,
-                  datasetKey,
-                  publishingOrgKey,
-                  STATS_EXPORT_LIMIT),
-              format)
-          .export(writer);
-    }
+    CsvWriter.downloadStatisticsCsvWriter(
+            Iterables.downloadStatistics(
+                this,
+                fromDate,
+                toDate,
+                publishingCountry,
+                datasetKey,
+                publishingOrgKey,
+                STATS_EXPORT_LIMIT),
+            format)
+        .export(response);
   }
 
   /** Aggregates the download statistics in tree structure of month grouped by year. */
@@ -74,13 +74,10 @@ import org.gbif.registry.ws.export.CsvWriter;
 import org.gbif.vocabulary.client.ConceptClient;
 import org.gbif.ws.NotFoundException;
 
-import java.io.BufferedWriter;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStreamWriter;
 import java.io.StringWriter;
-import java.io.Writer;
 import java.lang.annotation.ElementType;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
@@ -491,12 +488,10 @@ public class DatasetResource extends BaseNetworkEntityResource<Dataset, DatasetL
     response.setHeader(
         HttpHeaders.CONTENT_DISPOSITION, EXPORT_FILE_PRE + format.name().toLowerCase());
 
-    try (Writer writer = new BufferedWriter(new OutputStreamWriter(response.getOutputStream()))) {
-      CsvWriter.datasetSearchResultCsvWriter(
-              Iterables.datasetSearchResults(searchRequest, searchService, SEARCH_EXPORT_LIMIT),
-              format)
-          .export(writer);
-    }
+    CsvWriter.datasetSearchResultCsvWriter(
+            Iterables.datasetSearchResults(searchRequest, searchService, SEARCH_EXPORT_LIMIT),
+            format)
+        .export(response);
   }
 
   @Operation(
@@ -800,6 +795,7 @@ public class DatasetResource extends BaseNetworkEntityResource<Dataset, DatasetL
     }
     metadataMapper.create(metadata, data, normalizedContentJson);
     int metaKey = metadata.getKey();
+    registryDatasetService.storeMetadataDatasetJson(metadata, data);
 
     // check if we should update our registered base information
     if (dataset.isLockedForAutoUpdate()) {
@@ -1481,6 +1477,7 @@ public class DatasetResource extends BaseNetworkEntityResource<Dataset, DatasetL
   @Override
   public void deleteMetadata(@PathVariable("metadataKey") int metadataKey) {
     metadataMapper.delete(metadataKey);
+    registryDatasetService.evictParsedMetadata(metadataKey);
   }
 
   @Operation(
@@ -46,6 +46,7 @@ import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.MediaType;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -248,6 +249,7 @@ public class OccurrenceDownloadResource extends BaseDownloadResource {
       description = "Dataset usage within an occurrence download information.")
   @Docs.DefaultUnsuccessfulReadResponses
   @GetMapping("{key}/datasets/export")
+  @Transactional(readOnly = true)
   @Override
   public void exportListDatasetUsagesByKey(
       HttpServletResponse response,
@@ -60,7 +60,6 @@ import org.gbif.registry.ws.export.CsvWriter;
 import org.gbif.registry.ws.resources.Docs;
 import org.gbif.ws.WebApplicationException;
 
-import java.io.BufferedWriter;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
@@ -435,12 +434,10 @@ public class CollectionResource
 
     response.setHeader(HttpHeaders.CONTENT_DISPOSITION, getExportFileHeader(searchRequest, format));
 
-    try (Writer writer = new BufferedWriter(new OutputStreamWriter(response.getOutputStream()))) {
-      // Use collectionService.searchCollections() directly to support all descriptor parameters
-      // This is not ideal since we make duplicate db calls
-      List<CollectionView> collections = getAllCollectionsForExport(searchRequest);
-      CsvWriter.collections(collections, format).export(writer);
-    }
+    // Use collectionService.searchCollections() directly to support all descriptor parameters
+    // This is not ideal since we make duplicate db calls
+    List<CollectionView> collections = getAllCollectionsForExport(searchRequest);
+    CsvWriter.collections(collections, format).export(response);
   }
 
   private List<CollectionView> getAllCollectionsForExport(
@@ -550,9 +547,7 @@ public class CollectionResource
     response.setHeader(
         HttpHeaders.CONTENT_DISPOSITION, getExportFileHeader(collectionRequest, format));
 
-    try (Writer writer = new BufferedWriter(new OutputStreamWriter(response.getOutputStream()))) {
-      CsvWriter.collections(collections, format).export(writer);
-    }
+    CsvWriter.collections(collections, format).export(response);
   }
 
   @Operation(
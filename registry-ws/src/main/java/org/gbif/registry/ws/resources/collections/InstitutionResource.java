@@ -40,10 +40,7 @@ import org.gbif.registry.service.collections.utils.MasterSourceUtils;
 import org.gbif.registry.ws.export.CsvWriter;
 import org.gbif.registry.ws.resources.Docs;
 
-import java.io.BufferedWriter;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
-import java.io.Writer;
 import java.lang.annotation.ElementType;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
@@ -378,11 +375,9 @@ public class InstitutionResource
       throws IOException {
     response.setHeader(HttpHeaders.CONTENT_DISPOSITION, getExportFileHeader(searchRequest, format));
 
-    try (Writer writer = new BufferedWriter(new OutputStreamWriter(response.getOutputStream()))) {
-      CsvWriter.institutions(
-              Iterables.institutions(searchRequest, institutionService, EXPORT_LIMIT), format)
-          .export(writer);
-    }
+    CsvWriter.institutions(
+            Iterables.institutions(searchRequest, institutionService, EXPORT_LIMIT), format)
+        .export(response);
   }
 
   @Operation(
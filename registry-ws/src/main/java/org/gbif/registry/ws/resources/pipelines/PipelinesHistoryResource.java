@@ -26,6 +26,7 @@ import org.gbif.api.model.pipelines.ws.RunAllParams;
 import org.gbif.api.model.pipelines.ws.SearchResult;
 import org.gbif.api.service.pipelines.PipelinesHistoryService;
 import org.gbif.registry.pipelines.RegistryPipelinesHistoryTrackingService;
+import org.gbif.registry.pipelines.RerunProgress;
 import org.gbif.registry.ws.util.DateUtils;
 
 import java.time.OffsetDateTime;
@@ -44,6 +45,7 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.MissingServletRequestParameterException;
+import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -229,6 +231,41 @@ public class PipelinesHistoryResource implements PipelinesHistoryService {
         onlyIncludeRequestedStep);
   }
 
+  /** Lists the most recent reruns of all datasets, with their progress. */
+  @GetMapping("run/progress")
+  @Secured(ADMIN_ROLE)
+  public List<RerunProgress> listReruns() {
+    return historyTrackingService.listReruns();
+  }
+
+  /** Gets the progress of a rerun of all datasets. */
+  @GetMapping("run/progress/{rerunKey}")
+  @Secured(ADMIN_ROLE)
+  public ResponseEntity<RerunProgress> getRerun(@PathVariable("rerunKey") UUID rerunKey) {
+    return ResponseEntity.of(historyTrackingService.getRerun(rerunKey));
+  }
+
+  /** Cancels a rerun of all datasets. */
+  @DeleteMapping("run/progress/{rerunKey}")
+  @Secured(ADMIN_ROLE)
+  public ResponseEntity<Void> cancelRerun(@PathVariable("rerunKey") UUID rerunKey) {
+    return historyTrackingService.cancelRerun(rerunKey)
+        ? ResponseEntity.noContent().build()
+        : ResponseEntity.notFound().build();
+  }
+
+  /** Changes the number of datasets per second of a rerun of all datasets. */
+  @PutMapping(
+      value = "run/progress/{rerunKey}/datasetsPerSecond",
+      consumes = MediaType.APPLICATION_JSON_VALUE)
+  @Secured(ADMIN_ROLE)
+  public ResponseEntity<Void> setRerunRate(
+      @PathVariable("rerunKey") UUID rerunKey, @RequestBody double datasetsPerSecond) {
+    return historyTrackingService.setRerunRate(rerunKey, datasetsPerSecond)
+        ? ResponseEntity.noContent().build()
+        : ResponseEntity.notFound().build();
+  }
+
   /**
    * Restart last failed pipelines step for a dataset. Parameters 'steps' and 'reason' are required,
    * but they will be validated in PipelinesHistoryResource#checkRunInputParams so here they are
@@ -0,0 +1,164 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.ws.resources.scheduled;
+
+import org.gbif.api.model.common.search.Facet;
+import org.gbif.api.model.common.search.SearchResponse;
+import org.gbif.api.model.occurrence.Occurrence;
+import org.gbif.api.model.occurrence.search.OccurrenceSearchParameter;
+import org.gbif.api.model.occurrence.search.OccurrenceSearchRequest;
+import org.gbif.occurrence.ws.client.OccurrenceWsSearchClient;
+import org.gbif.registry.persistence.mapper.params.Count;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Compares the current counts of the institutions or collections with the ones of the occurrence
+ * facets and updates the ones that changed, in batches.
+ *
+ * <p>The facet buckets are sorted by count and the counts can change between the requests of two
+ * pages, so an entity can move across a page boundary and be missed. Entities that are not in a
+ * facet are therefore counted one by one, unless their count was 0 already.
+ */
+@Slf4j
+class GRSciCollCountsUpdater {
+
+  private final OccurrenceWsSearchClient occurrenceWsSearchClient;
+  private final int facetPageSize;
+  private final int updateBatchSize;
+
+  GRSciCollCountsUpdater(
+      OccurrenceWsSearchClient occurrenceWsSearchClient, int facetPageSize, int updateBatchSize) {
+    this.occurrenceWsSearchClient = occurrenceWsSearchClient;
+    this.facetPageSize = facetPageSize;
+    this.updateBatchSize = updateBatchSize;
+  }
+
+  /**
+   * Updates the entities whose occurrence or type specimen counts changed.
+   *
+   * @return number of entities updated
+   */
+  int updateCounts(
+      OccurrenceSearchParameter facet,
+      List<String> typeStatusValues,
+      List<Count> currentCounts,
+      Consumer<List<Count>> updater) {
+    // it may contain keys of deleted entities, they are ignored
+    Map<UUID, Long> occurrenceCounts = new HashMap<>();
+    Map<UUID, Long> typeSpecimenCounts = new HashMap<>();
+    readFacet(facet, Collections.emptyList(), occurrenceCounts::put);
+    readFacet(facet, typeStatusValues, typeSpecimenCounts::put);
+
+    List<Count> batch = new ArrayList<>(updateBatchSize);
+    int updated = 0;
+    for (Count current : currentCounts) {
+      long occurrenceCount =
+          getCount(
+              occurrenceCounts,
+              facet,
+              current.getKey(),
+              Collections.emptyList(),
+              current.getOccurrenceCount());
+      long typeSpecimenCount =
+          getCount(
+              typeSpecimenCounts,
+              facet,
+              current.getKey(),
+              typeStatusValues,
+              current.getTypeSpecimenCount());
+      if (current.getOccurrenceCount() == occurrenceCount
+          && current.getTypeSpecimenCount() == typeSpecimenCount) {
+        continue;
+      }
+
+      Count count = new Count();
+      count.setKey(current.getKey());
+      count.setOccurrenceCount(occurrenceCount);
+      count.setTypeSpecimenCount(typeSpecimenCount);
+      batch.add(count);
+      if (batch.size() == updateBatchSize) {
+        updater.accept(batch);
+        updated += batch.size();
+        batch = new ArrayList<>(updateBatchSize);
+      }
+    }
+    if (!batch.isEmpty()) {
+      updater.accept(batch);
+      updated += batch.size();
+    }
+    return updated;
+  }
+
+  /** Count of the entity in the facet, or counted on its own if the facet doesn't have it. */
+  private long getCount(
+      Map<UUID, Long> facetCounts,
+      OccurrenceSearchParameter facet,
+      UUID key,
+      List<String> typeStatusValues,
+      long currentCount) {
+    Long count = facetCounts.get(key);
+    if (count != null) {
+      return count;
+    }
+    if (currentCount == 0) {
+      return 0;
+    }
+    // it lost all its occurrences or it was skipped while paging
+    OccurrenceSearchRequest request = new OccurrenceSearchRequest();
+    request.setLimit(0);
+    request.addParameter(facet, key.toString());
+    typeStatusValues.forEach(request::addTypeStatusFilter);
+    Long total = occurrenceWsSearchClient.search(request).getCount();
+    log.debug("Entity {} not found in the {} facet, counted {}", key, facet, total);
+    return total != null ? total : 0;
+  }
+
+  /** Reads the facet page by page, passing each key and its count to the consumer. */
+  private void readFacet(
+      OccurrenceSearchParameter facet,
+      List<String> typeStatusValues,
+      BiConsumer<UUID, Long> consumer) {
+    int offset = 0;
+    int pageCounts;
+    do {
+      OccurrenceSearchRequest request = new OccurrenceSearchRequest();
+      request.setLimit(0);
+      request.addFacets(facet);
+      request.setFacetLimit(facetPageSize);
+      request.setFacetOffset(offset);
+      typeStatusValues.forEach(request::addTypeStatusFilter);
+      SearchResponse<Occurrence, OccurrenceSearchParameter> response =
+          occurrenceWsSearchClient.search(request);
+
+      pageCounts = 0;
+      for (Facet<OccurrenceSearchParameter> f : response.getFacets()) {
+        for (Facet.Count c : f.getCounts()) {
+          consumer.accept(UUID.fromString(c.getName()), c.getCount());
+          pageCounts++;
+        }
+      }
+      offset += facetPageSize;
+    } while (pageCounts == facetPageSize);
+  }
+}
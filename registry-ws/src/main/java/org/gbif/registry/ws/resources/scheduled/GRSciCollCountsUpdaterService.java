@@ -13,22 +13,16 @@
  */
 package org.gbif.registry.ws.resources.scheduled;
 
-import org.gbif.api.model.common.search.Facet;
-import org.gbif.api.model.common.search.SearchResponse;
-import org.gbif.api.model.occurrence.Occurrence;
 import org.gbif.api.model.occurrence.search.OccurrenceSearchParameter;
-import org.gbif.api.model.occurrence.search.OccurrenceSearchRequest;
 import org.gbif.occurrence.ws.client.OccurrenceWsSearchClient;
 import org.gbif.registry.persistence.mapper.collections.CollectionMapper;
 import org.gbif.registry.persistence.mapper.collections.InstitutionMapper;
-import org.gbif.registry.persistence.mapper.params.Count;
 import org.gbif.registry.service.collections.utils.Vocabularies;
 import org.gbif.vocabulary.client.ConceptClient;
 import org.gbif.ws.client.ClientBuilder;
 import org.gbif.ws.json.JacksonJsonObjectMapperProvider;
 
-import java.util.*;
-import java.util.function.Function;
+import java.util.List;
 import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
@@ -37,10 +31,15 @@ import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
 import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import lombok.extern.slf4j.Slf4j;
 
+/**
+ * Refreshes the occurrence and type specimen counts of the institutions and collections.
+ *
+ * <p>The facets are read in pages and only the entities whose counts changed are updated, in small
+ * batches, so the tables aren't locked for the whole run. See {@link GRSciCollCountsUpdater}.
+ */
 @Service
 @Endpoint(id = "grscicollCounts")
 @Slf4j
@@ -49,22 +48,28 @@ public class GRSciCollCountsUpdaterService {
   private final InstitutionMapper institutionMapper;
   private final CollectionMapper collectionMapper;
   private final ConceptClient conceptClient;
-  private final OccurrenceWsSearchClient occurrenceWsSearchClient;
+  private final GRSciCollCountsUpdater countsUpdater;
 
   @Autowired
   public GRSciCollCountsUpdaterService(
       InstitutionMapper institutionMapper,
       CollectionMapper collectionMapper,
       ConceptClient conceptClient,
-      @Value("${api.root.url}") String apiRootUrl) {
+      @Value("${api.root.url}") String apiRootUrl,
+      @Value("${grscicoll.counts.facetPageSize:5000}") int facetPageSize,
+      @Value("${grscicoll.counts.updateBatchSize:500}") int updateBatchSize) {
     this.institutionMapper = institutionMapper;
     this.collectionMapper = collectionMapper;
     this.conceptClient = conceptClient;
-    this.occurrenceWsSearchClient =
-        new ClientBuilder()
-            .withObjectMapper(JacksonJsonObjectMapperProvider.getObjectMapperWithBuilderSupport())
-            .withUrl(apiRootUrl)
-            .build(OccurrenceWsSearchClient.class);
+    this.countsUpdater =
+        new GRSciCollCountsUpdater(
+            new ClientBuilder()
+                .withObjectMapper(
+                    JacksonJsonObjectMapperProvider.getObjectMapperWithBuilderSupport())
+                .withUrl(apiRootUrl)
+                .build(OccurrenceWsSearchClient.class),
+            facetPageSize,
+            updateBatchSize);
   }
 
   @WriteOperation
@@ -73,7 +78,6 @@ public class GRSciCollCountsUpdaterService {
   }
 
   @Scheduled(cron = "${grscicoll.counts.cron:0 0 8 * * 1-5}")
-  @Transactional
   public void scheduleUpdateCounts() {
     updateCounts();
   }
@@ -81,87 +85,28 @@ public class GRSciCollCountsUpdaterService {
   private void updateCounts() {
     log.info("Updating GRSciColl counts");
 
-    List<UUID> institutionKeys = institutionMapper.getAllKeys();
-    List<UUID> collectionKeys = collectionMapper.getAllKeys();
-    long facetCount = Math.max(institutionKeys.size(), collectionKeys.size());
-
-    OccurrenceSearchRequest request = new OccurrenceSearchRequest();
-    request.setLimit(0);
-    request.addFacets(
-        OccurrenceSearchParameter.INSTITUTION_KEY, OccurrenceSearchParameter.COLLECTION_KEY);
-    request.setFacetLimit((int) facetCount);
-    SearchResponse<Occurrence, OccurrenceSearchParameter> occurrenceCountsResponse =
-        occurrenceWsSearchClient.search(request);
-
-    // all entities are initialised to zero because the occurrence response doesn't return values
-    // with count zero and if they used to have records we need to update them to zero
-    Map<UUID, Count> institutionsCounts =
-        institutionKeys.stream()
-            .collect(
-                Collectors.toMap(
-                    k -> k,
-                    k -> {
-                      Count c = new Count();
-                      c.setKey(k);
-                      c.setOccurrenceCount(0);
-                      c.setTypeSpecimenCount(0);
-                      return c;
-                    }));
-    Map<UUID, Count> collectionsCounts =
-        collectionKeys.stream()
-            .collect(
-                Collectors.toMap(
-                    k -> k,
-                    k -> {
-                      Count c = new Count();
-                      c.setKey(k);
-                      c.setOccurrenceCount(0);
-                      c.setTypeSpecimenCount(0);
-                      return c;
-                    }));
-
-    Function<OccurrenceSearchParameter, Map<UUID, Count>> mapCountsSupplier =
-        p -> {
-          if (p.equals(OccurrenceSearchParameter.INSTITUTION_KEY)) {
-            return institutionsCounts;
-          } else if (p.equals(OccurrenceSearchParameter.COLLECTION_KEY)) {
-            return collectionsCounts;
-          } else {
-            throw new IllegalStateException("Invalid facet: " + p);
-          }
-        };
-
-    for (Facet<OccurrenceSearchParameter> f : occurrenceCountsResponse.getFacets()) {
-      Map<UUID, Count> countsMap = mapCountsSupplier.apply(f.getField());
-      for (Facet.Count c : f.getCounts()) {
-        UUID key = UUID.fromString(c.getName());
-        Count count = countsMap.computeIfAbsent(key, k -> new Count());
-        count.setKey(key);
-        count.setOccurrenceCount(c.getCount());
-      }
-    }
-
-    // add type specimens to the request and make the call
+    // type specimens are the occurrences with any type status
     List<String> typeStatusValues =
-        Vocabularies.getVocabularyConcepts(Vocabularies.TYPE_STATUS, conceptClient);
-
-    typeStatusValues.stream()
-        .filter(t -> !t.equalsIgnoreCase("NotAType"))
-        .forEach(request::addTypeStatusFilter);
-    SearchResponse<Occurrence, OccurrenceSearchParameter> typeSpecimenCountsResponse =
-        occurrenceWsSearchClient.search(request);
-
-    for (Facet<OccurrenceSearchParameter> f : typeSpecimenCountsResponse.getFacets()) {
-      Map<UUID, Count> countsMap = mapCountsSupplier.apply(f.getField());
-      for (Facet.Count c : f.getCounts()) {
-        UUID key = UUID.fromString(c.getName());
-        Count count = countsMap.computeIfAbsent(key, k -> new Count());
-        count.setKey(key);
-        count.setTypeSpecimenCount(c.getCount());
-      }
-    }
-
-    institutionMapper.updateCounts(institutionsCounts.values());
-    collectionMapper.updateCounts(collectionsCounts.values());
+        Vocabularies.getVocabularyConcepts(Vocabularies.TYPE_STATUS, conceptClient).stream()
+            .filter(t -> !t.equalsIgnoreCase("NotAType"))
+            .collect(Collectors.toList());
+
+    int institutionsUpdated =
+        countsUpdater.updateCounts(
+            OccurrenceSearchParameter.INSTITUTION_KEY,
+            typeStatusValues,
+            institutionMapper.getAllCounts(),
+            institutionMapper::updateCounts);
+    int collectionsUpdated =
+        countsUpdater.updateCounts(
+            OccurrenceSearchParameter.COLLECTION_KEY,
+            typeStatusValues,
+            collectionMapper.getAllCounts(),
+            collectionMapper::updateCounts);
+
+    log.info(
+        "GRSciColl counts updated: {} institutions and {} collections changed",
+        institutionsUpdated,
+        collectionsUpdated);
   }
 }
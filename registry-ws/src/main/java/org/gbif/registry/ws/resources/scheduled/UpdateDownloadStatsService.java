@@ -21,6 +21,7 @@ import java.time.ZoneId;
 import java.time.temporal.ChronoUnit;
 import java.time.temporal.TemporalAdjuster;
 import java.time.temporal.TemporalAdjusters;
+import java.util.Arrays;
 import java.util.Date;
 
 import org.springframework.beans.factory.annotation.Autowired;
@@ -33,7 +34,14 @@ import org.springframework.transaction.annotation.Transactional;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
-/** Utility service to update download statistics. */
+/**
+ * Utility service to update download statistics.
+ *
+ * <p>Downloads are added to the statistics as soon as they succeed, see {@link
+ * org.gbif.registry.ws.resources.BaseDownloadResource}. This job aggregates again a whole month to
+ * reconcile the incremental updates, for example after a failed update or a download whose usages
+ * were sent twice.
+ */
 @Slf4j
 @Service
 @AllArgsConstructor
@@ -83,5 +91,18 @@ public class UpdateDownloadStatsService {
     downloadStatisticsMapper.updateDownloadUserStats(fromDate, toDate, DownloadType.EVENT);
     downloadStatisticsMapper.updateDownloadSourceStats(fromDate, toDate, DownloadType.EVENT);
     log.info("Event downloads stats update done for [{},{}]", fromDate, toDate);
+
+    // the stats of the downloads created up to the reconciled month have been rebuilt, whenever
+    // the downloads were added to them
+    for (DownloadType downloadType : Arrays.asList(DownloadType.OCCURRENCE, DownloadType.EVENT)) {
+      int removed =
+          downloadStatisticsMapper.deleteDownloadStatisticsAppliedCreatedBefore(
+              toDate, downloadType);
+      log.info(
+          "Removed {} records of {} downloads created before {} added to the stats",
+          removed,
+          downloadType,
+          toDate);
+    }
   }
 }
@@ -0,0 +1,90 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.ws.security;
+
+import org.gbif.api.model.registry.Dataset;
+import org.gbif.api.model.registry.Installation;
+import org.gbif.api.model.registry.Organization;
+import org.gbif.registry.events.EventManager;
+import org.gbif.registry.events.UpdateEvent;
+import org.gbif.registry.security.EditorRightsResolver;
+
+import java.util.Objects;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.google.common.eventbus.Subscribe;
+
+/**
+ * Drops the cached entity hierarchies of the {@link EditorRightsResolver} when a dataset,
+ * installation or organization changes its parents, so editor rights inherited from the old
+ * parents are not used anymore.
+ *
+ * <p>The caches are dropped once the transaction of the update commits. Dropping them earlier would
+ * let a concurrent request cache the hierarchy as it was before the update.
+ */
+@Component
+public class EditorRightsInvalidationListener {
+
+  private final EditorRightsResolver editorRightsResolver;
+
+  public EditorRightsInvalidationListener(
+      EditorRightsResolver editorRightsResolver, EventManager eventManager) {
+    this.editorRightsResolver = editorRightsResolver;
+    // synchronous so the change applies to the next request already, with no dispatch queue
+    eventManager.registerSynchronous(this);
+  }
+
+  @Subscribe
+  public final <T> void updated(UpdateEvent<T> event) {
+    if (!parentsChanged(event)) {
+      return;
+    }
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(
+          new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+              editorRightsResolver.invalidateHierarchy();
+            }
+          });
+    } else {
+      editorRightsResolver.invalidateHierarchy();
+    }
+  }
+
+  private static <T> boolean parentsChanged(UpdateEvent<T> event) {
+    if (event.getOldObject() == null || event.getNewObject() == null) {
+      return false;
+    }
+    if (event.getObjectClass().equals(Dataset.class)) {
+      Dataset oldDataset = (Dataset) event.getOldObject();
+      Dataset newDataset = (Dataset) event.getNewObject();
+      return !Objects.equals(oldDataset.getInstallationKey(), newDataset.getInstallationKey())
+          || !Objects.equals(
+              oldDataset.getPublishingOrganizationKey(), newDataset.getPublishingOrganizationKey());
+    } else if (event.getObjectClass().equals(Installation.class)) {
+      return !Objects.equals(
+          ((Installation) event.getOldObject()).getOrganizationKey(),
+          ((Installation) event.getNewObject()).getOrganizationKey());
+    } else if (event.getObjectClass().equals(Organization.class)) {
+      return !Objects.equals(
+          ((Organization) event.getOldObject()).getEndorsingNodeKey(),
+          ((Organization) event.getNewObject()).getEndorsingNodeKey());
+    }
+    return false;
+  }
+}
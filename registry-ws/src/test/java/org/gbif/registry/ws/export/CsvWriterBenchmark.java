@@ -0,0 +1,200 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.ws.export;
+
+import org.gbif.api.model.collections.view.CollectionView;
+import org.gbif.api.model.common.DOI;
+import org.gbif.api.model.common.export.ExportFormat;
+import org.gbif.api.model.registry.search.DatasetSearchResult;
+import org.gbif.api.vocabulary.Country;
+import org.gbif.api.vocabulary.DatasetSubtype;
+import org.gbif.api.vocabulary.DatasetType;
+import org.gbif.api.vocabulary.License;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.supercsv.io.CsvBeanWriter;
+import org.supercsv.io.CsvMapWriter;
+import org.supercsv.io.dozer.CsvDozerBeanWriter;
+import org.supercsv.prefs.CsvPreference;
+
+/**
+ * Compares the streaming export of {@link CsvWriter} with the SuperCSV bean, Dozer and map writers
+ * it replaced, for plain beans (dataset search), nested bean paths (collections) and maps
+ * (descriptor verbatims).
+ *
+ * <p>Not run by the build, run it with {@link #main(String[])} from the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CsvWriterBenchmark {
+
+  private static final int VERBATIM_FIELDS = 20;
+
+  @Param({"1000", "10000"})
+  public int rows;
+
+  @Param({"CSV", "TSV"})
+  public ExportFormat format;
+
+  private List<DatasetSearchResult> datasets;
+  private List<CollectionView> collections;
+  private List<Map<String, String>> verbatims;
+  private Set<String> verbatimHeaders;
+
+  @Setup
+  public void setup() {
+    datasets = new ArrayList<>(rows);
+    collections = new ArrayList<>(rows);
+    verbatims = new ArrayList<>(rows);
+    verbatimHeaders = new LinkedHashSet<>();
+    for (int i = 0; i < VERBATIM_FIELDS; i++) {
+      verbatimHeaders.add("dwc:field" + i);
+    }
+    for (int i = 1; i <= rows; i++) {
+      datasets.add(newDatasetSearchResult(i));
+      collections.add(CsvWriterTest.newCollectionView(i));
+      Map<String, String> verbatim = new LinkedHashMap<>();
+      for (String header : verbatimHeaders) {
+        verbatim.put(header, header + " value, row " + i);
+      }
+      verbatims.add(verbatim);
+    }
+  }
+
+  @Benchmark
+  public void exportDatasets() {
+    CsvWriter.datasetSearchResultCsvWriter(datasets, format)
+        .export(OutputStream.nullOutputStream(), false);
+  }
+
+  @Benchmark
+  public void exportDatasetsSuperCsv() throws IOException {
+    CsvWriter<DatasetSearchResult> csvWriter =
+        CsvWriter.datasetSearchResultCsvWriter(datasets, format);
+    try (CsvBeanWriter beanWriter = new CsvBeanWriter(nullWriter(), preference())) {
+      beanWriter.writeHeader(csvWriter.getHeader());
+      for (DatasetSearchResult o : csvWriter.getPager()) {
+        beanWriter.write(o, csvWriter.getFields(), csvWriter.getProcessors());
+      }
+    }
+  }
+
+  @Benchmark
+  public void exportCollections() {
+    CsvWriter.collections(collections, format).export(OutputStream.nullOutputStream(), false);
+  }
+
+  @Benchmark
+  public void exportCollectionsSuperCsv() throws IOException {
+    CsvWriter<CollectionView> csvWriter = CsvWriter.collections(collections, format);
+    try (CsvDozerBeanWriter beanWriter = new CsvDozerBeanWriter(nullWriter(), preference())) {
+      beanWriter.writeHeader(csvWriter.getHeader());
+      beanWriter.configureBeanMapping(csvWriter.getForClass(), csvWriter.getFields());
+      for (CollectionView o : csvWriter.getPager()) {
+        beanWriter.write(o, csvWriter.getProcessors());
+      }
+    }
+  }
+
+  @Benchmark
+  public void exportMap() {
+    CsvWriter.descriptorVerbatims(verbatims, format, verbatimHeaders)
+        .exportMap(OutputStream.nullOutputStream(), false);
+  }
+
+  @Benchmark
+  public void exportMapSuperCsv() throws IOException {
+    CsvWriter<String> csvWriter =
+        CsvWriter.descriptorVerbatims(verbatims, format, verbatimHeaders);
+    try (CsvMapWriter mapWriter = new CsvMapWriter(nullWriter(), preference())) {
+      mapWriter.writeHeader(csvWriter.getHeader());
+      for (Map<String, String> o : csvWriter.getMapPager()) {
+        mapWriter.write(o, csvWriter.getFields(), csvWriter.getProcessors());
+      }
+    }
+  }
+
+  /** The UTF-8 writer over the response stream the SuperCSV writers used. */
+  private static Writer nullWriter() {
+    return new OutputStreamWriter(OutputStream.nullOutputStream(), StandardCharsets.UTF_8);
+  }
+
+  private CsvPreference preference() {
+    return format == ExportFormat.CSV
+        ? CsvPreference.STANDARD_PREFERENCE
+        : CsvPreference.TAB_PREFERENCE;
+  }
+
+  private static DatasetSearchResult newDatasetSearchResult(int consecutive) {
+    DatasetSearchResult datasetSearchResult = new DatasetSearchResult();
+    datasetSearchResult.setKey(UUID.randomUUID());
+    datasetSearchResult.setTitle("Dataset \"title\", " + consecutive);
+    datasetSearchResult.setDoi(new DOI("10.21373/6m9yw" + consecutive));
+    datasetSearchResult.setLicense(License.CC_BY_4_0);
+    datasetSearchResult.setType(DatasetType.OCCURRENCE);
+    datasetSearchResult.setSubtype(DatasetSubtype.DERIVED_FROM_OCCURRENCE);
+    datasetSearchResult.setHostingOrganizationKey(UUID.randomUUID());
+    datasetSearchResult.setHostingOrganizationTitle("HostingOrganizationTitle" + consecutive);
+    datasetSearchResult.setHostingCountry(Country.DENMARK);
+    datasetSearchResult.setPublishingOrganizationKey(UUID.randomUUID());
+    datasetSearchResult.setPublishingOrganizationTitle("PublishingOrganizationTitle" + consecutive);
+    datasetSearchResult.setPublishingCountry(Country.COSTA_RICA);
+    datasetSearchResult.setPublicationDate(new Date());
+    datasetSearchResult.setModified(new Date());
+    datasetSearchResult.setEndorsingNodeKey(UUID.randomUUID());
+    datasetSearchResult.setNetworkKeys(Arrays.asList(UUID.randomUUID(), UUID.randomUUID()));
+    datasetSearchResult.setProjectIdentifier("project" + consecutive);
+    datasetSearchResult.setRecordCount(consecutive);
+    datasetSearchResult.setNameUsagesCount(consecutive);
+    return datasetSearchResult;
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(CsvWriterBenchmark.class.getSimpleName()).build())
+        .run();
+  }
+}
@@ -33,9 +33,14 @@ import org.gbif.api.vocabulary.DatasetType;
 import org.gbif.api.vocabulary.IdentifierType;
 import org.gbif.api.vocabulary.License;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.io.StringWriter;
 import java.math.BigDecimal;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
 import java.text.SimpleDateFormat;
 import java.time.LocalDate;
 import java.time.OffsetDateTime;
@@ -49,21 +54,45 @@ import java.util.Optional;
 import java.util.UUID;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
+import java.util.zip.GZIPInputStream;
 
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.supercsv.io.CsvBeanWriter;
+import org.supercsv.io.dozer.CsvDozerBeanWriter;
+import org.supercsv.prefs.CsvPreference;
 
 import com.fasterxml.jackson.databind.util.StdDateFormat;
+import com.google.common.io.CharStreams;
 
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.SneakyThrows;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 public class CsvWriterTest {
 
   private static final DateTimeFormatter CSV_DATE_FORMAT =
       DateTimeFormatter.ofPattern("yyyy-MM-dd");
 
+  @AfterEach
+  public void resetRequestContext() {
+    RequestContextHolder.resetRequestAttributes();
+  }
+
   /** Functional interface to test a single line. */
   private interface AssertElement<T> {
     void assertElement(T element, String[] line);
@@ -243,7 +272,7 @@ public class CsvWriterTest {
 
   /** Generates test instances of CollectionView. */
   @SneakyThrows
-  private static CollectionView newCollectionView(int consecutive) {
+  static CollectionView newCollectionView(int consecutive) {
     CollectionView collectionView = new CollectionView();
 
     collectionView.setInstitutionCode("INST" + consecutive);
@@ -584,4 +613,145 @@ public class CsvWriterTest {
     assertEquals(institution.getReplacedBy().toString(), line[36]);
     assertEquals(institution.getConvertedToCollection().toString(), line[37].replace("\r", ""));
   }
+
+  /** Output of the SuperCSV writers the export used before, with the same preference. */
+  @SneakyThrows
+  private static <T> String superCsvExport(CsvWriter<T> csvWriter) {
+    CsvPreference preference =
+        csvWriter.getPreference() == ExportFormat.CSV
+            ? CsvPreference.STANDARD_PREFERENCE
+            : CsvPreference.TAB_PREFERENCE;
+    StringWriter writer = new StringWriter();
+    if (csvWriter.getForClass() != null) {
+      try (CsvDozerBeanWriter beanWriter = new CsvDozerBeanWriter(writer, preference)) {
+        beanWriter.writeHeader(csvWriter.getHeader());
+        beanWriter.configureBeanMapping(csvWriter.getForClass(), csvWriter.getFields());
+        for (T o : csvWriter.getPager()) {
+          beanWriter.write(o, csvWriter.getProcessors());
+        }
+      }
+    } else {
+      try (CsvBeanWriter beanWriter = new CsvBeanWriter(writer, preference)) {
+        beanWriter.writeHeader(csvWriter.getHeader());
+        for (T o : csvWriter.getPager()) {
+          beanWriter.write(o, csvWriter.getFields(), csvWriter.getProcessors());
+        }
+      }
+    }
+    return writer.toString();
+  }
+
+  @Test
+  public void sameOutputAsSuperCsvTest() {
+    DatasetSearchResult datasetSearchResult = newDatasetSearchResult(1);
+    datasetSearchResult.setTitle("Title with \"quotes\", commas,\ttabs and\nline breaks");
+    List<DatasetSearchResult> datasets =
+        Arrays.asList(datasetSearchResult, newDatasetSearchResult(2));
+    List<CollectionView> collections = Arrays.asList(newCollectionView(1), newCollectionView(2));
+
+    for (ExportFormat format : new ExportFormat[] {ExportFormat.CSV, ExportFormat.TSV}) {
+      CsvWriter<DatasetSearchResult> datasetsWriter =
+          CsvWriter.datasetSearchResultCsvWriter(datasets, format);
+      StringWriter writer = new StringWriter();
+      datasetsWriter.export(writer);
+      assertEquals(superCsvExport(datasetsWriter), writer.toString());
+
+      CsvWriter<CollectionView> collectionsWriter = CsvWriter.collections(collections, format);
+      writer = new StringWriter();
+      collectionsWriter.export(writer);
+      assertEquals(superCsvExport(collectionsWriter), writer.toString());
+    }
+  }
+
+  @Test
+  @SneakyThrows
+  public void gzipExportTest() {
+    List<DatasetSearchResult> datasets =
+        Arrays.asList(newDatasetSearchResult(1), newDatasetSearchResult(2));
+    CsvWriter<DatasetSearchResult> csvWriter =
+        CsvWriter.datasetSearchResultCsvWriter(datasets, ExportFormat.TSV);
+
+    StringWriter writer = new StringWriter();
+    csvWriter.export(writer);
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    csvWriter.export(out, true);
+    try (Reader reader =
+        new InputStreamReader(
+            new GZIPInputStream(new ByteArrayInputStream(out.toByteArray())),
+            StandardCharsets.UTF_8)) {
+      assertEquals(writer.toString(), CharStreams.toString(reader));
+    }
+  }
+
+  @Test
+  @SneakyThrows
+  public void gzipResponseVariesOnAcceptEncodingTest() {
+    CsvWriter<DatasetSearchResult> csvWriter =
+        CsvWriter.datasetSearchResultCsvWriter(
+            Collections.singletonList(newDatasetSearchResult(1)), ExportFormat.TSV);
+    StringWriter writer = new StringWriter();
+    csvWriter.export(writer);
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    HttpServletResponse response = mockResponse(out);
+    mockRequest("gzip, deflate");
+    csvWriter.export(response);
+
+    verify(response).addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+    verify(response).setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+    try (Reader reader =
+        new InputStreamReader(
+            new GZIPInputStream(new ByteArrayInputStream(out.toByteArray())),
+            StandardCharsets.UTF_8)) {
+      assertEquals(writer.toString(), CharStreams.toString(reader));
+    }
+  }
+
+  @Test
+  @SneakyThrows
+  public void plainResponseVariesOnAcceptEncodingTest() {
+    CsvWriter<DatasetSearchResult> csvWriter =
+        CsvWriter.datasetSearchResultCsvWriter(
+            Collections.singletonList(newDatasetSearchResult(1)), ExportFormat.TSV);
+    StringWriter writer = new StringWriter();
+    csvWriter.export(writer);
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    HttpServletResponse response = mockResponse(out);
+    mockRequest(null);
+    csvWriter.export(response);
+
+    verify(response).addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+    verify(response, never()).setHeader(eq(HttpHeaders.CONTENT_ENCODING), anyString());
+    assertEquals(writer.toString(), out.toString(StandardCharsets.UTF_8));
+  }
+
+  private static void mockRequest(String acceptEncoding) {
+    HttpServletRequest request = mock(HttpServletRequest.class);
+    when(request.getHeader(HttpHeaders.ACCEPT_ENCODING)).thenReturn(acceptEncoding);
+    RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+  }
+
+  @SneakyThrows
+  private static HttpServletResponse mockResponse(ByteArrayOutputStream out) {
+    HttpServletResponse response = mock(HttpServletResponse.class);
+    when(response.getOutputStream())
+        .thenReturn(
+            new ServletOutputStream() {
+              @Override
+              public boolean isReady() {
+                return true;
+              }
+
+              @Override
+              public void setWriteListener(WriteListener writeListener) {}
+
+              @Override
+              public void write(int b) {
+                out.write(b);
+              }
+            });
+    return response;
+  }
 }
@@ -0,0 +1,98 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.ws.resources.pipelines;
+
+import org.gbif.registry.pipelines.RegistryPipelinesHistoryTrackingService;
+import org.gbif.registry.pipelines.RerunProgress;
+
+import java.util.Collections;
+import java.util.Optional;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class PipelinesHistoryResourceTest {
+
+  private static final UUID RERUN_KEY = UUID.randomUUID();
+
+  @Mock private RegistryPipelinesHistoryTrackingService historyTrackingService;
+  @Mock private RerunProgress progress;
+  @InjectMocks private PipelinesHistoryResource resource;
+
+  @Test
+  public void testListReruns() {
+    when(historyTrackingService.listReruns()).thenReturn(Collections.singletonList(progress));
+
+    assertEquals(Collections.singletonList(progress), resource.listReruns());
+  }
+
+  @Test
+  public void testGetRerun() {
+    when(historyTrackingService.getRerun(RERUN_KEY)).thenReturn(Optional.of(progress));
+
+    ResponseEntity<RerunProgress> response = resource.getRerun(RERUN_KEY);
+
+    assertEquals(HttpStatus.OK, response.getStatusCode());
+    assertSame(progress, response.getBody());
+  }
+
+  @Test
+  public void testGetUnknownRerun() {
+    when(historyTrackingService.getRerun(RERUN_KEY)).thenReturn(Optional.empty());
+
+    assertEquals(HttpStatus.NOT_FOUND, resource.getRerun(RERUN_KEY).getStatusCode());
+  }
+
+  @Test
+  public void testCancelRerun() {
+    when(historyTrackingService.cancelRerun(RERUN_KEY)).thenReturn(true);
+
+    assertEquals(HttpStatus.NO_CONTENT, resource.cancelRerun(RERUN_KEY).getStatusCode());
+    verify(historyTrackingService).cancelRerun(RERUN_KEY);
+  }
+
+  @Test
+  public void testCancelFinishedRerun() {
+    when(historyTrackingService.cancelRerun(RERUN_KEY)).thenReturn(false);
+
+    assertEquals(HttpStatus.NOT_FOUND, resource.cancelRerun(RERUN_KEY).getStatusCode());
+  }
+
+  @Test
+  public void testSetRerunRate() {
+    when(historyTrackingService.setRerunRate(RERUN_KEY, 100)).thenReturn(true);
+
+    assertEquals(HttpStatus.NO_CONTENT, resource.setRerunRate(RERUN_KEY, 100).getStatusCode());
+    verify(historyTrackingService).setRerunRate(RERUN_KEY, 100);
+  }
+
+  @Test
+  public void testSetRateOfUnknownRerun() {
+    when(historyTrackingService.setRerunRate(RERUN_KEY, 100)).thenReturn(false);
+
+    assertEquals(HttpStatus.NOT_FOUND, resource.setRerunRate(RERUN_KEY, 100).getStatusCode());
+  }
+}
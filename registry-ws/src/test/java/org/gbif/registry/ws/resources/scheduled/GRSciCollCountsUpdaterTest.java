@@ -0,0 +1,154 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.ws.resources.scheduled;
+
+import org.gbif.api.model.common.search.Facet;
+import org.gbif.api.model.common.search.SearchResponse;
+import org.gbif.api.model.occurrence.Occurrence;
+import org.gbif.api.model.occurrence.search.OccurrenceSearchParameter;
+import org.gbif.api.model.occurrence.search.OccurrenceSearchRequest;
+import org.gbif.occurrence.ws.client.OccurrenceWsSearchClient;
+import org.gbif.registry.persistence.mapper.params.Count;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class GRSciCollCountsUpdaterTest {
+
+  private static final OccurrenceSearchParameter FACET = OccurrenceSearchParameter.COLLECTION_KEY;
+
+  private final UUID a = UUID.randomUUID();
+  private final UUID b = UUID.randomUUID();
+  private final UUID c = UUID.randomUUID();
+  private final UUID d = UUID.randomUUID();
+  private final UUID e = UUID.randomUUID();
+
+  @Mock private OccurrenceWsSearchClient occurrenceWsSearchClient;
+
+  @Test
+  public void testEntitySkippedWhilePagingIsCounted() {
+    // page size 2: the first page is read when c has more occurrences than b, and b gains
+    // occurrences and moves to the first page before the second one is read, so it's skipped
+    Map<Integer, List<Facet.Count>> occurrencePages = new HashMap<>();
+    occurrencePages.put(
+        0, Arrays.asList(new Facet.Count(a.toString(), 12L), new Facet.Count(c.toString(), 9L)));
+    occurrencePages.put(2, Collections.singletonList(new Facet.Count(c.toString(), 9L)));
+
+    // counts of the entities queried one by one
+    Map<String, Long> entityCounts = new HashMap<>();
+    entityCounts.put(b.toString(), 10L);
+    entityCounts.put(d.toString(), 0L);
+
+    when(occurrenceWsSearchClient.search(any(OccurrenceSearchRequest.class)))
+        .thenAnswer(
+            invocation -> {
+              OccurrenceSearchRequest request = invocation.getArgument(0);
+              boolean typeStatus =
+                  request.getParameters().containsKey(OccurrenceSearchParameter.TYPE_STATUS);
+              if (!request.getFacets().isEmpty()) {
+                int offset = request.getFacetOffset() != null ? request.getFacetOffset() : 0;
+                return facetResponse(
+                    typeStatus ? Collections.emptyList() : occurrencePages.get(offset));
+              }
+              SearchResponse<Occurrence, OccurrenceSearchParameter> response =
+                  new SearchResponse<>(0L, 0);
+              response.setCount(
+                  typeStatus
+                      ? 0L
+                      : entityCounts.get(request.getParameters().get(FACET).iterator().next()));
+              return response;
+            });
+
+    List<Count> updated = new ArrayList<>();
+    int updatedCount =
+        new GRSciCollCountsUpdater(occurrenceWsSearchClient, 2, 10)
+            .updateCounts(
+                FACET,
+                Collections.singletonList("Holotype"),
+                Arrays.asList(
+                    count(a, 10), count(b, 5), count(c, 3), count(d, 4), count(e, 0)),
+                updated::addAll);
+
+    // b is counted on its own instead of being reset to 0, d really lost its occurrences and e
+    // had none already
+    assertEquals(4, updatedCount);
+    Map<UUID, Long> newCounts = new HashMap<>();
+    updated.forEach(u -> newCounts.put(u.getKey(), u.getOccurrenceCount()));
+    assertEquals(4, newCounts.size());
+    assertEquals(Long.valueOf(12), newCounts.get(a));
+    assertEquals(Long.valueOf(10), newCounts.get(b));
+    assertEquals(Long.valueOf(9), newCounts.get(c));
+    assertEquals(Long.valueOf(0), newCounts.get(d));
+  }
+
+  @Test
+  public void testUpdatesInBatches() {
+    when(occurrenceWsSearchClient.search(any(OccurrenceSearchRequest.class)))
+        .thenAnswer(
+            invocation -> {
+              OccurrenceSearchRequest request = invocation.getArgument(0);
+              if (request.getParameters().containsKey(OccurrenceSearchParameter.TYPE_STATUS)) {
+                return facetResponse(Collections.emptyList());
+              }
+              return facetResponse(
+                  Arrays.asList(
+                      new Facet.Count(a.toString(), 1L),
+                      new Facet.Count(b.toString(), 1L),
+                      new Facet.Count(c.toString(), 1L)));
+            });
+
+    List<Integer> batchSizes = new ArrayList<>();
+    int updatedCount =
+        new GRSciCollCountsUpdater(occurrenceWsSearchClient, 10, 2)
+            .updateCounts(
+                FACET,
+                Collections.singletonList("Holotype"),
+                Arrays.asList(count(a, 0), count(b, 0), count(c, 0)),
+                batch -> batchSizes.add(batch.size()));
+
+    assertEquals(3, updatedCount);
+    assertEquals(Arrays.asList(2, 1), batchSizes);
+  }
+
+  private static Count count(UUID key, long occurrenceCount) {
+    Count count = new Count();
+    count.setKey(key);
+    count.setOccurrenceCount(occurrenceCount);
+    return count;
+  }
+
+  private static SearchResponse<Occurrence, OccurrenceSearchParameter> facetResponse(
+      List<Facet.Count> counts) {
+    Facet<OccurrenceSearchParameter> facet = new Facet<>(FACET);
+    facet.setCounts(counts);
+    SearchResponse<Occurrence, OccurrenceSearchParameter> response = new SearchResponse<>(0L, 0);
+    response.setFacets(Collections.singletonList(facet));
+    return response;
+  }
+}